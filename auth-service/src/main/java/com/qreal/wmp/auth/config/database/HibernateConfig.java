@@ -7,12 +7,16 @@ import com.qreal.wmp.auth.database.users.User;
 import com.qreal.wmp.auth.database.users.UserAuthority;
 import com.qreal.wmp.auth.database.users.UserDAO;
 import com.qreal.wmp.auth.database.users.UserDAOSec;
+import com.qreal.wmp.db.support.DataSourceSettings;
+import com.qreal.wmp.db.support.DataSources;
 import org.hibernate.SessionFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.DependsOn;
-import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
 import org.springframework.orm.hibernate5.HibernateTransactionManager;
 import org.springframework.orm.hibernate5.LocalSessionFactoryBuilder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -24,19 +28,32 @@ import java.util.Properties;
 /**
  * Development configuration of Hibernate ORM.
  * In development used H2 in-memory database and create-drop strategy of start.
+ * Database and schema strategy are set by database.* properties, production-db profile uses file-backed database.
  */
 @Configuration
 @EnableTransactionManagement(proxyTargetClass = true)
+@PropertySource("classpath:database.properties")
 public class HibernateConfig {
-    /** Provides access to DB.*/
+    @Autowired
+    private Environment environment;
+
+    @Value("${database.url:jdbc:h2:mem:test;DB_CLOSE_DELAY=-1;INIT=CREATE SCHEMA IF NOT EXISTS diagram}")
+    private String url;
+
+    @Value("${database.username:sa}")
+    private String username;
+
+    @Value("${database.password:}")
+    private String password;
+
+    @Value("${database.hbm2ddl:create-drop}")
+    private String hbm2ddl;
+
+    /** Provides access to DB. Pooling is configured by datasource.* properties.*/
     @Bean(name = "dataSource")
     public DataSource dataSource() {
-        SimpleDriverDataSource dataSource = new SimpleDriverDataSource();
-        dataSource.setDriverClass(org.h2.Driver.class);
-        dataSource.setUsername("sa");
-        dataSource.setUrl("jdbc:h2:mem:test;DB_CLOSE_DELAY=-1;INIT=CREATE SCHEMA IF NOT EXISTS diagram");
-        dataSource.setPassword("");
-        return dataSource;
+        return DataSources.create("auth", org.h2.Driver.class.getName(), url, username, password,
+                DataSourceSettings.fromProperties(environment, "datasource"));
     }
 
     /** Configuration properties of DB.*/
@@ -44,7 +61,7 @@ public class HibernateConfig {
     public Properties getHibernateProperties() {
         Properties properties = new Properties();
         properties.put("hibernate.dialect", "org.hibernate.dialect.MySQLDialect");
-        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        properties.put("hibernate.hbm2ddl.auto", hbm2ddl);
         properties.put("hibernate.hbm2ddl.import_files", "data.sql");
         return properties;
     }
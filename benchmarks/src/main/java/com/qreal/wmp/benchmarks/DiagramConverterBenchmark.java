@@ -0,0 +1,51 @@
+package com.qreal.wmp.benchmarks;
+
+import com.qreal.wmp.db.diagram.model.Diagram;
+import com.qreal.wmp.thrift.gen.TDiagram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** Conversions of diagrams between Thrift and Hibernate models done by DB service on every diagram call.*/
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class DiagramConverterBenchmark {
+
+    /** Number of nodes and links of a diagram.*/
+    @Param({"10", "1000", "100000"})
+    private int elements;
+
+    private TDiagram tDiagram;
+
+    private Diagram diagram;
+
+    @Setup
+    public void createDiagram() {
+        tDiagram = SyntheticModels.diagram("diagram", elements);
+        diagram = new Diagram(tDiagram);
+    }
+
+    @Benchmark
+    public Diagram fromThrift() {
+        return new Diagram(tDiagram);
+    }
+
+    @Benchmark
+    public TDiagram toThrift() {
+        return diagram.toTDiagram();
+    }
+}
@@ -0,0 +1,113 @@
+package com.qreal.wmp.benchmarks;
+
+import com.qreal.wmp.db.diagram.dao.DiagramDao;
+import com.qreal.wmp.db.diagram.exceptions.AbortedException;
+import com.qreal.wmp.db.diagram.exceptions.NotFoundException;
+import com.qreal.wmp.db.diagram.model.Diagram;
+import com.qreal.wmp.db.diagram.model.Folder;
+import com.qreal.wmp.thrift.gen.TDiagram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operations of DiagramDaoImpl with diagrams on in-memory H2, each in its own transaction as called by the handler.
+ * Hibernate second-level cache is enabled as in the service, so get is served by the cache after the first call.
+ * Diagrams to save and rewrite are converted from Thrift before the call, so only DAO is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class DiagramDaoBenchmark {
+
+    /** Number of nodes and links of a diagram.*/
+    @Param({"10", "1000", "100000"})
+    private int elements;
+
+    private AnnotationConfigApplicationContext context;
+
+    private DiagramDao diagramDao;
+
+    private TDiagram tDiagram;
+
+    private Long diagramId;
+
+    @Setup
+    public void saveDiagram() throws AbortedException {
+        context = DiagramDbContext.create();
+        diagramDao = context.getBean(DiagramDao.class);
+        tDiagram = SyntheticModels.diagram("diagram", elements);
+        Long folderId = diagramDao.saveFolder(new Folder("saved", SyntheticModels.OWNER));
+        diagramId = diagramDao.saveDiagram(new Diagram(tDiagram), folderId);
+    }
+
+    @TearDown
+    public void closeContext() {
+        context.close();
+    }
+
+    /** Diagram to save into a new empty folder, the folder is deleted together with the diagram after the call.*/
+    @State(Scope.Thread)
+    public static class NewDiagram {
+        private DiagramDao diagramDao;
+
+        private Diagram diagram;
+
+        private Long folderId;
+
+        @Setup(Level.Invocation)
+        public void create(DiagramDaoBenchmark benchmark) throws AbortedException {
+            diagramDao = benchmark.diagramDao;
+            folderId = diagramDao.saveFolder(new Folder("new", SyntheticModels.OWNER));
+            diagram = new Diagram(benchmark.tDiagram);
+        }
+
+        @TearDown(Level.Invocation)
+        public void delete() throws AbortedException {
+            diagramDao.deleteFolder(folderId);
+        }
+    }
+
+    /** Saved diagram with all nodes and links replaced by new ones.*/
+    @State(Scope.Thread)
+    public static class ChangedDiagram {
+        private Diagram diagram;
+
+        @Setup(Level.Invocation)
+        public void create(DiagramDaoBenchmark benchmark) {
+            diagram = new Diagram(benchmark.tDiagram);
+            diagram.setId(benchmark.diagramId);
+        }
+    }
+
+    @Benchmark
+    public Long save(NewDiagram newDiagram) throws AbortedException {
+        return diagramDao.saveDiagram(newDiagram.diagram, newDiagram.folderId);
+    }
+
+    @Benchmark
+    public Diagram get() throws NotFoundException {
+        return diagramDao.getDiagram(diagramId);
+    }
+
+    @Benchmark
+    public void rewrite(ChangedDiagram changedDiagram) throws AbortedException {
+        diagramDao.rewriteDiagram(changedDiagram.diagram);
+    }
+}
@@ -0,0 +1,45 @@
+package com.qreal.wmp.benchmarks;
+
+import com.qreal.wmp.db.diagram.config.Dao;
+import com.qreal.wmp.db.diagram.config.Hibernate;
+import com.qreal.wmp.db.diagram.config.Util;
+import com.qreal.wmp.db.diagram.config.development.DevHibernate;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Context of Diagram DB service without Thrift server. DAO, Hibernate and DataSource are configured as in the service
+ * by its server.properties, except database which is always a new in-memory H2 database.
+ */
+@Configuration
+@PropertySource("classpath:server.properties")
+@Import({Util.class, DevHibernate.class, Hibernate.class, Dao.class})
+public class DiagramDbContext {
+
+    /** Creates context, it must be closed to drop the database.*/
+    static AnnotationConfigApplicationContext create() {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(inMemoryDatabase());
+        context.register(DiagramDbContext.class);
+        context.refresh();
+        return context;
+    }
+
+    /** Properties replacing database of the service by a new in-memory H2 database.*/
+    public static MapPropertySource inMemoryDatabase() {
+        Map<String, Object> database = new HashMap<>();
+        database.put("database.url",
+                "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1;INIT=CREATE SCHEMA IF NOT EXISTS diagram");
+        database.put("database.username", "sa");
+        database.put("database.password", "");
+        database.put("database.hbm2ddl", "create-drop");
+        database.put("database.migrate", "false");
+        return new MapPropertySource("benchmarkDatabase", database);
+    }
+}
@@ -0,0 +1,97 @@
+package com.qreal.wmp.benchmarks;
+
+import com.qreal.wmp.editor.database.diagrams.model.Diagram;
+import com.qreal.wmp.thrift.gen.TDiagram;
+import org.apache.thrift.TDeserializer;
+import org.apache.thrift.TException;
+import org.apache.thrift.TSerializer;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TJSONProtocol;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Work of the editor on save and open of a diagram: reading it from one protocol and writing it to another, with
+ * conversion to the editor model in between or passed through as is. Editor clients use TJSONProtocol, DB service
+ * uses TBinaryProtocol. Saved allocations are shown by gc.alloc.rate.norm of GC profiler.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class EditorDiagramPathBenchmark {
+
+    private static final long FOLDER_ID = 1;
+
+    /** Number of nodes and links of a diagram.*/
+    @Param({"10", "1000", "10000"})
+    private int elements;
+
+    private final TSerializer jsonSerializer = new TSerializer(new TJSONProtocol.Factory());
+
+    private final TDeserializer jsonDeserializer = new TDeserializer(new TJSONProtocol.Factory());
+
+    private final TSerializer binarySerializer = new TSerializer(new TBinaryProtocol.Factory());
+
+    private final TDeserializer binaryDeserializer = new TDeserializer(new TBinaryProtocol.Factory());
+
+    /** Diagram sent by editor client to save.*/
+    private byte[] clientRequest;
+
+    /** Diagram sent by DB service on open.*/
+    private byte[] dbResponse;
+
+    @Setup
+    public void serializeDiagram() throws TException {
+        TDiagram diagram = SyntheticModels.diagram("diagram", elements);
+        clientRequest = jsonSerializer.serialize(diagram);
+        //DB service sends diagrams converted from its Hibernate model.
+        dbResponse = binarySerializer.serialize(new com.qreal.wmp.db.diagram.model.Diagram(diagram).toTDiagram());
+    }
+
+    @Benchmark
+    public byte[] saveConverted() throws TException {
+        TDiagram diagram = read(jsonDeserializer, clientRequest);
+        TDiagram converted = new Diagram(diagram).toTDiagram();
+        converted.setFolderId(FOLDER_ID);
+        return binarySerializer.serialize(converted);
+    }
+
+    @Benchmark
+    public byte[] savePassThrough() throws TException {
+        TDiagram diagram = read(jsonDeserializer, clientRequest);
+        diagram.setFolderId(FOLDER_ID);
+        return binarySerializer.serialize(diagram);
+    }
+
+    @Benchmark
+    public byte[] openConverted() throws TException {
+        TDiagram diagram = read(binaryDeserializer, dbResponse);
+        return jsonSerializer.serialize(new Diagram(diagram).toTDiagram());
+    }
+
+    @Benchmark
+    public byte[] openPassThrough() throws TException {
+        TDiagram diagram = read(binaryDeserializer, dbResponse);
+        return jsonSerializer.serialize(diagram);
+    }
+
+    private static TDiagram read(TDeserializer deserializer, byte[] bytes) throws TException {
+        TDiagram diagram = new TDiagram();
+        deserializer.deserialize(diagram, bytes);
+        return diagram;
+    }
+}
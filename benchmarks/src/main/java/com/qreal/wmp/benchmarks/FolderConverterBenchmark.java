@@ -0,0 +1,51 @@
+package com.qreal.wmp.benchmarks;
+
+import com.qreal.wmp.db.diagram.model.Folder;
+import com.qreal.wmp.thrift.gen.TFolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** Conversions of folder trees between Thrift and Hibernate models, each folder holds one small diagram.*/
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class FolderConverterBenchmark {
+
+    /** Number of folders of a tree.*/
+    @Param({"10", "1000", "10000"})
+    private int folders;
+
+    private TFolder tFolder;
+
+    private Folder folder;
+
+    @Setup
+    public void createTree() {
+        tFolder = SyntheticModels.folderTree(folders, 1, 10);
+        folder = new Folder(tFolder);
+    }
+
+    @Benchmark
+    public Folder fromThrift() {
+        return new Folder(tFolder);
+    }
+
+    @Benchmark
+    public TFolder toThrift() {
+        return folder.toTFolder(SyntheticModels.OWNER);
+    }
+}
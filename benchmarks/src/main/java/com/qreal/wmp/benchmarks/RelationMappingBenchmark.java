@@ -0,0 +1,65 @@
+package com.qreal.wmp.benchmarks;
+
+import com.qreal.wmp.db.diagram.dao.DiagramDao;
+import com.qreal.wmp.db.diagram.exceptions.AbortedException;
+import com.qreal.wmp.db.diagram.exceptions.NotFoundException;
+import com.qreal.wmp.db.diagram.mapping.RelationMapping;
+import com.qreal.wmp.db.diagram.model.Folder;
+import com.qreal.wmp.thrift.gen.TFolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of a saved folder tree from Thrift with loading of parents from DB, as done by updateFolder of the
+ * handler. Each folder of the tree holds one small diagram.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RelationMappingBenchmark {
+
+    /** Number of folders of a tree.*/
+    @Param({"10", "1000", "10000"})
+    private int folders;
+
+    private AnnotationConfigApplicationContext context;
+
+    private RelationMapping relationMapping;
+
+    private TFolder tFolder;
+
+    @Setup
+    public void saveTree() throws AbortedException, NotFoundException {
+        context = DiagramDbContext.create();
+        DiagramDao diagramDao = context.getBean(DiagramDao.class);
+        diagramDao.saveFolder(new Folder(SyntheticModels.folderTree(folders, 1, 10)));
+        tFolder = diagramDao.getFolderTree(SyntheticModels.OWNER).toTFolder(SyntheticModels.OWNER);
+        relationMapping = new RelationMapping(diagramDao);
+    }
+
+    @TearDown
+    public void closeContext() {
+        context.close();
+    }
+
+    @Benchmark
+    public Folder convertTFolder() {
+        return relationMapping.convertTFolder(tFolder);
+    }
+}
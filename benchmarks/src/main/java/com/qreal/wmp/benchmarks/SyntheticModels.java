@@ -0,0 +1,125 @@
+package com.qreal.wmp.benchmarks;
+
+import com.qreal.wmp.thrift.gen.TDefaultDiagramNode;
+import com.qreal.wmp.thrift.gen.TDiagram;
+import com.qreal.wmp.thrift.gen.TFolder;
+import com.qreal.wmp.thrift.gen.TLink;
+import com.qreal.wmp.thrift.gen.TProperty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds synthetic Thrift diagrams and folder trees as they come from the editor: without ids of nodes, links and
+ * properties, so they are generated by DB on save.
+ */
+public final class SyntheticModels {
+
+    /** Owner of synthetic folders.*/
+    public static final String OWNER = "benchmark";
+
+    /** Number of properties of each node and link.*/
+    static final int PROPERTIES = 2;
+
+    /** Number of children of each folder of a tree.*/
+    static final int FOLDER_FANOUT = 10;
+
+    private SyntheticModels() {
+    }
+
+    /**
+     * Creates a diagram of given number of elements, half of them nodes and half links.
+     * @param elements number of nodes and links
+     */
+    public static TDiagram diagram(String name, int elements) {
+        TDiagram diagram = new TDiagram();
+        diagram.setName(name);
+
+        int nodesCount = (elements + 1) / 2;
+        Set<TDefaultDiagramNode> nodes = new HashSet<>(capacity(nodesCount));
+        for (int i = 0; i < nodesCount; i++) {
+            nodes.add(node(i));
+        }
+        diagram.setNodes(nodes);
+
+        int linksCount = elements - nodesCount;
+        Set<TLink> links = new HashSet<>(capacity(linksCount));
+        for (int i = 0; i < linksCount; i++) {
+            links.add(link(i));
+        }
+        diagram.setLinks(links);
+        return diagram;
+    }
+
+    /**
+     * Creates a tree of folders, each folder has FOLDER_FANOUT children except the last level. Root folder is named
+     * root, so it is found as the root folder of OWNER.
+     * @param folders            number of folders including root
+     * @param diagramsPerFolder  number of diagrams in each folder
+     * @param elementsPerDiagram number of nodes and links of each diagram
+     */
+    public static TFolder folderTree(int folders, int diagramsPerFolder, int elementsPerDiagram) {
+        List<TFolder> tree = new ArrayList<>(folders);
+        for (int i = 0; i < folders; i++) {
+            TFolder folder = new TFolder();
+            folder.setFolderName(i == 0 ? "root" : "folder-" + i);
+            folder.setOwners(new HashSet<>(Collections.singleton(OWNER)));
+            folder.setChildrenFolders(new HashSet<>());
+            Set<TDiagram> diagrams = new HashSet<>(capacity(diagramsPerFolder));
+            for (int j = 0; j < diagramsPerFolder; j++) {
+                diagrams.add(diagram("diagram-" + i + "-" + j, elementsPerDiagram));
+            }
+            folder.setDiagrams(diagrams);
+            tree.add(folder);
+        }
+
+        //Children are added before their folder is put into a set of its parent, so hash codes don't change in sets.
+        for (int i = folders - 1; i > 0; i--) {
+            tree.get((i - 1) / FOLDER_FANOUT).getChildrenFolders().add(tree.get(i));
+        }
+        return tree.get(0);
+    }
+
+    private static TDefaultDiagramNode node(int index) {
+        TDefaultDiagramNode node = new TDefaultDiagramNode();
+        node.setLogicalId("logical-node-" + index);
+        node.setGraphicalId("graphical-node-" + index);
+        node.setJointObject("joint-node-" + index);
+        node.setType("Action");
+        node.setX(index % 100 * 50.0);
+        node.setY(index / 100 * 50.0);
+        node.setProperties(properties("node-" + index));
+        return node;
+    }
+
+    private static TLink link(int index) {
+        TLink link = new TLink();
+        link.setLogicalId("logical-link-" + index);
+        link.setGraphicalId("graphical-link-" + index);
+        link.setJointObjectId("joint-link-" + index);
+        link.setType("ControlFlow");
+        link.setVertices("[]");
+        link.setProperties(properties("link-" + index));
+        return link;
+    }
+
+    private static Set<TProperty> properties(String element) {
+        Set<TProperty> properties = new HashSet<>(capacity(PROPERTIES));
+        for (int i = 0; i < PROPERTIES; i++) {
+            TProperty property = new TProperty();
+            property.setName("property-" + i);
+            property.setValue(element + "-value-" + i);
+            property.setType("string");
+            property.setPosition(i);
+            properties.add(property);
+        }
+        return properties;
+    }
+
+    private static int capacity(int size) {
+        return size * 4 / 3 + 1;
+    }
+}
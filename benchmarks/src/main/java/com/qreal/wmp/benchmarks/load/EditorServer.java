@@ -0,0 +1,86 @@
+package com.qreal.wmp.benchmarks.load;
+
+import com.qreal.wmp.editor.common.utils.PropertyLoader;
+import com.qreal.wmp.editor.controller.EditorServlet;
+import com.qreal.wmp.editor.database.diagrams.client.DiagramService;
+import com.qreal.wmp.editor.database.diagrams.client.DiagramServiceImpl;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Editor service in embedded Tomcat: EditorServlet at its path from service.properties with the client of Diagram DB
+ * service configured by client.properties. Pages, robots and OAuth login of the editor are not started, requests are
+ * authenticated by StubAuthenticationFilter.
+ */
+final class EditorServer {
+
+    /** Beans of the editor used by EditorServlet.*/
+    @Configuration
+    @Import(DiagramServiceImpl.class)
+    static class EditorContext {
+        @Bean(name = "propertyPlaceholder")
+        public static PropertySourcesPlaceholderConfigurer propertySourcesPlaceholderConfigurer() {
+            return new PropertySourcesPlaceholderConfigurer();
+        }
+    }
+
+    private final AnnotationConfigApplicationContext context;
+
+    private final Tomcat tomcat;
+
+    private final String url;
+
+    /** Starts the editor, zero port means any free port.*/
+    EditorServer(int port) throws IOException, LifecycleException {
+        context = new AnnotationConfigApplicationContext(EditorContext.class);
+
+        tomcat = new Tomcat();
+        tomcat.setPort(port);
+        String baseDir = Files.createTempDirectory("editor-tomcat").toString();
+        tomcat.setBaseDir(baseDir);
+        Context servletContext = tomcat.addContext("", baseDir);
+
+        String path = PropertyLoader.load("service.properties", "path.editor.service");
+        Tomcat.addServlet(servletContext, "EditorServlet", new EditorServlet(context));
+        servletContext.addServletMapping(path, "EditorServlet");
+
+        FilterDef filterDef = new FilterDef();
+        filterDef.setFilterName("stubAuthentication");
+        filterDef.setFilter(new StubAuthenticationFilter());
+        servletContext.addFilterDef(filterDef);
+        FilterMap filterMap = new FilterMap();
+        filterMap.setFilterName("stubAuthentication");
+        filterMap.addURLPattern("/*");
+        servletContext.addFilterMap(filterMap);
+
+        tomcat.start();
+        url = "http://localhost:" + tomcat.getConnector().getLocalPort() + path;
+    }
+
+    /** URL of Thrift endpoint of the editor.*/
+    String getUrl() {
+        return url;
+    }
+
+    /** Client of Diagram DB service used by the editor.*/
+    DiagramService getDiagramService() {
+        return context.getBean(DiagramService.class);
+    }
+
+    void stop() throws LifecycleException {
+        tomcat.stop();
+        tomcat.destroy();
+        context.close();
+    }
+}
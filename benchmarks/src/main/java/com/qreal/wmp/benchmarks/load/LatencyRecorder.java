@@ -0,0 +1,59 @@
+package com.qreal.wmp.benchmarks.load;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Latencies of calls of one operation. Every latency is kept, so percentiles are exact. A recorder is written by one
+ * virtual user, recorders of all users are merged for the report.
+ */
+final class LatencyRecorder {
+
+    private long[] latencies = new long[1024];
+
+    private int count;
+
+    private long errors;
+
+    void record(long latencyNanos) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = latencyNanos;
+    }
+
+    void recordError() {
+        errors++;
+    }
+
+    /** Returns a recorder with latencies and errors of all recorders, latencies are sorted.*/
+    static LatencyRecorder merge(Collection<LatencyRecorder> recorders) {
+        LatencyRecorder merged = new LatencyRecorder();
+        merged.latencies = new long[recorders.stream().mapToInt(recorder -> recorder.count).sum()];
+        for (LatencyRecorder recorder : recorders) {
+            System.arraycopy(recorder.latencies, 0, merged.latencies, merged.count, recorder.count);
+            merged.count += recorder.count;
+            merged.errors += recorder.errors;
+        }
+        Arrays.sort(merged.latencies);
+        return merged;
+    }
+
+    /** Number of successful calls.*/
+    int getCount() {
+        return count;
+    }
+
+    long getErrors() {
+        return errors;
+    }
+
+    /** Returns percentile of latencies by nearest rank, latencies must be sorted by merge.*/
+    double getPercentileMillis(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * count);
+        return latencies[Math.max(rank, 1) - 1] / 1e6;
+    }
+}
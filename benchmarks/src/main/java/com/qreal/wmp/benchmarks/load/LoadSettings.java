@@ -0,0 +1,54 @@
+package com.qreal.wmp.benchmarks.load;
+
+import lombok.Data;
+import org.springframework.core.env.PropertyResolver;
+
+/** Settings of a load test.*/
+@Data
+public class LoadSettings {
+    /** Number of virtual users, each calls the editor from its own thread with its own connection.*/
+    private int users = 16;
+
+    /** Time of calls not included in the report, while JIT and caches warm up.*/
+    private int warmupSeconds = 30;
+
+    /** Time of measured calls.*/
+    private int durationSeconds = 60;
+
+    /** Pause of a virtual user after each call, zero to call as fast as responses come.*/
+    private long thinkMillis = 0;
+
+    /** Weights of operations, e.g. "openDiagram:60,rewriteDiagram:20,getFolderTree:15,createFolder:5".*/
+    private String mix = "openDiagram:60,rewriteDiagram:20,getFolderTree:15,createFolder:5";
+
+    /** Number of nodes and links of the diagram of each virtual user.*/
+    private int diagramElements = 100;
+
+    /** Seed of random choice of operations, virtual users use consecutive seeds.*/
+    private long seed = 1;
+
+    /** Port of the editor, zero to use any free port.*/
+    private int editorPort = 0;
+
+    /**
+     * Reads settings, e.g. prefix "load" reads "load.users".
+     * Missing properties keep default values.
+     */
+    public static LoadSettings fromProperties(PropertyResolver properties, String prefix) {
+        LoadSettings settings = new LoadSettings();
+        settings.setUsers(properties.getProperty(prefix + ".users", Integer.class, settings.getUsers()));
+        settings.setWarmupSeconds(properties.getProperty(prefix + ".warmup.seconds", Integer.class,
+                settings.getWarmupSeconds()));
+        settings.setDurationSeconds(properties.getProperty(prefix + ".duration.seconds", Integer.class,
+                settings.getDurationSeconds()));
+        settings.setThinkMillis(properties.getProperty(prefix + ".think.millis", Long.class,
+                settings.getThinkMillis()));
+        settings.setMix(properties.getProperty(prefix + ".mix", settings.getMix()));
+        settings.setDiagramElements(properties.getProperty(prefix + ".diagram.elements", Integer.class,
+                settings.getDiagramElements()));
+        settings.setSeed(properties.getProperty(prefix + ".seed", Long.class, settings.getSeed()));
+        settings.setEditorPort(properties.getProperty(prefix + ".editor.port", Integer.class,
+                settings.getEditorPort()));
+        return settings;
+    }
+}
@@ -0,0 +1,146 @@
+package com.qreal.wmp.benchmarks.load;
+
+import com.qreal.wmp.benchmarks.DiagramDbContext;
+import com.qreal.wmp.db.diagram.config.AppInit;
+import com.qreal.wmp.editor.database.diagrams.client.DiagramService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of the editor Thrift endpoint. Diagram DB service with in-memory H2 and the editor with stubbed
+ * authentication are started in-process, then virtual users call the editor over HTTP in a closed loop and latency
+ * percentiles and throughput of each operation are printed. Settings are given as options, see LoadSettings, e.g.
+ * java -cp benchmarks/target/benchmarks.jar com.qreal.wmp.benchmarks.load.LoadTest --load.users=50
+ * --load.mix=openDiagram:80,rewriteDiagram:20 --load.duration.seconds=120
+ */
+public final class LoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTest.class);
+
+    private static final long STARTUP_TIMEOUT_MILLIS = 60000;
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new SimpleCommandLinePropertySource(args));
+        LoadSettings settings = LoadSettings.fromProperties(environment, "load");
+        OperationMix mix = OperationMix.parse(settings.getMix());
+
+        AnnotationConfigApplicationContext diagramDb = startDiagramDb();
+        EditorServer editor = new EditorServer(settings.getEditorPort());
+        logger.info("Editor started on {}.", editor.getUrl());
+
+        ExecutorService executor = Executors.newFixedThreadPool(settings.getUsers());
+        List<VirtualUser> users = new ArrayList<>(settings.getUsers());
+        try {
+            for (int i = 0; i < settings.getUsers(); i++) {
+                users.add(new VirtualUser("load-user-" + i, editor.getUrl(), settings.getDiagramElements(),
+                        settings.getSeed() + i));
+            }
+            prepare(users, editor.getDiagramService(), executor);
+            logger.info("{} users prepared, warming up for {} s.", users.size(), settings.getWarmupSeconds());
+
+            long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(settings.getWarmupSeconds());
+            long end = warmupEnd + TimeUnit.SECONDS.toNanos(settings.getDurationSeconds());
+            List<Callable<Map<Operation, LatencyRecorder>>> runs = new ArrayList<>(users.size());
+            for (VirtualUser user : users) {
+                runs.add(() -> user.run(mix, warmupEnd, end, settings.getThinkMillis()));
+            }
+            Map<Operation, List<LatencyRecorder>> recorders = new EnumMap<>(Operation.class);
+            for (Future<Map<Operation, LatencyRecorder>> run : executor.invokeAll(runs)) {
+                run.get().forEach((operation, recorder) ->
+                        recorders.computeIfAbsent(operation, key -> new ArrayList<>()).add(recorder));
+            }
+            report(settings, mix, recorders);
+        } finally {
+            executor.shutdownNow();
+            users.forEach(VirtualUser::close);
+            editor.stop();
+            diagramDb.close();
+        }
+        //Thrift server of Diagram DB service has no stop, its thread would keep JVM running.
+        System.exit(0);
+    }
+
+    /** Starts Diagram DB service as its main does, but with a new in-memory database.*/
+    private static AnnotationConfigApplicationContext startDiagramDb() throws InterruptedException {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(DiagramDbContext.inMemoryDatabase());
+        context.scan("com.qreal.wmp.db.diagram");
+        context.register(AppInit.class);
+        context.refresh();
+
+        String host = context.getEnvironment().getProperty("path.db.diagram");
+        int port = context.getEnvironment().getProperty("port.db.diagram", Integer.class);
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+        while (true) {
+            try (Socket ignored = new Socket(host, port)) {
+                logger.info("Diagram DB service started on {}:{}.", host, port);
+                return context;
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("Diagram DB service was not started on port " + port, e);
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    /** Creates root folders of users, as user service does on registration, and their folders and diagrams.*/
+    private static void prepare(List<VirtualUser> users, DiagramService diagramService, ExecutorService executor)
+            throws Exception {
+        List<Callable<Void>> preparations = new ArrayList<>(users.size());
+        for (VirtualUser user : users) {
+            preparations.add(() -> {
+                diagramService.createRootFolder(user.getName());
+                user.prepare();
+                return null;
+            });
+        }
+        for (Future<Void> preparation : executor.invokeAll(preparations)) {
+            preparation.get();
+        }
+    }
+
+    private static void report(LoadSettings settings, OperationMix mix,
+                               Map<Operation, List<LatencyRecorder>> recorders) {
+        System.out.printf("%d users, mix %s, diagrams of %d elements, think time %d ms, %d s measured after %d s " +
+                        "of warmup%n", settings.getUsers(), mix, settings.getDiagramElements(),
+                settings.getThinkMillis(), settings.getDurationSeconds(), settings.getWarmupSeconds());
+        System.out.printf("%-16s %10s %8s %10s %10s %10s %10s%n", "operation", "calls", "errors", "calls/s",
+                "p50 ms", "p99 ms", "max ms");
+
+        List<LatencyRecorder> all = new ArrayList<>();
+        for (Map.Entry<Operation, List<LatencyRecorder>> operation : recorders.entrySet()) {
+            LatencyRecorder merged = LatencyRecorder.merge(operation.getValue());
+            if (merged.getCount() > 0 || merged.getErrors() > 0) {
+                printRow(operation.getKey().getMethod(), merged, settings.getDurationSeconds());
+                all.addAll(operation.getValue());
+            }
+        }
+        printRow("total", LatencyRecorder.merge(all), settings.getDurationSeconds());
+    }
+
+    private static void printRow(String name, LatencyRecorder recorder, int seconds) {
+        System.out.printf("%-16s %10d %8d %10.1f %10.2f %10.2f %10.2f%n", name, recorder.getCount(),
+                recorder.getErrors(), (double) recorder.getCount() / seconds, recorder.getPercentileMillis(50),
+                recorder.getPercentileMillis(99), recorder.getPercentileMillis(100));
+    }
+}
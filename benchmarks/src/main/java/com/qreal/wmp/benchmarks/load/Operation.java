@@ -0,0 +1,53 @@
+package com.qreal.wmp.benchmarks.load;
+
+import org.apache.thrift.TException;
+
+/** Calls of EditorServiceThrift made by virtual users.*/
+enum Operation {
+    OPEN_DIAGRAM("openDiagram") {
+        @Override
+        void call(VirtualUser user) throws TException {
+            user.openDiagram();
+        }
+    },
+    REWRITE_DIAGRAM("rewriteDiagram") {
+        @Override
+        void call(VirtualUser user) throws TException {
+            user.rewriteDiagram();
+        }
+    },
+    GET_FOLDER_TREE("getFolderTree") {
+        @Override
+        void call(VirtualUser user) throws TException {
+            user.getFolderTree();
+        }
+    },
+    CREATE_FOLDER("createFolder") {
+        @Override
+        void call(VirtualUser user) throws TException {
+            user.createFolder();
+        }
+    };
+
+    private final String method;
+
+    Operation(String method) {
+        this.method = method;
+    }
+
+    /** Name of the called method of EditorServiceThrift.*/
+    String getMethod() {
+        return method;
+    }
+
+    abstract void call(VirtualUser user) throws TException;
+
+    static Operation byMethod(String method) {
+        for (Operation operation : values()) {
+            if (operation.method.equals(method)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation " + method);
+    }
+}
@@ -0,0 +1,76 @@
+package com.qreal.wmp.benchmarks.load;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/** Weighted choice of operations of virtual users.*/
+final class OperationMix {
+
+    private final Operation[] operations;
+
+    /** Cumulative weights in order of operations.*/
+    private final int[] bounds;
+
+    private OperationMix(Map<Operation, Integer> weights) {
+        operations = new Operation[weights.size()];
+        bounds = new int[weights.size()];
+        int total = 0;
+        int index = 0;
+        for (Map.Entry<Operation, Integer> weight : weights.entrySet()) {
+            total += weight.getValue();
+            operations[index] = weight.getKey();
+            bounds[index] = total;
+            index++;
+        }
+    }
+
+    /**
+     * Parses mix like "openDiagram:60,getFolderTree:40", operations with zero weight are not called.
+     * @throws IllegalArgumentException if an operation is unknown or no operation has positive weight
+     */
+    static OperationMix parse(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String item : mix.split(",")) {
+            String[] parts = item.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Mix item " + item + " is not in format method:weight");
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Weight of " + parts[0] + " is negative");
+            }
+            if (weight > 0) {
+                weights.merge(Operation.byMethod(parts[0].trim()), weight, Integer::sum);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Mix " + mix + " has no operation with positive weight");
+        }
+        return new OperationMix(weights);
+    }
+
+    Operation next(Random random) {
+        int value = random.nextInt(bounds[bounds.length - 1]);
+        for (int i = 0; i < bounds.length; i++) {
+            if (value < bounds[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        int previous = 0;
+        for (int i = 0; i < operations.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(operations[i].getMethod()).append(':').append(bounds[i] - previous);
+            previous = bounds[i];
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,137 @@
+package com.qreal.wmp.benchmarks.load;
+
+import com.qreal.wmp.benchmarks.SyntheticModels;
+import com.qreal.wmp.thrift.gen.EditorServiceThrift;
+import com.qreal.wmp.thrift.gen.TDiagram;
+import com.qreal.wmp.thrift.gen.TFolder;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TJSONProtocol;
+import org.apache.thrift.transport.THttpClient;
+import org.apache.thrift.transport.TTransportException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * User of the editor calling its Thrift endpoint over HTTP as the browser does, with TJSONProtocol. Each user works
+ * with its own folder and diagram, created folders are put into its folder, so its folder tree grows during the test.
+ * Not thread-safe, a user is run by one thread.
+ */
+final class VirtualUser {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualUser.class);
+
+    private final String name;
+
+    private final THttpClient transport;
+
+    private final EditorServiceThrift.Client client;
+
+    private final Random random;
+
+    /** Diagram of the user, sent as it is by rewriteDiagram.*/
+    private final TDiagram diagram;
+
+    private long folderId;
+
+    private int createdFolders;
+
+    VirtualUser(String name, String url, int diagramElements, long seed) throws TTransportException {
+        this.name = name;
+        transport = new THttpClient(url);
+        transport.setCustomHeader(StubAuthenticationFilter.USER_HEADER, name);
+        client = new EditorServiceThrift.Client(new TJSONProtocol(transport));
+        random = new Random(seed);
+        diagram = SyntheticModels.diagram("diagram of " + name, diagramElements);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /** Creates folder of the user in its root folder and saves the diagram there, root folder must exist.*/
+    void prepare() throws TException {
+        TFolder root = client.getFolderTree();
+        TFolder folder = new TFolder();
+        folder.setFolderName("load");
+        folder.setFolderParentId(root.getId());
+        folderId = client.createFolder(folder);
+        if (folderId == 0) {
+            throw new TException("Folder of " + name + " was not created");
+        }
+
+        diagram.setFolderId(folderId);
+        long diagramId = client.saveDiagram(diagram);
+        if (diagramId == 0) {
+            throw new TException("Diagram of " + name + " was not saved");
+        }
+        diagram.setId(diagramId);
+    }
+
+    /**
+     * Calls operations chosen by mix until end. Calls started before end of warmup are not recorded.
+     * @param thinkMillis pause after each call
+     * @return recorders of all operations
+     */
+    Map<Operation, LatencyRecorder> run(OperationMix mix, long warmupEndNanos, long endNanos, long thinkMillis)
+            throws InterruptedException {
+        Map<Operation, LatencyRecorder> recorders = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new LatencyRecorder());
+        }
+
+        long start = System.nanoTime();
+        while (start < endNanos) {
+            Operation operation = mix.next(random);
+            boolean failed = false;
+            try {
+                operation.call(this);
+            } catch (TException | RuntimeException e) {
+                logger.debug("Call {} of {} failed.", operation.getMethod(), name, e);
+                failed = true;
+            }
+            long latency = System.nanoTime() - start;
+
+            if (start >= warmupEndNanos) {
+                if (failed) {
+                    recorders.get(operation).recordError();
+                } else {
+                    recorders.get(operation).record(latency);
+                }
+            }
+            if (thinkMillis > 0) {
+                Thread.sleep(thinkMillis);
+            }
+            start = System.nanoTime();
+        }
+        return recorders;
+    }
+
+    void close() {
+        transport.close();
+    }
+
+    void openDiagram() throws TException {
+        client.openDiagram(diagram.getId());
+    }
+
+    void rewriteDiagram() throws TException {
+        client.rewriteDiagram(diagram);
+    }
+
+    void getFolderTree() throws TException {
+        client.getFolderTree();
+    }
+
+    void createFolder() throws TException {
+        TFolder folder = new TFolder();
+        folder.setFolderName("folder-" + ++createdFolders);
+        folder.setFolderParentId(folderId);
+        if (client.createFolder(folder) == 0) {
+            throw new TException("Folder was not created");
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.qreal.wmp.dashboard.common.config.core;
 
 import com.qreal.wmp.dashboard.common.utils.PropertyLoader;
 import com.qreal.wmp.dashboard.controller.RobotRestServlet;
+import com.qreal.wmp.thrift.servlet.ThriftServlet;
+import org.apache.thrift.protocol.TCompactProtocol;
 import org.springframework.web.WebApplicationInitializer;
 import org.springframework.web.context.ContextLoaderListener;
 import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
@@ -35,10 +37,19 @@ public class AppInit implements WebApplicationInitializer {
         dispatcher.addMapping("/");
 
         //Thrift services servlet
+        String servicePath = PropertyLoader.load("service.properties", "path.dashboard.service");
         ServletRegistration.Dynamic robotRestService = servletContext.addServlet("RobotRestServlet",
                 new RobotRestServlet(dispatcherContext));
         robotRestService.setLoadOnStartup(1);
-        robotRestService.addMapping(PropertyLoader.load("service.properties", "path.dashboard.service"));
+        robotRestService.addMapping(servicePath);
+
+        //The same service with TCompactProtocol, limits of strings and containers are checked before allocation
+        TCompactProtocol.Factory compactFactory = new TCompactProtocol.Factory(ThriftServlet.DEFAULT_MAX_REQUEST_BYTES,
+                ThriftServlet.MAX_CONTAINER_LENGTH);
+        ServletRegistration.Dynamic robotRestCompactService = servletContext.addServlet("RobotRestCompactServlet",
+                new RobotRestServlet(dispatcherContext, "RobotServiceCompact", compactFactory));
+        robotRestCompactService.setLoadOnStartup(1);
+        robotRestCompactService.addMapping(servicePath + ThriftServlet.COMPACT_PATH);
 
         DelegatingFilterProxy filter = new DelegatingFilterProxy("springSecurityFilterChain");
         filter.setContextAttribute("org.springframework.web.servlet.FrameworkServlet.CONTEXT.dispatcher");
@@ -1,12 +1,17 @@
 package com.qreal.wmp.dashboard.controller;
 
 import com.qreal.wmp.thrift.gen.RobotServiceThrift;
+import com.qreal.wmp.thrift.metrics.MeteredProcessor;
+import com.qreal.wmp.thrift.servlet.ThriftServlet;
 import org.apache.thrift.protocol.TJSONProtocol;
-import org.apache.thrift.server.TServlet;
+import org.apache.thrift.protocol.TProtocolFactory;
 import org.springframework.context.ApplicationContext;
 
-/** Thrift service class for RobotRest controller.*/
-public class RobotRestServlet extends TServlet {
+/**
+ * Thrift service class for RobotRest controller. Calls are metered, metrics are available through JMX.
+ * Responses are compressed if client accepts gzip or deflate, see ThriftServlet.
+ */
+public class RobotRestServlet extends ThriftServlet {
 
     //Thrift part of application is not a part of Spring context. But it needs DB services which
     // are maintained by Spring.
@@ -14,9 +19,15 @@ public class RobotRestServlet extends TServlet {
 
     /** Constructor with context param. It weaves context of TServlet in context of spring application.*/
     public RobotRestServlet(ApplicationContext applicationContext) {
+        this(applicationContext, "RobotService", new TJSONProtocol.Factory());
+    }
+
+    /** @param service name of the service in metrics, different for each protocol*/
+    public RobotRestServlet(ApplicationContext applicationContext, String service, TProtocolFactory protocolFactory) {
         super(
-                new RobotServiceThrift.Processor(new RobotRestServletHandler(applicationContext)),
-                new TJSONProtocol.Factory()
+                new MeteredProcessor(service,
+                        new RobotServiceThrift.Processor(new RobotRestServletHandler(applicationContext))),
+                protocolFactory
         );
     }
 }
@@ -8,20 +8,20 @@ import com.qreal.wmp.dashboard.database.users.client.UserService;
 import com.qreal.wmp.dashboard.database.users.model.User;
 import com.qreal.wmp.thrift.gen.RobotDbService;
 import com.qreal.wmp.thrift.gen.TRobot;
+import com.qreal.wmp.thrift.pool.PoolSettings;
+import com.qreal.wmp.thrift.pool.ThriftClientPool;
 import org.apache.thrift.TException;
-import org.apache.thrift.protocol.TBinaryProtocol;
-import org.apache.thrift.protocol.TProtocol;
-import org.apache.thrift.transport.TSocket;
-import org.apache.thrift.transport.TTransport;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 /** Thrift client side of RobotDBService.*/
 @Service("robotService")
@@ -32,9 +32,7 @@ public class RobotServiceImpl implements RobotService {
 
     private final UserService userService;
 
-    private TTransport transport;
-
-    private RobotDbService.Client client;
+    private ThriftClientPool<RobotDbService.Client> pool;
 
     @Value("${port.db.robot}")
     private int port;
@@ -42,31 +40,33 @@ public class RobotServiceImpl implements RobotService {
     @Value("${path.db.robot}")
     private String url;
 
+    @Autowired
+    private Environment environment;
+
     @Autowired
     public RobotServiceImpl(UserService userService) {
         this.userService = userService;
     }
 
-    /** Creates connection with Thrift TServer.*/
+    /** Creates pool of connections to a Thrift TServer.*/
     @PostConstruct
     public void start() {
-        logger.info("Client RobotService was created with Thrift socket on url = {}, port = {}", url, port);
-        transport = new TSocket(url, port);
-        TProtocol protocol = new TBinaryProtocol(transport);
-        client = new RobotDbService.Client(protocol);
+        pool = new ThriftClientPool<>("RobotDbService", url, port, new RobotDbService.Client.Factory(),
+                PoolSettings.fromProperties(environment, "pool.db.robot"));
+        logger.info("Client RobotService was created with Thrift client pool on url = {}, port = {}", url, port);
+    }
+
+    /** Closes connections to a Thrift TServer.*/
+    @PreDestroy
+    public void stop() {
+        pool.close();
     }
 
     @Override
     public long saveRobot(@NotNull Robot robot) throws AbortedException, ErrorConnectionException, TException {
         logger.trace("saveRobot() was called with parameters: robot = {}", robot.getName());
 
-        long idRobot;
-        transport.open();
-        try {
-            idRobot = client.saveRobot(robot.toTRobot());
-        } finally {
-            transport.close();
-        }
+        long idRobot = pool.call(client -> client.saveRobot(robot.toTRobot()));
 
         logger.trace("saveRobot() successfully registered {} robot.", robot.getName());
         return idRobot;
@@ -107,14 +107,8 @@ public class RobotServiceImpl implements RobotService {
     public @NotNull Robot getRobot(long id) throws NotFoundException, ErrorConnectionException, AbortedException,
             TException {
         logger.trace("getRobot() was called with parameters: robotId = {}.", id);
-        transport.open();
 
-        TRobot tRobot;
-        try {
-            tRobot = client.getRobot(id);
-        } finally {
-            transport.close();
-        }
+        TRobot tRobot = pool.call(client -> client.getRobot(id));
 
         User user = getUser(tRobot.getUsername());
         return new Robot(tRobot, user);
@@ -134,35 +128,20 @@ public class RobotServiceImpl implements RobotService {
     @Override
     public boolean isRobotExists(long id) throws ErrorConnectionException, TException {
         logger.trace("isRobotExists() was called with parameters: robotId = {}", id);
-        transport.open();
-        try {
-            return client.isRobotExists(id);
-        } finally {
-            transport.close();
-        }
+        return pool.call(client -> client.isRobotExists(id));
     }
 
     @Override
     public void deleteRobot(long id) throws AbortedException, ErrorConnectionException, TException {
         logger.trace("deleteRobot() called with parameters: name = {}.", id);
-        transport.open();
-        try {
-            client.deleteRobot(id);
-        } finally {
-            transport.close();
-        }
+        pool.execute(client -> client.deleteRobot(id));
         logger.trace("deleteRobot() successfully deleted {} robot.", id);
     }
 
     @Override
     public void updateRobot(@NotNull TRobot tRobot) throws AbortedException, ErrorConnectionException, TException {
         logger.trace("updateRobot() was called with parameters: tRobot = {}.", tRobot.getName());
-        transport.open();
-        try {
-            client.updateRobot(tRobot);
-        } finally {
-            transport.close();
-        }
+        pool.execute(client -> client.updateRobot(tRobot));
         logger.trace("updateRobot() successfully updated {} robot", tRobot.getName());
     }
 }
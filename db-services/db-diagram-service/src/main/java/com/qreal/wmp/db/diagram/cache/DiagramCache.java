@@ -0,0 +1,202 @@
+package com.qreal.wmp.db.diagram.cache;
+
+import com.qreal.wmp.thrift.gen.TDiagram;
+import org.apache.thrift.TDeserializer;
+import org.apache.thrift.TException;
+import org.apache.thrift.TSerializer;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Read-through cache of diagrams keyed by id.
+ * Diagrams are kept serialized with compact protocol, so cached copies can't be changed by callers and the cache is
+ * bounded by the total size of serialized diagrams. Least recently used diagrams are evicted first.
+ *
+ * <p>To not put a diagram loaded before a concurrent write, readers take {@link #generation()} before loading and
+ * pass it to {@link #put(long, TDiagram, long)}. Every invalidation starts a new generation and stamps the invalidated
+ * diagram with it, so only puts of that diagram are dropped. Stamps of the oldest invalidations are folded into one
+ * floor stamp to keep memory bounded, puts older than it are dropped whatever the diagram is.
+ */
+@ManagedResource(objectName = "com.qreal.wmp.db.diagram:type=DiagramCache", description = "Cache of diagrams.")
+public class DiagramCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiagramCache.class);
+
+    /** Maximum number of diagrams which invalidation stamps are kept separately.*/
+    private static final int MAX_STAMPS = 10000;
+
+    private final long maxBytes;
+
+    private final long maxEntryBytes;
+
+    private final LinkedHashMap<Long, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes;
+
+    private long generation;
+
+    /** Generations of the last invalidation of diagrams by id, the oldest invalidation goes first.*/
+    private final LinkedHashMap<Long, Long> stamps = new LinkedHashMap<>();
+
+    /** Puts with generation taken before it are dropped for any diagram.*/
+    private long floorStamp;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    /**
+     * Creates a cache with specified budget.
+     * @param maxBytes      budget of serialized diagrams, zero disables the cache
+     * @param maxEntryBytes diagrams serialized to more bytes are not cached
+     */
+    public DiagramCache(long maxBytes, long maxEntryBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxBytes, maxEntryBytes);
+    }
+
+    /** Returns a copy of the cached diagram or null if the diagram is not cached.*/
+    @Nullable
+    public TDiagram get(long diagramId) {
+        byte[] serialized;
+        synchronized (this) {
+            serialized = entries.get(diagramId);
+            if (serialized == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+        }
+        TDiagram diagram = new TDiagram();
+        try {
+            new TDeserializer(new TCompactProtocol.Factory()).deserialize(diagram, serialized);
+        } catch (TException e) {
+            logger.error("Cached diagram {} can't be deserialized, it will be invalidated.", diagramId, e);
+            invalidate(diagramId);
+            return null;
+        }
+        return diagram;
+    }
+
+    /** Returns current generation. Should be taken before a diagram is loaded to be put in the cache.*/
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Puts a diagram loaded by a reader.
+     * @param generation generation taken before the diagram was loaded, the diagram is dropped if it was
+     *                   invalidated since
+     */
+    public void put(long diagramId, TDiagram diagram, long generation) {
+        if (maxBytes <= 0) {
+            return;
+        }
+        byte[] serialized;
+        try {
+            serialized = new TSerializer(new TCompactProtocol.Factory()).serialize(diagram);
+        } catch (TException e) {
+            logger.error("Diagram {} can't be serialized, it won't be cached.", diagramId, e);
+            return;
+        }
+        if (serialized.length > maxEntryBytes) {
+            return;
+        }
+        synchronized (this) {
+            if (isInvalidatedSince(diagramId, generation)) {
+                return;
+            }
+            byte[] previous = entries.put(diagramId, serialized);
+            bytes += serialized.length - (previous == null ? 0 : previous.length);
+            Iterator<byte[]> eldest = entries.values().iterator();
+            while (bytes > maxBytes) {
+                bytes -= eldest.next().length;
+                eldest.remove();
+                evictions++;
+            }
+        }
+    }
+
+    /** Returns whether a diagram was invalidated after the generation was taken.*/
+    private boolean isInvalidatedSince(long diagramId, long generation) {
+        return generation < floorStamp || generation < stamps.getOrDefault(diagramId, 0L);
+    }
+
+    /** Removes a diagram changed or deleted by a writer.*/
+    public synchronized void invalidate(long diagramId) {
+        generation++;
+        stamps.remove(diagramId);
+        stamps.put(diagramId, generation);
+        if (stamps.size() > MAX_STAMPS) {
+            Iterator<Long> eldest = stamps.values().iterator();
+            floorStamp = eldest.next();
+            eldest.remove();
+        }
+        byte[] previous = entries.remove(diagramId);
+        if (previous != null) {
+            bytes -= previous.length;
+        }
+    }
+
+    /** Removes diagrams changed or deleted by a writer.*/
+    public synchronized void invalidateAll(Collection<Long> diagramIds) {
+        diagramIds.forEach(this::invalidate);
+    }
+
+    /** Removes all diagrams, used by operators when diagrams were changed bypassing the service.*/
+    @ManagedOperation(description = "Removes all cached diagrams.")
+    public synchronized void clear() {
+        generation++;
+        floorStamp = generation;
+        stamps.clear();
+        entries.clear();
+        bytes = 0;
+    }
+
+    @ManagedAttribute(description = "Number of cached diagrams.")
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    @ManagedAttribute(description = "Total size of cached serialized diagrams.")
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    @ManagedAttribute(description = "Budget of cached serialized diagrams.")
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    @ManagedAttribute(description = "Number of diagrams returned from the cache.")
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    @ManagedAttribute(description = "Number of diagrams not found in the cache.")
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    @ManagedAttribute(description = "Number of diagrams evicted to stay within the budget.")
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @ManagedAttribute(description = "Ratio of hits to all lookups.")
+    public synchronized double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,22 @@
+package com.qreal.wmp.db.diagram.config;
+
+import com.qreal.wmp.db.diagram.cache.DiagramCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableMBeanExport;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.jmx.support.RegistrationPolicy;
+
+/** Cache beans configuration. Statistics of caches are exported to JMX.*/
+@Configuration
+@PropertySource("classpath:server.properties")
+@EnableMBeanExport(registration = RegistrationPolicy.IGNORE_EXISTING)
+public class Cache {
+    /** Cache of diagrams returned by getDiagram.*/
+    @Bean(name = "diagramCache")
+    public DiagramCache diagramCache(@Value("${cache.diagram.max.bytes:67108864}") long maxBytes,
+                                     @Value("${cache.diagram.max.entry.bytes:4194304}") long maxEntryBytes) {
+        return new DiagramCache(maxBytes, maxEntryBytes);
+    }
+}
@@ -1,5 +1,9 @@
 package com.qreal.wmp.db.diagram.config;
 
+import com.qreal.wmp.db.diagram.dao.DiagramBatchDao;
+import com.qreal.wmp.db.diagram.dao.DiagramBatchDaoImpl;
+import com.qreal.wmp.db.diagram.dao.DiagramChunkDao;
+import com.qreal.wmp.db.diagram.dao.DiagramChunkDaoImpl;
 import com.qreal.wmp.db.diagram.dao.DiagramDao;
 import com.qreal.wmp.db.diagram.dao.DiagramDaoImpl;
 import org.hibernate.SessionFactory;
@@ -21,6 +25,18 @@ public class Dao {
         public DiagramDao createDao(SessionFactory sessionFactory) {
             return new DiagramDaoImpl(sessionFactory);
         }
+
+        @Bean(name = "diagramBatchDao")
+        @Autowired
+        public DiagramBatchDao createBatchDao(SessionFactory sessionFactory) {
+            return new DiagramBatchDaoImpl(sessionFactory);
+        }
+
+        @Bean(name = "diagramChunkDao")
+        @Autowired
+        public DiagramChunkDao createChunkDao(SessionFactory sessionFactory) {
+            return new DiagramChunkDaoImpl(sessionFactory);
+        }
     }
 
     @Configuration
@@ -30,5 +46,15 @@ public class Dao {
         public DiagramDao createDao() {
             return mock(DiagramDao.class);
         }
+
+        @Bean(name = "diagramBatchDao")
+        public DiagramBatchDao createBatchDao() {
+            return mock(DiagramBatchDao.class);
+        }
+
+        @Bean(name = "diagramChunkDao")
+        public DiagramChunkDao createChunkDao() {
+            return mock(DiagramChunkDao.class);
+        }
     }
 }
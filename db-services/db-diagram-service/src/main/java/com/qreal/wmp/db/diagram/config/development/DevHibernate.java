@@ -1,8 +1,12 @@
 package com.qreal.wmp.db.diagram.config.development;
 
+import com.qreal.wmp.db.support.DataSourceSettings;
+import com.qreal.wmp.db.support.DataSources;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.core.env.Environment;
 
 import javax.sql.DataSource;
 import java.util.Properties;
@@ -10,18 +14,42 @@ import java.util.Properties;
 /**
  * Development configuration of Hibernate ORM.
  * In development used H2 in-memory database and create-drop strategy of start.
+ * Database is set by database.* properties, production-db profile uses file-backed database with versioned
+ * schema migrations (db/migration) and validation of the schema by Hibernate.
+ * Second-level and query caches are switched by hibernate.cache.enabled property, regions are set in ehcache.xml.
  */
 @Configuration
 public class DevHibernate {
 
-    /** Provides access to DB. */
+    @Autowired
+    private Environment environment;
+
+    @Value("${database.url:jdbc:h2:mem:test;DB_CLOSE_DELAY=-1;INIT=CREATE SCHEMA IF NOT EXISTS diagram}")
+    private String url;
+
+    @Value("${database.username:sa}")
+    private String username;
+
+    @Value("${database.password:}")
+    private String password;
+
+    @Value("${database.hbm2ddl:create-drop}")
+    private String hbm2ddl;
+
+    @Value("${database.migrate:false}")
+    private boolean migrate;
+
+    @Value("${hibernate.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    /** Provides access to DB. Pooling is configured by datasource.* properties. */
     @Bean(name = "dataSource")
     public DataSource dataSource() {
-        SimpleDriverDataSource dataSource = new SimpleDriverDataSource();
-        dataSource.setDriverClass(org.h2.Driver.class);
-        dataSource.setUsername("sa");
-        dataSource.setUrl("jdbc:h2:mem:test;DB_CLOSE_DELAY=-1;INIT=CREATE SCHEMA IF NOT EXISTS diagram");
-        dataSource.setPassword("");
+        DataSource dataSource = DataSources.create("db-diagram", org.h2.Driver.class.getName(), url, username,
+                password, DataSourceSettings.fromProperties(environment, "datasource"));
+        if (migrate) {
+            DataSources.migrate(dataSource, "classpath:db/migration");
+        }
         return dataSource;
     }
 
@@ -30,8 +58,17 @@ public class DevHibernate {
     public Properties getHibernateProperties() {
         Properties properties = new Properties();
         properties.put("hibernate.dialect", "org.hibernate.dialect.MySQLDialect");
-        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        properties.put("hibernate.hbm2ddl.auto", hbm2ddl);
         properties.put("hibernate.hbm2ddl.import_files", "data.sql");
+        properties.put("hibernate.jdbc.batch_size", "50");
+        properties.put("hibernate.order_inserts", "true");
+        properties.put("hibernate.order_updates", "true");
+        properties.put("hibernate.default_batch_fetch_size", "50");
+        properties.put("hibernate.cache.use_second_level_cache", String.valueOf(cacheEnabled));
+        properties.put("hibernate.cache.use_query_cache", String.valueOf(cacheEnabled));
+        properties.put("hibernate.cache.region.factory_class",
+                "org.hibernate.cache.ehcache.SingletonEhCacheRegionFactory");
+        properties.put("net.sf.ehcache.configurationResourceName", "/ehcache.xml");
         return properties;
     }
 
@@ -0,0 +1,70 @@
+package com.qreal.wmp.db.diagram.dao;
+
+import com.qreal.wmp.db.diagram.exceptions.AbortedException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Position of chunked reading of a diagram: version of the diagram, section (nodes or links) and id of the last read
+ * element. Ids are uuid strings, so the empty id precedes all of them.
+ * Textual form is "version:section:lastId" where section is "n" for nodes and "l" for links.
+ */
+final class ChunkToken {
+    private static final String NODES = "n";
+
+    private static final String LINKS = "l";
+
+    private final long version;
+
+    private final boolean links;
+
+    private final String lastId;
+
+    ChunkToken(long version, boolean links, String lastId) {
+        this.version = version;
+        this.links = links;
+        this.lastId = lastId;
+    }
+
+    /** Token of the first chunk of a diagram of specified version.*/
+    public static ChunkToken first(long version) {
+        return new ChunkToken(version, false, "");
+    }
+
+    /** Parses textual form of a token returned to a client.*/
+    public static @NotNull ChunkToken parse(@NotNull String token) throws AbortedException {
+        String[] parts = token.split(":", 3);
+        if (parts.length == 3 && (parts[1].equals(NODES) || parts[1].equals(LINKS))) {
+            try {
+                return new ChunkToken(Long.parseLong(parts[0]), parts[1].equals(LINKS), parts[2]);
+            } catch (NumberFormatException e) {
+                throw malformed(token, e);
+            }
+        }
+        throw malformed(token, null);
+    }
+
+    private static AbortedException malformed(String token, Exception cause) {
+        String textCause = "Continuation token " + token + " is malformed.";
+        String message = "getDiagramChunk() safely aborted.";
+        return cause == null ? new AbortedException(textCause, message, DiagramChunkDaoImpl.class.getName()) :
+                new AbortedException(textCause, message, DiagramChunkDaoImpl.class.getName(), cause);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /** Whether all nodes are read and the reading continues with links.*/
+    public boolean isLinks() {
+        return links;
+    }
+
+    public String getLastId() {
+        return lastId;
+    }
+
+    @Override
+    public String toString() {
+        return version + ":" + (links ? LINKS : NODES) + ":" + lastId;
+    }
+}
@@ -0,0 +1,30 @@
+package com.qreal.wmp.db.diagram.dao;
+
+import com.qreal.wmp.db.diagram.exceptions.AbortedException;
+import com.qreal.wmp.db.diagram.model.Diagram;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/** DAO for batch operations on diagrams, each batch is processed in one transaction. */
+public interface DiagramBatchDao {
+    /**
+     * Saves diagrams into specified folders in one transaction.
+     * @param diagrams  diagrams to save (Ids must not be set)
+     * @param folderIds ids of folders to save diagrams into, in the same order as diagrams
+     * @return ids of saved diagrams in the same order, null for diagrams whose folder doesn't exist
+     */
+    @NotNull List<Long> saveDiagrams(@NotNull List<Diagram> diagrams, @NotNull List<Long> folderIds)
+            throws AbortedException;
+
+    /** Returns existing diagrams with specified ids using one query. Order of diagrams is not defined. */
+    @NotNull List<Diagram> getDiagrams(@NotNull Collection<Long> diagramIds);
+
+    /**
+     * Deletes existing diagrams with specified ids in one transaction.
+     * @return ids of deleted diagrams
+     */
+    @NotNull Set<Long> deleteDiagrams(@NotNull Collection<Long> diagramIds) throws AbortedException;
+}
@@ -0,0 +1,126 @@
+package com.qreal.wmp.db.diagram.dao;
+
+import com.qreal.wmp.db.diagram.exceptions.AbortedException;
+import com.qreal.wmp.db.diagram.model.Diagram;
+import com.qreal.wmp.db.diagram.model.Folder;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Transactional
+public class DiagramBatchDaoImpl implements DiagramBatchDao {
+    private static final Logger logger = LoggerFactory.getLogger(DiagramBatchDaoImpl.class);
+
+    private final SessionFactory sessionFactory;
+
+    public DiagramBatchDaoImpl(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * Saves diagrams to local DB using Hibernate ORM. Folders are loaded with one query, inserts of diagrams' nodes,
+     * links and properties are sent in JDBC batches on flush (diagram ids are IDENTITY, so diagrams itself are
+     * inserted one by one).
+     * @param diagrams  diagrams to save (Ids must not be set)
+     * @param folderIds ids of folders to save diagrams into, in the same order as diagrams
+     */
+    @Override
+    @Transactional(rollbackFor = AbortedException.class)
+    public @NotNull List<Long> saveDiagrams(@NotNull List<Diagram> diagrams, @NotNull List<Long> folderIds)
+            throws AbortedException {
+        logger.trace("saveDiagrams() was called with {} diagrams.", diagrams.size());
+        Session session = sessionFactory.getCurrentSession();
+        List<Long> ids = new ArrayList<>(diagrams.size());
+        try {
+            Map<Long, Folder> folders = getFolders(folderIds);
+            for (int i = 0; i < diagrams.size(); i++) {
+                Folder folder = folders.get(folderIds.get(i));
+                if (folder == null) {
+                    ids.add(null);
+                    continue;
+                }
+                Diagram diagram = diagrams.get(i);
+                session.save(diagram);
+                folder.getDiagrams().add(diagram);
+                ids.add(diagram.getId());
+            }
+            session.flush();
+        } catch (HibernateException e) {
+            logger.error("saveDiagrams() encountered a problem while saving diagrams.", e);
+            throw new AbortedException("Diagrams cannot be saved.", "saveDiagrams() safely aborted.",
+                    DiagramBatchDaoImpl.class.getName(), e);
+        }
+        logger.trace("saveDiagrams() successfully saved diagrams.");
+        return ids;
+    }
+
+    /** Loads folders with specified ids using one query. */
+    private Map<Long, Folder> getFolders(Collection<Long> folderIds) {
+        Set<Long> ids = folderIds.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return new HashMap<>();
+        }
+        Session session = sessionFactory.getCurrentSession();
+        List<Folder> folders = session.createQuery("from Folder f where f.id in (:ids)").
+                setParameterList("ids", ids).list();
+        return folders.stream().collect(Collectors.toMap(Folder::getId, Function.identity()));
+    }
+
+    /**
+     * Gets diagrams from local DB using one Hibernate query. Nodes, links and their properties are loaded by a select
+     * per Diagram.BATCH_SIZE collections, not by a select per diagram.
+     * @param diagramIds ids of diagrams to find
+     */
+    @Override
+    public @NotNull List<Diagram> getDiagrams(@NotNull Collection<Long> diagramIds) {
+        logger.trace("getDiagrams() was called with {} ids.", diagramIds.size());
+        if (diagramIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Session session = sessionFactory.getCurrentSession();
+        List<Diagram> diagrams = session.createQuery("from Diagram d where d.id in (:ids)").
+                setParameterList("ids", new HashSet<>(diagramIds)).list();
+        logger.trace("getDiagrams() extracted {} diagrams successfully.", diagrams.size());
+        return diagrams;
+    }
+
+    /**
+     * Deletes diagrams from local DB using Hibernate ORM.
+     * @param diagramIds ids of diagrams to delete
+     */
+    @Override
+    @Transactional(rollbackFor = AbortedException.class)
+    public @NotNull Set<Long> deleteDiagrams(@NotNull Collection<Long> diagramIds) throws AbortedException {
+        logger.trace("deleteDiagrams() was called with {} ids.", diagramIds.size());
+        Session session = sessionFactory.getCurrentSession();
+        Set<Long> deleted = new HashSet<>();
+        try {
+            for (Diagram diagram : getDiagrams(diagramIds)) {
+                session.delete(diagram);
+                deleted.add(diagram.getId());
+            }
+            session.flush();
+        } catch (HibernateException e) {
+            logger.error("deleteDiagrams() encountered a problem while deleting diagrams.", e);
+            throw new AbortedException("Diagrams cannot be deleted.", "deleteDiagrams() safely aborted.",
+                    DiagramBatchDaoImpl.class.getName(), e);
+        }
+        logger.trace("deleteDiagrams() deleted {} diagrams.", deleted.size());
+        return deleted;
+    }
+}
@@ -0,0 +1,34 @@
+package com.qreal.wmp.db.diagram.dao;
+
+import com.qreal.wmp.db.diagram.exceptions.AbortedException;
+import com.qreal.wmp.db.diagram.exceptions.NotFoundException;
+import com.qreal.wmp.db.diagram.model.DefaultDiagramNode;
+import com.qreal.wmp.db.diagram.model.DiagramChunk;
+import com.qreal.wmp.db.diagram.model.Link;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/** DAO for reading and appending diagrams by chunks, so big diagrams are never loaded at once. */
+public interface DiagramChunkDao {
+    /** Maximum number of nodes and links in a chunk of a diagram. */
+    int MAX_CHUNK_SIZE = 10000;
+
+    /**
+     * Returns a chunk of at most limit nodes and links of a diagram, nodes go first. Only the chunk is loaded.
+     * ConflictException is thrown if the diagram was changed since the chunk the token was returned with.
+     * @param continuationToken token of the previous chunk, null or empty for the first chunk
+     * @param limit             maximum number of nodes and links, capped by {@link #MAX_CHUNK_SIZE}
+     */
+    @NotNull DiagramChunk getDiagramChunk(Long diagramId, String continuationToken, int limit)
+            throws NotFoundException, AbortedException;
+
+    /**
+     * Adds nodes and links to a diagram of specified version and increments its version. Existing nodes and links
+     * are not loaded. Ids of added nodes and links are assigned to the objects (ids must not be set).
+     * ConflictException is thrown if the diagram in DB has another version.
+     * @return new version of a diagram
+     */
+    long appendToDiagram(Long diagramId, long baseVersion, @NotNull List<DefaultDiagramNode> nodes,
+                         @NotNull List<Link> links) throws AbortedException;
+}
@@ -0,0 +1,196 @@
+package com.qreal.wmp.db.diagram.dao;
+
+import com.qreal.wmp.db.diagram.exceptions.AbortedException;
+import com.qreal.wmp.db.diagram.exceptions.ConflictException;
+import com.qreal.wmp.db.diagram.exceptions.NotFoundException;
+import com.qreal.wmp.db.diagram.model.DefaultDiagramNode;
+import com.qreal.wmp.db.diagram.model.Diagram;
+import com.qreal.wmp.db.diagram.model.DiagramChunk;
+import com.qreal.wmp.db.diagram.model.Link;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Transactional
+public class DiagramChunkDaoImpl implements DiagramChunkDao {
+    private static final Logger logger = LoggerFactory.getLogger(DiagramChunkDaoImpl.class);
+
+    private final SessionFactory sessionFactory;
+
+    public DiagramChunkDaoImpl(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * Reads a chunk of a diagram using keyset pagination: nodes and then links with ids greater than the last read one
+     * are queried in order of ids, one element more than needed shows whether the next chunk exists. The diagram
+     * itself is read by a scalar query, so its eager collections are not loaded.
+     */
+    @Override
+    public @NotNull DiagramChunk getDiagramChunk(Long diagramId, String continuationToken, int limit)
+            throws NotFoundException, AbortedException {
+        logger.trace("getDiagramChunk() was called with parameters: id = {}, token = {}, limit = {}.", diagramId,
+                continuationToken, limit);
+        DiagramChunk chunk = loadHeader(diagramId);
+        ChunkToken token = checkToken(chunk, continuationToken);
+
+        int size = Math.max(1, Math.min(limit, MAX_CHUNK_SIZE));
+        ChunkToken next = null;
+        if (!token.isLinks()) {
+            next = readNodes(chunk, token, size);
+        }
+        if (next == null) {
+            next = readLinks(chunk, token, size - chunk.getNodes().size());
+        }
+        chunk.setContinuationToken(next == null ? null : next.toString());
+        logger.trace("getDiagramChunk() extracted {} nodes and {} links of diagram {}.", chunk.getNodes().size(),
+                chunk.getLinks().size(), diagramId);
+        return chunk;
+    }
+
+    /** Loads name and version of a diagram into an empty chunk.*/
+    private DiagramChunk loadHeader(Long diagramId) throws NotFoundException {
+        Session session = sessionFactory.getCurrentSession();
+        Object[] header = (Object[]) session.createQuery("select d.name, d.version from Diagram d where d.id = :id").
+                setParameter("id", diagramId).uniqueResult();
+        if (header == null) {
+            throw new NotFoundException(String.valueOf(diagramId), "Diagram with specified Id not found.");
+        }
+        return new DiagramChunk(diagramId, (String) header[0], (Long) header[1]);
+    }
+
+    /**
+     * Parses a token of the next chunk of a diagram, the first chunk goes if the token is null or empty.
+     * ConflictException is thrown if the diagram was changed since the token was returned.
+     */
+    private ChunkToken checkToken(DiagramChunk chunk, String continuationToken) throws AbortedException {
+        long version = chunk.getVersion() == null ? 0 : chunk.getVersion();
+        ChunkToken token = continuationToken == null || continuationToken.isEmpty() ? ChunkToken.first(version) :
+                ChunkToken.parse(continuationToken);
+        OptimisticLocking.checkVersion(String.valueOf(chunk.getDiagramId()), token.getVersion(), version,
+                DiagramChunkDaoImpl.class.getName());
+        return token;
+    }
+
+    /**
+     * Reads at most size nodes following the token into the chunk.
+     * @return token of the next chunk if not all remaining nodes fit, null otherwise
+     */
+    @Nullable
+    private ChunkToken readNodes(DiagramChunk chunk, ChunkToken token, int size) {
+        List<DefaultDiagramNode> nodes = loadChunk("nodes", chunk.getDiagramId(), token.getLastId(), size + 1);
+        ChunkToken next = null;
+        if (nodes.size() > size) {
+            nodes = new ArrayList<>(nodes.subList(0, size));
+            next = new ChunkToken(token.getVersion(), false, nodes.get(size - 1).getId());
+        }
+        chunk.setNodes(nodes);
+        return next;
+    }
+
+    /**
+     * Reads at most remaining links following the token into the chunk, from the first link if the token points
+     * to nodes.
+     * @return token of the next chunk if not all remaining links fit, null otherwise
+     */
+    @Nullable
+    private ChunkToken readLinks(DiagramChunk chunk, ChunkToken token, int remaining) {
+        String lastLinkId = token.isLinks() ? token.getLastId() : "";
+        List<Link> links = loadChunk("links", chunk.getDiagramId(), lastLinkId, remaining + 1);
+        ChunkToken next = null;
+        if (links.size() > remaining) {
+            links = new ArrayList<>(links.subList(0, remaining));
+            next = new ChunkToken(token.getVersion(), true, links.isEmpty() ? lastLinkId :
+                    links.get(remaining - 1).getId());
+        }
+        chunk.setLinks(links);
+        return next;
+    }
+
+    /** Loads nodes or links of a diagram with ids greater than specified one ordered by id.*/
+    private <T> List<T> loadChunk(String collection, Long diagramId, String lastId, int limit) {
+        Session session = sessionFactory.getCurrentSession();
+        return session.createQuery("select e from Diagram d join d." + collection + " e " +
+                "where d.id = :id and e.id > :lastId order by e.id").setParameter("id", diagramId).
+                setParameter("lastId", lastId).setMaxResults(limit).list();
+    }
+
+    /**
+     * Appends nodes and links to a diagram without loading it. Version is checked and incremented by one update
+     * statement, so concurrent appends conflict. Nodes and links are inserted with their properties, then bound to
+     * the diagram by update of their diagram_id column, as Hibernate does for the unidirectional collections.
+     */
+    @Override
+    @Transactional(rollbackFor = AbortedException.class)
+    public long appendToDiagram(Long diagramId, long baseVersion, @NotNull List<DefaultDiagramNode> nodes,
+                                @NotNull List<Link> links) throws AbortedException {
+        logger.trace("appendToDiagram() was called with parameters: id = {}, baseVersion = {}, {} nodes, {} links.",
+                diagramId, baseVersion, nodes.size(), links.size());
+        if (nodes.stream().anyMatch(node -> node.getId() != null) ||
+                links.stream().anyMatch(link -> link.getId() != null)) {
+            throw new AbortedException("Appended nodes and links must not have ids.",
+                    "appendToDiagram() safely aborted.", DiagramChunkDaoImpl.class.getName());
+        }
+        incrementVersion(diagramId, baseVersion);
+        Session session = sessionFactory.getCurrentSession();
+        nodes.forEach(session::save);
+        links.forEach(session::save);
+        session.flush();
+        bindToDiagram("nodes", diagramId, nodes.stream().map(DefaultDiagramNode::getId).collect(Collectors.toList()));
+        bindToDiagram("links", diagramId, links.stream().map(Link::getId).collect(Collectors.toList()));
+        //Diagram loaded into the session before has stale version and collections now, a proxy is loaded lazily.
+        Object diagram = session.load(Diagram.class, diagramId);
+        if (Hibernate.isInitialized(diagram)) {
+            session.refresh(diagram);
+        }
+        logger.trace("appendToDiagram() successfully appended to diagram {}, new version {}.", diagramId,
+                baseVersion + 1);
+        return baseVersion + 1;
+    }
+
+    /**
+     * Increments version of a diagram by one update statement if it equals the base one.
+     * ConflictException is thrown if the diagram has another version.
+     */
+    private void incrementVersion(Long diagramId, long baseVersion) throws AbortedException {
+        Session session = sessionFactory.getCurrentSession();
+        int updated = session.createQuery("update Diagram d set d.version = d.version + 1, d.lastModified = :now " +
+                "where d.id = :id and d.version = :baseVersion").setParameter("now", System.currentTimeMillis()).
+                setParameter("id", diagramId).setParameter("baseVersion", baseVersion).executeUpdate();
+        if (updated > 0) {
+            return;
+        }
+        Long version = (Long) session.createQuery("select d.version from Diagram d where d.id = :id").
+                setParameter("id", diagramId).uniqueResult();
+        if (version == null) {
+            throw new AbortedException("Diagram with specified Id doesn't exist.",
+                    "appendToDiagram() safely aborted.", DiagramChunkDaoImpl.class.getName());
+        }
+        throw new ConflictException(String.valueOf(diagramId), baseVersion, version,
+                DiagramChunkDaoImpl.class.getName());
+    }
+
+    /**
+     * Sets diagram_id of inserted nodes or links. Cached entities don't map the column, so only the collection of
+     * the diagram is evicted from the second level cache.
+     */
+    private void bindToDiagram(String table, Long diagramId, List<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Session session = sessionFactory.getCurrentSession();
+        session.createSQLQuery("update " + table + " set diagram_id = :diagramId where id in (:ids)").
+                addSynchronizedEntityClass(Diagram.class).setParameter("diagramId", diagramId).
+                setParameterList("ids", ids).executeUpdate();
+        sessionFactory.getCache().evictCollection(Diagram.class.getName() + "." + table, diagramId);
+    }
+}
@@ -3,9 +3,14 @@ package com.qreal.wmp.db.diagram.dao;
 import com.qreal.wmp.db.diagram.exceptions.AbortedException;
 import com.qreal.wmp.db.diagram.exceptions.NotFoundException;
 import com.qreal.wmp.db.diagram.model.Diagram;
+import com.qreal.wmp.db.diagram.model.DiagramPatch;
+import com.qreal.wmp.db.diagram.model.DiagramSummary;
 import com.qreal.wmp.db.diagram.model.Folder;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.List;
+import java.util.Set;
+
 /** DAO for diagram DB. */
 public interface DiagramDao {
     /**
@@ -24,6 +29,7 @@ public interface DiagramDao {
 
     /**
      * Rewrites a diagram with id equal to <code>diagram.id</code>.
+     * If version of the diagram is set, ConflictException is thrown when the diagram in DB has another version.
      * @param diagram diagram to rewrite (Id must be set correctly).
      */
     void rewriteDiagram(@NotNull Diagram diagram) throws AbortedException;
@@ -31,6 +37,20 @@ public interface DiagramDao {
     /** Deletes a diagram with specified id. */
     void deleteDiagram(Long diagramId) throws AbortedException;
 
+    /**
+     * Applies changes to a diagram of specified version and increments its version.
+     * Ids of added nodes and links are assigned to the objects of the patch.
+     * ConflictException is thrown if the diagram in DB has another version.
+     * @return new version of a diagram
+     */
+    long applyDiagramPatch(Long diagramId, long baseVersion, @NotNull DiagramPatch patch) throws AbortedException;
+
+    /**
+     * Returns summaries of diagrams of a folder ordered by name using one query.
+     * Nodes, links and properties of diagrams are not loaded.
+     */
+    @NotNull List<DiagramSummary> getDiagramSummaries(Long folderId) throws NotFoundException;
+
     /**
      * Creates a folder and assigns it an Id.
      * @param folder folder to create (Id must not be set)
@@ -38,18 +58,49 @@ public interface DiagramDao {
      */
     Long saveFolder(@NotNull Folder folder) throws AbortedException;
 
+    /**
+     * Creates root folder of a user unless it exists, so repeated calls create only one root folder.
+     * @return id of root folder
+     */
+    Long createRootFolder(String userName) throws AbortedException;
+
     /** Checks whether a folder with specified Id exists. */
     boolean isExistsFolder(Long folderId);
 
-    /** Updates a folder with id equal to <code>folder.id</code>. */
-    void updateFolder(@NotNull Folder folder) throws AbortedException;
+    /**
+     * Updates a folder with id equal to <code>folder.id</code>.
+     * If version of the folder is set, ConflictException is thrown when the folder in DB has another version.
+     * @return ids of diagrams of the folder's subtree before and after update, which may be moved or deleted
+     */
+    @NotNull
+    Set<Long> updateFolder(@NotNull Folder folder) throws AbortedException;
 
-    /** Deletes a folder with specified Id. */
-    void deleteFolder(Long folderId) throws AbortedException;
+    /**
+     * Deletes a folder with specified Id.
+     * @return ids of deleted diagrams of the folder's subtree
+     */
+    @NotNull
+    Set<Long> deleteFolder(Long folderId) throws AbortedException;
 
     /** Returns a folder with specified Id.*/
     @NotNull Folder getFolder(Long folderId) throws NotFoundException;
 
     /** Returns user's root folder. */
     @NotNull Folder getFolderTree(String userName) throws NotFoundException;
+
+    /**
+     * Returns detached headers of user's folder tree loaded with a constant number of queries per level. The whole
+     * tree is loaded with a constant number of queries if the database supports recursive queries.
+     * @param depth                number of levels of children folders, negative for the whole tree
+     * @param includeDiagramBodies whether diagrams are loaded with nodes and links
+     * @param childrenLimit        maximum number of children folders and diagrams of each folder, negative for no limit
+     */
+    @NotNull Folder getFolderTree(String userName, int depth, boolean includeDiagramBodies, int childrenLimit)
+            throws NotFoundException;
+
+    /**
+     * Returns detached headers of a folder with a page of its children folders and a page of its diagrams.
+     * @param limit maximum number of children folders and diagrams, negative for no limit
+     */
+    @NotNull Folder getFolderChildren(Long folderId, int offset, int limit) throws NotFoundException;
 }
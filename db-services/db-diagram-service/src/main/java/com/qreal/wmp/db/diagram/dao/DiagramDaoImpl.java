@@ -3,6 +3,8 @@ package com.qreal.wmp.db.diagram.dao;
 import com.qreal.wmp.db.diagram.exceptions.AbortedException;
 import com.qreal.wmp.db.diagram.exceptions.NotFoundException;
 import com.qreal.wmp.db.diagram.model.Diagram;
+import com.qreal.wmp.db.diagram.model.DiagramPatch;
+import com.qreal.wmp.db.diagram.model.DiagramSummary;
 import com.qreal.wmp.db.diagram.model.Folder;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
@@ -12,15 +14,23 @@ import org.slf4j.LoggerFactory;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Set;
 
 @Transactional
 public class DiagramDaoImpl implements DiagramDao {
     private static final Logger logger = LoggerFactory.getLogger(DiagramDaoImpl.class);
 
+    /** Query cache region of root folder lookups, configured in ehcache.xml.*/
+    public static final String FOLDER_TREE_REGION = "folderTree";
+
     private final SessionFactory sessionFactory;
 
+    /** Whether the database supports recursive queries of folder trees, probed once on creation.*/
+    private final boolean recursiveQuerySupported;
+
     public DiagramDaoImpl(SessionFactory sessionFactory) {
         this.sessionFactory = sessionFactory;
+        recursiveQuerySupported = FolderTreeLoader.isRecursiveQuerySupported(sessionFactory);
     }
 
     /**
@@ -91,18 +101,26 @@ public class DiagramDaoImpl implements DiagramDao {
     }
 
     /**
-     * Rewrites a diagram at local DB using Hibernate ORM.
-     * @param diagram diagram to rewrite (Id must be set correctly).
+     * Rewrites a diagram at local DB using Hibernate ORM. The diagram is loaded once to check its version,
+     * merge and version increment use the same loaded instance.
+     * @param diagram diagram to rewrite (Id must be set correctly, version is checked if set).
      */
     @Override
+    @Transactional(rollbackFor = AbortedException.class)
     public void rewriteDiagram(@NotNull Diagram diagram) throws AbortedException {
         logger.trace("updateDiagram() was called with parameters: diagram = {}.", diagram.getName());
         Session session = sessionFactory.getCurrentSession();
-        if (!isExistsDiagram(diagram.getId())) {
+        Diagram current = (Diagram) session.get(Diagram.class, diagram.getId());
+        if (current == null) {
             throw new AbortedException("Diagram with specified Id doesn't exist. Use save instead.",
                     "updateDiagram() safely aborted.", DiagramDaoImpl.class.getName());
         }
+        OptimisticLocking.checkVersion(String.valueOf(diagram.getId()), diagram.getVersion(), current.getVersion(),
+                DiagramDaoImpl.class.getName());
+        diagram.setVersion(current.getVersion());
         session.merge(diagram);
+        OptimisticLocking.flushChecked(session, String.valueOf(diagram.getId()), current.getVersion(),
+                DiagramDaoImpl.class.getName());
         logger.trace("updateDiagram() successfully edited diagram {}.", diagram.getName());
     }
 
@@ -115,15 +133,62 @@ public class DiagramDaoImpl implements DiagramDao {
     public void deleteDiagram(Long diagramId) throws AbortedException {
         logger.trace("deleteDiagram() was called with parameters: id = {}.", diagramId);
         Session session = sessionFactory.getCurrentSession();
-        if (!isExistsDiagram(diagramId)) {
+        Diagram diagram = (Diagram) session.get(Diagram.class, diagramId);
+        if (diagram == null) {
             throw new AbortedException("Diagram with specified Id doesn't exist.", "deleteDiagram() safely aborted.",
                     DiagramDaoImpl.class.getName());
         }
-        Diagram diagram = (Diagram) session.get(Diagram.class, diagramId);
         session.delete(diagram);
         logger.trace("deleteDiagram() deleted diagram with id {}", diagramId);
     }
 
+    /**
+     * Patches a diagram at local DB. The diagram is changed in place, so only changed nodes, links and properties are
+     * written on flush instead of merging the whole diagram.
+     */
+    @Override
+    @Transactional(rollbackFor = AbortedException.class)
+    public long applyDiagramPatch(Long diagramId, long baseVersion, @NotNull DiagramPatch patch)
+            throws AbortedException {
+        logger.trace("applyDiagramPatch() was called with parameters: id = {}, baseVersion = {}.", diagramId,
+                baseVersion);
+        Session session = sessionFactory.getCurrentSession();
+        Diagram diagram = (Diagram) session.get(Diagram.class, diagramId);
+        if (diagram == null) {
+            throw new AbortedException("Diagram with specified Id doesn't exist.",
+                    "applyDiagramPatch() safely aborted.", DiagramDaoImpl.class.getName());
+        }
+        OptimisticLocking.checkVersion(String.valueOf(diagramId), baseVersion, diagram.getVersion(),
+                DiagramDaoImpl.class.getName());
+        new DiagramPatcher(diagram).apply(patch);
+        //Changes of nodes and properties don't make the diagram itself dirty, touching it increments the version.
+        long now = System.currentTimeMillis();
+        diagram.setLastModified(diagram.getLastModified() == null ? now : Math.max(now, diagram.getLastModified() + 1));
+        //Flush assigns ids to added nodes and links and increments version.
+        OptimisticLocking.flushChecked(session, String.valueOf(diagramId), baseVersion, DiagramDaoImpl.class.getName());
+        logger.trace("applyDiagramPatch() successfully patched diagram {} to version {}.", diagramId,
+                diagram.getVersion());
+        return diagram.getVersion();
+    }
+
+    /**
+     * Gets summaries of diagrams using HQL constructor projection. Counts of nodes and links are computed by the DB,
+     * so no entity graph is loaded.
+     */
+    @Override
+    public @NotNull List<DiagramSummary> getDiagramSummaries(Long folderId) throws NotFoundException {
+        logger.trace("getDiagramSummaries() was called with parameters: folderId = {}.", folderId);
+        Session session = sessionFactory.getCurrentSession();
+        List<DiagramSummary> summaries = session.createQuery("select new " + DiagramSummary.class.getName() +
+                "(d.id, d.name, f.id, size(d.nodes), size(d.links), d.lastModified) from Folder f join f.diagrams d " +
+                "where f.id = :folderId order by d.name, d.id").setParameter("folderId", folderId).list();
+        if (summaries.isEmpty() && !isExistsFolder(folderId)) {
+            throw new NotFoundException(String.valueOf(folderId), "Folder with specified Id not found.");
+        }
+        logger.trace("getDiagramSummaries() extracted {} summaries successfully.", summaries.size());
+        return summaries;
+    }
+
     /**
      * Saves a folder at local DB using Hibernate ORM.
      *
@@ -144,6 +209,19 @@ public class DiagramDaoImpl implements DiagramDao {
         return folder.getId();
     }
 
+    /** Creates root folder of a user unless it exists.*/
+    @Override
+    public Long createRootFolder(String userName) throws AbortedException {
+        logger.trace("createRootFolder() was called with parameters: userName = {}.", userName);
+        FolderTreeLoader loader = new FolderTreeLoader(sessionFactory.getCurrentSession(), recursiveQuerySupported);
+        Folder root = loader.loadRootHeader(userName);
+        if (root != null) {
+            logger.trace("createRootFolder() found existing root folder {} of user {}.", root.getId(), userName);
+            return root.getId();
+        }
+        return saveFolder(new Folder("root", userName));
+    }
+
     /** Checks whether a folder with specified Id exists.*/
     @Override
     public boolean isExistsFolder(Long folderId) {
@@ -153,17 +231,33 @@ public class DiagramDaoImpl implements DiagramDao {
         return folder != null;
     }
 
+    /**
+     * Updates a folder at local DB using Hibernate ORM. Versions of the folder and its children folders are checked if
+     * set. Only membership of saved diagrams is updated, their contents sent with the folder are ignored, so headers
+     * of diagrams don't erase their nodes and links.
+     */
     @Override
-    public void updateFolder(@NotNull Folder folder) throws AbortedException {
+    @Transactional(rollbackFor = AbortedException.class)
+    public @NotNull Set<Long> updateFolder(@NotNull Folder folder) throws AbortedException {
         logger.trace("updateFolder() was called with parameters: folder = {}.", folder.getFolderName());
         Session session = sessionFactory.getCurrentSession();
-        if (!isExistsFolder(folder.getId())) {
+        Folder current = (Folder) session.get(Folder.class, folder.getId());
+        if (current == null) {
             throw new AbortedException("Folder with specified Id doesn't exist.", "updateFolder() safely aborted.",
                     DiagramDaoImpl.class.getName());
         }
+        OptimisticLocking.checkVersion(String.valueOf(folder.getId()), folder.getVersion(), current.getVersion(),
+                DiagramDaoImpl.class.getName());
+        folder.setVersion(current.getVersion());
+        Set<Long> diagramIds = FolderTreeMerger.getDiagramIds(current);
+        new FolderTreeMerger(session).prepare(folder);
+        diagramIds.addAll(FolderTreeMerger.getDiagramIds(folder));
         session.merge(folder);
+        OptimisticLocking.flushChecked(session, String.valueOf(folder.getId()), current.getVersion(),
+                DiagramDaoImpl.class.getName());
 
         logger.trace("updateFolder() successfully updated folder {}.", folder.getFolderName());
+        return diagramIds;
     }
 
     /**
@@ -171,17 +265,19 @@ public class DiagramDaoImpl implements DiagramDao {
      * @param folderId id of folder to delete
      */
     @Override
-    public void deleteFolder(Long folderId) throws AbortedException {
+    public @NotNull Set<Long> deleteFolder(Long folderId) throws AbortedException {
         logger.trace("deleteFolder() was called with parameters: folderId = {}.", folderId);
         Session session = sessionFactory.getCurrentSession();
-        if (!isExistsFolder(folderId)) {
+        Folder folder = (Folder) session.get(Folder.class, folderId);
+        if (folder == null) {
             throw new AbortedException("Folder with specified Id doesn't exist.", "deleteFolder safely aborted.",
                     DiagramDaoImpl.class.getName());
         }
-        Folder folder = (Folder) session.get(Folder.class, folderId);
+        Set<Long> diagramIds = FolderTreeMerger.getDiagramIds(folder);
         session.delete(folder);
 
         logger.trace("deleteFolder() successfully deleted a folder with id {}", folderId);
+        return diagramIds;
     }
 
     /**
@@ -196,7 +292,8 @@ public class DiagramDaoImpl implements DiagramDao {
 
         List<Folder> rootFolders = session.createQuery("select c from Folder c where" +
                 "(c.folderName = :folderName and :userName in elements(c.owners))").
-                setParameter("folderName", "root").setParameter("userName", userName).list();
+                setParameter("folderName", "root").setParameter("userName", userName).
+                setCacheable(true).setCacheRegion(FOLDER_TREE_REGION).list();
         logger.trace("getFolderTree() extracted list of results from session with {} elements. First one will be" +
                 " returned.", rootFolders.size());
         if (rootFolders.isEmpty()) {
@@ -205,4 +302,41 @@ public class DiagramDaoImpl implements DiagramDao {
         }
         return rootFolders.get(0);
     }
+
+    /**
+     * Returns headers of user's folder tree. Tree is loaded level by level with scalar queries, so neither eager
+     * entity graph nor diagrams' bodies are fetched unless requested.
+     */
+    @Override
+    @NotNull
+    public Folder getFolderTree(String userName, int depth, boolean includeDiagramBodies, int childrenLimit)
+            throws NotFoundException {
+        logger.trace("getFolderTree() called with parameters: owners = {}, depth = {}, childrenLimit = {}", userName,
+                depth, childrenLimit);
+        FolderTreeLoader loader = new FolderTreeLoader(sessionFactory.getCurrentSession(), recursiveQuerySupported);
+        Folder root = loader.loadRootHeader(userName);
+        if (root == null) {
+            throw new NotFoundException(String.valueOf(userName), "FolderTree for user with specified username not" +
+                    " found.");
+        }
+        loader.loadTree(root, depth, includeDiagramBodies, childrenLimit);
+        logger.trace("getFolderTree() successfully loaded folder tree of user {}.", userName);
+        return root;
+    }
+
+    /** Returns headers of a folder with a page of its children using ordering by name.*/
+    @Override
+    @NotNull
+    public Folder getFolderChildren(Long folderId, int offset, int limit) throws NotFoundException {
+        logger.trace("getFolderChildren() called with parameters: folderId = {}, offset = {}, limit = {}", folderId,
+                offset, limit);
+        FolderTreeLoader loader = new FolderTreeLoader(sessionFactory.getCurrentSession(), recursiveQuerySupported);
+        Folder folder = loader.loadHeader(folderId);
+        if (folder == null) {
+            throw new NotFoundException(String.valueOf(folderId), "Folder with specified Id not found.");
+        }
+        loader.loadChildrenPage(folder, offset, limit);
+        logger.trace("getFolderChildren() successfully loaded children of folder {}.", folderId);
+        return folder;
+    }
 }
@@ -0,0 +1,180 @@
+package com.qreal.wmp.db.diagram.dao;
+
+import com.qreal.wmp.db.diagram.exceptions.AbortedException;
+import com.qreal.wmp.db.diagram.model.DefaultDiagramNode;
+import com.qreal.wmp.db.diagram.model.Diagram;
+import com.qreal.wmp.db.diagram.model.DiagramPatch;
+import com.qreal.wmp.db.diagram.model.Link;
+import com.qreal.wmp.db.diagram.model.Property;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies a patch to a persistent diagram in place, so Hibernate dirty checking writes only changed rows on flush.
+ * Nothing is changed if the patch refers to nodes, links or properties not belonging to the diagram.
+ *
+ * <p>Hash codes of nodes, links and properties depend on their fields, so each changed element is removed from its
+ * set before the change and added back after it. Otherwise sets would not find it and the flush would unbind it.
+ */
+class DiagramPatcher {
+
+    private final Diagram diagram;
+
+    private final Map<String, DefaultDiagramNode> nodes = new HashMap<>();
+
+    private final Map<String, Link> links = new HashMap<>();
+
+    /** Nodes owning properties by ids of properties.*/
+    private final Map<String, DefaultDiagramNode> nodeOfProperty = new HashMap<>();
+
+    /** Links owning properties by ids of properties.*/
+    private final Map<String, Link> linkOfProperty = new HashMap<>();
+
+    DiagramPatcher(Diagram diagram) {
+        this.diagram = diagram;
+        for (DefaultDiagramNode node : diagram.getNodes()) {
+            nodes.put(node.getId(), node);
+            node.getProperties().forEach(property -> nodeOfProperty.put(property.getPropertyId(), node));
+        }
+        for (Link link : diagram.getLinks()) {
+            links.put(link.getId(), link);
+            link.getProperties().forEach(property -> linkOfProperty.put(property.getPropertyId(), link));
+        }
+    }
+
+    /** Checks the patch and applies it to the diagram.*/
+    public void apply(DiagramPatch patch) throws AbortedException {
+        validate(patch);
+        if (patch.getName() != null) {
+            diagram.setName(patch.getName());
+        }
+        modify(patch);
+        remove(patch);
+        diagram.getNodes().addAll(patch.getAddedNodes());
+        diagram.getLinks().addAll(patch.getAddedLinks());
+    }
+
+    private void validate(DiagramPatch patch) throws AbortedException {
+        check(nodes.keySet().containsAll(patch.getRemovedNodeIds()), "Node to remove doesn't belong to diagram.");
+        check(links.keySet().containsAll(patch.getRemovedLinkIds()), "Link to remove doesn't belong to diagram.");
+        check(patch.getRemovedPropertyIds().stream().allMatch(id -> nodeOfProperty.containsKey(id) ||
+                linkOfProperty.containsKey(id)), "Property to remove doesn't belong to diagram.");
+        for (DefaultDiagramNode node : patch.getModifiedNodes()) {
+            check(nodes.containsKey(node.getId()), "Node to modify doesn't belong to diagram.");
+            checkProperties(nodes.get(node.getId()).getProperties(), node.getProperties());
+        }
+        for (Link link : patch.getModifiedLinks()) {
+            check(links.containsKey(link.getId()), "Link to modify doesn't belong to diagram.");
+            checkProperties(links.get(link.getId()).getProperties(), link.getProperties());
+        }
+        check(patch.getAddedNodes().stream().allMatch(node -> node.getId() == null), "Added node has id.");
+        check(patch.getAddedLinks().stream().allMatch(link -> link.getId() == null), "Added link has id.");
+    }
+
+    private void modify(DiagramPatch patch) {
+        for (DefaultDiagramNode change : patch.getModifiedNodes()) {
+            DefaultDiagramNode node = nodes.get(change.getId());
+            diagram.getNodes().remove(node);
+            modifyNode(node, change);
+            diagram.getNodes().add(node);
+        }
+        for (Link change : patch.getModifiedLinks()) {
+            Link link = links.get(change.getId());
+            diagram.getLinks().remove(link);
+            modifyLink(link, change);
+            diagram.getLinks().add(link);
+        }
+    }
+
+    private void remove(DiagramPatch patch) {
+        for (String propertyId : patch.getRemovedPropertyIds()) {
+            DefaultDiagramNode node = nodeOfProperty.get(propertyId);
+            if (node != null) {
+                diagram.getNodes().remove(node);
+                node.getProperties().removeIf(property -> propertyId.equals(property.getPropertyId()));
+                diagram.getNodes().add(node);
+            } else {
+                Link link = linkOfProperty.get(propertyId);
+                diagram.getLinks().remove(link);
+                link.getProperties().removeIf(property -> propertyId.equals(property.getPropertyId()));
+                diagram.getLinks().add(link);
+            }
+        }
+        diagram.getNodes().removeIf(node -> patch.getRemovedNodeIds().contains(node.getId()));
+        diagram.getLinks().removeIf(link -> patch.getRemovedLinkIds().contains(link.getId()));
+    }
+
+    private static void modifyNode(DefaultDiagramNode node, DefaultDiagramNode change) {
+        if (change.getLogicalId() != null) {
+            node.setLogicalId(change.getLogicalId());
+        }
+        if (change.getGraphicalId() != null) {
+            node.setGraphicalId(change.getGraphicalId());
+        }
+        if (change.getType() != null) {
+            node.setType(change.getType());
+        }
+        mergeProperties(node.getProperties(), change.getProperties());
+    }
+
+    private static void modifyLink(Link link, Link change) {
+        if (change.getLogicalId() != null) {
+            link.setLogicalId(change.getLogicalId());
+        }
+        if (change.getGraphicalId() != null) {
+            link.setGraphicalId(change.getGraphicalId());
+        }
+        if (change.getType() != null) {
+            link.setType(change.getType());
+        }
+        mergeProperties(link.getProperties(), change.getProperties());
+    }
+
+    private static void checkProperties(Set<Property> properties, Set<Property> changes) throws AbortedException {
+        for (Property change : changes) {
+            check(change.getPropertyId() == null || findProperty(properties, change) != null,
+                    "Property to modify doesn't belong to its node or link.");
+        }
+    }
+
+    private static void mergeProperties(Set<Property> properties, Set<Property> changes) {
+        for (Property change : changes) {
+            Property property = findProperty(properties, change);
+            if (property == null) {
+                properties.add(change);
+                continue;
+            }
+            properties.remove(property);
+            if (change.getName() != null) {
+                property.setName(change.getName());
+            }
+            if (change.getValue() != null) {
+                property.setValue(change.getValue());
+            }
+            if (change.getType() != null) {
+                property.setType(change.getType());
+            }
+            properties.add(property);
+        }
+    }
+
+    private static Property findProperty(Set<Property> properties, Property change) {
+        for (Property property : properties) {
+            boolean matches = change.getPropertyId() != null ? change.getPropertyId().equals(property.getPropertyId())
+                    : change.getName() != null && change.getName().equals(property.getName());
+            if (matches) {
+                return property;
+            }
+        }
+        return null;
+    }
+
+    private static void check(boolean condition, String textCause) throws AbortedException {
+        if (!condition) {
+            throw new AbortedException(textCause, "applyDiagramPatch() safely aborted.",
+                    DiagramDaoImpl.class.getName());
+        }
+    }
+}
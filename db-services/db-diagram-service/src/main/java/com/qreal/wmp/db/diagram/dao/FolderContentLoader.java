@@ -0,0 +1,115 @@
+package com.qreal.wmp.db.diagram.dao;
+
+import com.qreal.wmp.db.diagram.model.Diagram;
+import com.qreal.wmp.db.diagram.model.Folder;
+import org.hibernate.Session;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads owners, diagrams and counts of children of folder headers built by FolderTreeLoader. Each method costs one
+ * query for the whole set of folders, empty sets cost no queries.
+ */
+class FolderContentLoader {
+
+    private final Session session;
+
+    FolderContentLoader(Session session) {
+        this.session = session;
+    }
+
+    /** Adds owners to folders.*/
+    public void loadOwners(Map<Long, Folder> folders) {
+        if (folders.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = session.createQuery("select f.id, o from Folder f join f.owners o where f.id in (:ids)").
+                setParameterList("ids", folders.keySet()).list();
+        for (Object[] row : rows) {
+            folders.get((Long) row[0]).getOwners().add((String) row[1]);
+        }
+    }
+
+    /**
+     * Sets counts of diagrams of folders and collects at most limit diagrams of each folder ordered by name.
+     * @param diagramsOf diagrams by id of their folder, filled by this method
+     * @param bodies     whether diagrams are loaded with nodes and links
+     * @param limit      maximum number of diagrams of each folder, negative for no limit
+     */
+    public void loadDiagrams(Map<Long, Folder> folders, Map<Long, List<Diagram>> diagramsOf, boolean bodies,
+                             int limit) {
+        if (folders.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = session.createQuery("select f.id, d.id, d.name from Folder f join f.diagrams d " +
+                "where f.id in (:ids) order by f.id, d.name, d.id").setParameterList("ids", folders.keySet()).list();
+        Map<Long, Long> folderOfDiagram = new LinkedHashMap<>();
+        Map<Long, Diagram> headers = new HashMap<>();
+        for (Object[] row : rows) {
+            Folder folder = folders.get((Long) row[0]);
+            folder.setDiagramsCount(increment(folder.getDiagramsCount()));
+            if (limit < 0 || folder.getDiagramsCount() <= limit) {
+                folderOfDiagram.put((Long) row[1], folder.getId());
+                headers.put((Long) row[1], createDiagramHeader((Long) row[1], (String) row[2]));
+            }
+        }
+        folders.values().stream().filter(folder -> folder.getDiagramsCount() == null).
+                forEach(folder -> folder.setDiagramsCount(0));
+
+        if (bodies && !headers.isEmpty()) {
+            List<Diagram> loaded = session.createQuery("from Diagram d where d.id in (:ids)").
+                    setParameterList("ids", headers.keySet()).list();
+            loaded.forEach(diagram -> headers.put(diagram.getId(), diagram));
+        }
+        folderOfDiagram.forEach((diagramId, folderId) ->
+                diagramsOf.computeIfAbsent(folderId, id -> new ArrayList<>()).add(headers.get(diagramId)));
+    }
+
+    /** Sets counts of children folders of folders.*/
+    public void countChildren(Map<Long, Folder> folders) {
+        if (folders.isEmpty()) {
+            return;
+        }
+        folders.values().forEach(folder -> folder.setChildrenCount(0));
+        List<Object[]> rows = session.createQuery("select p.id, count(c.id) from Folder p join p.childrenFolders c " +
+                "where p.id in (:ids) group by p.id").setParameterList("ids", folders.keySet()).list();
+        for (Object[] row : rows) {
+            folders.get((Long) row[0]).setChildrenCount(((Long) row[1]).intValue());
+        }
+    }
+
+    /** Sets counts of diagrams of folders without loading the diagrams.*/
+    public void countDiagrams(Map<Long, Folder> folders) {
+        if (folders.isEmpty()) {
+            return;
+        }
+        folders.values().forEach(folder -> folder.setDiagramsCount(0));
+        List<Object[]> rows = session.createQuery("select f.id, count(d.id) from Folder f join f.diagrams d " +
+                "where f.id in (:ids) group by f.id").setParameterList("ids", folders.keySet()).list();
+        for (Object[] row : rows) {
+            folders.get((Long) row[0]).setDiagramsCount(((Long) row[1]).intValue());
+        }
+    }
+
+    /** Increments a count which is null before the first increment.*/
+    public static Integer increment(Integer count) {
+        return count == null ? 1 : count + 1;
+    }
+
+    /**
+     * Creates a detached header of a diagram without nodes and links. They are null, so they are left unset in Thrift
+     * and the header can't be taken for an empty diagram.
+     */
+    public static Diagram createDiagramHeader(Long id, String name) {
+        Diagram diagram = new Diagram();
+        diagram.setId(id);
+        diagram.setName(name);
+        diagram.setNodes(null);
+        diagram.setLinks(null);
+        return diagram;
+    }
+}
@@ -0,0 +1,110 @@
+package com.qreal.wmp.db.diagram.dao;
+
+import com.qreal.wmp.db.diagram.model.Diagram;
+import com.qreal.wmp.db.diagram.model.Folder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds a tree of folder headers from headers loaded once per folder and edges between them.
+ * A folder shared by several parents appears under each of them as a separate header, a folder closing a cycle on
+ * the current path is skipped. Trees are built without recursion, so deep trees don't overflow the stack.
+ */
+class FolderTreeBuilder {
+
+    private final Map<Long, Folder> folders;
+
+    private final Map<Long, List<Long>> childIdsOf;
+
+    private final Map<Long, List<Diagram>> diagramsOf;
+
+    /**
+     * Creates a builder of trees of loaded folders.
+     * @param folders    headers with owners and counts by id of folders
+     * @param childIdsOf ids of children folders by id of their parent
+     * @param diagramsOf diagrams by id of their folder
+     */
+    FolderTreeBuilder(Map<Long, Folder> folders, Map<Long, List<Long>> childIdsOf,
+                      Map<Long, List<Diagram>> diagramsOf) {
+        this.folders = folders;
+        this.childIdsOf = childIdsOf;
+        this.diagramsOf = diagramsOf;
+    }
+
+    /**
+     * Fills the root with headers of children folders and diagrams down to specified depth.
+     * Sets are filled bottom-up, so hash codes of folders don't change after they are put into a set.
+     * @param depth number of levels of children folders, negative for the whole tree
+     */
+    public void build(Folder root, int depth) {
+        Deque<Node> path = new ArrayDeque<>();
+        Set<Long> pathIds = new HashSet<>();
+        path.push(new Node(root, depth != 0));
+        pathIds.add(root.getId());
+        while (!path.isEmpty()) {
+            Node node = path.peek();
+            Long childId = node.nextChild(pathIds);
+            if (childId != null) {
+                Folder child = copyHeader(folders.get(childId));
+                child.setFolderParentId(node.folder.getId());
+                path.push(new Node(child, depth < 0 || path.size() < depth));
+                pathIds.add(childId);
+                continue;
+            }
+            path.pop();
+            pathIds.remove(node.folder.getId());
+            node.folder.setChildrenFolders(new HashSet<>(node.children));
+            node.folder.setDiagrams(new HashSet<>(diagramsOf.getOrDefault(node.folder.getId(),
+                    Collections.emptyList())));
+            if (!path.isEmpty()) {
+                path.peek().children.add(node.folder);
+            }
+        }
+    }
+
+    /** Copies a loaded header, so each place of a shared folder in the tree has its own header.*/
+    private static Folder copyHeader(Folder header) {
+        Folder folder = new Folder();
+        folder.setId(header.getId());
+        folder.setFolderName(header.getFolderName());
+        folder.setVersion(header.getVersion());
+        folder.setOwners(new HashSet<>(header.getOwners()));
+        folder.setChildrenCount(header.getChildrenCount());
+        folder.setDiagramsCount(header.getDiagramsCount());
+        return folder;
+    }
+
+    /** Header on the current path with its children built so far.*/
+    private final class Node {
+        private final Folder folder;
+
+        private final Iterator<Long> childIds;
+
+        private final List<Folder> children = new ArrayList<>();
+
+        private Node(Folder folder, boolean expanded) {
+            this.folder = folder;
+            childIds = expanded ? childIdsOf.getOrDefault(folder.getId(), Collections.emptyList()).iterator() :
+                    Collections.emptyIterator();
+        }
+
+        /** Returns id of the next child not closing a cycle or null if all children are built.*/
+        private Long nextChild(Set<Long> pathIds) {
+            while (childIds.hasNext()) {
+                Long childId = childIds.next();
+                if (!pathIds.contains(childId)) {
+                    return childId;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.qreal.wmp.db.diagram.dao;
+
+import com.qreal.wmp.db.diagram.model.Diagram;
+import com.qreal.wmp.db.diagram.model.Folder;
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.type.LongType;
+import org.hibernate.type.StringType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads folder trees with scalar HQL queries instead of eager entity graphs.
+ * Each level of a tree costs a constant number of queries, a whole tree is loaded with a constant number of queries
+ * if the database supports recursive queries. Folders and diagrams are built as detached headers (ids, names, owners
+ * and counts of children) and must not be saved.
+ */
+class FolderTreeLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(FolderTreeLoader.class);
+
+    /**
+     * Edges of a subtree with names and versions of children, ordered the same way as children levels.
+     * Paths are walked with union all, as H2 doesn't accept union in recursive queries. Each path carries ids of its
+     * folders and isn't extended by a folder it already has, so the query stops on cyclic trees. Id of the root is
+     * inlined, as H2 returns no rows for parameters of recursive queries.
+     */
+    private static final String SUBTREE_QUERY = "with recursive subtree(parent_id, child_id, path) as (" +
+            "select parent_id, child_id, cast(concat(',', parent_id, ',', child_id, ',') as char(16000)) " +
+            "from folders_folders where parent_id = %d " +
+            "union all " +
+            "select ff.parent_id, ff.child_id, concat(s.path, ff.child_id, ',') from folders_folders ff " +
+            "join subtree s on ff.parent_id = s.child_id where locate(concat(',', ff.child_id, ','), s.path) = 0) " +
+            "select distinct s.parent_id as parent_id, s.child_id as child_id, f.folder_name as folder_name, " +
+            "f.version as version from subtree s join folders f on f.folder_id = s.child_id " +
+            "order by s.parent_id, f.folder_name, s.child_id";
+
+    private final Session session;
+
+    private final FolderContentLoader content;
+
+    /** Whether whole trees are loaded with the recursive query, see isRecursiveQuerySupported.*/
+    private final boolean recursiveQuerySupported;
+
+    FolderTreeLoader(Session session, boolean recursiveQuerySupported) {
+        this.session = session;
+        this.recursiveQuerySupported = recursiveQuerySupported;
+        content = new FolderContentLoader(session);
+    }
+
+    /**
+     * Checks whether the database runs the recursive subtree query. Should be called once at startup, the query is
+     * run in a separate session, so its failure doesn't break any transaction.
+     */
+    public static boolean isRecursiveQuerySupported(SessionFactory sessionFactory) {
+        Session session = sessionFactory.openSession();
+        try {
+            createSubtreeQuery(session, -1L).list();
+            return true;
+        } catch (HibernateException e) {
+            logger.info("Recursive query is not supported by database, folder trees will be loaded level by level.");
+            logger.debug("Recursive query failed.", e);
+            return false;
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Loads headers of the folder with specified id.
+     * @return header or null if the folder doesn't exist
+     */
+    public Folder loadHeader(Long folderId) {
+        List<Object[]> rows = session.createQuery("select f.id, f.folderName, f.version from Folder f " +
+                "where f.id = :id").setParameter("id", folderId).list();
+        if (rows.isEmpty()) {
+            return null;
+        }
+        return createHeader(rows.get(0));
+    }
+
+    /**
+     * Loads headers of user's root folder.
+     * @return header or null if the user has no root folder
+     */
+    public Folder loadRootHeader(String userName) {
+        List<Object[]> rows = session.createQuery("select f.id, f.folderName, f.version from Folder f where " +
+                "(f.folderName = :folderName and :userName in elements(f.owners)) order by f.id").
+                setParameter("folderName", "root").setParameter("userName", userName).setMaxResults(1).
+                setCacheable(true).setCacheRegion(DiagramDaoImpl.FOLDER_TREE_REGION).list();
+        if (rows.isEmpty()) {
+            return null;
+        }
+        return createHeader(rows.get(0));
+    }
+
+    /**
+     * Fills the root with headers of folders and diagrams down to specified depth. Every folder is loaded once, a
+     * folder shared by several parents appears under each of them.
+     * Every returned folder has its diagrams and counts, folders at the last level have no children folders.
+     * @param depth         number of levels of children folders, negative for the whole tree
+     * @param bodies        whether diagrams are loaded with nodes and links
+     * @param childrenLimit maximum number of children folders and diagrams of each folder, negative for no limit
+     */
+    public void loadTree(Folder root, int depth, boolean bodies, int childrenLimit) {
+        Map<Long, Folder> folders = new LinkedHashMap<>();
+        folders.put(root.getId(), root);
+        Map<Long, List<Long>> childIdsOf = new HashMap<>();
+        Map<Long, List<Diagram>> diagramsOf = new HashMap<>();
+        if (depth < 0 && recursiveQuerySupported) {
+            addChildren(folders, createSubtreeQuery(session, root.getId()).list(), childIdsOf, childrenLimit);
+            content.loadOwners(folders);
+            content.loadDiagrams(folders, diagramsOf, bodies, childrenLimit);
+        } else {
+            loadLevels(folders, depth, childIdsOf, diagramsOf, bodies, childrenLimit);
+        }
+        folders.values().stream().filter(folder -> folder.getChildrenCount() == null).
+                forEach(folder -> folder.setChildrenCount(0));
+        new FolderTreeBuilder(folders, childIdsOf, diagramsOf).build(root, depth);
+    }
+
+    /**
+     * Fills the folder with a page of headers of its children folders and a page of its diagrams.
+     * Offset and limit are applied to folders and diagrams independently.
+     */
+    public void loadChildrenPage(Folder folder, int offset, int limit) {
+        Map<Long, Folder> level = new LinkedHashMap<>();
+        level.put(folder.getId(), folder);
+        content.loadOwners(level);
+        content.countChildren(level);
+        content.countDiagrams(level);
+
+        Query childrenQuery = session.createQuery("select c.id, c.folderName, c.version from Folder p " +
+                "join p.childrenFolders c where p.id = :id order by c.folderName, c.id").
+                setParameter("id", folder.getId());
+        Map<Long, Folder> children = new LinkedHashMap<>();
+        for (Object[] row : (List<Object[]>) page(childrenQuery, offset, limit).list()) {
+            Folder child = createHeader(row);
+            child.setFolderParentId(folder.getId());
+            children.put(child.getId(), child);
+        }
+        content.loadOwners(children);
+        content.countChildren(children);
+        content.countDiagrams(children);
+
+        Query diagramsQuery = session.createQuery("select d.id, d.name from Folder f join f.diagrams d " +
+                "where f.id = :id order by d.name, d.id").setParameter("id", folder.getId());
+        Set<Diagram> diagrams = new HashSet<>();
+        for (Object[] row : (List<Object[]>) page(diagramsQuery, offset, limit).list()) {
+            diagrams.add(FolderContentLoader.createDiagramHeader((Long) row[0], (String) row[1]));
+        }
+
+        folder.setChildrenFolders(new HashSet<>(children.values()));
+        folder.setDiagrams(diagrams);
+    }
+
+    private Query page(Query query, int offset, int limit) {
+        query.setFirstResult(Math.max(offset, 0));
+        if (limit >= 0) {
+            query.setMaxResults(limit);
+        }
+        return query;
+    }
+
+    /**
+     * Loads levels of the tree down to specified depth, each level with its owners and diagrams.
+     * @param folders filled with headers of loaded folders, contains the root
+     * @param depth   number of levels of children folders, negative for the whole tree
+     */
+    private void loadLevels(Map<Long, Folder> folders, int depth, Map<Long, List<Long>> childIdsOf,
+                            Map<Long, List<Diagram>> diagramsOf, boolean bodies, int limit) {
+        Map<Long, Folder> level = new LinkedHashMap<>(folders);
+        for (int currentDepth = 0; !level.isEmpty(); currentDepth++) {
+            content.loadOwners(level);
+            content.loadDiagrams(level, diagramsOf, bodies, limit);
+            if (depth < 0 || currentDepth < depth) {
+                List<Object[]> rows = session.createQuery("select p.id, c.id, c.folderName, c.version " +
+                        "from Folder p join p.childrenFolders c where p.id in (:ids) order by p.id, c.folderName, " +
+                        "c.id").setParameterList("ids", level.keySet()).list();
+                level = addChildren(folders, rows, childIdsOf, limit);
+            } else {
+                content.countChildren(level);
+                level = new LinkedHashMap<>();
+            }
+        }
+    }
+
+    /**
+     * Adds edges from rows (parent id, child id, child name, child version) ordered by parent and headers of
+     * children not loaded before.
+     * @return headers of children not loaded before
+     */
+    private Map<Long, Folder> addChildren(Map<Long, Folder> folders, List<Object[]> rows,
+                                          Map<Long, List<Long>> childIdsOf, int limit) {
+        Map<Long, Folder> added = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            Long childId = (Long) row[1];
+            if (!folders.containsKey(childId)) {
+                Folder child = createHeader(new Object[] {childId, row[2], row[3]});
+                folders.put(childId, child);
+                added.put(childId, child);
+            }
+        }
+        for (Object[] row : rows) {
+            Folder parent = folders.get((Long) row[0]);
+            parent.setChildrenCount(FolderContentLoader.increment(parent.getChildrenCount()));
+            List<Long> childIds = childIdsOf.computeIfAbsent(parent.getId(), id -> new ArrayList<>());
+            if (limit < 0 || childIds.size() < limit) {
+                childIds.add((Long) row[1]);
+            }
+        }
+        return added;
+    }
+
+    private static Query createSubtreeQuery(Session session, Long rootId) {
+        //Synchronized spaces make pending changes of folders flushed before the native query.
+        return session.createSQLQuery(String.format(SUBTREE_QUERY, rootId)).addSynchronizedEntityClass(Folder.class).
+                addSynchronizedQuerySpace("folders_folders").addScalar("parent_id", LongType.INSTANCE).
+                addScalar("child_id", LongType.INSTANCE).addScalar("folder_name", StringType.INSTANCE).
+                addScalar("version", LongType.INSTANCE);
+    }
+
+    private static Folder createHeader(Object[] row) {
+        Folder folder = new Folder();
+        folder.setId((Long) row[0]);
+        folder.setFolderName((String) row[1]);
+        folder.setVersion((Long) row[2]);
+        return folder;
+    }
+}
@@ -0,0 +1,114 @@
+package com.qreal.wmp.db.diagram.dao;
+
+import com.qreal.wmp.db.diagram.exceptions.AbortedException;
+import com.qreal.wmp.db.diagram.model.Diagram;
+import com.qreal.wmp.db.diagram.model.Folder;
+import org.hibernate.Session;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Prepares a detached folder tree to be merged by DiagramDaoImpl. Versions of children folders and saved diagrams of
+ * the whole tree are loaded by one query each.
+ */
+class FolderTreeMerger {
+
+    private final Session session;
+
+    FolderTreeMerger(Session session) {
+        this.session = session;
+    }
+
+    /**
+     * Checks versions of children folders and replaces saved diagrams with persistent ones, so contents of diagrams
+     * sent with the tree are not merged.
+     */
+    public void prepare(Folder root) throws AbortedException {
+        List<Folder> folders = collectFolders(root);
+        checkVersions(folders);
+        attachSavedDiagrams(folders);
+    }
+
+    /** Returns ids of diagrams of the folder and its children folders.*/
+    public static Set<Long> getDiagramIds(Folder root) {
+        return collectFolders(root).stream().flatMap(folder -> folder.getDiagrams().stream()).map(Diagram::getId).
+                filter(Objects::nonNull).collect(Collectors.toSet());
+    }
+
+    /** Returns the folder and its children folders, each folder once.*/
+    private static List<Folder> collectFolders(Folder root) {
+        List<Folder> folders = new ArrayList<>();
+        Set<Folder> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Folder> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Folder folder = pending.pop();
+            if (visited.add(folder)) {
+                folders.add(folder);
+                folder.getChildrenFolders().forEach(pending::push);
+            }
+        }
+        return folders;
+    }
+
+    /**
+     * Checks versions of saved children folders loaded by one scalar query. ConflictException is thrown if a version
+     * is set and differs from the actual one, unset versions are set to the actual ones.
+     */
+    private void checkVersions(List<Folder> folders) throws AbortedException {
+        List<Folder> children = folders.subList(1, folders.size()).stream().filter(child -> child.getId() != null).
+                collect(Collectors.toList());
+        if (children.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = session.createQuery("select f.id, f.version from Folder f where f.id in (:ids)").
+                setParameterList("ids", children.stream().map(Folder::getId).collect(Collectors.toSet())).list();
+        Map<Long, Long> versions = new HashMap<>();
+        rows.forEach(row -> versions.put((Long) row[0], (Long) row[1]));
+        for (Folder child : children) {
+            Long version = versions.get(child.getId());
+            if (version != null) {
+                OptimisticLocking.checkVersion(String.valueOf(child.getId()), child.getVersion(), version,
+                        DiagramDaoImpl.class.getName());
+                child.setVersion(version);
+            }
+        }
+    }
+
+    /**
+     * Replaces saved diagrams of folders with persistent ones loaded by one query, new diagrams are left to be
+     * saved by merge. AbortedException is thrown if a saved diagram doesn't exist.
+     */
+    private void attachSavedDiagrams(List<Folder> folders) throws AbortedException {
+        Set<Long> ids = folders.stream().flatMap(folder -> folder.getDiagrams().stream()).map(Diagram::getId).
+                filter(Objects::nonNull).collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<Diagram> loaded = session.createQuery("from Diagram d where d.id in (:ids)").
+                setParameterList("ids", ids).list();
+        Map<Long, Diagram> saved = loaded.stream().collect(Collectors.toMap(Diagram::getId, Function.identity()));
+        if (saved.size() < ids.size()) {
+            throw new AbortedException("Diagram of the folder doesn't exist.", "updateFolder() safely aborted.",
+                    DiagramDaoImpl.class.getName());
+        }
+        for (Folder folder : folders) {
+            folder.setDiagrams(folder.getDiagrams().stream().map(diagram -> diagram.getId() == null ? diagram :
+                    saved.get(diagram.getId())).collect(Collectors.toSet()));
+        }
+        //Hash codes of folders depend on their diagrams, so sets of children folders are rebuilt.
+        folders.forEach(folder -> folder.setChildrenFolders(new HashSet<>(folder.getChildrenFolders())));
+    }
+}
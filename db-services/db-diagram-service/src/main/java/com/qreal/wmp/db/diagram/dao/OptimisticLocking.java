@@ -0,0 +1,37 @@
+package com.qreal.wmp.db.diagram.dao;
+
+import com.qreal.wmp.db.diagram.exceptions.ConflictException;
+import org.hibernate.Session;
+import org.hibernate.StaleStateException;
+
+/** Checks of versions of diagrams and folders shared by DAOs.*/
+final class OptimisticLocking {
+
+    private OptimisticLocking() {
+    }
+
+    /**
+     * Throws ConflictException if expected version is set and differs from the actual one.
+     * @param fullClassName name of DAO class reported in the exception
+     */
+    public static void checkVersion(String id, Long expectedVersion, Long actualVersion, String fullClassName)
+            throws ConflictException {
+        if (expectedVersion != null && !expectedVersion.equals(actualVersion)) {
+            throw new ConflictException(id, expectedVersion, actualVersion == null ? -1 : actualVersion,
+                    fullClassName);
+        }
+    }
+
+    /**
+     * Flushes session, so versioned updates conflicting with concurrent transactions fail inside DAO.
+     * @param fullClassName name of DAO class reported in the exception
+     */
+    public static void flushChecked(Session session, String id, long expectedVersion, String fullClassName)
+            throws ConflictException {
+        try {
+            session.flush();
+        } catch (StaleStateException e) {
+            throw new ConflictException(id, expectedVersion, fullClassName, e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.qreal.wmp.db.diagram.exceptions;
+
+/** Conflict exception informs that an entity was changed after the version the operation was based on.*/
+public class ConflictException extends AbortedException {
+
+    /** Id of conflicting entity. */
+    private final String id;
+
+    /** Version the operation was based on. */
+    private final long expectedVersion;
+
+    /** Version of the entity in DB or -1 if unknown. */
+    private final long actualVersion;
+
+    /**
+     * Creates exception for an entity whose version in DB differs from the expected one.
+     * @param actualVersion version of the entity in DB
+     */
+    public ConflictException(String id, long expectedVersion, long actualVersion, String fullClassName) {
+        super("Entity was changed after version " + expectedVersion + ".", "Operation aborted due to version " +
+                "conflict.", fullClassName);
+        this.id = id;
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = actualVersion;
+    }
+
+    /**
+     * Creates exception for a versioned update which failed because of a concurrent transaction. Actual version is
+     * unknown in this case.
+     * @param cause exception of the failed update
+     */
+    public ConflictException(String id, long expectedVersion, String fullClassName, Exception cause) {
+        super("Entity was changed concurrently.", "Operation aborted due to version conflict.", fullClassName,
+                cause);
+        this.id = id;
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = -1;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public long getActualVersion() {
+        return actualVersion;
+    }
+}
@@ -2,6 +2,9 @@ package com.qreal.wmp.db.diagram.model;
 
 import com.qreal.wmp.thrift.gen.TDefaultDiagramNode;
 import lombok.Data;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.GenericGenerator;
 
 import javax.persistence.*;
@@ -12,7 +15,8 @@ import java.util.stream.Collectors;
 
 /** Diagram's node.*/
 @Entity
-@Table(name = "nodes")
+@Table(name = "nodes", indexes = @Index(name = "idx_nodes_diagram", columnList = "diagram_id"))
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 public class DefaultDiagramNode implements Serializable {
     @Id
@@ -32,6 +36,8 @@ public class DefaultDiagramNode implements Serializable {
 
     @OneToMany(cascade = CascadeType.ALL, fetch = FetchType.EAGER, orphanRemoval = true)
     @JoinColumn(name = "node_id", referencedColumnName = "id")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @BatchSize(size = Diagram.BATCH_SIZE)
     private Set<Property> properties = new HashSet<>();
 
     public DefaultDiagramNode() {
@@ -81,10 +87,7 @@ public class DefaultDiagramNode implements Serializable {
             tDefaultDiagramNode.setType(type);
         }
 
-        if (properties != null && !properties.isEmpty()) {
-            tDefaultDiagramNode.setProperties(properties.stream().map(Property::toTProperty).
-                    collect(Collectors.toSet()));
-        }
+        tDefaultDiagramNode.setProperties(properties.stream().map(Property::toTProperty).collect(Collectors.toSet()));
         return tDefaultDiagramNode;
     }
 }
@@ -2,6 +2,10 @@ package com.qreal.wmp.db.diagram.model;
 
 import com.qreal.wmp.thrift.gen.TDiagram;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.io.Serializable;
@@ -13,9 +17,14 @@ import static javax.persistence.GenerationType.IDENTITY;
 
 /** Diagram (now only graphs). */
 @Entity
-@Table(name = "diagrams")
+@Table(name = "diagrams", indexes = @Index(name = "idx_diagrams_folder", columnList = "folder_id"))
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
+@EqualsAndHashCode(exclude = {"lastModified", "version"})
 public class Diagram implements Serializable {
+    /** Number of collections of one role initialized by one select.*/
+    public static final int BATCH_SIZE = 50;
+
     @Id
     @Column(name = "diagram_id")
     @GeneratedValue(strategy = IDENTITY)
@@ -24,17 +33,40 @@ public class Diagram implements Serializable {
     @Column(name = "name")
     private String name;
 
+    /**
+     * Nodes of diagrams loaded by one query are loaded in batches, not by a select per diagram. Properties of nodes
+     * and links are batched the same way.
+     */
     @OneToMany(cascade = CascadeType.ALL, fetch = FetchType.EAGER, orphanRemoval = true)
     @JoinColumn(name = "diagram_id", referencedColumnName = "diagram_id")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @BatchSize(size = BATCH_SIZE)
     private Set<DefaultDiagramNode> nodes = new HashSet<>();
 
     @OneToMany(cascade = CascadeType.ALL, fetch = FetchType.EAGER, orphanRemoval = true)
     @JoinColumn(name = "diagram_id", referencedColumnName = "diagram_id")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @BatchSize(size = BATCH_SIZE)
     private Set<Link> links = new HashSet<>();
 
+    /** Time of the last save in milliseconds since epoch, maintained by Hibernate callbacks. */
+    @Column(name = "last_modified")
+    private Long lastModified;
+
+    /** Version for optimistic locking, incremented by Hibernate on every update. */
+    @Version
+    @Column(name = "version")
+    private Long version;
+
     public Diagram() {
     }
 
+    @PrePersist
+    @PreUpdate
+    protected void touch() {
+        lastModified = System.currentTimeMillis();
+    }
+
     /** Constructor-converter from Thrift TDiagram to Diagram.*/
     public Diagram(TDiagram tDiagram) {
         if (tDiagram.isSetId()) {
@@ -52,6 +84,10 @@ public class Diagram implements Serializable {
         if (tDiagram.isSetLinks()) {
             links = tDiagram.getLinks().stream().map(Link::new).collect(Collectors.toSet());
         }
+
+        if (tDiagram.isSetVersion()) {
+            version = tDiagram.getVersion();
+        }
     }
 
     /** Converter from Diagram to Thrift TDiagram.*/
@@ -66,15 +102,20 @@ public class Diagram implements Serializable {
             tDiagram.setName(name);
         }
 
-        if (nodes != null && !nodes.isEmpty()) {
+        //Empty sets are sent too, editor clients iterate nodes and links of every diagram. Only headers have none.
+        if (nodes != null) {
             tDiagram.setNodes(nodes.stream().map(DefaultDiagramNode::toTDefaultDiagramNode).
                     collect(Collectors.toSet()));
         }
 
-        if (links != null && !links.isEmpty()) {
+        if (links != null) {
             tDiagram.setLinks(links.stream().map(Link::toTLink).collect(Collectors.toSet()));
         }
 
+        if (version != null) {
+            tDiagram.setVersion(version);
+        }
+
         return tDiagram;
     }
 }
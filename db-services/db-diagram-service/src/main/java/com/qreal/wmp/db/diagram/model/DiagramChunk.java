@@ -0,0 +1,54 @@
+package com.qreal.wmp.db.diagram.model;
+
+import com.qreal.wmp.thrift.gen.TDiagramChunk;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/** Part of a diagram: a page of nodes and then a page of links, both ordered by id.*/
+@Data
+public class DiagramChunk {
+    private Long diagramId;
+
+    private String name;
+
+    private Long version;
+
+    private List<DefaultDiagramNode> nodes = new ArrayList<>();
+
+    private List<Link> links = new ArrayList<>();
+
+    /** Token to get the next chunk, null if this chunk is the last one. */
+    private String continuationToken;
+
+    public DiagramChunk(Long diagramId, String name, Long version) {
+        this.diagramId = diagramId;
+        this.name = name;
+        this.version = version;
+    }
+
+    /** Converter from DiagramChunk to Thrift TDiagramChunk.*/
+    public TDiagramChunk toTDiagramChunk() {
+        TDiagramChunk tChunk = new TDiagramChunk();
+        tChunk.setDiagramId(diagramId);
+
+        if (name != null) {
+            tChunk.setName(name);
+        }
+
+        if (version != null) {
+            tChunk.setVersion(version);
+        }
+
+        tChunk.setNodes(nodes.stream().map(DefaultDiagramNode::toTDefaultDiagramNode).collect(Collectors.toList()));
+        tChunk.setLinks(links.stream().map(Link::toTLink).collect(Collectors.toList()));
+
+        if (continuationToken != null) {
+            tChunk.setContinuationToken(continuationToken);
+        }
+
+        return tChunk;
+    }
+}
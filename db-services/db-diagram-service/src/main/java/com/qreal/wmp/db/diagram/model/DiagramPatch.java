@@ -0,0 +1,72 @@
+package com.qreal.wmp.db.diagram.model;
+
+import com.qreal.wmp.thrift.gen.TDiagramPatch;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Changes of a diagram. Not set fields of modified nodes, links and properties mean "not changed".
+ * Properties of modified nodes and links are matched by id or, if id is not set, by name.
+ */
+@Data
+public class DiagramPatch {
+    private String name;
+
+    private List<DefaultDiagramNode> addedNodes = new ArrayList<>();
+
+    private List<DefaultDiagramNode> modifiedNodes = new ArrayList<>();
+
+    private Set<String> removedNodeIds = new HashSet<>();
+
+    private List<Link> addedLinks = new ArrayList<>();
+
+    private List<Link> modifiedLinks = new ArrayList<>();
+
+    private Set<String> removedLinkIds = new HashSet<>();
+
+    private Set<String> removedPropertyIds = new HashSet<>();
+
+    public DiagramPatch() {
+    }
+
+    /** Constructor-converter from Thrift TDiagramPatch to DiagramPatch.*/
+    public DiagramPatch(TDiagramPatch tPatch) {
+        if (tPatch.isSetName()) {
+            name = tPatch.getName();
+        }
+
+        if (tPatch.isSetAddedNodes()) {
+            addedNodes = tPatch.getAddedNodes().stream().map(DefaultDiagramNode::new).collect(Collectors.toList());
+        }
+
+        if (tPatch.isSetModifiedNodes()) {
+            modifiedNodes = tPatch.getModifiedNodes().stream().map(DefaultDiagramNode::new).
+                    collect(Collectors.toList());
+        }
+
+        if (tPatch.isSetRemovedNodeIds()) {
+            removedNodeIds = new HashSet<>(tPatch.getRemovedNodeIds());
+        }
+
+        if (tPatch.isSetAddedLinks()) {
+            addedLinks = tPatch.getAddedLinks().stream().map(Link::new).collect(Collectors.toList());
+        }
+
+        if (tPatch.isSetModifiedLinks()) {
+            modifiedLinks = tPatch.getModifiedLinks().stream().map(Link::new).collect(Collectors.toList());
+        }
+
+        if (tPatch.isSetRemovedLinkIds()) {
+            removedLinkIds = new HashSet<>(tPatch.getRemovedLinkIds());
+        }
+
+        if (tPatch.isSetRemovedPropertyIds()) {
+            removedPropertyIds = new HashSet<>(tPatch.getRemovedPropertyIds());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.qreal.wmp.db.diagram.model;
+
+import com.qreal.wmp.thrift.gen.TDiagramSummary;
+import lombok.Data;
+
+/** Projection of a diagram for list views. Built by HQL constructor expression, nodes and links are only counted. */
+@Data
+public class DiagramSummary {
+    private Long id;
+
+    private String name;
+
+    private Long folderId;
+
+    private int nodesCount;
+
+    private int linksCount;
+
+    private Long lastModified;
+
+    /**
+     * Constructor used by HQL projection, counts are Integer as size() of a collection is mapped to it.
+     * @param nodesCount number of nodes, null is treated as 0
+     * @param linksCount number of links, null is treated as 0
+     */
+    public DiagramSummary(Long id, String name, Long folderId, Integer nodesCount, Integer linksCount,
+                          Long lastModified) {
+        this.id = id;
+        this.name = name;
+        this.folderId = folderId;
+        this.nodesCount = nodesCount == null ? 0 : nodesCount;
+        this.linksCount = linksCount == null ? 0 : linksCount;
+        this.lastModified = lastModified;
+    }
+
+    /** Converter from DiagramSummary to Thrift TDiagramSummary.*/
+    public TDiagramSummary toTDiagramSummary() {
+        TDiagramSummary tSummary = new TDiagramSummary();
+        tSummary.setId(id);
+
+        if (name != null) {
+            tSummary.setName(name);
+        }
+
+        if (folderId != null) {
+            tSummary.setFolderId(folderId);
+        }
+
+        tSummary.setNodesCount(nodesCount);
+        tSummary.setLinksCount(linksCount);
+
+        if (lastModified != null) {
+            tSummary.setLastModified(lastModified);
+        }
+
+        return tSummary;
+    }
+}
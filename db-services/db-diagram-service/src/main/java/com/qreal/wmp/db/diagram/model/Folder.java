@@ -4,18 +4,20 @@ import com.qreal.wmp.thrift.gen.TFolder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /** Folder with diagrams and other folders. */
 @Entity
 @Table(name = "folders")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
-@EqualsAndHashCode(exclude = "parentFolders")
+@EqualsAndHashCode(exclude = {"parentFolders", "childrenCount", "diagramsCount", "version"})
 @ToString(exclude = "parentFolders")
 public class Folder implements Serializable {
 
@@ -28,23 +30,41 @@ public class Folder implements Serializable {
     private String folderName;
 
     @ElementCollection(fetch = FetchType.EAGER)
-    @CollectionTable(name = "owners", joinColumns = @JoinColumn(name = "folder_id"))
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @CollectionTable(name = "owners", joinColumns = @JoinColumn(name = "folder_id"),
+            indexes = @Index(name = "idx_owners_username", columnList = "username"))
     @Column(name = "username")
     private Set<String> owners = new HashSet<>();
 
     @Transient
     private Long folderParentId;
 
+    /** Version for optimistic locking, incremented by Hibernate on every update. */
+    @Version
+    @Column(name = "version")
+    private Long version;
+
+    /** Number of children folders, set only for folders loaded as headers. */
+    @Transient
+    private Integer childrenCount;
+
+    /** Number of diagrams, set only for folders loaded as headers. */
+    @Transient
+    private Integer diagramsCount;
+
     @ManyToMany(cascade = CascadeType.REMOVE, fetch = FetchType.EAGER, mappedBy = "childrenFolders")
     private Set<Folder> parentFolders = new HashSet<>();
 
     @ManyToMany(cascade = CascadeType.ALL, fetch = FetchType.EAGER)
     @JoinTable(name = "folders_folders", joinColumns = {@JoinColumn(name = "parent_id")},
-            inverseJoinColumns = {@JoinColumn(name = "child_id")})
+            inverseJoinColumns = {@JoinColumn(name = "child_id")},
+            indexes = @Index(name = "idx_folders_folders_child", columnList = "child_id"))
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private Set<Folder> childrenFolders = new HashSet<>();
 
     @OneToMany(cascade = CascadeType.ALL, fetch = FetchType.EAGER, orphanRemoval = true)
     @JoinColumn(name = "folder_id", referencedColumnName = "folder_id")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private Set<Diagram> diagrams = new HashSet<>();
 
     public Folder() { }
@@ -65,74 +85,11 @@ public class Folder implements Serializable {
      * It will not fill parentsFolders except presented, which could be changed.
      */
     public Folder(TFolder tFolder) {
-
-        if (tFolder.isSetId()) {
-            id = tFolder.getId();
-        }
-
-        if (tFolder.isSetFolderName()) {
-            folderName = tFolder.getFolderName();
-        }
-
-        if (tFolder.isSetOwners()) {
-            owners = tFolder.getOwners();
-        }
-
-        if (tFolder.isSetFolderParentId()) {
-            folderParentId = tFolder.getFolderParentId();
-        }
-
-        if (tFolder.isSetChildrenFolders()) {
-            childrenFolders = tFolder.getChildrenFolders().stream().map(Folder::new).collect(Collectors.toSet());
-        }
-
-        childrenFolders = childrenFolders.stream().map(x -> {
-            x.getParentFolders().add(this);
-            return x;
-        }).collect(Collectors.toSet());
-
-        if (tFolder.isSetDiagrams()) {
-            diagrams = tFolder.getDiagrams().stream().map(Diagram::new).collect(Collectors.toSet());
-        }
+        FolderConverter.fromTFolder(tFolder, this);
     }
 
     /** Converter from Folder to Thrift TFolder.*/
     public TFolder toTFolder(final String username) {
-        TFolder tFolder = new TFolder();
-
-        if (id != null) {
-            tFolder.setId(id);
-        }
-
-        if (folderName != null) {
-            tFolder.setFolderName(folderName);
-        }
-
-        if (owners != null) {
-            tFolder.setOwners(owners);
-        }
-
-        setFolderParentId(username, tFolder);
-
-        if (childrenFolders != null && !childrenFolders.isEmpty()) {
-            tFolder.setChildrenFolders(childrenFolders.stream().map(folder -> folder.toTFolder(username)).
-                    collect(Collectors.toSet()));
-        }
-
-        if (diagrams != null && !diagrams.isEmpty()) {
-            tFolder.setDiagrams(diagrams.stream().map(Diagram::toTDiagram).collect(Collectors.toSet()));
-        }
-
-        return tFolder;
-    }
-
-    private void setFolderParentId(String username, TFolder tFolder) {
-        parentFolders.stream().filter(dir -> dir.owners.contains(username)).
-                forEach(dir -> tFolder.setFolderParentId(dir.getId()));
-
-        if (!tFolder.isSetFolderParentId() && folderParentId != null) {
-            tFolder.setFolderParentId(folderParentId);
-        }
+        return FolderConverter.toTFolder(this, username);
     }
 }
-
@@ -0,0 +1,203 @@
+package com.qreal.wmp.db.diagram.model;
+
+import com.qreal.wmp.thrift.gen.TDiagram;
+import com.qreal.wmp.thrift.gen.TFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Converts folder trees between Folder and TFolder without recursion.
+ * A tree is walked once in post-order, so every folder is converted after its children and is put into sets of its
+ * parents only when its hash code doesn't change anymore. A folder shared by several parents is converted once,
+ * folders closing a cycle and folders deeper than MAX_DEPTH are skipped.
+ */
+final class FolderConverter {
+
+    private static final Logger logger = LoggerFactory.getLogger(FolderConverter.class);
+
+    /** Maximum depth of converted folders, root has depth 0.*/
+    public static final int MAX_DEPTH = 1024;
+
+    private FolderConverter() {
+    }
+
+    /** Converts a tree of folders to Thrift, setting folderParentId of each folder to a parent owned by user.*/
+    public static TFolder toTFolder(Folder root, String username) {
+        List<Folder> order = postOrder(root, Folder::getChildrenFolders);
+        Map<Folder, TFolder> converted = new IdentityHashMap<>(order.size());
+        for (Folder folder : order) {
+            TFolder tFolder = new TFolder();
+            copyFields(folder, tFolder, username);
+
+            Set<Folder> children = folder.getChildrenFolders();
+            if (children != null && !children.isEmpty()) {
+                Set<TFolder> tChildren = new HashSet<>(capacity(children.size()));
+                for (Folder child : children) {
+                    TFolder tChild = converted.get(child);
+                    if (tChild != null) {
+                        tChildren.add(tChild);
+                    }
+                }
+                tFolder.setChildrenFolders(tChildren);
+            }
+
+            Set<Diagram> diagrams = folder.getDiagrams();
+            if (diagrams != null && !diagrams.isEmpty()) {
+                Set<TDiagram> tDiagrams = new HashSet<>(capacity(diagrams.size()));
+                for (Diagram diagram : diagrams) {
+                    tDiagrams.add(diagram.toTDiagram());
+                }
+                tFolder.setDiagrams(tDiagrams);
+            }
+            converted.put(folder, tFolder);
+        }
+        return converted.get(root);
+    }
+
+    /**
+     * Converts a Thrift tree of folders into the root folder. Parent folders of children are filled with folders of
+     * the tree, parent folders of the root are left untouched.
+     */
+    public static void fromTFolder(TFolder tRoot, Folder root) {
+        List<TFolder> order = postOrder(tRoot, TFolder::getChildrenFolders);
+        Map<TFolder, Folder> converted = new IdentityHashMap<>(order.size());
+        for (TFolder tFolder : order) {
+            Folder folder = tFolder == tRoot ? root : new Folder();
+            copyFields(tFolder, folder);
+
+            List<Folder> children = new ArrayList<>(tFolder.getChildrenFoldersSize());
+            if (tFolder.isSetChildrenFolders()) {
+                for (TFolder tChild : tFolder.getChildrenFolders()) {
+                    Folder child = converted.get(tChild);
+                    if (child != null) {
+                        children.add(child);
+                    }
+                }
+            }
+            folder.setChildrenFolders(new HashSet<>(children));
+
+            if (tFolder.isSetDiagrams()) {
+                Set<Diagram> diagrams = new HashSet<>(capacity(tFolder.getDiagramsSize()));
+                for (TDiagram tDiagram : tFolder.getDiagrams()) {
+                    diagrams.add(new Diagram(tDiagram));
+                }
+                folder.setDiagrams(diagrams);
+            }
+
+            //Folder is complete, so it can be put into sets of its children.
+            for (Folder child : children) {
+                child.getParentFolders().add(folder);
+            }
+            converted.put(tFolder, folder);
+        }
+    }
+
+    private static void copyFields(Folder folder, TFolder tFolder, String username) {
+        if (folder.getId() != null) {
+            tFolder.setId(folder.getId());
+        }
+        if (folder.getFolderName() != null) {
+            tFolder.setFolderName(folder.getFolderName());
+        }
+        if (folder.getOwners() != null) {
+            tFolder.setOwners(folder.getOwners());
+        }
+        Long parentId = getParentId(folder, username);
+        if (parentId != null) {
+            tFolder.setFolderParentId(parentId);
+        }
+        if (folder.getVersion() != null) {
+            tFolder.setVersion(folder.getVersion());
+        }
+        if (folder.getChildrenCount() != null) {
+            tFolder.setChildrenCount(folder.getChildrenCount());
+        }
+        if (folder.getDiagramsCount() != null) {
+            tFolder.setDiagramsCount(folder.getDiagramsCount());
+        }
+    }
+
+    /** Returns id of a parent owned by user, or stored parent id if there is no such parent.*/
+    private static Long getParentId(Folder folder, String username) {
+        Long parentId = null;
+        for (Folder parent : folder.getParentFolders()) {
+            if (parent.getOwners().contains(username)) {
+                parentId = parent.getId();
+            }
+        }
+        return parentId != null ? parentId : folder.getFolderParentId();
+    }
+
+    private static void copyFields(TFolder tFolder, Folder folder) {
+        if (tFolder.isSetId()) {
+            folder.setId(tFolder.getId());
+        }
+        if (tFolder.isSetFolderName()) {
+            folder.setFolderName(tFolder.getFolderName());
+        }
+        if (tFolder.isSetOwners()) {
+            folder.setOwners(tFolder.getOwners());
+        }
+        if (tFolder.isSetFolderParentId()) {
+            folder.setFolderParentId(tFolder.getFolderParentId());
+        }
+        if (tFolder.isSetVersion()) {
+            folder.setVersion(tFolder.getVersion());
+        }
+    }
+
+    /** Returns folders of the tree in post-order, each folder once.*/
+    private static <T> List<T> postOrder(T root, Function<T, Collection<T>> childrenOf) {
+        List<T> order = new ArrayList<>();
+        Set<T> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<T> path = new ArrayDeque<>();
+        Deque<Iterator<T>> iterators = new ArrayDeque<>();
+        boolean truncated = false;
+
+        visited.add(root);
+        path.push(root);
+        iterators.push(children(root, childrenOf));
+        while (!path.isEmpty()) {
+            Iterator<T> children = iterators.peek();
+            if (!children.hasNext()) {
+                iterators.pop();
+                order.add(path.pop());
+                continue;
+            }
+            T child = children.next();
+            if (path.size() > MAX_DEPTH) {
+                truncated = true;
+            } else if (visited.add(child)) {
+                path.push(child);
+                iterators.push(children(child, childrenOf));
+            }
+        }
+
+        if (truncated) {
+            logger.error("Folder tree is deeper than {} levels, deeper folders were not converted.", MAX_DEPTH);
+        }
+        return order;
+    }
+
+    private static <T> Iterator<T> children(T folder, Function<T, Collection<T>> childrenOf) {
+        Collection<T> children = childrenOf.apply(folder);
+        return children == null ? Collections.emptyIterator() : children.iterator();
+    }
+
+    private static int capacity(int size) {
+        return size * 4 / 3 + 1;
+    }
+}
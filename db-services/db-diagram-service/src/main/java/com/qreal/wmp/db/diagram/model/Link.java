@@ -2,6 +2,9 @@ package com.qreal.wmp.db.diagram.model;
 
 import com.qreal.wmp.thrift.gen.TLink;
 import lombok.Data;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.GenericGenerator;
 
 import javax.persistence.*;
@@ -12,7 +15,8 @@ import java.util.stream.Collectors;
 
 /** Link between nodes.*/
 @Entity
-@Table(name = "links")
+@Table(name = "links", indexes = @Index(name = "idx_links_diagram", columnList = "diagram_id"))
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 public class Link implements Serializable {
     @Id
@@ -32,6 +36,8 @@ public class Link implements Serializable {
 
     @OneToMany(cascade = CascadeType.ALL, fetch = FetchType.EAGER, orphanRemoval = true)
     @JoinColumn(name = "link_id", referencedColumnName = "id")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @BatchSize(size = Diagram.BATCH_SIZE)
     private Set<Property> properties = new HashSet<>();
 
     public Link() {
@@ -81,9 +87,7 @@ public class Link implements Serializable {
             tLink.setType(type);
         }
 
-        if (properties != null && !properties.isEmpty()) {
-            tLink.setProperties(properties.stream().map(Property::toTProperty).collect(Collectors.toSet()));
-        }
+        tLink.setProperties(properties.stream().map(Property::toTProperty).collect(Collectors.toSet()));
         return tLink;
     }
 }
@@ -2,6 +2,8 @@ package com.qreal.wmp.db.diagram.model;
 
 import com.qreal.wmp.thrift.gen.TProperty;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.GenericGenerator;
 
 import javax.persistence.*;
@@ -9,7 +11,9 @@ import java.io.Serializable;
 
 /** Property of an entity.*/
 @Entity
-@Table(name = "properties")
+@Table(name = "properties", indexes = {@Index(name = "idx_properties_node", columnList = "node_id"),
+        @Index(name = "idx_properties_link", columnList = "link_id")})
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 public class Property implements Serializable {
     @Id
@@ -1,16 +1,18 @@
 package com.qreal.wmp.db.diagram.server;
 
 import com.qreal.wmp.thrift.gen.DiagramDbService;
-import org.apache.thrift.server.TThreadPoolServer;
-import org.apache.thrift.transport.TServerSocket;
-import org.apache.thrift.transport.TServerTransport;
+import com.qreal.wmp.thrift.server.ServerSettings;
+import com.qreal.wmp.thrift.server.ThriftServerFactory;
+import org.apache.thrift.server.TServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
@@ -24,16 +26,16 @@ public class DiagramDbServer implements ApplicationContextAware {
     @Value("${port.db.diagram}")
     private int port;
 
+    @Autowired
+    private Environment environment;
+
     private ApplicationContext context;
 
     /** Function running TServer with a chosen processor. */
-    private static void runTServer(DiagramDbService.Processor processor, int port) {
+    private static void runTServer(DiagramDbService.Processor processor, int port, ServerSettings settings) {
         logger.info("Starting Diagram DB TServer on localhost on port {}", port);
         try {
-            TServerTransport serverTransport = new TServerSocket(port);
-            TThreadPoolServer server = new TThreadPoolServer(
-                    new TThreadPoolServer.Args(serverTransport).processor(processor)
-            );
+            TServer server = ThriftServerFactory.createServer("DiagramDbService", processor, port, settings);
             server.serve();
             logger.info("Diagram DB TServer started successfully");
         } catch (Exception e) {
@@ -48,7 +50,8 @@ public class DiagramDbServer implements ApplicationContextAware {
             DiagramDbServiceHandler handler = new DiagramDbServiceHandler(context);
             DiagramDbService.Processor processor = new DiagramDbService.Processor(handler);
 
-            Runnable runServer = () -> runTServer(processor, port);
+            ServerSettings settings = ServerSettings.fromProperties(environment, "server");
+            Runnable runServer = () -> runTServer(processor, port, settings);
             logger.trace("Creating new thread for Diagram DB TServer");
             new Thread(runServer).start();
             logger.trace("Thread created. Server started.");
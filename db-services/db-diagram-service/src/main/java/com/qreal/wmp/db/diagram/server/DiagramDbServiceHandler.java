@@ -1,33 +1,36 @@
 package com.qreal.wmp.db.diagram.server;
 
-import com.qreal.wmp.db.diagram.dao.DiagramDao;
+import com.qreal.wmp.db.diagram.dao.DiagramBatchDao;
+import com.qreal.wmp.db.diagram.dao.DiagramChunkDao;
 import com.qreal.wmp.db.diagram.exceptions.AbortedException;
+import com.qreal.wmp.db.diagram.exceptions.ConflictException;
 import com.qreal.wmp.db.diagram.exceptions.NotFoundException;
-import com.qreal.wmp.db.diagram.mapping.RelationMapping;
+import com.qreal.wmp.db.diagram.model.DefaultDiagramNode;
 import com.qreal.wmp.db.diagram.model.Diagram;
-import com.qreal.wmp.db.diagram.model.Folder;
+import com.qreal.wmp.db.diagram.model.DiagramPatch;
+import com.qreal.wmp.db.diagram.model.Link;
 import com.qreal.wmp.thrift.gen.*;
-import org.apache.thrift.TException;
 import org.jetbrains.annotations.Nullable;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
-/** Thrift server side handler for DiagramDBService.*/
-public class DiagramDbServiceHandler implements DiagramDbService.Iface {
+/** Thrift server side handler for DiagramDBService. Folder part is in FolderDbServiceHandler.*/
+public class DiagramDbServiceHandler extends FolderDbServiceHandler {
 
-    private static final Logger logger = LoggerFactory.getLogger(DiagramDbServiceHandler.class);
+    private final DiagramBatchDao diagramBatchDao;
 
-    private DiagramDao diagramDao;
-
-    private RelationMapping mapper;
+    private final DiagramChunkDao diagramChunkDao;
 
     public DiagramDbServiceHandler(ApplicationContext context) {
-        diagramDao = (DiagramDao) context.getBean("diagramDao");
-        mapper = new RelationMapping(diagramDao);
-        assert diagramDao != null;
+        super(context);
+        diagramBatchDao = (DiagramBatchDao) context.getBean("diagramBatchDao");
+        diagramChunkDao = (DiagramChunkDao) context.getBean("diagramChunkDao");
     }
 
     @Override
@@ -46,6 +49,11 @@ public class DiagramDbServiceHandler implements DiagramDbService.Iface {
 
     @Override
     public TDiagram getDiagram(long diagramId) throws TNotFound {
+        long generation = diagramCache.generation();
+        TDiagram cached = diagramCache.get(diagramId);
+        if (cached != null) {
+            return cached;
+        }
         Diagram diagram;
         try {
             diagram = diagramDao.getDiagram(diagramId);
@@ -53,7 +61,9 @@ public class DiagramDbServiceHandler implements DiagramDbService.Iface {
         catch (NotFoundException e) {
             throw new TNotFound(String.valueOf(diagramId), "Diagram not found.");
         }
-        return diagram.toTDiagram();
+        TDiagram tDiagram = diagram.toTDiagram();
+        diagramCache.put(diagramId, tDiagram, generation);
+        return tDiagram;
     }
 
     @Override
@@ -62,131 +72,185 @@ public class DiagramDbServiceHandler implements DiagramDbService.Iface {
             diagramDao.deleteDiagram(diagramId);
         } catch (AbortedException e) {
             throw new TAborted(e.getTextCause(), e.getMessage(), e.getFullClassName());
+        } finally {
+            diagramCache.invalidate(diagramId);
         }
     }
 
     @Override
-    public void updateDiagram(TDiagram diagram) throws TAborted, TIdNotDefined {
+    public void updateDiagram(TDiagram diagram) throws TAborted, TIdNotDefined, TConflict {
         if (!diagram.isSetId()) {
             throw new TIdNotDefined("Diagram id is null. To rewrite diagram you should specify id.");
         }
         try {
             diagramDao.rewriteDiagram(new Diagram(diagram));
+        } catch (ConflictException e) {
+            throw new TConflict(e.getId(), e.getExpectedVersion(), e.getActualVersion(), e.getMessage());
         } catch (AbortedException e) {
             throw new TAborted(e.getTextCause(), e.getMessage(), e.getFullClassName());
+        } finally {
+            diagramCache.invalidate(diagram.getId());
         }
     }
 
     @Override
-    public long saveFolder(TFolder tFolder) throws TAborted, TIdAlreadyDefined {
-        long id;
-        if (tFolder.isSetId()) {
-            throw new TIdAlreadyDefined("Folder Id not null. To save a folder you should not assign Id to it.");
-        }
+    public TPatchResult applyDiagramPatch(long diagramId, long baseVersion, TDiagramPatch tPatch)
+            throws TAborted, TConflict {
+        DiagramPatch patch = new DiagramPatch(tPatch);
+        long version;
         try {
-            id = diagramDao.saveFolder(mapper.convertTFolder(tFolder));
+            version = diagramDao.applyDiagramPatch(diagramId, baseVersion, patch);
+        } catch (ConflictException e) {
+            throw new TConflict(e.getId(), e.getExpectedVersion(), e.getActualVersion(), e.getMessage());
         } catch (AbortedException e) {
             throw new TAborted(e.getTextCause(), e.getMessage(), e.getFullClassName());
+        } finally {
+            diagramCache.invalidate(diagramId);
         }
-        return id;
+        return new TPatchResult(version,
+                patch.getAddedNodes().stream().map(DefaultDiagramNode::getId).collect(Collectors.toList()),
+                patch.getAddedLinks().stream().map(Link::getId).collect(Collectors.toList()));
     }
 
     @Override
-    public TFolder getFolder(long folderId, String username) throws TNotFound {
-        Folder folder;
+    public TDiagramChunk getDiagramChunk(long diagramId, String continuationToken, int limit)
+            throws TNotFound, TAborted, TConflict {
         try {
-            folder = diagramDao.getFolder(folderId);
+            return diagramChunkDao.getDiagramChunk(diagramId, continuationToken, limit).toTDiagramChunk();
         } catch (NotFoundException e) {
-            throw new TNotFound(String.valueOf(folderId), "Folder not found.");
+            throw new TNotFound(String.valueOf(diagramId), "Diagram not found.");
+        } catch (ConflictException e) {
+            throw new TConflict(e.getId(), e.getExpectedVersion(), e.getActualVersion(), e.getMessage());
+        } catch (AbortedException e) {
+            throw new TAborted(e.getTextCause(), e.getMessage(), e.getFullClassName());
         }
-        return folder.toTFolder(username);
     }
 
     @Override
-    public void updateFolder(TFolder tFolder) throws TAborted, TIdNotDefined {
-        if (!tFolder.isSetId()) {
-            throw new TIdNotDefined("Folder id is null. To update folder you should specify id.");
-        }
+    public TPatchResult appendToDiagram(long diagramId, long baseVersion, List<TDefaultDiagramNode> tNodes,
+                                        List<TLink> tLinks) throws TAborted, TConflict {
+        List<DefaultDiagramNode> nodes = tNodes == null ? new ArrayList<>() :
+                tNodes.stream().map(DefaultDiagramNode::new).collect(Collectors.toList());
+        List<Link> links = tLinks == null ? new ArrayList<>() :
+                tLinks.stream().map(Link::new).collect(Collectors.toList());
+        long version;
         try {
-            diagramDao.updateFolder(mapper.convertTFolder(tFolder));
+            version = diagramChunkDao.appendToDiagram(diagramId, baseVersion, nodes, links);
+        } catch (ConflictException e) {
+            throw new TConflict(e.getId(), e.getExpectedVersion(), e.getActualVersion(), e.getMessage());
         } catch (AbortedException e) {
             throw new TAborted(e.getTextCause(), e.getMessage(), e.getFullClassName());
+        } finally {
+            diagramCache.invalidate(diagramId);
         }
+        return new TPatchResult(version, nodes.stream().map(DefaultDiagramNode::getId).collect(Collectors.toList()),
+                links.stream().map(Link::getId).collect(Collectors.toList()));
     }
 
     @Override
-    public void deleteFolder(long folderId) throws TAborted {
+    public TBatchResult saveDiagrams(List<TDiagram> tDiagrams) throws TAborted {
+        List<Diagram> diagrams = new ArrayList<>();
+        List<Long> folderIds = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        List<TBatchItem> items = new ArrayList<>();
+        for (int i = 0; i < tDiagrams.size(); i++) {
+            TDiagram tDiagram = tDiagrams.get(i);
+            if (tDiagram.isSetId()) {
+                items.add(createFailedItem(i, tDiagram.getId(), "Diagram Id not null.",
+                        "To save a diagram you should not assign Id to it."));
+            } else if (!tDiagram.isSetFolderId()) {
+                items.add(createFailedItem(i, null, "Folder Id is null.",
+                        "To save a diagram you should specify folder."));
+            } else {
+                diagrams.add(new Diagram(tDiagram));
+                folderIds.add(tDiagram.getFolderId());
+                indexes.add(i);
+                //Filled in when the diagram is saved.
+                items.add(null);
+            }
+        }
+
+        List<Long> savedIds;
         try {
-            diagramDao.deleteFolder(folderId);
+            savedIds = diagramBatchDao.saveDiagrams(diagrams, folderIds);
         } catch (AbortedException e) {
             throw new TAborted(e.getTextCause(), e.getMessage(), e.getFullClassName());
         }
-    }
 
-    @Override
-    public TFolder getFolderTree(String username) throws TNotFound {
-        Folder folder;
-        try {
-            folder = diagramDao.getFolderTree(username);
-        } catch (NotFoundException e) {
-            throw new TNotFound(username, "FolderTree for specified user not found.");
+        for (int i = 0; i < savedIds.size(); i++) {
+            int index = indexes.get(i);
+            if (savedIds.get(i) == null) {
+                items.set(index, createFailedItem(index, null, "Folder to save diagram into not found.",
+                        "Diagram skipped."));
+            } else {
+                items.set(index, new TBatchItem().setId(savedIds.get(i)));
+            }
         }
-        return folder.toTFolder(username);
+        return new TBatchResult(items);
     }
 
     @Override
-    public void shareFolderTo(String username, TFolder tFolderToShare) throws TException {
-        Folder rootFolder = mapper.convertTFolder(getFolderTree(username));
-
-        Folder folderToShare = mapper.convertTFolder(tFolderToShare);
-        addOwner(username, folderToShare);
-        updateFolder(folderToShare.toTFolder(username));
-
-        if (rootFolder == null) {
-            return;
+    public TDiagramsResult getDiagrams(List<Long> diagramIds) {
+        long generation = diagramCache.generation();
+        Map<Long, TDiagram> found = new HashMap<>();
+        List<Long> missedIds = new ArrayList<>();
+        for (Long diagramId : diagramIds) {
+            TDiagram cached = diagramCache.get(diagramId);
+            if (cached == null) {
+                missedIds.add(diagramId);
+            } else {
+                found.put(diagramId, cached);
+            }
         }
+        for (Diagram diagram : diagramBatchDao.getDiagrams(missedIds)) {
+            TDiagram tDiagram = diagram.toTDiagram();
+            diagramCache.put(diagram.getId(), tDiagram, generation);
+            found.put(diagram.getId(), tDiagram);
+        }
+        List<TDiagram> diagrams = new ArrayList<>();
+        List<TBatchError> errors = new ArrayList<>();
+        for (int i = 0; i < diagramIds.size(); i++) {
+            TDiagram diagram = found.get(diagramIds.get(i));
+            if (diagram == null) {
+                errors.add(createBatchError(i, diagramIds.get(i), "Diagram not found.", "Diagram skipped."));
+            } else {
+                diagrams.add(diagram);
+            }
+        }
+        return new TDiagramsResult(diagrams, errors);
+    }
 
-        Folder sharedFolder = getSharedFolder(rootFolder);
-
-        if (sharedFolder == null) {
-
-            sharedFolder = new Folder("Shared", username);
-            long idShared = saveFolder(sharedFolder.toTFolder(username));
-            sharedFolder.setId(idShared);
-
-            sharedFolder.getChildrenFolders().add(folderToShare);
-            folderToShare.getParentFolders().add(sharedFolder);
-
-            updateFolder(sharedFolder.toTFolder(username));
-
-            rootFolder.getChildrenFolders().add(sharedFolder);
-            sharedFolder.getParentFolders().add(rootFolder);
-            updateFolder(rootFolder.toTFolder(username));
+    @Override
+    public TBatchResult deleteDiagrams(List<Long> diagramIds) throws TAborted {
+        Set<Long> deleted;
+        try {
+            deleted = diagramBatchDao.deleteDiagrams(diagramIds);
+        } catch (AbortedException e) {
+            throw new TAborted(e.getTextCause(), e.getMessage(), e.getFullClassName());
+        } finally {
+            diagramCache.invalidateAll(diagramIds);
         }
-        else {
-            if (sharedFolder.getChildrenFolders().contains(folderToShare)) {
-                logger.error("addUserToOwners method was called with folder which already shared to user.");
-                return;
+        List<TBatchItem> items = new ArrayList<>();
+        for (int i = 0; i < diagramIds.size(); i++) {
+            if (deleted.contains(diagramIds.get(i))) {
+                items.add(new TBatchItem().setId(diagramIds.get(i)));
+            } else {
+                items.add(createFailedItem(i, diagramIds.get(i), "Diagram with specified Id doesn't exist.",
+                        "Diagram skipped."));
             }
-            sharedFolder.getChildrenFolders().add(folderToShare);
-            updateFolder(sharedFolder.toTFolder(username));
         }
+        return new TBatchResult(items);
     }
 
-    private void addOwner(String username, Folder folder) {
-        Set<String> owners = folder.getOwners();
-        owners.add(username);
-        folder.setOwners(owners);
+    private static TBatchItem createFailedItem(int index, @Nullable Long id, String textCause, String message) {
+        return new TBatchItem().setError(createBatchError(index, id, textCause, message));
     }
 
-    @Nullable
-    private Folder getSharedFolder(Folder rootFolder) {
-        Folder sharedFolder = null;
-        for (Folder folderCur : rootFolder.getChildrenFolders()) {
-            if (folderCur.getFolderName().equals("Shared")) {
-                sharedFolder = folderCur;
-            }
+    private static TBatchError createBatchError(int index, @Nullable Long id, String textCause, String message) {
+        TBatchError error = new TBatchError(index, textCause, message);
+        if (id != null) {
+            error.setId(id);
         }
-        return sharedFolder;
+        return error;
     }
 }
@@ -0,0 +1,209 @@
+package com.qreal.wmp.db.diagram.server;
+
+import com.qreal.wmp.db.diagram.cache.DiagramCache;
+import com.qreal.wmp.db.diagram.dao.DiagramDao;
+import com.qreal.wmp.db.diagram.exceptions.AbortedException;
+import com.qreal.wmp.db.diagram.exceptions.ConflictException;
+import com.qreal.wmp.db.diagram.exceptions.NotFoundException;
+import com.qreal.wmp.db.diagram.mapping.RelationMapping;
+import com.qreal.wmp.db.diagram.model.DiagramSummary;
+import com.qreal.wmp.db.diagram.model.Folder;
+import com.qreal.wmp.thrift.gen.DiagramDbService;
+import com.qreal.wmp.thrift.gen.TAborted;
+import com.qreal.wmp.thrift.gen.TConflict;
+import com.qreal.wmp.thrift.gen.TDiagramSummary;
+import com.qreal.wmp.thrift.gen.TFolder;
+import com.qreal.wmp.thrift.gen.TIdAlreadyDefined;
+import com.qreal.wmp.thrift.gen.TIdNotDefined;
+import com.qreal.wmp.thrift.gen.TNotFound;
+import org.apache.thrift.TException;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/** Folder part of thrift server side handler for DiagramDBService. Diagram part is in DiagramDbServiceHandler.*/
+public abstract class FolderDbServiceHandler implements DiagramDbService.Iface {
+
+    private static final Logger logger = LoggerFactory.getLogger(FolderDbServiceHandler.class);
+
+    protected final DiagramDao diagramDao;
+
+    protected final RelationMapping mapper;
+
+    protected final DiagramCache diagramCache;
+
+    protected FolderDbServiceHandler(ApplicationContext context) {
+        diagramDao = (DiagramDao) context.getBean("diagramDao");
+        diagramCache = (DiagramCache) context.getBean("diagramCache");
+        mapper = new RelationMapping(diagramDao);
+        assert diagramDao != null;
+    }
+
+    @Override
+    public List<TDiagramSummary> getDiagramSummaries(long folderId) throws TNotFound {
+        try {
+            return diagramDao.getDiagramSummaries(folderId).stream().map(DiagramSummary::toTDiagramSummary).
+                    collect(Collectors.toList());
+        } catch (NotFoundException e) {
+            throw new TNotFound(String.valueOf(folderId), "Folder not found.");
+        }
+    }
+
+    @Override
+    public long saveFolder(TFolder tFolder) throws TAborted, TIdAlreadyDefined {
+        long id;
+        if (tFolder.isSetId()) {
+            throw new TIdAlreadyDefined("Folder Id not null. To save a folder you should not assign Id to it.");
+        }
+        try {
+            id = diagramDao.saveFolder(mapper.convertTFolder(tFolder));
+        } catch (AbortedException e) {
+            throw new TAborted(e.getTextCause(), e.getMessage(), e.getFullClassName());
+        }
+        return id;
+    }
+
+    @Override
+    public long createRootFolder(String username) throws TAborted {
+        try {
+            return diagramDao.createRootFolder(username);
+        } catch (AbortedException e) {
+            throw new TAborted(e.getTextCause(), e.getMessage(), e.getFullClassName());
+        }
+    }
+
+    @Override
+    public TFolder getFolder(long folderId, String username) throws TNotFound {
+        Folder folder;
+        try {
+            folder = diagramDao.getFolder(folderId);
+        } catch (NotFoundException e) {
+            throw new TNotFound(String.valueOf(folderId), "Folder not found.");
+        }
+        return folder.toTFolder(username);
+    }
+
+    @Override
+    public void updateFolder(TFolder tFolder) throws TAborted, TIdNotDefined, TConflict {
+        if (!tFolder.isSetId()) {
+            throw new TIdNotDefined("Folder id is null. To update folder you should specify id.");
+        }
+        Set<Long> diagramIds;
+        try {
+            diagramIds = diagramDao.updateFolder(mapper.convertTFolder(tFolder));
+        } catch (ConflictException e) {
+            throw new TConflict(e.getId(), e.getExpectedVersion(), e.getActualVersion(), e.getMessage());
+        } catch (AbortedException e) {
+            throw new TAborted(e.getTextCause(), e.getMessage(), e.getFullClassName());
+        }
+        //Update of a folder may delete diagrams of its subtree, failed update is rolled back.
+        diagramCache.invalidateAll(diagramIds);
+    }
+
+    @Override
+    public void deleteFolder(long folderId) throws TAborted {
+        Set<Long> diagramIds;
+        try {
+            diagramIds = diagramDao.deleteFolder(folderId);
+        } catch (AbortedException e) {
+            throw new TAborted(e.getTextCause(), e.getMessage(), e.getFullClassName());
+        }
+        //Deletion of a folder deletes all diagrams of its subtree.
+        diagramCache.invalidateAll(diagramIds);
+    }
+
+    @Override
+    public TFolder getFolderTree(String username) throws TNotFound {
+        Folder folder;
+        try {
+            folder = diagramDao.getFolderTree(username);
+        } catch (NotFoundException e) {
+            throw new TNotFound(username, "FolderTree for specified user not found.");
+        }
+        return folder.toTFolder(username);
+    }
+
+    @Override
+    public TFolder getFolderTreeLazy(String username, int depth, boolean includeDiagramBodies, int childrenLimit)
+            throws TNotFound {
+        Folder folder;
+        try {
+            folder = diagramDao.getFolderTree(username, depth, includeDiagramBodies, childrenLimit);
+        } catch (NotFoundException e) {
+            throw new TNotFound(username, "FolderTree for specified user not found.");
+        }
+        return folder.toTFolder(username);
+    }
+
+    @Override
+    public TFolder getFolderChildren(long folderId, String username, int offset, int limit) throws TNotFound {
+        Folder folder;
+        try {
+            folder = diagramDao.getFolderChildren(folderId, offset, limit);
+        } catch (NotFoundException e) {
+            throw new TNotFound(String.valueOf(folderId), "Folder not found.");
+        }
+        return folder.toTFolder(username);
+    }
+
+    @Override
+    public void shareFolderTo(String username, TFolder tFolderToShare) throws TException {
+        Folder rootFolder = mapper.convertTFolder(getFolderTree(username));
+
+        Folder folderToShare = mapper.convertTFolder(tFolderToShare);
+        addOwner(username, folderToShare);
+        updateFolder(folderToShare.toTFolder(username));
+
+        if (rootFolder == null) {
+            return;
+        }
+
+        Folder sharedFolder = getSharedFolder(rootFolder);
+
+        if (sharedFolder == null) {
+
+            sharedFolder = new Folder("Shared", username);
+            long idShared = saveFolder(sharedFolder.toTFolder(username));
+            sharedFolder.setId(idShared);
+
+            sharedFolder.getChildrenFolders().add(folderToShare);
+            folderToShare.getParentFolders().add(sharedFolder);
+
+            updateFolder(sharedFolder.toTFolder(username));
+
+            rootFolder.getChildrenFolders().add(sharedFolder);
+            sharedFolder.getParentFolders().add(rootFolder);
+            updateFolder(rootFolder.toTFolder(username));
+        }
+        else {
+            if (sharedFolder.getChildrenFolders().contains(folderToShare)) {
+                logger.error("addUserToOwners method was called with folder which already shared to user.");
+                return;
+            }
+            sharedFolder.getChildrenFolders().add(folderToShare);
+            updateFolder(sharedFolder.toTFolder(username));
+        }
+    }
+
+    private void addOwner(String username, Folder folder) {
+        Set<String> owners = folder.getOwners();
+        owners.add(username);
+        folder.setOwners(owners);
+    }
+
+    @Nullable
+    private Folder getSharedFolder(Folder rootFolder) {
+        Folder sharedFolder = null;
+        for (Folder folderCur : rootFolder.getChildrenFolders()) {
+            if (folderCur.getFolderName().equals("Shared")) {
+                sharedFolder = folderCur;
+            }
+        }
+        return sharedFolder;
+    }
+}
@@ -0,0 +1,66 @@
+-- Schema of Diagram DB service as mapped by com.qreal.wmp.db.diagram.model entities.
+
+create table folders (
+    folder_id bigint not null auto_increment,
+    folder_name varchar(255),
+    version bigint,
+    primary key (folder_id)
+);
+
+create table owners (
+    folder_id bigint not null,
+    username varchar(255) not null,
+    primary key (folder_id, username)
+);
+
+create table folders_folders (
+    parent_id bigint not null,
+    child_id bigint not null,
+    primary key (parent_id, child_id)
+);
+
+create table diagrams (
+    diagram_id bigint not null auto_increment,
+    name varchar(255),
+    last_modified bigint,
+    version bigint,
+    folder_id bigint,
+    primary key (diagram_id)
+);
+
+create table nodes (
+    id varchar(255) not null,
+    logical_id varchar(255),
+    graphical_id varchar(255),
+    type varchar(255),
+    diagram_id bigint,
+    primary key (id)
+);
+
+create table links (
+    id varchar(255) not null,
+    logical_id varchar(255),
+    graphical_id varchar(255),
+    type varchar(255),
+    diagram_id bigint,
+    primary key (id)
+);
+
+create table properties (
+    property_id varchar(255) not null,
+    name varchar(255),
+    value varchar(255),
+    type varchar(255),
+    node_id varchar(255),
+    link_id varchar(255),
+    primary key (property_id)
+);
+
+alter table owners add constraint fk_owners_folder foreign key (folder_id) references folders (folder_id);
+alter table folders_folders add constraint fk_folders_folders_parent foreign key (parent_id) references folders (folder_id);
+alter table folders_folders add constraint fk_folders_folders_child foreign key (child_id) references folders (folder_id);
+alter table diagrams add constraint fk_diagrams_folder foreign key (folder_id) references folders (folder_id);
+alter table nodes add constraint fk_nodes_diagram foreign key (diagram_id) references diagrams (diagram_id);
+alter table links add constraint fk_links_diagram foreign key (diagram_id) references diagrams (diagram_id);
+alter table properties add constraint fk_properties_node foreign key (node_id) references nodes (id);
+alter table properties add constraint fk_properties_link foreign key (link_id) references links (id);
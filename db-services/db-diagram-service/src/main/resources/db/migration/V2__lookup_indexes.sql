@@ -0,0 +1,10 @@
+-- Indexes of the main lookups, the same indexes are declared in entity mappings.
+-- folders_folders.parent_id and owners.folder_id are covered by primary keys.
+
+create index idx_owners_username on owners (username);
+create index idx_folders_folders_child on folders_folders (child_id);
+create index idx_diagrams_folder on diagrams (folder_id);
+create index idx_nodes_diagram on nodes (diagram_id);
+create index idx_links_diagram on links (diagram_id);
+create index idx_properties_node on properties (node_id);
+create index idx_properties_link on properties (link_id);
@@ -0,0 +1,85 @@
+package com.qreal.wmp.db.diagram.cache;
+
+import com.qreal.wmp.thrift.gen.TDiagram;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DiagramCacheTest {
+
+    /** Test get operation after put. */
+    @Test
+    public void get_diagramPut_returnsCopy() {
+        DiagramCache cache = new DiagramCache(1024, 1024);
+        TDiagram diagram = createDiagram(1L, "testDiagram");
+
+        cache.put(1L, diagram, cache.generation());
+        TDiagram gotDiagram = cache.get(1L);
+
+        assertThat(gotDiagram).isEqualTo(diagram);
+        assertThat(gotDiagram).isNotSameAs(diagram);
+        assertThat(cache.getHits()).isEqualTo(1);
+    }
+
+    /** Test put operation with a generation taken before invalidation. */
+    @Test
+    public void put_outdatedGeneration_diagramNotCached() {
+        DiagramCache cache = new DiagramCache(1024, 1024);
+        long generation = cache.generation();
+
+        cache.invalidate(1L);
+        cache.put(1L, createDiagram(1L, "testDiagram"), generation);
+
+        assertThat(cache.get(1L)).isNull();
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    /** Test put operation with a generation taken before invalidation of another diagram. */
+    @Test
+    public void put_otherDiagramInvalidated_diagramCached() {
+        DiagramCache cache = new DiagramCache(1024, 1024);
+        long generation = cache.generation();
+
+        cache.invalidate(2L);
+        cache.put(1L, createDiagram(1L, "testDiagram"), generation);
+
+        assertThat(cache.get(1L)).isNotNull();
+    }
+
+    /** Test put operation with a generation taken before clear. */
+    @Test
+    public void put_generationBeforeClear_diagramNotCached() {
+        DiagramCache cache = new DiagramCache(1024, 1024);
+        long generation = cache.generation();
+
+        cache.clear();
+        cache.put(1L, createDiagram(1L, "testDiagram"), generation);
+
+        assertThat(cache.get(1L)).isNull();
+    }
+
+    /** Test put operation over the budget. */
+    @Test
+    public void put_budgetExceeded_leastRecentlyUsedEvicted() {
+        DiagramCache cache = new DiagramCache(1024, 1024);
+        String name = new String(new char[400]).replace('\0', 'a');
+
+        cache.put(1L, createDiagram(1L, name), cache.generation());
+        cache.put(2L, createDiagram(2L, name), cache.generation());
+        cache.get(1L);
+        cache.put(3L, createDiagram(3L, name), cache.generation());
+
+        assertThat(cache.get(1L)).isNotNull();
+        assertThat(cache.get(2L)).isNull();
+        assertThat(cache.get(3L)).isNotNull();
+        assertThat(cache.getEvictions()).isEqualTo(1);
+        assertThat(cache.getBytes()).isLessThanOrEqualTo(1024);
+    }
+
+    private TDiagram createDiagram(long id, String name) {
+        TDiagram diagram = new TDiagram();
+        diagram.setId(id);
+        diagram.setName(name);
+        return diagram;
+    }
+}
@@ -2,9 +2,17 @@ package com.qreal.wmp.db.diagram.dao;
 
 import com.qreal.wmp.db.diagram.config.AppInit;
 import com.qreal.wmp.db.diagram.exceptions.AbortedException;
+import com.qreal.wmp.db.diagram.exceptions.ConflictException;
 import com.qreal.wmp.db.diagram.exceptions.NotFoundException;
+import com.qreal.wmp.db.diagram.model.DefaultDiagramNode;
 import com.qreal.wmp.db.diagram.model.Diagram;
+import com.qreal.wmp.db.diagram.model.DiagramChunk;
+import com.qreal.wmp.db.diagram.model.DiagramPatch;
+import com.qreal.wmp.db.diagram.model.DiagramSummary;
 import com.qreal.wmp.db.diagram.model.Folder;
+import com.qreal.wmp.db.diagram.model.Link;
+import com.qreal.wmp.db.diagram.model.Property;
+import org.hibernate.SessionFactory;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,6 +21,13 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -23,6 +38,15 @@ public class DaoDiagramTest {
     @Autowired
     private DiagramDao diagramDao;
 
+    @Autowired
+    private DiagramBatchDao diagramBatchDao;
+
+    @Autowired
+    private DiagramChunkDao diagramChunkDao;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
     //TODO how to divide this and third test?
     /** Test saveDiagram operation for diagram. */
     @Test
@@ -146,6 +170,317 @@ public class DaoDiagramTest {
         assertThatThrownBy(() -> diagramDao.rewriteDiagram(rewriteDiagram)).isInstanceOf(AbortedException.class);
     }
 
+    /** Test rewriteDiagram operation for diagram with version. */
+    @Test
+    @Rollback
+    public void rewriteDiagram_staleVersion_throwsConflict() throws Exception {
+        Folder testFolder = createAndSaveFolder("testFolder", "testUser");
+        Diagram testDiagram = createAndSaveDiagram("testDiagram", testFolder);
+
+        Diagram rewriteDiagram = new Diagram();
+        rewriteDiagram.setName("testDiagramRewrite");
+        rewriteDiagram.setId(testDiagram.getId());
+        rewriteDiagram.setVersion(diagramDao.getDiagram(testDiagram.getId()).getVersion() + 1);
+
+        assertThatThrownBy(() -> diagramDao.rewriteDiagram(rewriteDiagram)).isInstanceOf(ConflictException.class);
+        assertThat(diagramDao.getDiagram(testDiagram.getId()).getName()).isEqualTo("testDiagram");
+    }
+
+    /** Test rewriteDiagram operation for diagram changed by a concurrent transaction after it was loaded. */
+    @Test
+    @Rollback
+    public void rewriteDiagram_changedConcurrently_throwsConflictOnFlush() throws Exception {
+        Folder testFolder = createAndSaveFolder("testFolder", "testUser");
+        Diagram testDiagram = createAndSaveDiagram("testDiagram", testFolder);
+        long loadedVersion = diagramDao.getDiagram(testDiagram.getId()).getVersion();
+        //Version is incremented bypassing the session, so the loaded diagram becomes stale.
+        sessionFactory.getCurrentSession().createSQLQuery("update diagrams set version = version + 1 " +
+                "where diagram_id = :id").setParameter("id", testDiagram.getId()).executeUpdate();
+
+        Diagram rewritten = new Diagram();
+        rewritten.setId(testDiagram.getId());
+        rewritten.setName("newName");
+        rewritten.setVersion(loadedVersion);
+
+        assertThatThrownBy(() -> diagramDao.rewriteDiagram(rewritten)).isInstanceOf(ConflictException.class);
+    }
+
+    /** Test applyDiagramPatch operation for diagram. */
+    @Test
+    @Rollback
+    public void applyDiagramPatch_actualVersion_changesAppliedAndVersionIncremented() throws Exception {
+        Folder testFolder = createAndSaveFolder("testFolder", "testUser");
+        Diagram testDiagram = new Diagram();
+        testDiagram.setName("testDiagram");
+        testDiagram.getNodes().add(createNode("Task", "name", "old"));
+        long idDiagram = diagramDao.saveDiagram(testDiagram, testFolder.getId());
+        String idNode = diagramDao.getDiagram(idDiagram).getNodes().iterator().next().getId();
+        long baseVersion = diagramDao.getDiagram(idDiagram).getVersion();
+
+        DefaultDiagramNode modifiedNode = createNode(null, "name", "new");
+        modifiedNode.setId(idNode);
+        DefaultDiagramNode addedNode = createNode("Added", "name", "added");
+        DiagramPatch patch = new DiagramPatch();
+        patch.getModifiedNodes().add(modifiedNode);
+        patch.getAddedNodes().add(addedNode);
+
+        long version = diagramDao.applyDiagramPatch(idDiagram, baseVersion, patch);
+
+        Diagram gotDiagram = diagramDao.getDiagram(idDiagram);
+        assertThat(version).isGreaterThan(baseVersion);
+        assertThat(gotDiagram.getVersion()).isEqualTo(version);
+        assertThat(addedNode.getId()).isNotNull();
+        assertThat(gotDiagram.getNodes()).extracting(DefaultDiagramNode::getId).containsOnly(idNode, addedNode.getId());
+        DefaultDiagramNode gotNode = gotDiagram.getNodes().stream().filter(node -> idNode.equals(node.getId())).
+                findFirst().get();
+        assertThat(gotNode.getType()).isEqualTo("Task");
+        assertThat(gotNode.getProperties()).extracting(Property::getValue).containsExactly("new");
+    }
+
+    /** Test applyDiagramPatch keeps modified nodes in the diagram after flush. */
+    @Test
+    @Rollback
+    public void applyDiagramPatch_nodeAndPropertyModified_nodeStaysInDiagramAfterReload() throws Exception {
+        Folder testFolder = createAndSaveFolder("testFolder", "testUser");
+        Diagram testDiagram = new Diagram();
+        testDiagram.setName("testDiagram");
+        testDiagram.getNodes().add(createNode("Task", "name", "old"));
+        testDiagram.getNodes().add(createNode("Other", "name", "other"));
+        long idDiagram = diagramDao.saveDiagram(testDiagram, testFolder.getId());
+        Diagram savedDiagram = diagramDao.getDiagram(idDiagram);
+        String idNode = savedDiagram.getNodes().stream().filter(node -> "Task".equals(node.getType())).findFirst().
+                get().getId();
+
+        DefaultDiagramNode modifiedNode = createNode("Changed", "name", "new");
+        modifiedNode.setId(idNode);
+        DiagramPatch patch = new DiagramPatch();
+        patch.getModifiedNodes().add(modifiedNode);
+
+        diagramDao.applyDiagramPatch(idDiagram, savedDiagram.getVersion(), patch);
+        sessionFactory.getCurrentSession().flush();
+        sessionFactory.getCurrentSession().clear();
+
+        Diagram gotDiagram = diagramDao.getDiagram(idDiagram);
+        assertThat(gotDiagram.getNodes()).extracting(DefaultDiagramNode::getType).containsOnly("Changed", "Other");
+        DefaultDiagramNode gotNode = gotDiagram.getNodes().stream().filter(node -> idNode.equals(node.getId())).
+                findFirst().get();
+        assertThat(gotNode.getProperties()).extracting(Property::getValue).containsExactly("new");
+    }
+
+    /** Test applyDiagramPatch operation for diagram. */
+    @Test
+    @Rollback
+    public void applyDiagramPatch_staleVersion_throwsConflict() throws Exception {
+        Folder testFolder = createAndSaveFolder("testFolder", "testUser");
+        Diagram testDiagram = createAndSaveDiagram("testDiagram", testFolder);
+        DiagramPatch patch = new DiagramPatch();
+        patch.setName("newName");
+        long staleVersion = 5L;
+
+        assertThatThrownBy(() -> diagramDao.applyDiagramPatch(testDiagram.getId(), staleVersion, patch)).
+                isInstanceOf(ConflictException.class);
+    }
+
+    /** Test getDiagramChunk operation for diagram. */
+    @Test
+    @Rollback
+    public void getDiagramChunk_readByTokens_allNodesThenLinksRead() throws Exception {
+        Folder testFolder = createAndSaveFolder("testFolder", "testUser");
+        Diagram testDiagram = new Diagram();
+        testDiagram.setName("testDiagram");
+        for (int i = 0; i < 3; i++) {
+            testDiagram.getNodes().add(createNode("Task", "name", "node" + i));
+        }
+        for (int i = 0; i < 2; i++) {
+            Link link = new Link();
+            link.setType("Flow");
+            testDiagram.getLinks().add(link);
+        }
+        long idDiagram = diagramDao.saveDiagram(testDiagram, testFolder.getId());
+
+        List<DiagramChunk> chunks = new ArrayList<>();
+        String token = null;
+        do {
+            DiagramChunk chunk = diagramChunkDao.getDiagramChunk(idDiagram, token, 2);
+            chunks.add(chunk);
+            token = chunk.getContinuationToken();
+        } while (token != null);
+
+        Diagram gotDiagram = diagramDao.getDiagram(idDiagram);
+        assertThat(chunks).hasSize(3);
+        assertThat(chunks).extracting(DiagramChunk::getName).containsOnly("testDiagram");
+        assertThat(chunks.get(1).getNodes()).hasSize(1);
+        assertThat(chunks.get(1).getLinks()).hasSize(1);
+        List<String> nodeIds = chunks.stream().flatMap(chunk -> chunk.getNodes().stream()).
+                map(DefaultDiagramNode::getId).collect(Collectors.toList());
+        List<String> linkIds = chunks.stream().flatMap(chunk -> chunk.getLinks().stream()).map(Link::getId).
+                collect(Collectors.toList());
+        assertThat(nodeIds).isSorted().containsOnlyElementsOf(gotDiagram.getNodes().stream().
+                map(DefaultDiagramNode::getId).collect(Collectors.toList())).hasSize(3);
+        assertThat(linkIds).isSorted().containsOnlyElementsOf(gotDiagram.getLinks().stream().map(Link::getId).
+                collect(Collectors.toList())).hasSize(2);
+    }
+
+    /** Test getDiagramChunk operation for diagram. */
+    @Test
+    @Rollback
+    public void getDiagramChunk_diagramChangedBetweenChunks_throwsConflict() throws Exception {
+        Folder testFolder = createAndSaveFolder("testFolder", "testUser");
+        Diagram testDiagram = new Diagram();
+        testDiagram.setName("testDiagram");
+        testDiagram.getNodes().add(createNode("Task", "name", "first"));
+        testDiagram.getNodes().add(createNode("Task", "name", "second"));
+        long idDiagram = diagramDao.saveDiagram(testDiagram, testFolder.getId());
+        DiagramChunk chunk = diagramChunkDao.getDiagramChunk(idDiagram, null, 1);
+
+        diagramChunkDao.appendToDiagram(idDiagram, chunk.getVersion(),
+                Collections.singletonList(createNode("Added", "name", "added")), new ArrayList<>());
+
+        assertThatThrownBy(() -> diagramChunkDao.getDiagramChunk(idDiagram, chunk.getContinuationToken(), 1)).
+                isInstanceOf(ConflictException.class);
+    }
+
+    /** Test appendToDiagram operation for diagram. */
+    @Test
+    @Rollback
+    public void appendToDiagram_actualVersion_nodesAndLinksAddedAndVersionIncremented() throws Exception {
+        Folder testFolder = createAndSaveFolder("testFolder", "testUser");
+        Diagram testDiagram = new Diagram();
+        testDiagram.setName("testDiagram");
+        testDiagram.getNodes().add(createNode("Task", "name", "old"));
+        long idDiagram = diagramDao.saveDiagram(testDiagram, testFolder.getId());
+        long baseVersion = diagramDao.getDiagram(idDiagram).getVersion();
+
+        DefaultDiagramNode addedNode = createNode("Added", "name", "added");
+        Link addedLink = new Link();
+        addedLink.setType("Flow");
+        long version = diagramChunkDao.appendToDiagram(idDiagram, baseVersion, Collections.singletonList(addedNode),
+                Collections.singletonList(addedLink));
+
+        Diagram gotDiagram = diagramDao.getDiagram(idDiagram);
+        assertThat(version).isEqualTo(baseVersion + 1);
+        assertThat(gotDiagram.getVersion()).isEqualTo(version);
+        assertThat(gotDiagram.getNodes()).hasSize(2).extracting(DefaultDiagramNode::getId).
+                contains(addedNode.getId());
+        assertThat(gotDiagram.getLinks()).extracting(Link::getId).containsExactly(addedLink.getId());
+        DefaultDiagramNode gotNode = gotDiagram.getNodes().stream().filter(node -> addedNode.getId().
+                equals(node.getId())).findFirst().get();
+        assertThat(gotNode.getProperties()).extracting(Property::getValue).containsExactly("added");
+    }
+
+    /** Test appendToDiagram operation for diagram. */
+    @Test
+    @Rollback
+    public void appendToDiagram_staleVersion_throwsConflict() throws Exception {
+        Folder testFolder = createAndSaveFolder("testFolder", "testUser");
+        Diagram testDiagram = createAndSaveDiagram("testDiagram", testFolder);
+        long staleVersion = 5L;
+
+        assertThatThrownBy(() -> diagramChunkDao.appendToDiagram(testDiagram.getId(), staleVersion,
+                Collections.singletonList(createNode("Added", "name", "added")), new ArrayList<>())).
+                isInstanceOf(ConflictException.class);
+    }
+
+    /** Test saveDiagrams operation for diagrams. */
+    @Test
+    @Rollback
+    public void saveDiagrams_oneFolderNotCorrect_savesOthersAndReturnsNullForIt() throws Exception {
+        Folder testFolder = createAndSaveFolder("testFolder", "testUser");
+        long idFolderNotCorrect = 0L;
+
+        Diagram first = new Diagram();
+        first.setName("first");
+        Diagram second = new Diagram();
+        second.setName("second");
+
+        List<Long> ids = diagramBatchDao.saveDiagrams(Arrays.asList(first, second),
+                Arrays.asList(testFolder.getId(), idFolderNotCorrect));
+
+        assertThat(ids).hasSize(2);
+        assertThat(ids.get(1)).isNull();
+        assertThat(diagramDao.getDiagram(ids.get(0)).getName()).isEqualTo("first");
+        assertThat(diagramDao.getFolder(testFolder.getId()).getDiagrams()).containsExactly(first);
+    }
+
+    /** Test getDiagrams operation for diagrams. */
+    @Test
+    @Rollback
+    public void getDiagrams_someDiagramsNotExist_returnsExisting() throws Exception {
+        Folder testFolder = createAndSaveFolder("testFolder", "testUser");
+        Diagram first = createAndSaveDiagram("first", testFolder);
+        Diagram second = createAndSaveDiagram("second", testFolder);
+        long idDiagramNotCorrect = 0L;
+
+        List<Diagram> gotDiagrams = diagramBatchDao.getDiagrams(Arrays.asList(first.getId(), idDiagramNotCorrect,
+                second.getId()));
+
+        assertThat(gotDiagrams).containsOnly(first, second);
+    }
+
+    /** Test deleteDiagrams operation for diagrams. */
+    @Test
+    @Rollback
+    public void deleteDiagrams_someDiagramsNotExist_deletesExisting() throws Exception {
+        Folder testFolder = createAndSaveFolder("testFolder", "testUser");
+        Diagram first = createAndSaveDiagram("first", testFolder);
+        Diagram second = createAndSaveDiagram("second", testFolder);
+        long idDiagramNotCorrect = 0L;
+
+        Set<Long> deleted = diagramBatchDao.deleteDiagrams(Arrays.asList(first.getId(), idDiagramNotCorrect));
+
+        assertThat(deleted).containsOnly(first.getId());
+        assertThat(diagramDao.isExistsDiagram(first.getId())).isFalse();
+        assertThat(diagramDao.isExistsDiagram(second.getId())).isTrue();
+    }
+
+    /** Test updateFolder operation doesn't erase bodies of diagrams sent as headers. */
+    @Test
+    @Rollback
+    public void updateFolder_diagramHeaders_keepsNodesOfDiagrams() throws Exception {
+        Folder testFolder = createAndSaveFolder("testFolder", "testUser");
+        Diagram testDiagram = new Diagram();
+        testDiagram.setName("testDiagram");
+        testDiagram.getNodes().add(createNode("Task", "name", "value"));
+        long idDiagram = diagramDao.saveDiagram(testDiagram, testFolder.getId());
+        sessionFactory.getCurrentSession().flush();
+        sessionFactory.getCurrentSession().clear();
+
+        Folder updateFolder = new Folder("testFolderRewrite", "testUser", testFolder.getId());
+        updateFolder.getDiagrams().add(FolderContentLoader.createDiagramHeader(idDiagram, "testDiagram"));
+        diagramDao.updateFolder(updateFolder);
+        sessionFactory.getCurrentSession().flush();
+        sessionFactory.getCurrentSession().clear();
+
+        assertThat(diagramDao.getFolder(testFolder.getId()).getFolderName()).isEqualTo("testFolderRewrite");
+        assertThat(diagramDao.getDiagram(idDiagram).getNodes()).hasSize(1);
+    }
+
+    /** Test getDiagramSummaries operation for folder. */
+    @Test
+    @Rollback
+    public void getDiagramSummaries_folderWithDiagrams_returnsSummariesOrderedByName() throws Exception {
+        Folder testFolder = createAndSaveFolder("testFolder", "testUser");
+        Diagram second = createAndSaveDiagram("second", testFolder);
+        Diagram first = createAndSaveDiagram("first", testFolder);
+
+        List<DiagramSummary> summaries = diagramDao.getDiagramSummaries(testFolder.getId());
+
+        assertThat(summaries).extracting(DiagramSummary::getId).containsExactly(first.getId(), second.getId());
+        assertThat(summaries.get(0).getFolderId()).isEqualTo(testFolder.getId());
+        assertThat(summaries.get(0).getNodesCount()).isEqualTo(0);
+        assertThat(summaries.get(0).getLastModified()).isNotNull();
+    }
+
+    /** Test getDiagramSummaries operation for folder. */
+    @Test
+    @Rollback
+    public void getDiagramSummaries_folderNotExists_throwsNotFound() {
+        long idFolderNotCorrect = 0L;
+
+        assertThatThrownBy(() -> diagramDao.getDiagramSummaries(idFolderNotCorrect)).
+                isInstanceOf(NotFoundException.class);
+    }
+
     private Folder createAndSaveFolder(String nameOfFolder, String nameOfUser) throws Exception {
         Folder testFolder = new Folder(nameOfFolder, nameOfUser);
         long idFolderCreated = diagramDao.saveFolder(testFolder);
@@ -153,6 +488,16 @@ public class DaoDiagramTest {
         return testFolder;
     }
 
+    private DefaultDiagramNode createNode(String type, String propertyName, String propertyValue) {
+        Property property = new Property();
+        property.setName(propertyName);
+        property.setValue(propertyValue);
+        DefaultDiagramNode node = new DefaultDiagramNode();
+        node.setType(type);
+        node.getProperties().add(property);
+        return node;
+    }
+
     private Diagram createAndSaveDiagram(String nameOfDiagram, Folder folder) throws Exception {
         Diagram testDiagram = new Diagram();
         testDiagram.setName(nameOfDiagram);
@@ -2,8 +2,13 @@ package com.qreal.wmp.db.diagram.dao;
 
 import com.qreal.wmp.db.diagram.config.AppInit;
 import com.qreal.wmp.db.diagram.exceptions.AbortedException;
+import com.qreal.wmp.db.diagram.exceptions.ConflictException;
 import com.qreal.wmp.db.diagram.exceptions.NotFoundException;
+import com.qreal.wmp.db.diagram.model.Diagram;
 import com.qreal.wmp.db.diagram.model.Folder;
+import com.qreal.wmp.thrift.gen.TDiagram;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,6 +27,9 @@ public class DaoFolderTest {
     @Autowired
     private DiagramDao diagramDao;
 
+    @Autowired
+    private SessionFactory sessionFactory;
+
     //TODO how to divide this and second test?
     /** Test save operation for folder. */
     @Test
@@ -48,6 +56,18 @@ public class DaoFolderTest {
         assertThat(gotFolder).isEqualTo(testFolder);
     }
 
+    /** Test repeated creation of root folder creates only one folder. */
+    @Test
+    @Rollback
+    public void createRootFolder_calledTwice_oneRootCreated() throws Exception {
+        long idRoot = diagramDao.createRootFolder("rootUser");
+
+        long idRootAgain = diagramDao.createRootFolder("rootUser");
+
+        assertThat(idRootAgain).isEqualTo(idRoot);
+        assertThat(diagramDao.getFolderTree("rootUser").getId()).isEqualTo(idRoot);
+    }
+
     /** Test saving folder tree. */
     @Test
     @Rollback
@@ -144,6 +164,33 @@ public class DaoFolderTest {
         assertThatThrownBy(() -> diagramDao.updateFolder(updateFolder)).isInstanceOf(AbortedException.class);
     }
 
+    /** Test updateFolder operation for folder with version. */
+    @Test
+    @Rollback
+    public void updateFolder_staleVersion_throwsConflict() throws Exception {
+        Folder testFolder = createAndSaveFolder("testFolder", "testUser");
+
+        Folder updateFolder = new Folder("testFolderRewrite", "testUser", testFolder.getId());
+        updateFolder.setVersion(diagramDao.getFolder(testFolder.getId()).getVersion() + 1);
+
+        assertThatThrownBy(() -> diagramDao.updateFolder(updateFolder)).isInstanceOf(ConflictException.class);
+    }
+
+    /** Test updateFolder operation checks versions of children folders. */
+    @Test
+    @Rollback
+    public void updateFolder_staleChildVersion_throwsConflict() throws Exception {
+        Folder testFolder = createAndSaveFolder("testFolder", "testUser");
+        Folder child = createAndSaveFolder("child", "testUser", testFolder);
+
+        Folder updateChild = new Folder("childRewrite", "testUser", child.getId());
+        updateChild.setVersion(diagramDao.getFolder(child.getId()).getVersion() + 1);
+        Folder updateFolder = new Folder("testFolder", "testUser", testFolder.getId());
+        updateFolder.getChildrenFolders().add(updateChild);
+
+        assertThatThrownBy(() -> diagramDao.updateFolder(updateFolder)).isInstanceOf(ConflictException.class);
+    }
+
     /** Test getFolderTree operation for one folder. */
     @Test
     @Rollback
@@ -164,6 +211,156 @@ public class DaoFolderTest {
         assertThatThrownBy(() -> diagramDao.getFolderTree(notCorrectUsername)).isInstanceOf(NotFoundException.class);
     }
 
+    /** Test lazy getFolderTree operation stops at specified depth and counts children of the last level. */
+    @Test
+    @Rollback
+    public void getFolderTreeLazy_depthOne_folderTreeGotWithCounts() throws Exception {
+        Folder root = createAndSaveFolder("root", "testUser");
+        Folder child = createAndSaveFolder("child", "testUser", root);
+        createAndSaveFolder("grandchild", "testUser", child);
+        Diagram diagram = new Diagram();
+        diagram.setName("testDiagram");
+        diagramDao.saveDiagram(diagram, root.getId());
+
+        Folder gotFolder = diagramDao.getFolderTree("testUser", 1, false, -1);
+
+        assertThat(gotFolder.getId()).isEqualTo(root.getId());
+        assertThat(gotFolder.getChildrenCount()).isEqualTo(1);
+        assertThat(gotFolder.getDiagramsCount()).isEqualTo(1);
+        assertThat(gotFolder.getDiagrams()).extracting(Diagram::getName).containsExactly("testDiagram");
+        TDiagram gotHeader = gotFolder.getDiagrams().iterator().next().toTDiagram();
+        assertThat(gotHeader.isSetNodes()).isFalse();
+        assertThat(gotHeader.isSetLinks()).isFalse();
+        assertThat(gotFolder.getChildrenFolders()).hasSize(1);
+        Folder gotChild = gotFolder.getChildrenFolders().iterator().next();
+        assertThat(gotChild.getId()).isEqualTo(child.getId());
+        assertThat(gotChild.getFolderParentId()).isEqualTo(root.getId());
+        assertThat(gotChild.getOwners()).containsExactly("testUser");
+        assertThat(gotChild.getChildrenCount()).isEqualTo(1);
+        assertThat(gotChild.getChildrenFolders()).isEmpty();
+    }
+
+    /** Test lazy getFolderTree operation loads the whole tree with children limit applied on every level. */
+    @Test
+    @Rollback
+    public void getFolderTreeLazy_wholeTree_allLevelsGot() throws Exception {
+        Folder root = createAndSaveFolder("root", "testUser");
+        Folder first = createAndSaveFolder("first", "testUser", root);
+        createAndSaveFolder("second", "testUser", root);
+        Folder grandchild = createAndSaveFolder("grandchild", "testUser", first);
+        createAndSaveFolder("leaf", "testUser", grandchild);
+        Diagram diagram = new Diagram();
+        diagram.setName("testDiagram");
+        diagramDao.saveDiagram(diagram, grandchild.getId());
+
+        Folder gotFolder = diagramDao.getFolderTree("testUser", -1, false, 1);
+
+        assertThat(gotFolder.getChildrenCount()).isEqualTo(2);
+        assertThat(gotFolder.getChildrenFolders()).extracting(Folder::getFolderName).containsExactly("first");
+        Folder gotFirst = gotFolder.getChildrenFolders().iterator().next();
+        assertThat(gotFirst.getChildrenFolders()).extracting(Folder::getId).containsExactly(grandchild.getId());
+        Folder gotGrandchild = gotFirst.getChildrenFolders().iterator().next();
+        assertThat(gotGrandchild.getFolderParentId()).isEqualTo(first.getId());
+        assertThat(gotGrandchild.getOwners()).containsExactly("testUser");
+        assertThat(gotGrandchild.getDiagrams()).extracting(Diagram::getName).containsExactly("testDiagram");
+        assertThat(gotGrandchild.getChildrenFolders()).extracting(Folder::getFolderName).containsExactly("leaf");
+        Folder gotLeaf = gotGrandchild.getChildrenFolders().iterator().next();
+        assertThat(gotLeaf.getChildrenCount()).isEqualTo(0);
+        assertThat(gotLeaf.getDiagramsCount()).isEqualTo(0);
+    }
+
+    /** Test the database used by tests runs the recursive query, so whole trees are not loaded level by level. */
+    @Test
+    public void isRecursiveQuerySupported_testDatabase_returnsTrue() {
+        assertThat(FolderTreeLoader.isRecursiveQuerySupported(sessionFactory)).isTrue();
+    }
+
+    /** Test the recursive query loads a folder shared by two parents under both of them and stops on a cycle. */
+    @Test
+    @Rollback
+    public void loadTree_recursiveQuery_sharedFolderUnderBothParents() throws Exception {
+        loadTreeWithSharedFolderAndCycle(true);
+    }
+
+    /** Test level by level loading shows a folder shared by two parents under both of them and stops on a cycle. */
+    @Test
+    @Rollback
+    public void loadTree_levelByLevel_sharedFolderUnderBothParents() throws Exception {
+        loadTreeWithSharedFolderAndCycle(false);
+    }
+
+    /** Test lazy getFolderTree operation for not existing user. */
+    @Test
+    @Rollback
+    public void getFolderTreeLazy_notCorrectUsername_throwsNotFound() {
+        String notCorrectUsername = "testUser";
+
+        assertThatThrownBy(() -> diagramDao.getFolderTree(notCorrectUsername, -1, false, -1)).
+                isInstanceOf(NotFoundException.class);
+    }
+
+    /** Test getFolderChildren operation returns the requested page of children ordered by name. */
+    @Test
+    @Rollback
+    public void getFolderChildren_offsetAndLimit_pageOfChildrenGot() throws Exception {
+        Folder root = createAndSaveFolder("root", "testUser");
+        createAndSaveFolder("a", "testUser", root);
+        Folder second = createAndSaveFolder("b", "testUser", root);
+        createAndSaveFolder("c", "testUser", root);
+
+        Folder gotFolder = diagramDao.getFolderChildren(root.getId(), 1, 1);
+
+        assertThat(gotFolder.getChildrenCount()).isEqualTo(3);
+        assertThat(gotFolder.getChildrenFolders()).extracting(Folder::getId).containsExactly(second.getId());
+    }
+
+    /** Test getFolderChildren operation returns an empty page after the last child. */
+    @Test
+    @Rollback
+    public void getFolderChildren_offsetAfterLastChild_emptyPageGot() throws Exception {
+        Folder root = createAndSaveFolder("root", "testUser");
+        createAndSaveFolder("a", "testUser", root);
+
+        Folder gotFolder = diagramDao.getFolderChildren(root.getId(), 1, 1);
+
+        assertThat(gotFolder.getChildrenCount()).isEqualTo(1);
+        assertThat(gotFolder.getChildrenFolders()).isEmpty();
+        assertThat(gotFolder.getOwners()).containsExactly("testUser");
+    }
+
+    private void loadTreeWithSharedFolderAndCycle(boolean recursive) {
+        Folder root = createAndSaveFolder("root", "testUser");
+        Folder first = createAndSaveFolder("first", "testUser", root);
+        Folder second = createAndSaveFolder("second", "testUser", root);
+        Folder shared = createAndSaveFolder("shared", "testUser", first);
+        createAndSaveFolder("leaf", "testUser", shared);
+        addChild(second.getId(), shared.getId());
+        addChild(shared.getId(), root.getId());
+
+        FolderTreeLoader loader = new FolderTreeLoader(sessionFactory.getCurrentSession(), recursive);
+        Folder gotFolder = loader.loadRootHeader("testUser");
+        loader.loadTree(gotFolder, -1, false, -1);
+
+        assertThat(gotFolder.getChildrenFolders()).extracting(Folder::getFolderName).
+                containsOnly("first", "second");
+        for (Folder gotParent : gotFolder.getChildrenFolders()) {
+            assertThat(gotParent.getChildrenFolders()).hasSize(1);
+            Folder gotShared = gotParent.getChildrenFolders().iterator().next();
+            assertThat(gotShared.getId()).isEqualTo(shared.getId());
+            assertThat(gotShared.getFolderParentId()).isEqualTo(gotParent.getId());
+            assertThat(gotShared.getOwners()).containsExactly("testUser");
+            assertThat(gotShared.getChildrenFolders()).extracting(Folder::getFolderName).containsExactly("leaf");
+        }
+    }
+
+    /** Makes an existing folder a child of another one.*/
+    private void addChild(Long parentId, Long childId) {
+        Session session = sessionFactory.getCurrentSession();
+        session.flush();
+        session.createSQLQuery("insert into folders_folders (parent_id, child_id) values (:parentId, :childId)").
+                setParameter("parentId", parentId).setParameter("childId", childId).executeUpdate();
+    }
+
     private Folder createFolder(String folderName, String username) {
         return new Folder(folderName, username);
     }
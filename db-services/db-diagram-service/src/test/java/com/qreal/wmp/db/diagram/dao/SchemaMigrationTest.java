@@ -0,0 +1,57 @@
+package com.qreal.wmp.db.diagram.dao;
+
+import com.qreal.wmp.db.support.DataSourceSettings;
+import com.qreal.wmp.db.support.DataSources;
+import org.hibernate.SessionFactory;
+import org.junit.Test;
+import org.springframework.orm.hibernate4.LocalSessionFactoryBuilder;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SchemaMigrationTest {
+
+    /** Test that schema created by migrations matches entity mappings. */
+    @Test
+    public void migrate_emptyDatabase_schemaValidatedByHibernate() throws SQLException {
+        DataSource dataSource = createDataSource("migrationValidateTest");
+
+        DataSources.migrate(dataSource, "classpath:db/migration");
+
+        LocalSessionFactoryBuilder sessionBuilder = new LocalSessionFactoryBuilder(dataSource);
+        sessionBuilder.scanPackages("com.qreal.wmp.db.diagram.model");
+        sessionBuilder.setProperty("hibernate.dialect", "org.hibernate.dialect.MySQLDialect");
+        sessionBuilder.setProperty("hibernate.hbm2ddl.auto", "validate");
+        sessionBuilder.setProperty("hibernate.cache.use_second_level_cache", "false");
+        SessionFactory sessionFactory = sessionBuilder.buildSessionFactory();
+        sessionFactory.close();
+    }
+
+    /** Test that lookup columns are indexed. */
+    @Test
+    public void migrate_emptyDatabase_lookupIndexesCreated() throws SQLException {
+        DataSource dataSource = createDataSource("migrationIndexesTest");
+
+        DataSources.migrate(dataSource, "classpath:db/migration");
+
+        try (Connection connection = dataSource.getConnection();
+             ResultSet indexes = connection.getMetaData().getIndexInfo(null, null, "NODES", false, false)) {
+            boolean found = false;
+            while (indexes.next()) {
+                found |= "IDX_NODES_DIAGRAM".equalsIgnoreCase(indexes.getString("INDEX_NAME"));
+            }
+            assertThat(found).isTrue();
+        }
+    }
+
+    private DataSource createDataSource(String name) {
+        DataSourceSettings settings = new DataSourceSettings();
+        settings.setPooled(false);
+        return DataSources.create(name, org.h2.Driver.class.getName(), "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1",
+                "sa", "", settings);
+    }
+}
@@ -0,0 +1,70 @@
+package com.qreal.wmp.db.diagram.model;
+
+import com.qreal.wmp.thrift.gen.TFolder;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FolderConverterTest {
+
+    /** Test conversion of a wide tree there and back. */
+    @Test
+    public void toTFolder_wideTree_convertedBack() {
+        Folder root = new Folder("root", "user", 0L);
+        for (long i = 1; i <= 10000; i++) {
+            Folder child = new Folder("folder" + i, "user", i);
+            child.getParentFolders().add(root);
+            root.getChildrenFolders().add(child);
+        }
+
+        TFolder tRoot = FolderConverter.toTFolder(root, "user");
+        Folder gotRoot = new Folder(tRoot);
+
+        assertThat(tRoot.getChildrenFolders()).hasSize(10000);
+        assertThat(tRoot.getChildrenFolders()).allMatch(tChild -> tChild.getFolderParentId() == 0L);
+        assertThat(gotRoot.getChildrenFolders()).hasSize(10000);
+        assertThat(gotRoot.getChildrenFolders()).allMatch(child -> child.getParentFolders().contains(gotRoot));
+    }
+
+    /** Test conversion of a folder shared by two parents. */
+    @Test
+    public void toTFolder_sharedFolder_convertedOnce() {
+        Folder shared = new Folder("shared", "user", 3L);
+        Folder first = new Folder("first", "user", 1L);
+        Folder second = new Folder("second", "user", 2L);
+        first.getChildrenFolders().add(shared);
+        second.getChildrenFolders().add(shared);
+        Folder root = new Folder("root", "user", 0L);
+        root.getChildrenFolders().add(first);
+        root.getChildrenFolders().add(second);
+
+        TFolder tRoot = FolderConverter.toTFolder(root, "user");
+
+        TFolder[] tChildren = tRoot.getChildrenFolders().toArray(new TFolder[2]);
+        assertThat(tChildren[0].getChildrenFolders().iterator().next()).
+                isSameAs(tChildren[1].getChildrenFolders().iterator().next());
+    }
+
+    /** Test conversion of a tree deeper than maximum depth. */
+    @Test
+    public void toTFolder_treeTooDeep_deeperFoldersSkipped() {
+        TFolder tRoot = new TFolder();
+        tRoot.setId(0L);
+        TFolder tFolder = tRoot;
+        for (long i = 1; i <= FolderConverter.MAX_DEPTH + 10; i++) {
+            TFolder tChild = new TFolder();
+            tChild.setId(i);
+            tFolder.addToChildrenFolders(tChild);
+            tFolder = tChild;
+        }
+
+        Folder folder = new Folder(tRoot);
+
+        int depth = 0;
+        while (!folder.getChildrenFolders().isEmpty()) {
+            folder = folder.getChildrenFolders().iterator().next();
+            depth++;
+        }
+        assertThat(depth).isEqualTo(FolderConverter.MAX_DEPTH);
+    }
+}
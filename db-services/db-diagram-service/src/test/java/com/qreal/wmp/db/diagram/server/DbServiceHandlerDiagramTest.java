@@ -1,8 +1,12 @@
 package com.qreal.wmp.db.diagram.server;
 
+import com.qreal.wmp.db.diagram.cache.DiagramCache;
 import com.qreal.wmp.db.diagram.config.AppInit;
+import com.qreal.wmp.db.diagram.dao.DiagramBatchDao;
+import com.qreal.wmp.db.diagram.dao.DiagramChunkDao;
 import com.qreal.wmp.db.diagram.dao.DiagramDao;
 import com.qreal.wmp.db.diagram.exceptions.AbortedException;
+import com.qreal.wmp.db.diagram.exceptions.ConflictException;
 import com.qreal.wmp.db.diagram.exceptions.NotFoundException;
 import com.qreal.wmp.db.diagram.model.Diagram;
 import com.qreal.wmp.thrift.gen.*;
@@ -18,6 +22,10 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.*;
@@ -30,6 +38,15 @@ public class DbServiceHandlerDiagramTest {
     @Autowired
     private DiagramDao diagramDaoMocked;
 
+    @Autowired
+    private DiagramBatchDao diagramBatchDaoMocked;
+
+    @Autowired
+    private DiagramChunkDao diagramChunkDaoMocked;
+
+    @Autowired
+    private DiagramCache diagramCache;
+
     private DiagramDbServiceHandler handler;
 
     @Autowired
@@ -44,7 +61,8 @@ public class DbServiceHandlerDiagramTest {
 
     @After
     public void deleteMocking() {
-        reset(diagramDaoMocked);
+        reset(diagramDaoMocked, diagramBatchDaoMocked, diagramChunkDaoMocked);
+        diagramCache.clear();
     }
 
     /** Test saveDiagram operation for diagram. */
@@ -83,6 +101,9 @@ public class DbServiceHandlerDiagramTest {
 
         TDiagram gotDiagram = handler.getDiagram(idDiagram);
         gotDiagram.setFolderId(idFolder);
+        //Empty nodes and links are sent set.
+        tDiagram.setNodes(new HashSet<>());
+        tDiagram.setLinks(new HashSet<>());
 
         assertThat(gotDiagram).isEqualTo(tDiagram);
     }
@@ -99,6 +120,41 @@ public class DbServiceHandlerDiagramTest {
         assertThatThrownBy(() -> handler.getDiagram(idDiagramNotCorrect)).isInstanceOf(TNotFound.class);
     }
 
+    /** Test getDiagram operation for diagram. */
+    @Test
+    @Rollback
+    public void getDiagram_calledTwice_diagramDaoCalledOnce() throws Exception {
+        long idFolder = 0L;
+        long idDiagram = 0L;
+        TDiagram tDiagram = createDiagram("testDiagram", idFolder, idDiagram);
+
+        when(diagramDaoMocked.getDiagram(idDiagram)).thenReturn(new Diagram(tDiagram));
+
+        TDiagram firstDiagram = handler.getDiagram(idDiagram);
+        TDiagram secondDiagram = handler.getDiagram(idDiagram);
+
+        verify(diagramDaoMocked, times(1)).getDiagram(idDiagram);
+        assertThat(secondDiagram).isEqualTo(firstDiagram);
+        assertThat(secondDiagram).isNotSameAs(firstDiagram);
+    }
+
+    /** Test getDiagram operation for diagram. */
+    @Test
+    @Rollback
+    public void getDiagram_afterUpdateDiagram_diagramDaoCalledAgain() throws Exception {
+        long idFolder = 0L;
+        long idDiagram = 0L;
+        TDiagram tDiagram = createDiagram("testDiagram", idFolder, idDiagram);
+
+        when(diagramDaoMocked.getDiagram(idDiagram)).thenReturn(new Diagram(tDiagram));
+
+        handler.getDiagram(idDiagram);
+        handler.updateDiagram(tDiagram);
+        handler.getDiagram(idDiagram);
+
+        verify(diagramDaoMocked, times(2)).getDiagram(idDiagram);
+    }
+
     /** Test deleteDiagram operation for diagram. */
     @Test
     @Rollback
@@ -161,6 +217,145 @@ public class DbServiceHandlerDiagramTest {
         assertThatThrownBy(() -> handler.updateDiagram(tDiagram)).isInstanceOf(TAborted.class);
     }
 
+    /** Test saveDiagrams operation for diagrams. */
+    @Test
+    @Rollback
+    public void saveDiagrams_idSetForOneDiagram_savesOthersAndReportsError() throws Exception {
+        long idFolder = 0L;
+        long idDiagram = 0L;
+        long idSaved = 1L;
+        TDiagram correctDiagram = createDiagram("correct", idFolder);
+        TDiagram diagramWithId = createDiagram("withId", idFolder, idDiagram);
+
+        when(diagramBatchDaoMocked.saveDiagrams(Collections.singletonList(new Diagram(correctDiagram)),
+                Collections.singletonList(idFolder))).thenReturn(Collections.singletonList(idSaved));
+
+        TBatchResult result = handler.saveDiagrams(Arrays.asList(diagramWithId, correctDiagram));
+
+        assertThat(result.getItems()).hasSize(2);
+        assertThat(result.getItems().get(0).isSetId()).isFalse();
+        assertThat(result.getItems().get(0).getError().getIndex()).isEqualTo(0);
+        assertThat(result.getItems().get(1).getId()).isEqualTo(idSaved);
+        assertThat(result.getItems().get(1).isSetError()).isFalse();
+    }
+
+    /** Test getDiagrams operation for diagrams. */
+    @Test
+    @Rollback
+    public void getDiagrams_oneDiagramNotExists_returnsOthersAndReportsError() throws Exception {
+        long idFolder = 0L;
+        long idDiagram = 0L;
+        long idDiagramNotCorrect = 1L;
+        TDiagram tDiagram = createDiagram("testDiagram", idFolder, idDiagram);
+
+        when(diagramBatchDaoMocked.getDiagrams(Arrays.asList(idDiagramNotCorrect, idDiagram))).
+                thenReturn(Collections.singletonList(new Diagram(tDiagram)));
+
+        TDiagramsResult result = handler.getDiagrams(Arrays.asList(idDiagramNotCorrect, idDiagram));
+
+        assertThat(result.getDiagrams()).hasSize(1);
+        assertThat(result.getDiagrams().get(0).getId()).isEqualTo(idDiagram);
+        assertThat(result.getErrors()).hasSize(1);
+        assertThat(result.getErrors().get(0).getId()).isEqualTo(idDiagramNotCorrect);
+    }
+
+    /** Test getDiagrams operation loads only diagrams missing in the cache. */
+    @Test
+    @Rollback
+    public void getDiagrams_diagramCached_loadsOnlyMissed() throws Exception {
+        long idFolder = 0L;
+        long idDiagram = 0L;
+        long idDiagramMissed = 1L;
+
+        when(diagramDaoMocked.getDiagram(idDiagram)).thenReturn(new Diagram(createDiagram("testDiagram", idFolder,
+                idDiagram)));
+        when(diagramBatchDaoMocked.getDiagrams(Collections.singletonList(idDiagramMissed))).
+                thenReturn(Collections.singletonList(new Diagram(createDiagram("missed", idFolder, idDiagramMissed))));
+
+        handler.getDiagram(idDiagram);
+        TDiagramsResult result = handler.getDiagrams(Arrays.asList(idDiagram, idDiagramMissed));
+        handler.getDiagrams(Collections.singletonList(idDiagramMissed));
+
+        assertThat(result.getDiagrams()).extracting(TDiagram::getId).containsExactly(idDiagram, idDiagramMissed);
+        assertThat(result.getErrors()).isEmpty();
+        verify(diagramBatchDaoMocked, times(1)).getDiagrams(Collections.singletonList(idDiagramMissed));
+    }
+
+    /** Test updateDiagram operation for diagram. */
+    @Test
+    @Rollback
+    public void updateDiagram_daoThrowsConflict_throwsTConflict() throws Exception {
+        long idFolder = 0L;
+        long idDiagram = 0L;
+        TDiagram testDiagram = createDiagram("testDiagram", idFolder, idDiagram);
+        testDiagram.setVersion(1L);
+
+        doThrow(new ConflictException("0", 1L, 2L, "Exception")).when(diagramDaoMocked).
+                rewriteDiagram(new Diagram(testDiagram));
+
+        assertThatThrownBy(() -> handler.updateDiagram(testDiagram)).isInstanceOf(TConflict.class);
+    }
+
+    /** Test applyDiagramPatch operation for diagram. */
+    @Test
+    @Rollback
+    public void applyDiagramPatch_daoThrowsAborted_throwsTAborted() throws Exception {
+        long idDiagram = 0L;
+        long baseVersion = 0L;
+
+        doThrow(new AbortedException("0", "Exception", "Exception")).when(diagramDaoMocked).
+                applyDiagramPatch(eq(idDiagram), eq(baseVersion), any());
+
+        assertThatThrownBy(() -> handler.applyDiagramPatch(idDiagram, baseVersion, new TDiagramPatch())).
+                isInstanceOf(TAborted.class);
+    }
+
+    /** Test getDiagramChunk operation for diagram. */
+    @Test
+    @Rollback
+    public void getDiagramChunk_daoThrowsConflict_throwsTConflict() throws Exception {
+        long idDiagram = 0L;
+        String token = "1:n:";
+
+        doThrow(new ConflictException("0", 1L, 2L, "Exception")).when(diagramChunkDaoMocked).
+                getDiagramChunk(idDiagram, token, 10);
+
+        assertThatThrownBy(() -> handler.getDiagramChunk(idDiagram, token, 10)).isInstanceOf(TConflict.class);
+    }
+
+    /** Test appendToDiagram operation for diagram. */
+    @Test
+    @Rollback
+    public void appendToDiagram_diagramCached_cacheInvalidated() throws Exception {
+        long idFolder = 0L;
+        long idDiagram = 0L;
+        long baseVersion = 0L;
+
+        when(diagramDaoMocked.getDiagram(idDiagram)).thenReturn(new Diagram(createDiagram("testDiagram", idFolder,
+                idDiagram)));
+        when(diagramChunkDaoMocked.appendToDiagram(eq(idDiagram), eq(baseVersion), any(), any())).thenReturn(1L);
+
+        handler.getDiagram(idDiagram);
+        TPatchResult result = handler.appendToDiagram(idDiagram, baseVersion,
+                Collections.singletonList(new TDefaultDiagramNode()), null);
+        handler.getDiagram(idDiagram);
+
+        assertThat(result.getVersion()).isEqualTo(1L);
+        assertThat(result.getAddedNodeIds()).hasSize(1);
+        verify(diagramDaoMocked, times(2)).getDiagram(idDiagram);
+    }
+
+    /** Test getDiagramSummaries operation for folder. */
+    @Test
+    @Rollback
+    public void getDiagramSummaries_folderNotExists_throwsTNotFound() throws Exception {
+        long idFolderNotCorrect = 0L;
+
+        doThrow(new NotFoundException("0", "Exception")).when(diagramDaoMocked).getDiagramSummaries(idFolderNotCorrect);
+
+        assertThatThrownBy(() -> handler.getDiagramSummaries(idFolderNotCorrect)).isInstanceOf(TNotFound.class);
+    }
+
     private TDiagram createDiagram(String nameDiagram, Long idFolder) {
         TDiagram tDiagram = new TDiagram();
         tDiagram.setName(nameDiagram);
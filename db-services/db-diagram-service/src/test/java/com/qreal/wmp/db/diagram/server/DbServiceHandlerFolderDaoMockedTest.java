@@ -1,5 +1,6 @@
 package com.qreal.wmp.db.diagram.server;
 
+import com.qreal.wmp.db.diagram.cache.DiagramCache;
 import com.qreal.wmp.db.diagram.config.AppInit;
 import com.qreal.wmp.db.diagram.dao.DiagramDao;
 import com.qreal.wmp.db.diagram.exceptions.AbortedException;
@@ -18,6 +19,7 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collections;
 import java.util.HashSet;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -33,6 +35,9 @@ public class DbServiceHandlerFolderDaoMockedTest {
     @Autowired
     private DiagramDao diagramDaoMocked;
 
+    @Autowired
+    private DiagramCache diagramCache;
+
     private DiagramDbServiceHandler handler;
 
     @Autowired
@@ -48,6 +53,7 @@ public class DbServiceHandlerFolderDaoMockedTest {
     @After
     public void deleteMocking() {
         reset(diagramDaoMocked);
+        diagramCache.clear();
     }
 
     /** Test saveFolder operation for diagram. */
@@ -73,6 +79,26 @@ public class DbServiceHandlerFolderDaoMockedTest {
         assertThatThrownBy(() -> handler.saveFolder(tFolder)).isInstanceOf(TIdAlreadyDefined.class);
     }
 
+    /** Test createRootFolder operation returns id of root folder. */
+    @Test
+    @Rollback
+    public void createRootFolder_correctInput_diagramDaoCalled() throws Exception {
+        when(diagramDaoMocked.createRootFolder("user")).thenReturn(1L);
+
+        assertThat(handler.createRootFolder("user")).isEqualTo(1L);
+        verify(diagramDaoMocked).createRootFolder("user");
+    }
+
+    /** Test createRootFolder operation translates exception of DAO. */
+    @Test
+    @Rollback
+    public void createRootFolder_daoAborted_throwsTAborted() throws Exception {
+        when(diagramDaoMocked.createRootFolder("user")).thenThrow(new AbortedException("user", "Aborted",
+                DiagramDao.class.getName()));
+
+        assertThatThrownBy(() -> handler.createRootFolder("user")).isInstanceOf(TAborted.class);
+    }
+
     /** Test getFolder operation for folder. */
     @Test
     @Rollback
@@ -149,6 +175,25 @@ public class DbServiceHandlerFolderDaoMockedTest {
         verify(diagramDaoMocked).deleteFolder(idFolder);
     }
 
+    /** Test deleteFolder operation invalidates only cached diagrams of the deleted folder.*/
+    @Test
+    @Rollback
+    public void deleteFolder_diagramsCached_onlyDeletedInvalidated() throws Exception {
+        long idFolder = 0L;
+        long idDeleted = 1L;
+        long idKept = 2L;
+        long generation = diagramCache.generation();
+        diagramCache.put(idDeleted, new TDiagram().setId(idDeleted), generation);
+        diagramCache.put(idKept, new TDiagram().setId(idKept), generation);
+
+        when(diagramDaoMocked.deleteFolder(idFolder)).thenReturn(Collections.singleton(idDeleted));
+
+        handler.deleteFolder(idFolder);
+
+        assertThat(diagramCache.get(idDeleted)).isNull();
+        assertThat(diagramCache.get(idKept)).isNotNull();
+    }
+
     /** Test deleteFolder operation for folder.*/
     @Test
     @Rollback
@@ -188,6 +233,35 @@ public class DbServiceHandlerFolderDaoMockedTest {
         assertThatThrownBy(() -> handler.getFolderTree(username)).isInstanceOf(TNotFound.class);
     }
 
+    /** Test getFolderTreeLazy operation passes limits to DAO and keeps counts of folder.*/
+    @Test
+    @Rollback
+    public void getFolderTreeLazy_existsFolder_returnsFolderTreeWithCounts() throws Exception {
+        String username = "testUser";
+        Long idFolder = 0L;
+        TFolder tFolder = createFolder("root", idFolder, username);
+        tFolder.setChildrenCount(2);
+        tFolder.setDiagramsCount(0);
+        Folder folder = new Folder(tFolder);
+        folder.setChildrenCount(2);
+        folder.setDiagramsCount(0);
+
+        when(diagramDaoMocked.getFolderTree(username, 1, false, 10)).thenReturn(folder);
+
+        TFolder gotFolder = handler.getFolderTreeLazy(username, 1, false, 10);
+
+        assertThat(gotFolder).isEqualTo(tFolder);
+    }
+
+    /** Test getFolderChildren operation for folder.*/
+    @Test
+    @Rollback
+    public void getFolderChildren_notExistsFolder_throwsTNotFound() throws Exception {
+        doThrow(new NotFoundException("0", "Exception")).when(diagramDaoMocked).getFolderChildren(0L, 0, 10);
+
+        assertThatThrownBy(() -> handler.getFolderChildren(0L, "testUser", 0, 10)).isInstanceOf(TNotFound.class);
+    }
+
     private TFolder createFolder(String folderName) {
         TFolder tFolder = new TFolder();
         tFolder.setFolderName(folderName);
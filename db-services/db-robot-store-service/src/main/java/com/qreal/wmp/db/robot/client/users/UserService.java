@@ -27,6 +27,12 @@ public interface UserService {
      */
     @NotNull TUser getUser(String username) throws NotFoundException, ErrorConnectionException, TException;
 
+    /**
+     * Removes a robot from user's list of robots.
+     * @return false if the user doesn't exist or doesn't own the robot
+     */
+    boolean removeRobotFromUser(String username, long robotId) throws ErrorConnectionException, TException;
+
     /**
      * Tests if user with specified name exists.
      * @param username name of user to test if exists
@@ -5,19 +5,20 @@ import com.qreal.wmp.db.robot.exceptions.ErrorConnectionException;
 import com.qreal.wmp.db.robot.exceptions.NotFoundException;
 import com.qreal.wmp.thrift.gen.TUser;
 import com.qreal.wmp.thrift.gen.UserDbService;
+import com.qreal.wmp.thrift.pool.PoolSettings;
+import com.qreal.wmp.thrift.pool.ThriftClientPool;
 import org.apache.thrift.TException;
-import org.apache.thrift.protocol.TBinaryProtocol;
-import org.apache.thrift.protocol.TProtocol;
-import org.apache.thrift.transport.TSocket;
-import org.apache.thrift.transport.TTransport;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.transaction.Transactional;
 
 /** Thrift client side of UserDBService.*/
@@ -26,9 +27,7 @@ import javax.transaction.Transactional;
 public class UserServiceImpl implements UserService {
     private static final Logger logger = LoggerFactory.getLogger(UserServiceImpl.class);
 
-    private TTransport transport;
-
-    private UserDbService.Client client;
+    private ThriftClientPool<UserDbService.Client> pool;
 
     @Value("${port.db.user}")
     private int port;
@@ -36,25 +35,28 @@ public class UserServiceImpl implements UserService {
     @Value("${path.db.user}")
     private String url;
 
-    /** Creates a connection with Thrift TServer.*/
+    @Autowired
+    private Environment environment;
+
+    /** Creates pool of connections to a Thrift TServer.*/
     @PostConstruct
     public void start() {
-        logger.info("Client UserService was created with Thrift socket on url = {}, port = {}", url, port);
-        transport = new TSocket(url, port);
-        TProtocol protocol = new TBinaryProtocol(transport);
-        client = new UserDbService.Client(protocol);
+        pool = new ThriftClientPool<>("UserDbService", url, port, new UserDbService.Client.Factory(),
+                PoolSettings.fromProperties(environment, "pool.db.user"));
+        logger.info("Client UserService was created with Thrift client pool on url = {}, port = {}", url, port);
+    }
+
+    /** Closes connections to a Thrift TServer.*/
+    @PreDestroy
+    public void stop() {
+        pool.close();
     }
 
     @Override
     @Transactional
     public void saveUser(@NotNull TUser tUser) throws AbortedException, ErrorConnectionException, TException {
         logger.trace("saveUser() was called with parameters: user = {}.", tUser.getUsername());
-        transport.open();
-        try {
-            client.saveUser(tUser);
-        } finally {
-            transport.close();
-        }
+        pool.execute(client -> client.saveUser(tUser));
         logger.trace("saveUser() successfully saved user {}.", tUser.getUsername());
     }
 
@@ -62,12 +64,7 @@ public class UserServiceImpl implements UserService {
     @Transactional
     public void updateUser(@NotNull TUser tUser) throws AbortedException, ErrorConnectionException, TException {
         logger.trace("updateUser() was called with parameters: user = {}.", tUser.getUsername());
-        transport.open();
-        try {
-            client.updateUser(tUser);
-        } finally {
-            transport.close();
-        }
+        pool.execute(client -> client.updateUser(tUser));
         logger.trace("updateUser() successfully updated user {}", tUser.getUsername());
     }
 
@@ -76,28 +73,26 @@ public class UserServiceImpl implements UserService {
     @NotNull
     public TUser getUser(String username) throws NotFoundException, ErrorConnectionException, TException {
         logger.trace("getUser() was called with parameters: username = {}.", username);
-        TUser tUser = null;
-        transport.open();
-        try {
-            tUser = client.getUser(username);
-        } finally {
-            transport.close();
-        }
+        TUser tUser = pool.call(client -> client.getUser(username));
         logger.trace("getUser() successfully returned an answer.");
         return tUser;
     }
 
+    @Override
+    @Transactional
+    public boolean removeRobotFromUser(String username, long robotId) throws ErrorConnectionException, TException {
+        logger.trace("removeRobotFromUser() was called with parameters: username = {}, robotId = {}.", username,
+                robotId);
+        boolean removed = pool.call(client -> client.removeRobotFromUser(username, robotId));
+        logger.trace("removeRobotFromUser() successfully returned an answer.");
+        return removed;
+    }
+
     @Override
     @Transactional
     public boolean isUserExists(String username) throws ErrorConnectionException, TException {
         logger.trace("isUserExists() was called with parameters: username = {}", username);
-        boolean isUserExist = false;
-        transport.open();
-        try {
-            isUserExist = client.isUserExists(username);
-        } finally {
-            transport.close();
-        }
+        boolean isUserExist = pool.call(client -> client.isUserExists(username));
         logger.trace("isUserExists() succesfully returned an answer.");
         return isUserExist;
     }
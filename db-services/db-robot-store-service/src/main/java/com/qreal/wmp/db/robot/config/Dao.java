@@ -1,11 +1,10 @@
 package com.qreal.wmp.db.robot.config;
 
-import com.qreal.wmp.db.robot.client.users.UserService;
 import com.qreal.wmp.db.robot.dao.RobotDao;
 import com.qreal.wmp.db.robot.dao.RobotDaoImpl;
+import com.qreal.wmp.db.support.outbox.Outbox;
 import org.hibernate.SessionFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
@@ -20,24 +19,18 @@ public class Dao {
     public static class ProdConfig {
         @Bean(name = "robotDao")
         @Autowired
-        public RobotDao createDao(SessionFactory sessionFactory, @Qualifier("userService") UserService userService) {
-            return new RobotDaoImpl(sessionFactory, userService);
+        public RobotDao createDao(SessionFactory sessionFactory, Outbox outbox) {
+            return new RobotDaoImpl(sessionFactory, outbox);
         }
     }
 
     @Configuration
     @Profile("testDao")
     public static class TestDaoConfig {
-        @Bean(name = "mockedUserService")
-        public UserService createUserService() {
-            return mock(UserService.class);
-        }
-
         @Bean(name = "robotDao")
         @Autowired
-        public RobotDao createDao(SessionFactory sessionFactory, @Qualifier("mockedUserService") UserService
-                userService) {
-            return new RobotDaoImpl(sessionFactory, userService);
+        public RobotDao createDao(SessionFactory sessionFactory, Outbox outbox) {
+            return new RobotDaoImpl(sessionFactory, outbox);
         }
     }
 
@@ -0,0 +1,55 @@
+package com.qreal.wmp.db.robot.config;
+
+import com.qreal.wmp.db.robot.client.users.UserService;
+import com.qreal.wmp.db.robot.dao.RobotDaoImpl;
+import com.qreal.wmp.db.support.outbox.Outbox;
+import com.qreal.wmp.db.support.outbox.OutboxRelay;
+import com.qreal.wmp.db.support.outbox.OutboxSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Configuration of outbox of events for other services and of their delivery.*/
+@Configuration
+public class Relay {
+
+    private static final Logger logger = LoggerFactory.getLogger(Relay.class);
+
+    /** Outbox table in DB of the service. Created at start, so it is available in every profile.*/
+    @Bean(name = "outbox", initMethod = "createTable")
+    @Autowired
+    public Outbox outbox(DataSource dataSource, Environment environment) {
+        return new Outbox(dataSource, OutboxSettings.fromProperties(environment, "outbox").getMaxAttempts());
+    }
+
+    @Configuration
+    @Profile("default")
+    @PropertySource("classpath:client.properties")
+    public static class ProdConfig {
+        /** Delivers events of the outbox to UserService in background.*/
+        @Bean(name = "outboxRelay", initMethod = "start", destroyMethod = "stop")
+        @Autowired
+        public OutboxRelay outboxRelay(Outbox outbox, @Qualifier("userService") UserService userService,
+                                       Environment environment) {
+            Map<String, OutboxRelay.Handler> handlers = new HashMap<>();
+            handlers.put(RobotDaoImpl.ROBOT_REMOVE_FROM_USER, event -> {
+                if (!userService.removeRobotFromUser(event.getPayload(), Long.parseLong(event.getKey()))) {
+                    //Event is delivered again after the relay stopped before removing it from outbox.
+                    logger.warn("User {} doesn't own robot {}, nothing to remove.", event.getPayload(),
+                            event.getKey());
+                }
+            });
+            return new OutboxRelay("db-robot", outbox, handlers, OutboxSettings.fromProperties(environment, "outbox"));
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package com.qreal.wmp.db.robot.config.development;
 
+import com.qreal.wmp.db.support.DataSourceSettings;
+import com.qreal.wmp.db.support.DataSources;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.core.env.Environment;
 
 import javax.sql.DataSource;
 import java.util.Properties;
@@ -10,19 +14,31 @@ import java.util.Properties;
 /**
  * Development configuration of Hibernate ORM.
  * In development used H2 in-memory database and create-drop strategy of start.
+ * Database and schema strategy are set by database.* properties, production-db profile uses file-backed database.
  */
 @Configuration
 public class DevHibernate {
 
-    /** Provides access to DB. */
+    @Autowired
+    private Environment environment;
+
+    @Value("${database.url:jdbc:h2:mem:test;DB_CLOSE_DELAY=-1;INIT=CREATE SCHEMA IF NOT EXISTS diagram}")
+    private String url;
+
+    @Value("${database.username:sa}")
+    private String username;
+
+    @Value("${database.password:}")
+    private String password;
+
+    @Value("${database.hbm2ddl:create-drop}")
+    private String hbm2ddl;
+
+    /** Provides access to DB. Pooling is configured by datasource.* properties. */
     @Bean(name = "dataSource")
     public DataSource dataSource() {
-        SimpleDriverDataSource dataSource = new SimpleDriverDataSource();
-        dataSource.setDriverClass(org.h2.Driver.class);
-        dataSource.setUsername("sa");
-        dataSource.setUrl("jdbc:h2:mem:test;DB_CLOSE_DELAY=-1;INIT=CREATE SCHEMA IF NOT EXISTS diagram");
-        dataSource.setPassword("");
-        return dataSource;
+        return DataSources.create("db-robot", org.h2.Driver.class.getName(), url, username, password,
+                DataSourceSettings.fromProperties(environment, "datasource"));
     }
 
     /** Configuration properties of DB. */
@@ -30,7 +46,7 @@ public class DevHibernate {
     public Properties getHibernateProperties() {
         Properties properties = new Properties();
         properties.put("hibernate.dialect", "org.hibernate.dialect.MySQLDialect");
-        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        properties.put("hibernate.hbm2ddl.auto", hbm2ddl);
         properties.put("hibernate.hbm2ddl.import_files", "data.sql");
         return properties;
     }
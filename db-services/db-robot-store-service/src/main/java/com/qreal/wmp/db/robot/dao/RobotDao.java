@@ -6,6 +6,9 @@ import com.qreal.wmp.db.robot.exceptions.NotFoundException;
 import com.qreal.wmp.db.robot.model.robot.RobotSerial;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collection;
+import java.util.List;
+
 /** DAO for robotDB. */
 public interface RobotDao {
     /**
@@ -21,12 +24,26 @@ public interface RobotDao {
     @NotNull
     RobotSerial getRobot(long robotId) throws NotFoundException;
 
+    /**
+     * Finds existing robots with specified ids using one query. Order of robots is not defined.
+     * @param robotIds ids of robots to find
+     */
+    @NotNull
+    List<RobotSerial> getRobots(@NotNull Collection<Long> robotIds);
+
     /**
      * Update a robot.
      * @param robot robot to updateUser (Id must be set correctly)
      */
     void updateRobot(@NotNull RobotSerial robot) throws AbortedException;
 
+    /**
+     * Saves robots without id and updates robots with id in one transaction.
+     * @return ids of robots in the order of robots
+     */
+    @NotNull
+    List<Long> saveOrUpdateRobots(@NotNull List<RobotSerial> robots) throws AbortedException;
+
     /**
      * Deletes a robot.
      * @param robotId robot to delete (Id must be set correctly).
@@ -1,13 +1,11 @@
 package com.qreal.wmp.db.robot.dao;
 
-import com.qreal.wmp.db.robot.client.users.UserService;
 import com.qreal.wmp.db.robot.exceptions.AbortedException;
 import com.qreal.wmp.db.robot.exceptions.ErrorConnectionException;
 import com.qreal.wmp.db.robot.exceptions.NotFoundException;
 import com.qreal.wmp.db.robot.model.robot.RobotSerial;
-import com.qreal.wmp.thrift.gen.TRobot;
-import com.qreal.wmp.thrift.gen.TUser;
-import org.apache.thrift.TException;
+import com.qreal.wmp.db.support.outbox.Outbox;
+import org.hibernate.HibernateException;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.jetbrains.annotations.NotNull;
@@ -15,19 +13,30 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 @Transactional
 public class RobotDaoImpl implements RobotDao {
 
+    /** Type of outbox events removing a deleted robot from its owner, key is id of robot and payload is owner.*/
+    public static final String ROBOT_REMOVE_FROM_USER = "user.robot.remove";
+
     private static final Logger logger = LoggerFactory.getLogger(RobotDaoImpl.class);
 
-    /** UserService used to resolve foreign key dependencies. */
-    private UserService userService;
+    /** Outbox of events for UserService, written in transactions of the DAO. */
+    private final Outbox outbox;
 
     private final SessionFactory sessionFactory;
 
-    public RobotDaoImpl(SessionFactory sessionFactory, UserService userService) {
+    public RobotDaoImpl(SessionFactory sessionFactory, Outbox outbox) {
         this.sessionFactory = sessionFactory;
-        this.userService = userService;
+        this.outbox = outbox;
     }
 
     /**
@@ -60,6 +69,23 @@ public class RobotDaoImpl implements RobotDao {
         return robot;
     }
 
+    /**
+     * Finds robots by Ids at local DB using one Hibernate query.
+     * @param robotIds ids of robots to find
+     */
+    @Override
+    public @NotNull List<RobotSerial> getRobots(@NotNull Collection<Long> robotIds) {
+        logger.trace("getRobots() was called with {} ids.", robotIds.size());
+        if (robotIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Session session = sessionFactory.getCurrentSession();
+        List<RobotSerial> robots = session.createQuery("from RobotSerial r where r.id in (:ids)").
+                setParameterList("ids", new HashSet<>(robotIds)).list();
+        logger.trace("getRobots() extracted {} robots successfully.", robots.size());
+        return robots;
+    }
+
     /**
      * Updates a robot at local DB using Hibernate ORM.
      * @param robot robot to updateUser (Id must be set correctly)
@@ -78,10 +104,48 @@ public class RobotDaoImpl implements RobotDao {
         logger.trace("updateRobot() successfully updated a robot");
     }
 
+    /**
+     * Saves and updates robots at local DB using Hibernate ORM in one transaction. Existence of robots to update is
+     * checked with one query before anything is written, so a missing robot aborts the whole call.
+     */
+    @Override
+    @Transactional(rollbackFor = AbortedException.class)
+    public @NotNull List<Long> saveOrUpdateRobots(@NotNull List<RobotSerial> robots) throws AbortedException {
+        logger.trace("saveOrUpdateRobots() was called with {} robots.", robots.size());
+        Session session = sessionFactory.getCurrentSession();
+        Set<Long> idsToUpdate = robots.stream().map(RobotSerial::getId).filter(Objects::nonNull).
+                collect(Collectors.toSet());
+        Set<Long> existingIds = getRobots(idsToUpdate).stream().map(RobotSerial::getId).collect(Collectors.toSet());
+        if (!existingIds.containsAll(idsToUpdate)) {
+            logger.error("Some robots with specified Ids don't exist.");
+            throw new AbortedException("Some robots with specified Ids don't exist. Use saveRobot instead.",
+                    "saveOrUpdateRobots() safely aborted.", RobotDaoImpl.class.getName());
+        }
+
+        List<Long> ids = new ArrayList<>(robots.size());
+        try {
+            for (RobotSerial robot : robots) {
+                if (robot.getId() == null) {
+                    session.save(robot);
+                } else {
+                    session.merge(robot);
+                }
+                ids.add(robot.getId());
+            }
+            session.flush();
+        } catch (HibernateException e) {
+            logger.error("saveOrUpdateRobots() encountered a problem while saving robots.", e);
+            throw new AbortedException("Robots cannot be saved.", "saveOrUpdateRobots() safely aborted.",
+                    RobotDaoImpl.class.getName(), e);
+        }
+        logger.trace("saveOrUpdateRobots() successfully saved robots.");
+        return ids;
+    }
+
     /**
      * Deletes a robot from local DB using Hibernate ORM.
-     * Loads User associated with this robot using UserService and deletes the robot from its list of robots.
-     * Consistency kept using RPC calls to UserService.
+     * The robot is removed from the list of robots of its owner by UserService later: the event is added to the
+     * outbox in the same transaction as deletion, so it is delivered if and only if the robot is deleted.
      * @param robotId robot to delete (Id must be set correctly).
      */
     @Override
@@ -90,11 +154,11 @@ public class RobotDaoImpl implements RobotDao {
         Session session = sessionFactory.getCurrentSession();
 
         RobotSerial robot = getRobotCheckingConsistency(robotId);
-        deleteRobotRecordFromUser(robot);
 
         logger.trace("Deleting robot {}", robot.getName());
         session.delete(robot);
         logger.trace("Robot {] deleted", robot.getName());
+        outbox.add(ROBOT_REMOVE_FROM_USER, String.valueOf(robotId), robot.getOwner());
 
         logger.trace("deleteRobot() successfully deleted robot with id {}", robotId);
     }
@@ -111,40 +175,6 @@ public class RobotDaoImpl implements RobotDao {
         return robot;
     }
 
-    private void deleteRobotRecordFromUser(RobotSerial robotSerial) throws AbortedException, ErrorConnectionException {
-        final String owner = robotSerial.getOwner();
-        logger.trace("Deleting record from user {}", owner);
-        TUser tUser = loadOwner(owner);
-
-        TRobot tRobot = robotSerial.toTRobot();
-        tUser.getRobots().remove(tRobot);
-
-        updateOwner(tUser);
-        logger.trace("Record from user {} deleted", robotSerial.getOwner());
-    }
-
-    private TUser loadOwner(String owner) throws ErrorConnectionException, AbortedException {
-        TUser tUser = null;
-        try {
-            tUser = userService.getUser(owner);
-        } catch (NotFoundException e) {
-            logger.error("Inconsistent state: Robot contains user with id {}, but this user doesn't exist.", owner, e);
-            throw new AbortedException("Inconsistent state: Robot contains user with id {}, but this user doesn't " +
-                    "exist.", "deleteRobot() safely aborted", RobotDaoImpl.class.getName());
-        } catch (TException e) {
-            logger.error("TException was not translated", e);
-        }
-        return  tUser;
-    }
-
-    private void updateOwner(TUser tUser) throws AbortedException, ErrorConnectionException {
-        try {
-            userService.updateUser(tUser);
-        } catch (TException e) {
-            logger.error("TException was not translated", e);
-        }
-    }
-
     /**
      * Tests if a robot exists at local DB using Hibernate ORM.
      * @param id id of a robot to test if it exists
@@ -9,6 +9,12 @@ import com.qreal.wmp.thrift.gen.*;
 import org.springframework.context.ApplicationContext;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 /** Thrift server-side handler for RobotDBService.*/
 @Transactional
 public class RobotDbServiceHandler implements RobotDbService.Iface {
@@ -44,6 +50,20 @@ public class RobotDbServiceHandler implements RobotDbService.Iface {
         return robot.toTRobot();
     }
 
+    @Override
+    public List<TRobot> getRobots(List<Long> robotIds) {
+        Map<Long, RobotSerial> found = robotDao.getRobots(robotIds).stream().
+                collect(Collectors.toMap(RobotSerial::getId, Function.identity()));
+        List<TRobot> robots = new ArrayList<>();
+        for (Long robotId : robotIds) {
+            RobotSerial robot = found.get(robotId);
+            if (robot != null) {
+                robots.add(robot.toTRobot());
+            }
+        }
+        return robots;
+    }
+
     @Override
     public void deleteRobot(long robotId) throws TAborted, TErrorConnection {
         try {
@@ -60,6 +80,16 @@ public class RobotDbServiceHandler implements RobotDbService.Iface {
         return robotDao.isExistsRobot(id);
     }
 
+    @Override
+    public List<Long> saveOrUpdateRobots(List<TRobot> tRobots) throws TAborted {
+        List<RobotSerial> robots = tRobots.stream().map(RobotSerial::new).collect(Collectors.toList());
+        try {
+            return robotDao.saveOrUpdateRobots(robots);
+        } catch (AbortedException e) {
+            throw new TAborted(e.getTextCause(), e.getMessage(), e.getFullClassName());
+        }
+    }
+
     @Override
     public void updateRobot(TRobot tRobot) throws TAborted, TIdNotDefined {
         if (!tRobot.isSetId()) {
@@ -1,13 +1,11 @@
 package com.qreal.wmp.db.robot.dao;
 
-import com.qreal.wmp.db.robot.client.users.UserService;
 import com.qreal.wmp.db.robot.config.AppInit;
 import com.qreal.wmp.db.robot.exceptions.AbortedException;
 import com.qreal.wmp.db.robot.exceptions.NotFoundException;
 import com.qreal.wmp.db.robot.model.robot.RobotSerial;
-import com.qreal.wmp.thrift.gen.TRobot;
-import com.qreal.wmp.thrift.gen.TUser;
-import org.junit.After;
+import com.qreal.wmp.db.support.outbox.Outbox;
+import com.qreal.wmp.db.support.outbox.OutboxEvent;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,12 +15,11 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.transaction.annotation.Transactional;
 
-import javax.annotation.Resource;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
-import static org.mockito.Mockito.*;
 
 @ActiveProfiles("testDao")
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -32,13 +29,8 @@ public class DaoRobotTest {
     @Autowired
     private RobotDao robotDao;
 
-    @Resource(name = "mockedUserService")
-    private UserService userServiceMocked;
-
-    @After
-    public void deleteMocking() {
-        reset(userServiceMocked);
-    }
+    @Autowired
+    private Outbox outbox;
 
     /** Test saveRobot operation for robot. */
     @Test
@@ -73,60 +65,42 @@ public class DaoRobotTest {
         assertThatThrownBy(() -> robotDao.getRobot(idRobotNotCorrect)).isInstanceOf(NotFoundException.class);
     }
 
-    /** Test deleteRobot operation for robot. */
-    @Test
-    @Rollback
-    public void deleteRobot_correctInput_deletesRobotFromDb() throws Exception {
-        RobotSerial robot = createAndSaveRobot("robot", "ssid", "owner");
-        TRobot tRobot = robot.toTRobot();
-        TUser owner = createUser("owner");
-        addRobotToUser(owner, tRobot);
-
-        robotDao.deleteRobot(tRobot.getId());
-
-        assertThatThrownBy(() -> robotDao.getRobot(tRobot.getId())).isInstanceOf(NotFoundException.class);
-    }
-
-    /** Test deleteRobot operation for robot. */
+    /** Test getRobots operation loads only existing robots. */
     @Test
     @Rollback
-    public void deleteRobot_correctInput_callFindInUserService() throws Exception {
-        RobotSerial robot = createAndSaveRobot("robot", "ssid", "owner");
-        TRobot tRobot = robot.toTRobot();
-        TUser owner = createUser("owner");
-        addRobotToUser(owner, tRobot);
-
-        robotDao.deleteRobot(tRobot.getId());
+    public void getRobots_someRobotsNotExist_gotExistingRobots() throws Exception {
+        RobotSerial first = createAndSaveRobot("first", "ssid", "owner");
+        RobotSerial second = createAndSaveRobot("second", "ssid", "owner");
+        long idRobotNotCorrect = 0L;
 
-        verify(userServiceMocked).getUser("owner");
+        assertThat(robotDao.getRobots(Arrays.asList(first.getId(), idRobotNotCorrect, second.getId()))).
+                containsOnly(first, second);
     }
 
     /** Test deleteRobot operation for robot. */
     @Test
     @Rollback
-    public void deleteRobot_correctInput_deleteRobotFromOwnerList() throws Exception {
+    public void deleteRobot_correctInput_deletesRobotFromDb() throws Exception {
         RobotSerial robot = createAndSaveRobot("robot", "ssid", "owner");
-        TRobot tRobot = robot.toTRobot();
-        TUser owner = createUser("owner");
-        addRobotToUser(owner, tRobot);
 
-        robotDao.deleteRobot(tRobot.getId());
+        robotDao.deleteRobot(robot.getId());
 
-        assertThat(owner.getRobots().isEmpty()).isTrue();
+        assertThatThrownBy(() -> robotDao.getRobot(robot.getId())).isInstanceOf(NotFoundException.class);
     }
 
-    /** Test deleteRobot operation for robot. */
+    /** Test deleteRobot operation adds event removing the robot from its owner. */
     @Test
     @Rollback
-    public void deleteRobot_correctInput_callUpdateInUserService() throws Exception {
+    public void deleteRobot_correctInput_addsRemoveFromUserEvent() throws Exception {
         RobotSerial robot = createAndSaveRobot("robot", "ssid", "owner");
-        TRobot tRobot = robot.toTRobot();
-        TUser owner = createUser("owner");
-        addRobotToUser(owner, tRobot);
 
-        robotDao.deleteRobot(tRobot.getId());
+        robotDao.deleteRobot(robot.getId());
 
-        verify(userServiceMocked).updateUser(owner);
+        List<OutboxEvent> events = outbox.fetchDue(Long.MAX_VALUE, Integer.MAX_VALUE, 10);
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getType()).isEqualTo(RobotDaoImpl.ROBOT_REMOVE_FROM_USER);
+        assertThat(events.get(0).getKey()).isEqualTo(String.valueOf(robot.getId()));
+        assertThat(events.get(0).getPayload()).isEqualTo("owner");
     }
 
     /** Test deleteRobot operation for robot. */
@@ -136,18 +110,7 @@ public class DaoRobotTest {
         long idRobotNotCorrect = 0L;
 
         assertThatThrownBy(() -> robotDao.deleteRobot(idRobotNotCorrect)).isInstanceOf(AbortedException.class);
-    }
-
-    /** Test deleteRobot operation for robot. */
-    @Test
-    @Rollback
-    public void deleteRobot_userNotExists_throwsAborted() throws Exception {
-        String owner = "owner";
-        RobotSerial testRobot = createAndSaveRobot("robot", "ssid", owner);
-
-        when(userServiceMocked.getUser(owner)).thenThrow(new NotFoundException(owner, "Exception"));
-
-        assertThatThrownBy(() -> robotDao.deleteRobot(testRobot.getId())).isInstanceOf(AbortedException.class);
+        assertThat(outbox.size()).isEqualTo(0);
     }
 
     /** Test exists operation for robot. */
@@ -182,6 +145,35 @@ public class DaoRobotTest {
         assertThat(changedRobot).isEqualTo(testRobot);
     }
 
+    /** Test saveOrUpdateRobots operation saves new robots and updates existing ones. */
+    @Test
+    @Rollback
+    public void saveOrUpdateRobots_newAndExistingRobots_idsInOrder() throws Exception {
+        RobotSerial testRobot = createAndSaveRobot("robot", "ssid", "owner");
+        RobotSerial changedRobot = createRobot("robotChanged", "ssidChanged", "owner");
+        changedRobot.setId(testRobot.getId());
+        RobotSerial newRobot = createRobot("newRobot", "ssid", "owner");
+
+        List<Long> ids = robotDao.saveOrUpdateRobots(Arrays.asList(newRobot, changedRobot));
+
+        assertThat(ids).containsExactly(newRobot.getId(), testRobot.getId());
+        assertThat(robotDao.getRobot(testRobot.getId()).getName()).isEqualTo("robotChanged");
+        assertThat(robotDao.getRobot(ids.get(0)).getName()).isEqualTo("newRobot");
+    }
+
+    /** Test saveOrUpdateRobots operation saves nothing if one of robots to update doesn't exist. */
+    @Test
+    @Rollback
+    public void saveOrUpdateRobots_robotNotExists_throwsAborted() throws Exception {
+        RobotSerial newRobot = createRobot("newRobot", "ssid", "owner");
+        RobotSerial changedRobot = createRobot("robotChanged", "ssidChanged", "owner");
+        changedRobot.setId(0L);
+
+        assertThatThrownBy(() -> robotDao.saveOrUpdateRobots(Arrays.asList(newRobot, changedRobot))).
+                isInstanceOf(AbortedException.class);
+        assertThat(newRobot.getId()).isNull();
+    }
+
     /** Test updateUser operation for robot. */
     @Test
     @Rollback
@@ -207,19 +199,4 @@ public class DaoRobotTest {
         robotSerial.setId(idRobot);
         return robotSerial;
     }
-
-    private TUser createUser(String username) {
-        TUser tUser = new TUser();
-        tUser.setUsername(username);
-        return tUser;
-    }
-
-    private void addRobotToUser(TUser tUser, TRobot tRobot) throws Exception {
-        if (tUser.getRobots() == null) {
-            tUser.setRobots(new HashSet<>());
-        }
-        tUser.getRobots().add(tRobot);
-        when(userServiceMocked.getUser(tUser.getUsername())).thenReturn(tUser);
-    }
-
 }
@@ -19,6 +19,10 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.*;
@@ -109,6 +113,28 @@ public class DbServiceHandlerRobotTest {
         assertThatThrownBy(() -> handler.getRobot(idRobotNotCorrect)).isInstanceOf(TNotFound.class);
     }
 
+    /** Test getRobots operation keeps order of ids and skips not existing robots. */
+    @Test
+    @Rollback
+    public void getRobots_someRobotsNotExist_returnsExistingInOrder() throws Exception {
+        TRobot first = createRobot("first", 1L);
+        TRobot second = createRobot("second", 2L);
+
+        when(robotDaoMocked.getRobots(Arrays.asList(2L, 3L, 1L))).
+                thenReturn(Arrays.asList(new RobotSerial(first), new RobotSerial(second)));
+
+        assertThat(handler.getRobots(Arrays.asList(2L, 3L, 1L))).containsExactly(second, first);
+    }
+
+    /** Test getRobots operation for empty list of ids. */
+    @Test
+    @Rollback
+    public void getRobots_noIds_returnsEmptyList() throws Exception {
+        when(robotDaoMocked.getRobots(Collections.emptyList())).thenReturn(Collections.emptyList());
+
+        assertThat(handler.getRobots(Collections.emptyList())).isEmpty();
+    }
+
     /** Test deleteRobot operation for robot. */
     @Test
     @Rollback
@@ -191,6 +217,32 @@ public class DbServiceHandlerRobotTest {
         assertThatThrownBy(() -> handler.updateRobot(tRobot)).isInstanceOf(TAborted.class);
     }
 
+    /** Test saveOrUpdateRobots operation for robots. */
+    @Test
+    @Rollback
+    public void saveOrUpdateRobots_correctInput_returnsIdsFromDao() throws Exception {
+        TRobot newRobot = createRobot("newRobot");
+        TRobot existingRobot = createRobot("robot", 1L);
+        List<RobotSerial> robots = Arrays.asList(new RobotSerial(newRobot), new RobotSerial(existingRobot));
+
+        when(robotDaoMocked.saveOrUpdateRobots(robots)).thenReturn(Arrays.asList(2L, 1L));
+
+        assertThat(handler.saveOrUpdateRobots(Arrays.asList(newRobot, existingRobot))).containsExactly(2L, 1L);
+    }
+
+    /** Test saveOrUpdateRobots operation for robots. */
+    @Test
+    @Rollback
+    public void saveOrUpdateRobots_daoThrowsAborted_throwsTAborted() throws Exception {
+        TRobot existingRobot = createRobot("robot", 1L);
+
+        when(robotDaoMocked.saveOrUpdateRobots(Collections.singletonList(new RobotSerial(existingRobot)))).
+                thenThrow(new AbortedException("0", "Exception", "Exception"));
+
+        assertThatThrownBy(() -> handler.saveOrUpdateRobots(Collections.singletonList(existingRobot))).
+                isInstanceOf(TAborted.class);
+    }
+
     private TRobot createRobot(String name) {
         TRobot tRobot = new TRobot();
         tRobot.setName(name);
@@ -0,0 +1,101 @@
+package com.qreal.wmp.db.user.client;
+
+import com.qreal.wmp.db.user.exceptions.AbortedException;
+import com.qreal.wmp.db.user.exceptions.ErrorConnectionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs independent calls to remote services concurrently on a bounded pool of threads.
+ * When the pool and its queue are full, calls run in the calling thread, so load is never dropped.
+ * Each call is awaited with a timeout, a call which didn't finish in time is reported as a connection error.
+ */
+public class RemoteCalls {
+
+    private static final Logger logger = LoggerFactory.getLogger(RemoteCalls.class);
+
+    /** Remote call throwing exceptions of clients of remote services.*/
+    @FunctionalInterface
+    public interface RemoteCall<T> {
+        T call() throws AbortedException, ErrorConnectionException;
+    }
+
+    private final ThreadPoolExecutor executor;
+
+    private final long timeoutMillis;
+
+    /**
+     * Creates a pool, its threads are started on demand.
+     * @param threads       maximum number of concurrently running calls
+     * @param queueSize     number of calls waiting for a free thread
+     * @param timeoutMillis time to wait for a result of each call
+     */
+    public RemoteCalls(int threads, int queueSize, long timeoutMillis) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "remote-call-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+                threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /** Starts a call, its result or exception is obtained with {@link #await(CompletableFuture)}.*/
+    public <T> CompletableFuture<T> submit(RemoteCall<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return call.call();
+            } catch (AbortedException | ErrorConnectionException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Waits for a result of a call and rethrows its exception.
+     * ErrorConnectionException is thrown if the call doesn't finish in time, the call is cancelled then.
+     */
+    public <T> T await(CompletableFuture<T> future) throws AbortedException, ErrorConnectionException {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            logger.error("Remote call didn't finish in {} ms.", timeoutMillis);
+            throw new ErrorConnectionException(RemoteCalls.class.getName(), "Remote call timed out.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ErrorConnectionException(RemoteCalls.class.getName(), "Waiting for remote call interrupted.",
+                    e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof AbortedException) {
+                throw (AbortedException) cause;
+            }
+            if (cause instanceof ErrorConnectionException) {
+                throw (ErrorConnectionException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Remote call failed.", cause);
+        }
+    }
+
+    /** Stops threads of the pool, calls already started are finished.*/
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -8,8 +8,15 @@ import org.apache.thrift.TException;
 public interface DiagramService {
 
     /**
-     * Creates root folder for a user with specified username.
+     * Creates root folder for a user with specified username unless it exists, so repeated calls are safe.
      * @param userName name of user root folder created for
+     * @return id of root folder
      */
-    void createRootFolder(String userName) throws AbortedException, ErrorConnectionException, TException;
+    long createRootFolder(String userName) throws AbortedException, ErrorConnectionException, TException;
+
+    /**
+     * Deletes a folder with its subtree.
+     * @param folderId id of folder to delete
+     */
+    void deleteFolder(long folderId) throws AbortedException, ErrorConnectionException, TException;
 }
@@ -3,20 +3,19 @@ package com.qreal.wmp.db.user.client.diagrams;
 import com.qreal.wmp.db.user.exceptions.AbortedException;
 import com.qreal.wmp.db.user.exceptions.ErrorConnectionException;
 import com.qreal.wmp.thrift.gen.DiagramDbService;
-import com.qreal.wmp.thrift.gen.TFolder;
+import com.qreal.wmp.thrift.pool.PoolSettings;
+import com.qreal.wmp.thrift.pool.ThriftClientPool;
 import org.apache.thrift.TException;
-import org.apache.thrift.protocol.TBinaryProtocol;
-import org.apache.thrift.protocol.TProtocol;
-import org.apache.thrift.transport.TSocket;
-import org.apache.thrift.transport.TTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
-import java.util.HashSet;
+import javax.annotation.PreDestroy;
 
 /** Thrift client side of DiagramDbService.*/
 @Service("diagramService")
@@ -25,9 +24,7 @@ public class DiagramServiceImpl implements DiagramService {
 
     private static final Logger logger = LoggerFactory.getLogger(DiagramServiceImpl.class);
 
-    private TTransport transport;
-
-    private DiagramDbService.Client client;
+    private ThriftClientPool<DiagramDbService.Client> pool;
 
     @Value("${port.db.diagram}")
     private int port;
@@ -35,31 +32,35 @@ public class DiagramServiceImpl implements DiagramService {
     @Value("${path.db.diagram}")
     private String url;
 
-    /** Connects to a Thrift TServer.*/
+    @Autowired
+    private Environment environment;
+
+    /** Creates pool of connections to a Thrift TServer.*/
     @PostConstruct
     public void start() {
-        logger.info("Client DiagramService was created with Thrift socket on url = {}, port = {}", url, port);
-        transport = new TSocket(url, port);
-        TProtocol protocol = new TBinaryProtocol(transport);
-        client = new DiagramDbService.Client(protocol);
+        pool = new ThriftClientPool<>("DiagramDbService", url, port, new DiagramDbService.Client.Factory(),
+                PoolSettings.fromProperties(environment, "pool.db.diagram"));
+        logger.info("Client DiagramService was created with Thrift client pool on url = {}, port = {}", url, port);
+    }
+
+    /** Closes connections to a Thrift TServer.*/
+    @PreDestroy
+    public void stop() {
+        pool.close();
     }
 
     @Override
-    public void createRootFolder(String userName)  throws AbortedException, ErrorConnectionException, TException {
+    public long createRootFolder(String userName) throws AbortedException, ErrorConnectionException, TException {
         logger.trace("createRootFolder() was called with parameters: username = {}.", userName);
-        TFolder tFolder = new TFolder();
-        tFolder.setFolderName("root");
-
-        HashSet<String> owners = new HashSet<>();
-        owners.add(userName);
-
-        tFolder.setOwners(owners);
-        transport.open();
-        try {
-            client.saveFolder(tFolder);
-        } finally {
-            transport.close();
-        }
+        long folderId = pool.call(client -> client.createRootFolder(userName));
         logger.trace("createRootFolder() created rootFolder for user {}.", userName);
+        return folderId;
+    }
+
+    @Override
+    public void deleteFolder(long folderId) throws AbortedException, ErrorConnectionException, TException {
+        logger.trace("deleteFolder() was called with parameters: folderId = {}.", folderId);
+        pool.execute(client -> client.deleteFolder(folderId));
+        logger.trace("deleteFolder() deleted folder {}.", folderId);
     }
 }
@@ -8,6 +8,8 @@ import org.apache.thrift.TException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.List;
+
 /** RobotDBService interface.*/
 public interface RobotService {
     /**
@@ -22,12 +24,25 @@ public interface RobotService {
      */
     @Nullable TRobot getRobot(long id) throws NotFoundException, ErrorConnectionException, TException;
 
+    /**
+     * Finds robots with specified Ids in one call. Not existing robots are skipped.
+     * @param ids ids of robots to find.
+     */
+    @NotNull List<TRobot> getRobots(@NotNull List<Long> ids) throws ErrorConnectionException, TException;
+
     /**
      * Updates a robot (Id must be set).
      * @param robot robot to updateUser (Id must be set correctly)
      */
     void updateRobot(@NotNull TRobot robot) throws AbortedException, ErrorConnectionException, TException;
 
+    /**
+     * Saves robots without Id and updates robots with Id in one call and one transaction.
+     * @return ids of robots in the order of robots
+     */
+    @NotNull List<Long> saveOrUpdateRobots(@NotNull List<TRobot> robots) throws AbortedException,
+            ErrorConnectionException, TException;
+
     /**
      * Deletes a robot.
      * @param id id of a robot to deleteRobot.
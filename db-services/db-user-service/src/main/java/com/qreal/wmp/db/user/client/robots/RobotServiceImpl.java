@@ -5,19 +5,21 @@ import com.qreal.wmp.db.user.exceptions.ErrorConnectionException;
 import com.qreal.wmp.db.user.exceptions.NotFoundException;
 import com.qreal.wmp.thrift.gen.RobotDbService;
 import com.qreal.wmp.thrift.gen.TRobot;
+import com.qreal.wmp.thrift.pool.PoolSettings;
+import com.qreal.wmp.thrift.pool.ThriftClientPool;
 import org.apache.thrift.TException;
-import org.apache.thrift.protocol.TBinaryProtocol;
-import org.apache.thrift.protocol.TProtocol;
-import org.apache.thrift.transport.TSocket;
-import org.apache.thrift.transport.TTransport;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
 
 /** Thrift client side of RobotDBService.*/
 @Service("robotService")
@@ -26,9 +28,7 @@ public class RobotServiceImpl implements RobotService {
 
     private static final Logger logger = LoggerFactory.getLogger(RobotServiceImpl.class);
 
-    private TTransport transport;
-
-    private RobotDbService.Client client;
+    private ThriftClientPool<RobotDbService.Client> pool;
 
     @Value("${port.db.robot}")
     private int port;
@@ -36,25 +36,27 @@ public class RobotServiceImpl implements RobotService {
     @Value("${path.db.robot}")
     private String url;
 
-    /** Connects to a Thrift TServer.*/
+    @Autowired
+    private Environment environment;
+
+    /** Creates pool of connections to a Thrift TServer.*/
     @PostConstruct
     public void start() {
-        logger.info("Client RobotService was created with Thrift socket on url = {}, port = {}", url, port);
-        transport = new TSocket(url, port);
-        TProtocol protocol = new TBinaryProtocol(transport);
-        client = new RobotDbService.Client(protocol);
+        pool = new ThriftClientPool<>("RobotDbService", url, port, new RobotDbService.Client.Factory(),
+                PoolSettings.fromProperties(environment, "pool.db.robot"));
+        logger.info("Client RobotService was created with Thrift client pool on url = {}, port = {}", url, port);
+    }
+
+    /** Closes connections to a Thrift TServer.*/
+    @PreDestroy
+    public void stop() {
+        pool.close();
     }
 
     @Override
     public long saveRobot(@NotNull TRobot robot) throws AbortedException, ErrorConnectionException, TException {
         logger.trace("saveRobot() was called with parameters: robot = {}.", robot.getName());
-        long idRobot = -1;
-        transport.open();
-        try {
-            idRobot = client.saveRobot(robot);
-        } finally {
-            transport.close();
-        }
+        long idRobot = pool.call(client -> client.saveRobot(robot));
         logger.trace("saveRobot() successfully registered robot {}", robot.getName());
         return idRobot;
     }
@@ -62,52 +64,47 @@ public class RobotServiceImpl implements RobotService {
     @Override
     public TRobot getRobot(long id) throws NotFoundException, ErrorConnectionException, TException {
         logger.trace("getRobot() called with parameters: robotId = {}.", id);
-        TRobot tRobot = null;
-        transport.open();
-        try {
-            tRobot = client.getRobot(id);
-        } finally {
-            transport.close();
-        }
+        TRobot tRobot = pool.call(client -> client.getRobot(id));
         logger.trace("getRobot() got result successfully.");
         return tRobot;
     }
 
+    @Override
+    public @NotNull List<TRobot> getRobots(@NotNull List<Long> ids) throws ErrorConnectionException, TException {
+        logger.trace("getRobots() called with {} ids.", ids.size());
+        List<TRobot> tRobots = pool.call(client -> client.getRobots(ids));
+        logger.trace("getRobots() got {} robots successfully.", tRobots.size());
+        return tRobots;
+    }
+
     @Override
     public void updateRobot(@NotNull TRobot tRobot) throws AbortedException, ErrorConnectionException, TException {
         logger.trace("updateUser() was called with parameters: tRobot = {}.", tRobot.getName());
-        transport.open();
-        try {
-            client.updateRobot(tRobot);
-        } finally {
-            transport.close();
-        }
+        pool.execute(client -> client.updateRobot(tRobot));
         logger.trace("updateUser() successfully updated robot {}", tRobot.getName());
 
     }
 
+    @Override
+    public @NotNull List<Long> saveOrUpdateRobots(@NotNull List<TRobot> robots) throws AbortedException,
+            ErrorConnectionException, TException {
+        logger.trace("saveOrUpdateRobots() was called with {} robots.", robots.size());
+        List<Long> ids = pool.call(client -> client.saveOrUpdateRobots(robots));
+        logger.trace("saveOrUpdateRobots() successfully saved {} robots", ids.size());
+        return ids;
+    }
+
     @Override
     public void deleteRobot(long id) throws AbortedException, ErrorConnectionException, TException {
         logger.trace("deleteRobot() was called with parameters: id = {}", id);
-        transport.open();
-        try {
-            client.deleteRobot(id);
-        } finally {
-            transport.close();
-        }
+        pool.execute(client -> client.deleteRobot(id));
         logger.trace("deleteRobot() successfully deleted robot {}", id);
     }
 
     @Override
     public boolean isRobotExists(long id) throws ErrorConnectionException, TException {
         logger.trace("isRobotExists() was called with parameters: robotId = {}.", id);
-        boolean isRobotExists = false;
-        transport.open();
-        try {
-            isRobotExists = client.isRobotExists(id);
-        } finally {
-            transport.close();
-        }
+        boolean isRobotExists = pool.call(client -> client.isRobotExists(id));
         logger.trace("isRobotExists() got result successfully.");
         return isRobotExists;
     }
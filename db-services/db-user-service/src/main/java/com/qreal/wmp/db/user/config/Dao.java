@@ -1,5 +1,7 @@
 package com.qreal.wmp.db.user.config;
 
+import com.qreal.wmp.db.support.outbox.Outbox;
+import com.qreal.wmp.db.user.client.RemoteCalls;
 import com.qreal.wmp.db.user.client.diagrams.DiagramService;
 import com.qreal.wmp.db.user.client.robots.RobotService;
 import com.qreal.wmp.db.user.dao.UserDao;
@@ -10,6 +12,7 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import static org.mockito.Mockito.mock;
 
@@ -21,8 +24,9 @@ public class Dao {
         @Bean(name = "userDao")
         @Autowired
         public UserDao createDao(SessionFactory sessionFactory, @Qualifier("robotService") RobotService robotService,
-                          @Qualifier("diagramService") DiagramService diagramService) {
-            return new UserDaoImpl(sessionFactory, robotService, diagramService);
+                                 @Qualifier("diagramService") DiagramService diagramService, RemoteCalls remoteCalls,
+                                 Outbox outbox, PlatformTransactionManager txManager) {
+            return new UserDaoImpl(sessionFactory, robotService, diagramService, remoteCalls, outbox, txManager);
         }
     }
 
@@ -42,8 +46,9 @@ public class Dao {
         @Bean(name = "userDao")
         @Autowired
         public UserDao createDao(SessionFactory sessionFactory, @Qualifier("mockedRobotService") RobotService
-                robotService, @Qualifier("mockedDiagramService") DiagramService diagramService) {
-            return new UserDaoImpl(sessionFactory, robotService, diagramService);
+                robotService, @Qualifier("mockedDiagramService") DiagramService diagramService,
+                                 RemoteCalls remoteCalls, Outbox outbox, PlatformTransactionManager txManager) {
+            return new UserDaoImpl(sessionFactory, robotService, diagramService, remoteCalls, outbox, txManager);
         }
     }
 
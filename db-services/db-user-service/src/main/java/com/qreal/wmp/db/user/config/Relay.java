@@ -0,0 +1,44 @@
+package com.qreal.wmp.db.user.config;
+
+import com.qreal.wmp.db.support.outbox.Outbox;
+import com.qreal.wmp.db.support.outbox.OutboxRelay;
+import com.qreal.wmp.db.support.outbox.OutboxSettings;
+import com.qreal.wmp.db.user.client.diagrams.DiagramService;
+import com.qreal.wmp.db.user.dao.UserDaoImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Configuration of outbox of events for other services and of their delivery.*/
+@Configuration
+public class Relay {
+    /** Outbox table in DB of the service. Created at start, so it is available in every profile.*/
+    @Bean(name = "outbox", initMethod = "createTable")
+    @Autowired
+    public Outbox outbox(DataSource dataSource, Environment environment) {
+        return new Outbox(dataSource, OutboxSettings.fromProperties(environment, "outbox").getMaxAttempts());
+    }
+
+    @Configuration
+    @Profile("default")
+    @PropertySource("classpath:client.properties")
+    public static class ProdConfig {
+        /** Delivers events of the outbox to DiagramService in background.*/
+        @Bean(name = "outboxRelay", initMethod = "start", destroyMethod = "stop")
+        @Autowired
+        public OutboxRelay outboxRelay(Outbox outbox, @Qualifier("diagramService") DiagramService diagramService,
+                                       Environment environment) {
+            Map<String, OutboxRelay.Handler> handlers = new HashMap<>();
+            handlers.put(UserDaoImpl.ROOT_FOLDER_CREATE, event -> diagramService.createRootFolder(event.getKey()));
+            return new OutboxRelay("db-user", outbox, handlers, OutboxSettings.fromProperties(environment, "outbox"));
+        }
+    }
+}
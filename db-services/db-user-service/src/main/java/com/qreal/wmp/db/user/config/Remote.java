@@ -0,0 +1,20 @@
+package com.qreal.wmp.db.user.config;
+
+import com.qreal.wmp.db.user.client.RemoteCalls;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+
+/** Configuration of concurrent calls to remote services.*/
+@Configuration
+@PropertySource("classpath:client.properties")
+public class Remote {
+    /** Pool running independent calls to RobotService and DiagramService concurrently.*/
+    @Bean(name = "remoteCalls", destroyMethod = "close")
+    public RemoteCalls remoteCalls(@Value("${remote.calls.threads:8}") int threads,
+                                   @Value("${remote.calls.queue.size:64}") int queueSize,
+                                   @Value("${remote.calls.timeout.millis:15000}") long timeoutMillis) {
+        return new RemoteCalls(threads, queueSize, timeoutMillis);
+    }
+}
@@ -31,6 +31,12 @@ public interface UserDao {
      */
     void updateUser(@NotNull TUser user) throws AbortedException, ErrorConnectionException;
 
+    /**
+     * Removes a robot from user's list of robots. Robots are not loaded from RobotService.
+     * @return false if the user doesn't exist or doesn't own the robot
+     */
+    boolean removeRobotFromUser(String username, long robotId);
+
     /**
      * Tests if a user with specified name exists.
      * @param username name of a user to find.
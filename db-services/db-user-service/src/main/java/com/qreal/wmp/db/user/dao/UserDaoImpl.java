@@ -1,5 +1,7 @@
 package com.qreal.wmp.db.user.dao;
 
+import com.qreal.wmp.db.support.outbox.Outbox;
+import com.qreal.wmp.db.user.client.RemoteCalls;
 import com.qreal.wmp.db.user.client.diagrams.DiagramService;
 import com.qreal.wmp.db.user.client.robots.RobotService;
 import com.qreal.wmp.db.user.exceptions.AbortedException;
@@ -15,13 +17,22 @@ import org.hibernate.SessionFactory;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @Transactional
 public class UserDaoImpl implements UserDao {
+    /** Type of outbox events creating root folder of a new user, key of event is username.*/
+    public static final String ROOT_FOLDER_CREATE = "root-folder.create";
+
     private static final String ROLE_USER = "ROLE_USER";
 
     private static final Logger logger = LoggerFactory.getLogger(UserDaoImpl.class);
@@ -34,29 +45,77 @@ public class UserDaoImpl implements UserDao {
     /** DiagramService used to resolve foreign key dependencies.*/
     private DiagramService diagramService;
 
-    public UserDaoImpl(SessionFactory sessionFactory, RobotService robotService, DiagramService diagramService) {
+    /** Runs independent calls to RobotService and DiagramService concurrently.*/
+    private RemoteCalls remoteCalls;
+
+    /** Outbox of events for DiagramService, written in transactions of the DAO.*/
+    private Outbox outbox;
+
+    /** Runs local part of saving a user in its own transaction, after remote calls are done.*/
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Creates DAO of users.
+     * @param remoteCalls pool running calls to RobotService and DiagramService concurrently
+     * @param outbox      outbox retrying creation of root folders which result is unknown
+     * @param txManager   transaction manager of local DB
+     */
+    public UserDaoImpl(SessionFactory sessionFactory, RobotService robotService, DiagramService diagramService,
+                       RemoteCalls remoteCalls, Outbox outbox, PlatformTransactionManager txManager) {
         this.sessionFactory = sessionFactory;
         this.robotService = robotService;
         this.diagramService = diagramService;
+        this.remoteCalls = remoteCalls;
+        this.outbox = outbox;
+        this.transactionTemplate = new TransactionTemplate(txManager);
     }
 
     /**
      * Saves the user, user's roles and robots. At local DB all the information will be saved using Hibernate ORM.
      * User's robots will be passed for saving to RobotService, their ids will be saved with user.
      * User's roles will be saved at local DB using Hibernate ORM.
-     * Consistency kept using RPC calls to RobotsService.
+     * Robots and root folder are created concurrently. If robots fail, the root folder is deleted. If DiagramService
+     * refuses to create the root folder, saved robots are deleted. If the result of the root folder call is unknown
+     * (connection error or untranslated exception), the user is saved and creation of the root folder is retried by
+     * the outbox: the event is added in the same transaction as the user, so it is delivered if and only if the user
+     * is saved.
+     * Remote calls are made outside of a transaction, so a slow service doesn't hold a connection to local DB. The user
+     * and the event are saved in a short transaction after the calls are done.
      * @param user user to saveUser (Id must not be set)
      */
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void saveUser(@NotNull TUser user) throws AbortedException, ErrorConnectionException {
         logger.trace("saveUser() was called with parameters: user = {}.", user.getUsername());
 
-        UserSerial userSerial = saveOrUpdateRobots(user);
-        userSerial = addUserRole(userSerial);
-        createRootFolderForUser(userSerial);
-
-        Session session = sessionFactory.getCurrentSession();
-        session.save(userSerial);
+        CompletableFuture<UserSerial> robots = remoteCalls.submit(() -> saveOrUpdateRobots(user));
+        CompletableFuture<Long> rootFolder = remoteCalls.submit(() -> createRootFolderForUser(user.getUsername()));
+        UserSerial userSerial;
+        try {
+            userSerial = remoteCalls.await(robots);
+        } catch (AbortedException | ErrorConnectionException | RuntimeException e) {
+            deleteRootFolder(rootFolder, user.getUsername());
+            throw e;
+        }
+        long rootFolderId = -1;
+        try {
+            rootFolderId = remoteCalls.await(rootFolder);
+        } catch (ErrorConnectionException e) {
+            logger.warn("rootfolder {} was not confirmed, its creation will be retried.", user.getUsername(), e);
+        } catch (AbortedException | RuntimeException e) {
+            deleteSavedRobots(user, userSerial);
+            throw e;
+        }
+        UserSerial withRole = addUserRole(userSerial);
+        boolean retryRootFolder = rootFolderId < 0;
+        transactionTemplate.execute(status -> {
+            Session session = sessionFactory.getCurrentSession();
+            session.save(withRole);
+            if (retryRootFolder) {
+                outbox.add(ROOT_FOLDER_CREATE, user.getUsername(), null);
+            }
+            return null;
+        });
 
         logger.trace("saveUser() successfully saved user {}.", user.getUsername());
     }
@@ -71,13 +130,56 @@ public class UserDaoImpl implements UserDao {
         return userSerial;
     }
 
-    private void createRootFolderForUser(UserSerial userSerial) throws AbortedException, ErrorConnectionException {
+    private long createRootFolderForUser(String username) throws AbortedException, ErrorConnectionException {
+        long folderId = -1;
         try {
-            diagramService.createRootFolder(userSerial.getUsername());
+            folderId = diagramService.createRootFolder(username);
         } catch (TException e) {
             logger.error("TException was not translated", e);
         }
-        logger.trace("rootfolder {} created.", userSerial.getUsername());
+        logger.trace("rootfolder {} created.", username);
+        return folderId;
+    }
+
+    /** Compensates creation of user's root folder, if it was created.*/
+    private void deleteRootFolder(CompletableFuture<Long> rootFolder, String username) {
+        long folderId = -1;
+        try {
+            folderId = remoteCalls.await(rootFolder);
+        } catch (AbortedException | ErrorConnectionException | RuntimeException e) {
+            logger.trace("rootfolder {} was not created.", username);
+        }
+        if (folderId < 0) {
+            logger.trace("rootfolder {} is unknown, nothing to delete.", username);
+            return;
+        }
+        try {
+            diagramService.deleteFolder(folderId);
+            logger.trace("rootfolder {} deleted after failed saving of user.", username);
+        } catch (AbortedException | ErrorConnectionException | TException e) {
+            logger.error("rootfolder {} was not deleted after failed saving of user.", username, e);
+        }
+    }
+
+    /**
+     * Compensates saving of user's robots. Robots saved for the user are deleted, robots which existed before are
+     * left updated.
+     */
+    private void deleteSavedRobots(@NotNull TUser tUser, @NotNull UserSerial userSerial) {
+        Set<Long> savedIds = new HashSet<>(userSerial.getRobots());
+        if (tUser.getRobots() != null) {
+            tUser.getRobots().stream().filter(TRobot::isSetId).forEach(robot -> savedIds.remove(robot.getId()));
+        }
+        for (Long robotId : savedIds) {
+            try {
+                robotService.deleteRobot(robotId);
+                logger.trace("Robot {} of user {} deleted after failed saving of user.", robotId,
+                        tUser.getUsername());
+            } catch (AbortedException | ErrorConnectionException | TException e) {
+                logger.error("Robot {} of user {} was not deleted after failed saving of user.", robotId,
+                        tUser.getUsername(), e);
+            }
+        }
     }
 
     /**
@@ -101,32 +203,35 @@ public class UserDaoImpl implements UserDao {
 
     /**
      * Loads robots using RobotsService.
-     * Robots are loaded from RobotsService using their ids saved in UserSerial.
+     * Robots are loaded from RobotsService in one call using their ids saved in UserSerial.
      */
     private TUser loadRobots(@NotNull UserSerial userSerial) throws ErrorConnectionException {
         TUser tUser = userSerial.toTUser();
-        for (Long robotId : userSerial.getRobots()) {
-            logger.trace("Loading a robot with id {} of user {}", robotId, tUser.getUsername());
-            try {
-                TRobot robot = getRobot(robotId);
-                tUser.getRobots().add(robot);
-                logger.trace("Robot  {} of user {} loaded", robot.getName(), tUser.getUsername());
-            } catch (NotFoundException notFound) {
-                logger.error("Inconsistent state: User contains robot with id {}, but this robot doesn't exist.",
-                        robotId);
-            }
+        if (userSerial.getRobots().isEmpty()) {
+            return tUser;
+        }
+        logger.trace("Loading {} robots of user {}", userSerial.getRobots().size(), tUser.getUsername());
+        Set<Long> notFound = new HashSet<>(userSerial.getRobots());
+        for (TRobot robot : getRobots(new ArrayList<>(userSerial.getRobots()))) {
+            tUser.getRobots().add(robot);
+            notFound.remove(robot.getId());
         }
+        for (Long robotId : notFound) {
+            logger.error("Inconsistent state: User contains robot with id {}, but this robot doesn't exist.",
+                    robotId);
+        }
+        logger.trace("Robots of user {} loaded", tUser.getUsername());
         return tUser;
     }
 
-    private TRobot getRobot(long robotId) throws NotFoundException, ErrorConnectionException {
-        TRobot robot = null;
+    private List<TRobot> getRobots(List<Long> robotIds) throws ErrorConnectionException {
+        List<TRobot> robots = new ArrayList<>();
         try {
-            robot = robotService.getRobot(robotId);
+            robots = robotService.getRobots(robotIds);
         } catch (TException e) {
             logger.error("TException was not translated", e);
         }
-        return robot;
+        return robots;
     }
 
     /**
@@ -153,47 +258,57 @@ public class UserDaoImpl implements UserDao {
     }
 
     /**
-     * Saves or updates robots using RobotsService.
+     * Saves or updates robots using RobotsService in one call.
      * A robot will be updated if robot's Id is set. Otherwise a robot will be saved.
      * Ids of all robots will be saved in UserSerial robots field.
      */
     private UserSerial saveOrUpdateRobots(@NotNull TUser tUser) throws AbortedException, ErrorConnectionException {
         UserSerial userSerial = new UserSerial(tUser);
+        if (tUser.getRobots() == null || tUser.getRobots().isEmpty()) {
+            return userSerial;
+        }
 
-        for (TRobot robot : tUser.getRobots()) {
-            logger.trace("Saving robot {} of user {}.", robot.getName(), tUser.getUsername());
-            long idRobot;
-            if (!robot.isSetId()) {
-                idRobot = saveRobot(robot);
-            } else {
-                idRobot = updateRobot(robot);
-            }
-
-            userSerial.getRobots().add(idRobot);
-            logger.trace("Robot {} of user {} saved with id {}.", robot.getName(), tUser.getUsername(), robot.getId());
+        List<TRobot> robots = new ArrayList<>(tUser.getRobots());
+        logger.trace("Saving {} robots of user {}.", robots.size(), tUser.getUsername());
+        List<Long> ids = saveOrUpdateRobots(robots);
+        if (ids.size() != robots.size()) {
+            logger.error("RobotService returned {} ids for {} robots of user {}.", ids.size(), robots.size(),
+                    tUser.getUsername());
+            throw new AbortedException("Robots of user were not saved.", "Saving of user safely aborted.",
+                    UserDaoImpl.class.getName());
         }
+        userSerial.getRobots().addAll(ids);
         logger.trace("robots of user {} saved, they are now in userSerial.", userSerial.getUsername());
 
         return userSerial;
     }
 
-    private long saveRobot(TRobot tRobot) throws AbortedException, ErrorConnectionException {
-        long idRobot = -1;
+    private List<Long> saveOrUpdateRobots(List<TRobot> robots) throws AbortedException, ErrorConnectionException {
+        List<Long> ids = new ArrayList<>();
         try {
-            idRobot = robotService.saveRobot(tRobot);
+            ids = robotService.saveOrUpdateRobots(robots);
         } catch (TException e) {
             logger.error("TException was not translated", e);
         }
-        return idRobot;
+        return ids;
     }
 
-    private long updateRobot(TRobot tRobot) throws AbortedException, ErrorConnectionException {
-        try {
-            robotService.updateRobot(tRobot);
-        } catch (TException e) {
-            logger.error("TException was not translated", e);
+    /**
+     * Removes id of a robot from the user at local DB using Hibernate ORM.
+     * Only the row of the robot is deleted from the collection table on flush.
+     */
+    @Override
+    public boolean removeRobotFromUser(String username, long robotId) {
+        logger.trace("removeRobotFromUser() was called with parameters: username = {}, robotId = {}.", username,
+                robotId);
+        Session session = sessionFactory.getCurrentSession();
+        UserSerial userSerial = (UserSerial) session.get(UserSerial.class, username);
+        if (userSerial == null || !userSerial.getRobots().remove(robotId)) {
+            logger.trace("removeRobotFromUser() found no robot {} of user {}.", robotId, username);
+            return false;
         }
-        return tRobot.getId();
+        logger.trace("removeRobotFromUser() successfully removed robot {} from user {}.", robotId, username);
+        return true;
     }
 
     /**
@@ -1,16 +1,18 @@
 package com.qreal.wmp.db.user.server;
 
 import com.qreal.wmp.thrift.gen.UserDbService;
-import org.apache.thrift.server.TThreadPoolServer;
-import org.apache.thrift.transport.TServerSocket;
-import org.apache.thrift.transport.TServerTransport;
+import com.qreal.wmp.thrift.server.ServerSettings;
+import com.qreal.wmp.thrift.server.ThriftServerFactory;
+import org.apache.thrift.server.TServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
@@ -24,15 +26,16 @@ public class UserDbServer implements ApplicationContextAware {
     @Value("${port.db.user}")
     private int port;
 
+    @Autowired
+    private Environment environment;
+
     private ApplicationContext context;
 
     /** Function running TServer with a chosen processor.*/
-    private static void runTServer(UserDbService.Processor processor, int port) {
+    private static void runTServer(UserDbService.Processor processor, int port, ServerSettings settings) {
         logger.info("Starting User DB TServer on localhost on port {}.", port);
         try {
-            TServerTransport serverTransport = new TServerSocket(port);
-            TThreadPoolServer server = new TThreadPoolServer(new TThreadPoolServer.Args(serverTransport).processor
-                    (processor));
+            TServer server = ThriftServerFactory.createServer("UserDbService", processor, port, settings);
             server.serve();
             logger.info("User DB TServer started successfully.");
         } catch (Exception e) {
@@ -47,7 +50,8 @@ public class UserDbServer implements ApplicationContextAware {
             UserDbServiceHandler handler = new UserDbServiceHandler(context);
             UserDbService.Processor processor = new UserDbService.Processor(handler);
 
-            Runnable runServer = () -> runTServer(processor, port);
+            ServerSettings settings = ServerSettings.fromProperties(environment, "server");
+            Runnable runServer = () -> runTServer(processor, port, settings);
             logger.trace("Creating new thread for User DB TServer.");
 
             new Thread(runServer).start();
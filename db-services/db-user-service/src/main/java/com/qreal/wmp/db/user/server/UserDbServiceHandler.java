@@ -60,6 +60,11 @@ public class UserDbServiceHandler implements UserDbService.Iface {
         return tUser;
     }
 
+    @Override
+    public boolean removeRobotFromUser(String username, long robotId) {
+        return userDao.removeRobotFromUser(username, robotId);
+    }
+
     @Override
     public boolean isUserExists(String username) {
         return userDao.isExistsUser(username);
@@ -0,0 +1,63 @@
+package com.qreal.wmp.db.user.client;
+
+import com.qreal.wmp.db.user.exceptions.AbortedException;
+import com.qreal.wmp.db.user.exceptions.ErrorConnectionException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RemoteCallsTest {
+
+    private final RemoteCalls remoteCalls = new RemoteCalls(2, 4, 1000);
+
+    @After
+    public void close() {
+        remoteCalls.close();
+    }
+
+    /** Test calls waiting for each other finish, so they run concurrently. */
+    @Test
+    public void await_callsWaitForEachOther_bothFinished() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        CompletableFuture<Boolean> first = remoteCalls.submit(() -> awaitOther(started));
+        CompletableFuture<Boolean> second = remoteCalls.submit(() -> awaitOther(started));
+
+        assertThat(remoteCalls.await(first)).isTrue();
+        assertThat(remoteCalls.await(second)).isTrue();
+    }
+
+    /** Test exception of a call is rethrown by await. */
+    @Test
+    public void await_callThrowsAborted_throwsAborted() {
+        CompletableFuture<Object> call = remoteCalls.submit(() -> {
+            throw new AbortedException("0", "Exception", "Exception");
+        });
+
+        assertThatThrownBy(() -> remoteCalls.await(call)).isInstanceOf(AbortedException.class);
+    }
+
+    /** Test a call not finished in time is reported as connection error. */
+    @Test
+    public void await_callTimedOut_throwsErrorConnection() {
+        CountDownLatch otherNeverStarts = new CountDownLatch(2);
+        CompletableFuture<Boolean> call = remoteCalls.submit(() -> awaitOther(otherNeverStarts));
+
+        assertThatThrownBy(() -> remoteCalls.await(call)).isInstanceOf(ErrorConnectionException.class);
+    }
+
+    private static boolean awaitOther(CountDownLatch latch) {
+        latch.countDown();
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
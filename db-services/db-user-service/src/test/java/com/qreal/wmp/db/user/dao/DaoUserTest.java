@@ -1,5 +1,7 @@
 package com.qreal.wmp.db.user.dao;
 
+import com.qreal.wmp.db.support.outbox.Outbox;
+import com.qreal.wmp.db.support.outbox.OutboxEvent;
 import com.qreal.wmp.db.user.client.diagrams.DiagramService;
 import com.qreal.wmp.db.user.client.robots.RobotService;
 import com.qreal.wmp.db.user.config.AppInit;
@@ -20,7 +22,9 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -41,6 +45,9 @@ public class DaoUserTest {
     @Resource(name = "mockedDiagramService")
     private DiagramService diagramServiceMocked;
 
+    @Autowired
+    private Outbox outbox;
+
     @After
     public void deleteMocking() {
         reset(robotServiceMocked);
@@ -57,10 +64,12 @@ public class DaoUserTest {
         TRobot tRobot = createRobot("robot", "ssid", tUser.getUsername());
         addRobotToUser(tRobot, tUser);
 
-        when(robotServiceMocked.saveRobot(tRobot)).thenReturn(idRobot);
+        when(robotServiceMocked.saveOrUpdateRobots(Collections.singletonList(tRobot))).
+                thenReturn(Collections.singletonList(idRobot));
         userDao.saveUser(tUser);
 
-        when(robotServiceMocked.getRobot(idRobot)).thenReturn(tRobot);
+        when(robotServiceMocked.getRobots(Collections.singletonList(idRobot))).
+                thenReturn(Collections.singletonList(tRobot));
         TUser gotUser = userDao.getUser("username");
         //To add id we need to recalculate hash. So we need to create whole new object
         updateUserRolesIds(tUser, gotUser);
@@ -78,16 +87,37 @@ public class DaoUserTest {
         TRobot tRobot = createRobot("robot", "ssid", tUser.getUsername());
         addRobotToUser(tRobot, tUser);
 
-        when(robotServiceMocked.saveRobot(tRobot)).thenReturn(idRobot);
+        when(robotServiceMocked.saveOrUpdateRobots(Collections.singletonList(tRobot))).
+                thenReturn(Collections.singletonList(idRobot));
         userDao.saveUser(tUser);
 
-        when(robotServiceMocked.getRobot(idRobot)).thenReturn(tRobot);
-        TUser gotUser = userDao.getUser("username");
+        verify(diagramServiceMocked).createRootFolder(tUser.getUsername());
+        assertThat(outbox.size()).isEqualTo(0);
+    }
 
-        //To add id we need to recalculate hash. So we need to create whole new object
-        updateUserRolesIds(tUser, gotUser);
+    /** Test saveUser operation retries creation of root folder if its result is unknown. */
+    @Test
+    @Rollback
+    public void saveUser_clientDiagramThrowsErrorConnection_addsRootFolderEvent() throws Exception {
+        TUser tUser = createUser("username", "password", true);
+        addRoleToUser(tUser, "ROLE_USER");
+        long idRobot = 0L;
+        TRobot tRobot = createRobot("robot", "ssid", tUser.getUsername());
+        addRobotToUser(tRobot, tUser);
 
-        verify(diagramServiceMocked).createRootFolder(tUser.getUsername());
+        when(robotServiceMocked.saveOrUpdateRobots(Collections.singletonList(tRobot))).
+                thenReturn(Collections.singletonList(idRobot));
+        doThrow(new ErrorConnectionException("0", "Exception")).when(diagramServiceMocked).
+                createRootFolder(tUser.getUsername());
+        userDao.saveUser(tUser);
+
+        assertThat(userDao.isExistsUser(tUser.getUsername())).isTrue();
+        verify(robotServiceMocked, never()).deleteRobot(anyLong());
+
+        List<OutboxEvent> events = outbox.fetchDue(Long.MAX_VALUE, Integer.MAX_VALUE, 10);
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getType()).isEqualTo(UserDaoImpl.ROOT_FOLDER_CREATE);
+        assertThat(events.get(0).getKey()).isEqualTo(tUser.getUsername());
     }
 
     /** Test saveUser operation for user. */
@@ -100,16 +130,18 @@ public class DaoUserTest {
         TRobot tRobot = createRobot("robot", "ssid", tUser.getUsername());
         addRobotToUser(tRobot, tUser);
 
-        when(robotServiceMocked.saveRobot(tRobot)).thenReturn(idRobot);
+        when(robotServiceMocked.saveOrUpdateRobots(Collections.singletonList(tRobot))).
+                thenReturn(Collections.singletonList(idRobot));
         userDao.saveUser(tUser);
 
-        when(robotServiceMocked.getRobot(idRobot)).thenReturn(tRobot);
+        when(robotServiceMocked.getRobots(Collections.singletonList(idRobot))).
+                thenReturn(Collections.singletonList(tRobot));
         TUser gotUser = userDao.getUser("username");
 
         //To add id we need to recalculate hash. So we need to create whole new object
         updateUserRolesIds(tUser, gotUser);
 
-        verify(robotServiceMocked).saveRobot(tRobot);
+        verify(robotServiceMocked).saveOrUpdateRobots(Collections.singletonList(tRobot));
     }
 
     /** Test saveUser operation for user. */
@@ -121,11 +153,29 @@ public class DaoUserTest {
         TRobot tRobot = createRobot("robot", "ssid", tUser.getUsername());
         addRobotToUser(tRobot, tUser);
 
-        when(robotServiceMocked.saveRobot(tRobot)).thenThrow(new AbortedException("0", "Exception", "Exception"));
+        when(robotServiceMocked.saveOrUpdateRobots(Collections.singletonList(tRobot))).
+                thenThrow(new AbortedException("0", "Exception", "Exception"));
 
         assertThatThrownBy(() -> userDao.saveUser(tUser)).isInstanceOf(AbortedException.class);
     }
 
+    /** Test saveUser operation doesn't add root folder event if robots were not saved. */
+    @Test
+    @Rollback
+    public void saveUser_clientRobotsThrowsAborted_rootFolderEventNotAdded() throws Exception {
+        TUser tUser = createUser("username", "password", true);
+        addRoleToUser(tUser, "ROLE_USER");
+        TRobot tRobot = createRobot("robot", "ssid", tUser.getUsername());
+        addRobotToUser(tRobot, tUser);
+
+        when(robotServiceMocked.saveOrUpdateRobots(Collections.singletonList(tRobot))).
+                thenThrow(new AbortedException("0", "Exception", "Exception"));
+
+        assertThatThrownBy(() -> userDao.saveUser(tUser)).isInstanceOf(AbortedException.class);
+        assertThat(userDao.isExistsUser(tUser.getUsername())).isFalse();
+        assertThat(outbox.size()).isEqualTo(0);
+    }
+
     /** Test saveUser operation for user. */
     @Test
     @Rollback
@@ -136,7 +186,8 @@ public class DaoUserTest {
         TRobot tRobot = createRobot("robot", "ssid", tUser.getUsername());
         addRobotToUser(tRobot, tUser);
 
-        when(robotServiceMocked.saveRobot(tRobot)).thenReturn(idRobot);
+        when(robotServiceMocked.saveOrUpdateRobots(Collections.singletonList(tRobot))).
+                thenReturn(Collections.singletonList(idRobot));
 
         doThrow(new AbortedException("0", "Exception", "Exception")).when(diagramServiceMocked).
                 createRootFolder(tUser.getUsername());
@@ -144,34 +195,58 @@ public class DaoUserTest {
         assertThatThrownBy(() -> userDao.saveUser(tUser)).isInstanceOf(AbortedException.class);
     }
 
-    /** Test saveUser operation for user. */
+    /** Test saveUser operation deletes created root folder if robots were not saved. */
     @Test
     @Rollback
-    public void saveUser_clientRobotsThrowsErrorConnection_throwsErrorConnection() throws Exception {
+    public void saveUser_clientRobotsThrowsAborted_deletesRootFolder() throws Exception {
         TUser tUser = createUser("username", "password", true);
         addRoleToUser(tUser, "ROLE_USER");
+        long idRootFolder = 1L;
         TRobot tRobot = createRobot("robot", "ssid", tUser.getUsername());
         addRobotToUser(tRobot, tUser);
 
-        when(robotServiceMocked.saveRobot(tRobot)).thenThrow(new ErrorConnectionException("0", "Exception"));
+        when(robotServiceMocked.saveOrUpdateRobots(Collections.singletonList(tRobot))).
+                thenThrow(new AbortedException("0", "Exception", "Exception"));
+        when(diagramServiceMocked.createRootFolder(tUser.getUsername())).thenReturn(idRootFolder);
 
-        assertThatThrownBy(() -> userDao.saveUser(tUser)).isInstanceOf(ErrorConnectionException.class);
+        assertThatThrownBy(() -> userDao.saveUser(tUser)).isInstanceOf(AbortedException.class);
+        verify(diagramServiceMocked).deleteFolder(idRootFolder);
+        assertThat(userDao.isExistsUser(tUser.getUsername())).isFalse();
     }
 
-    /** Test saveUser operation for user. */
+    /** Test saveUser operation deletes saved robots if root folder was not created. */
     @Test
     @Rollback
-    public void saveUser_clientDiagramThrowsErrorConnection_throwsErrorConnection() throws Exception {
+    public void saveUser_clientDiagramThrowsAborted_deletesSavedRobots() throws Exception {
         TUser tUser = createUser("username", "password", true);
         addRoleToUser(tUser, "ROLE_USER");
         long idRobot = 0L;
         TRobot tRobot = createRobot("robot", "ssid", tUser.getUsername());
         addRobotToUser(tRobot, tUser);
 
-        when(robotServiceMocked.saveRobot(tRobot)).thenReturn(idRobot);
-        doThrow(new ErrorConnectionException("0", "Exception")).when(diagramServiceMocked).
+        when(robotServiceMocked.saveOrUpdateRobots(Collections.singletonList(tRobot))).
+                thenReturn(Collections.singletonList(idRobot));
+        doThrow(new AbortedException("0", "Exception", "Exception")).when(diagramServiceMocked).
                 createRootFolder(tUser.getUsername());
 
+        assertThatThrownBy(() -> userDao.saveUser(tUser)).isInstanceOf(AbortedException.class);
+        verify(robotServiceMocked).deleteRobot(idRobot);
+        verify(diagramServiceMocked, never()).deleteFolder(anyLong());
+        assertThat(outbox.size()).isEqualTo(0);
+    }
+
+    /** Test saveUser operation for user. */
+    @Test
+    @Rollback
+    public void saveUser_clientRobotsThrowsErrorConnection_throwsErrorConnection() throws Exception {
+        TUser tUser = createUser("username", "password", true);
+        addRoleToUser(tUser, "ROLE_USER");
+        TRobot tRobot = createRobot("robot", "ssid", tUser.getUsername());
+        addRobotToUser(tRobot, tUser);
+
+        when(robotServiceMocked.saveOrUpdateRobots(Collections.singletonList(tRobot))).
+                thenThrow(new ErrorConnectionException("0", "Exception"));
+
         assertThatThrownBy(() -> userDao.saveUser(tUser)).isInstanceOf(ErrorConnectionException.class);
     }
 
@@ -184,10 +259,12 @@ public class DaoUserTest {
         long idRobot = 0L;
         TRobot tRobot = createRobot("robot", "ssid", tUser.getUsername());
         addRobotToUser(tRobot, tUser);
-        when(robotServiceMocked.saveRobot(tRobot)).thenReturn(idRobot);
+        when(robotServiceMocked.saveOrUpdateRobots(Collections.singletonList(tRobot))).
+                thenReturn(Collections.singletonList(idRobot));
         userDao.saveUser(tUser);
 
-        when(robotServiceMocked.getRobot(idRobot)).thenReturn(tRobot);
+        when(robotServiceMocked.getRobots(Collections.singletonList(idRobot))).
+                thenReturn(Collections.singletonList(tRobot));
         TUser gotUser = userDao.getUser("username");
 
         //To add id we need to recalculate hash. So we need to create whole new object
@@ -216,9 +293,11 @@ public class DaoUserTest {
         TRobot tRobot = createRobot("robot", "ssid", tUser.getUsername());
         addRobotToUser(tRobot, tUser);
 
-        when(robotServiceMocked.saveRobot(tRobot)).thenReturn(idRobot);
+        when(robotServiceMocked.saveOrUpdateRobots(Collections.singletonList(tRobot))).
+                thenReturn(Collections.singletonList(idRobot));
         userDao.saveUser(tUser);
-        when(robotServiceMocked.getRobot(idRobot)).thenThrow(new ErrorConnectionException("0", "Exception"));
+        when(robotServiceMocked.getRobots(Collections.singletonList(idRobot))).
+                thenThrow(new ErrorConnectionException("0", "Exception"));
 
         assertThatThrownBy(() -> userDao.getUser(username)).isInstanceOf(ErrorConnectionException.class);
     }
@@ -234,10 +313,12 @@ public class DaoUserTest {
         TRobot tRobot = createRobot("robot", "ssid", tUser.getUsername());
         addRobotToUser(tRobot, tUser);
 
-        when(robotServiceMocked.saveRobot(tRobot)).thenReturn(idRobot);
+        when(robotServiceMocked.saveOrUpdateRobots(Collections.singletonList(tRobot))).
+                thenReturn(Collections.singletonList(idRobot));
         userDao.saveUser(tUser);
 
-        when(robotServiceMocked.getRobot(idRobot)).thenReturn(tRobot);
+        when(robotServiceMocked.getRobots(Collections.singletonList(idRobot))).
+                thenReturn(Collections.singletonList(tRobot));
         TUser gotUser = userDao.getUser("username");
         //To add id we need to recalculate hash. So we need to create whole new object
         updateUserRolesIds(tUser, gotUser);
@@ -249,7 +330,10 @@ public class DaoUserTest {
         TRobot tRobotChanged = createRobot("robotChanged", "ssidChanhed", tUser.getUsername(), idRobot);
         addRobotToUser(tRobotChanged, tUserChanged);
 
-        when(robotServiceMocked.getRobot(idRobot)).thenReturn(tRobotChanged);
+        when(robotServiceMocked.getRobots(Collections.singletonList(idRobot))).
+                thenReturn(Collections.singletonList(tRobotChanged));
+        when(robotServiceMocked.saveOrUpdateRobots(Collections.singletonList(tRobotChanged))).
+                thenReturn(Collections.singletonList(idRobot));
 
         userDao.updateUser(tUserChanged);
 
@@ -271,10 +355,12 @@ public class DaoUserTest {
         TRobot tRobot = createRobot("robot", "ssid", tUser.getUsername());
         addRobotToUser(tRobot, tUser);
 
-        when(robotServiceMocked.saveRobot(tRobot)).thenReturn(idRobot);
+        when(robotServiceMocked.saveOrUpdateRobots(Collections.singletonList(tRobot))).
+                thenReturn(Collections.singletonList(idRobot));
         userDao.saveUser(tUser);
 
-        when(robotServiceMocked.getRobot(idRobot)).thenReturn(tRobot);
+        when(robotServiceMocked.getRobots(Collections.singletonList(idRobot))).
+                thenReturn(Collections.singletonList(tRobot));
         TUser gotUser = userDao.getUser("username");
         //To add id we need to recalculate hash. So we need to create whole new object
         updateUserRolesIds(tUser, gotUser);
@@ -286,7 +372,10 @@ public class DaoUserTest {
         TRobot tRobotChanged = createRobot("robotChanged", "ssidChanhed", tUser.getUsername(), idRobot);
         addRobotToUser(tRobotChanged, tUserChanged);
 
-        when(robotServiceMocked.getRobot(idRobot)).thenReturn(tRobotChanged);
+        when(robotServiceMocked.getRobots(Collections.singletonList(idRobot))).
+                thenReturn(Collections.singletonList(tRobotChanged));
+        when(robotServiceMocked.saveOrUpdateRobots(Collections.singletonList(tRobotChanged))).
+                thenReturn(Collections.singletonList(idRobot));
 
         userDao.updateUser(tUserChanged);
 
@@ -295,7 +384,7 @@ public class DaoUserTest {
         updateUserRolesIds(tUserChanged, gotUser);
 
 
-        verify(robotServiceMocked).updateRobot(tRobotChanged);
+        verify(robotServiceMocked).saveOrUpdateRobots(Collections.singletonList(tRobotChanged));
     }
 
     /** Test deleteRobot operation for user. */
@@ -317,10 +406,12 @@ public class DaoUserTest {
         TRobot tRobot = createRobot("robot", "ssid", tUser.getUsername());
         addRobotToUser(tRobot, tUser);
 
-        when(robotServiceMocked.saveRobot(tRobot)).thenReturn(idRobot);
+        when(robotServiceMocked.saveOrUpdateRobots(Collections.singletonList(tRobot))).
+                thenReturn(Collections.singletonList(idRobot));
         userDao.saveUser(tUser);
 
-        when(robotServiceMocked.getRobot(idRobot)).thenReturn(tRobot);
+        when(robotServiceMocked.getRobots(Collections.singletonList(idRobot))).
+                thenReturn(Collections.singletonList(tRobot));
         TUser gotUser = userDao.getUser("username");
         //To add id we need to recalculate hash. So we need to create whole new object
         updateUserRolesIds(tUser, gotUser);
@@ -331,8 +422,8 @@ public class DaoUserTest {
         TRobot tRobotChanged = createRobot("robotChanged", "ssidChanhed", tUser.getUsername(), idRobot);
         addRobotToUser(tRobotChanged, tUserChanged);
 
-        doThrow(new AbortedException("0", "Exception", "Exception")).when(robotServiceMocked).
-                updateRobot(tRobotChanged);
+        when(robotServiceMocked.saveOrUpdateRobots(Collections.singletonList(tRobotChanged))).
+                thenThrow(new AbortedException("0", "Exception", "Exception"));
         assertThatThrownBy(() -> userDao.updateUser(tUserChanged)).isInstanceOf(AbortedException.class);
     }
 
@@ -346,10 +437,12 @@ public class DaoUserTest {
         TRobot tRobot = createRobot("robot", "ssid", tUser.getUsername());
         addRobotToUser(tRobot, tUser);
 
-        when(robotServiceMocked.saveRobot(tRobot)).thenReturn(idRobot);
+        when(robotServiceMocked.saveOrUpdateRobots(Collections.singletonList(tRobot))).
+                thenReturn(Collections.singletonList(idRobot));
         userDao.saveUser(tUser);
 
-        when(robotServiceMocked.getRobot(idRobot)).thenReturn(tRobot);
+        when(robotServiceMocked.getRobots(Collections.singletonList(idRobot))).
+                thenReturn(Collections.singletonList(tRobot));
         TUser gotUser = userDao.getUser("username");
         //To add id we need to recalculate hash. So we need to create whole new object
         updateUserRolesIds(tUser, gotUser);
@@ -360,10 +453,37 @@ public class DaoUserTest {
         TRobot tRobotChanged = createRobot("robotChanged", "ssidChanhed", tUser.getUsername(), idRobot);
         addRobotToUser(tRobotChanged, tUserChanged);
 
-        doThrow(new ErrorConnectionException("0", "Exception")).when(robotServiceMocked).updateRobot(tRobotChanged);
+        when(robotServiceMocked.saveOrUpdateRobots(Collections.singletonList(tRobotChanged))).
+                thenThrow(new ErrorConnectionException("0", "Exception"));
         assertThatThrownBy(() -> userDao.updateUser(tUserChanged)).isInstanceOf(ErrorConnectionException.class);
     }
 
+    /** Test removeRobotFromUser operation removes only the robot and doesn't call RobotService. */
+    @Test
+    @Rollback
+    public void removeRobotFromUser_userOwnsRobot_robotRemoved() throws Exception {
+        TUser tUser = createUser("username", "password", true);
+        addRoleToUser(tUser, "ROLE_USER");
+        long idRobot = 0L;
+        TRobot tRobot = createRobot("robot", "ssid", tUser.getUsername());
+        addRobotToUser(tRobot, tUser);
+        when(robotServiceMocked.saveOrUpdateRobots(Collections.singletonList(tRobot))).
+                thenReturn(Collections.singletonList(idRobot));
+        userDao.saveUser(tUser);
+        reset(robotServiceMocked);
+
+        assertThat(userDao.removeRobotFromUser("username", idRobot)).isTrue();
+        assertThat(userDao.removeRobotFromUser("username", idRobot)).isFalse();
+        verifyZeroInteractions(robotServiceMocked);
+    }
+
+    /** Test removeRobotFromUser operation for not existing user. */
+    @Test
+    @Rollback
+    public void removeRobotFromUser_userNotExists_returnsFalse() {
+        assertThat(userDao.removeRobotFromUser("username", 0L)).isFalse();
+    }
+
     /** Test isExistsUser operation for user. */
     @Test
     @Rollback
@@ -376,7 +496,8 @@ public class DaoUserTest {
         TRobot tRobot = createRobot("robot", "ssid", tUser.getUsername());
         addRobotToUser(tRobot, tUser);
 
-        when(robotServiceMocked.saveRobot(tRobot)).thenReturn(idRobot);
+        when(robotServiceMocked.saveOrUpdateRobots(Collections.singletonList(tRobot))).
+                thenReturn(Collections.singletonList(idRobot));
         userDao.saveUser(tUser);
 
         assertThat(userDao.isExistsUser(username)).isTrue();
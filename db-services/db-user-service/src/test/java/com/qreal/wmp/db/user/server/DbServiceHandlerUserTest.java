@@ -168,6 +168,18 @@ public class DbServiceHandlerUserTest {
         assertThatThrownBy(() -> handler.updateUser(tUser)).isInstanceOf(TErrorConnection.class);
     }
 
+    /** Test removeRobotFromUser operation for user. */
+    @Test
+    @Rollback
+    public void removeRobotFromUser_correctInput_returnsResultOfDao() throws Exception {
+        long idRobot = 1L;
+
+        when(userDaoMocked.removeRobotFromUser("username", idRobot)).thenReturn(true);
+
+        assertThat(handler.removeRobotFromUser("username", idRobot)).isTrue();
+        verify(userDaoMocked).removeRobotFromUser("username", idRobot);
+    }
+
     private TUser createUser(String username, String password, boolean enabled) {
         TUser tUser = new TUser();
         tUser.setUsername(username);
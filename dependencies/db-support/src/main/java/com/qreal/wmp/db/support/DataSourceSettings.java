@@ -0,0 +1,58 @@
+package com.qreal.wmp.db.support;
+
+import lombok.Data;
+import org.springframework.core.env.PropertyResolver;
+
+/** Settings of a DataSource of one service.*/
+@Data
+public class DataSourceSettings {
+    /** Whether connections are pooled, otherwise a new connection is opened for each transaction.*/
+    private boolean pooled = true;
+
+    /** Maximum number of opened connections (borrowed and idle).*/
+    private int maxTotal = 16;
+
+    /** Maximum number of idle connections kept open.*/
+    private int maxIdle = 8;
+
+    /** Number of idle connections the pool tries to keep warm.*/
+    private int minIdle = 2;
+
+    /** Time to wait for a free connection when the pool is exhausted.*/
+    private long maxWaitMillis = 3000;
+
+    /** Period of the idle connections validation and of the leaked connections search.*/
+    private long evictionRunMillis = 30000;
+
+    /** Idle connections older than this are closed.*/
+    private long idleTimeoutMillis = 60000;
+
+    /** Connections borrowed for longer are considered leaked, logged and closed; zero disables leak detection.*/
+    private int leakTimeoutSeconds = 300;
+
+    /** Maximum number of prepared statements cached per connection; zero disables statements caching.*/
+    private int statementCacheSize = 100;
+
+    /**
+     * Reads settings of one DataSource, e.g. prefix "datasource" reads "datasource.max.total".
+     * Missing properties keep default values.
+     */
+    public static DataSourceSettings fromProperties(PropertyResolver properties, String prefix) {
+        DataSourceSettings settings = new DataSourceSettings();
+        settings.setPooled(properties.getProperty(prefix + ".pooled", Boolean.class, settings.isPooled()));
+        settings.setMaxTotal(properties.getProperty(prefix + ".max.total", Integer.class, settings.getMaxTotal()));
+        settings.setMaxIdle(properties.getProperty(prefix + ".max.idle", Integer.class, settings.getMaxIdle()));
+        settings.setMinIdle(properties.getProperty(prefix + ".min.idle", Integer.class, settings.getMinIdle()));
+        settings.setMaxWaitMillis(properties.getProperty(prefix + ".max.wait.millis", Long.class,
+                settings.getMaxWaitMillis()));
+        settings.setEvictionRunMillis(properties.getProperty(prefix + ".eviction.run.millis", Long.class,
+                settings.getEvictionRunMillis()));
+        settings.setIdleTimeoutMillis(properties.getProperty(prefix + ".idle.timeout.millis", Long.class,
+                settings.getIdleTimeoutMillis()));
+        settings.setLeakTimeoutSeconds(properties.getProperty(prefix + ".leak.timeout.seconds", Integer.class,
+                settings.getLeakTimeoutSeconds()));
+        settings.setStatementCacheSize(properties.getProperty(prefix + ".statement.cache.size", Integer.class,
+                settings.getStatementCacheSize()));
+        return settings;
+    }
+}
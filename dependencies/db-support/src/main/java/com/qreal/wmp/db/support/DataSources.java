@@ -0,0 +1,84 @@
+package com.qreal.wmp.db.support;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+
+/**
+ * Factory of DataSources of services using Hibernate.
+ * Pooled DataSources keep connections open between transactions, cache prepared statements and close connections
+ * not returned for too long. Pool statistics (active and idle connections, borrow wait time) are exported to JMX.
+ */
+public final class DataSources {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataSources.class);
+
+    private static final String JMX_NAME_BASE = "com.qreal.wmp:type=DataSource,name=";
+
+    private DataSources() {
+    }
+
+    /**
+     * Creates DataSource. Connections are opened lazily.
+     * Pooled DataSource should be closed with its context (Spring closes beans with close method automatically).
+     *
+     * @param name name of the DataSource used in logs and JMX
+     */
+    public static DataSource create(String name, String driverClassName, String url, String username,
+                                    String password, DataSourceSettings settings) {
+        if (!settings.isPooled()) {
+            logger.info("Not pooled DataSource {} was created for url = {}.", name, url);
+            DriverManagerDataSource dataSource = new DriverManagerDataSource(url, username, password);
+            dataSource.setDriverClassName(driverClassName);
+            return dataSource;
+        }
+
+        BasicDataSource dataSource = new BasicDataSource();
+        dataSource.setDriverClassName(driverClassName);
+        dataSource.setUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+
+        dataSource.setMaxTotal(settings.getMaxTotal());
+        dataSource.setMaxIdle(settings.getMaxIdle());
+        dataSource.setMinIdle(settings.getMinIdle());
+        dataSource.setInitialSize(settings.getMinIdle());
+        dataSource.setMaxWaitMillis(settings.getMaxWaitMillis());
+        dataSource.setTimeBetweenEvictionRunsMillis(settings.getEvictionRunMillis());
+        dataSource.setMinEvictableIdleTimeMillis(settings.getIdleTimeoutMillis());
+        dataSource.setTestWhileIdle(true);
+
+        if (settings.getLeakTimeoutSeconds() > 0) {
+            dataSource.setRemoveAbandonedOnBorrow(true);
+            dataSource.setRemoveAbandonedOnMaintenance(true);
+            dataSource.setRemoveAbandonedTimeout(settings.getLeakTimeoutSeconds());
+            dataSource.setLogAbandoned(true);
+        }
+
+        if (settings.getStatementCacheSize() > 0) {
+            dataSource.setPoolPreparedStatements(true);
+            dataSource.setMaxOpenPreparedStatements(settings.getStatementCacheSize());
+        }
+
+        dataSource.setJmxName(JMX_NAME_BASE + name);
+        logger.info("Pooled DataSource {} was created for url = {} with maxTotal = {}, statementCacheSize = {}.",
+                name, url, settings.getMaxTotal(), settings.getStatementCacheSize());
+        return dataSource;
+    }
+
+    /**
+     * Applies versioned schema migrations not applied yet, so startup cost doesn't depend on the amount of data.
+     * @param location classpath location of migration scripts, e.g. "classpath:db/migration"
+     */
+    public static void migrate(DataSource dataSource, String location) {
+        Flyway flyway = new Flyway();
+        flyway.setDataSource(dataSource);
+        flyway.setLocations(location);
+        int applied = flyway.migrate();
+        logger.info("{} schema migrations were applied from {}.", applied, location);
+    }
+}
@@ -0,0 +1,95 @@
+package com.qreal.wmp.db.support.outbox;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Table of change events to be delivered to other services.
+ * Events are written with JDBC on the DataSource of the service, so inside a Hibernate transaction they are committed
+ * or rolled back together with it. Events are delivered later by {@link OutboxRelay}.
+ */
+public class Outbox {
+
+    private static final RowMapper<OutboxEvent> EVENT_MAPPER = (resultSet, rowNumber) -> {
+        OutboxEvent event = new OutboxEvent();
+        event.setId(resultSet.getLong("id"));
+        event.setType(resultSet.getString("event_type"));
+        event.setKey(resultSet.getString("event_key"));
+        event.setPayload(resultSet.getString("payload"));
+        event.setAttempts(resultSet.getInt("attempts"));
+        return event;
+    };
+
+    private final JdbcTemplate jdbc;
+
+    /** Events failed so many times are not waiting for delivery anymore, see OutboxSettings.maxAttempts.*/
+    private final int maxAttempts;
+
+    public Outbox(DataSource dataSource, int maxAttempts) {
+        jdbc = new JdbcTemplate(dataSource);
+        this.maxAttempts = maxAttempts;
+    }
+
+    /** Creates the outbox table if it doesn't exist.*/
+    public void createTable() {
+        jdbc.execute("create table if not exists outbox (" +
+                "id bigint auto_increment primary key, " +
+                "event_type varchar(64) not null, " +
+                "event_key varchar(255) not null, " +
+                "payload varchar(4096), " +
+                "attempts int not null, " +
+                "next_attempt_millis bigint not null)");
+    }
+
+    /**
+     * Adds an event in the current transaction. The event is not added if an event of the same type with the same key
+     * is waiting for delivery. Events left in the outbox after all attempts don't block new ones.
+     * @return false if the event was not added
+     */
+    public boolean add(String type, String key, String payload) {
+        Integer waiting = jdbc.queryForObject("select count(*) from outbox where event_type = ? and event_key = ? " +
+                "and attempts < ?", Integer.class, type, key, maxAttempts);
+        if (waiting > 0) {
+            return false;
+        }
+        jdbc.update("insert into outbox (event_type, event_key, payload, attempts, next_attempt_millis) " +
+                "values (?, ?, ?, 0, ?)", type, key, payload, System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * Returns events due for delivery, oldest first.
+     * @param nowMillis   events which next attempt is later are not returned
+     * @param maxAttempts events failed so many times are not returned
+     * @param limit       maximum number of returned events
+     */
+    public List<OutboxEvent> fetchDue(long nowMillis, int maxAttempts, int limit) {
+        return jdbc.query("select id, event_type, event_key, payload, attempts from outbox " +
+                "where next_attempt_millis <= ? and attempts < ? order by id limit ?", EVENT_MAPPER, nowMillis,
+                maxAttempts, limit);
+    }
+
+    /** Removes delivered events with one batch of statements.*/
+    public void remove(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        jdbc.batchUpdate("delete from outbox where id = ?",
+                ids.stream().map(id -> new Object[] {id}).collect(Collectors.toList()));
+    }
+
+    /** Records a failed delivery of an event and the time of its next attempt.*/
+    public void postpone(long id, int attempts, long nextAttemptMillis) {
+        jdbc.update("update outbox set attempts = ?, next_attempt_millis = ? where id = ?", attempts,
+                nextAttemptMillis, id);
+    }
+
+    /** Returns number of events in the outbox, including not delivered after all attempts.*/
+    public int size() {
+        return jdbc.queryForObject("select count(*) from outbox", Integer.class);
+    }
+}
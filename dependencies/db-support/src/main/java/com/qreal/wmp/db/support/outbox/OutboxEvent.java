@@ -0,0 +1,22 @@
+package com.qreal.wmp.db.support.outbox;
+
+import lombok.Data;
+
+/** Change event waiting in an outbox for delivery to another service.*/
+@Data
+public class OutboxEvent {
+    /** Surrogate key, events are delivered in the order of ids.*/
+    private long id;
+
+    /** Type of event, selects a handler delivering the event.*/
+    private String type;
+
+    /** Idempotency key, only one not delivered event of a type may have the key.*/
+    private String key;
+
+    /** Additional data of the event, may be null.*/
+    private String payload;
+
+    /** Number of failed delivery attempts.*/
+    private int attempts;
+}
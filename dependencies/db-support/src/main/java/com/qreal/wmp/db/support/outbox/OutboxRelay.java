@@ -0,0 +1,136 @@
+package com.qreal.wmp.db.support.outbox;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers events of an outbox to other services in background.
+ * Due events are taken in batches and delivered one by one by handlers of their types. Delivered events are removed,
+ * failed ones are retried with exponential backoff and are left in the outbox after the last attempt.
+ * An event is delivered again if the relay stops before removing it, so handlers must be idempotent.
+ */
+public class OutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+    /** Delivers events of one type to another service.*/
+    @FunctionalInterface
+    public interface Handler {
+        void deliver(OutboxEvent event) throws Exception;
+    }
+
+    private final String name;
+
+    private final Outbox outbox;
+
+    private final Map<String, Handler> handlers;
+
+    private final OutboxSettings settings;
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * Creates a relay, it delivers nothing until started.
+     * @param name     name of the service, used in the name of the relay thread
+     * @param handlers handlers by types of events
+     */
+    public OutboxRelay(String name, Outbox outbox, Map<String, Handler> handlers, OutboxSettings settings) {
+        this.name = name;
+        this.outbox = outbox;
+        this.handlers = new HashMap<>(handlers);
+        this.settings = settings;
+    }
+
+    /** Starts a thread checking the outbox periodically.*/
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outbox-relay-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::relaySafely, settings.getPollMillis(), settings.getPollMillis(),
+                TimeUnit.MILLISECONDS);
+        logger.info("Outbox relay of {} started.", name);
+    }
+
+    /** Stops the relay, a batch being delivered is finished.*/
+    public void stop() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(settings.getPollMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Delivers all due events batch by batch.
+     * @return number of delivered events
+     */
+    public int relay() {
+        int delivered = 0;
+        while (true) {
+            long now = System.currentTimeMillis();
+            List<OutboxEvent> batch = outbox.fetchDue(now, settings.getMaxAttempts(), settings.getBatchSize());
+            if (batch.isEmpty()) {
+                return delivered;
+            }
+            List<Long> deliveredIds = new ArrayList<>(batch.size());
+            for (OutboxEvent event : batch) {
+                if (deliver(event)) {
+                    deliveredIds.add(event.getId());
+                } else {
+                    postpone(event, now);
+                }
+            }
+            outbox.remove(deliveredIds);
+            delivered += deliveredIds.size();
+        }
+    }
+
+    private void relaySafely() {
+        try {
+            int delivered = relay();
+            if (delivered > 0) {
+                logger.trace("Outbox relay of {} delivered {} events.", name, delivered);
+            }
+        } catch (RuntimeException e) {
+            //Exception would cancel the periodic task, events are taken again on the next run.
+            logger.error("Outbox relay of {} failed to access outbox.", name, e);
+        }
+    }
+
+    private boolean deliver(OutboxEvent event) {
+        Handler handler = handlers.get(event.getType());
+        if (handler == null) {
+            logger.error("Outbox of {} contains event {} of unknown type {}.", name, event.getId(), event.getType());
+            event.setAttempts(settings.getMaxAttempts() - 1);
+            return false;
+        }
+        try {
+            handler.deliver(event);
+            return true;
+        } catch (Exception e) {
+            logger.warn("Event {} {} of {} was not delivered, attempt {}.", event.getType(), event.getKey(), name,
+                    event.getAttempts() + 1, e);
+            return false;
+        }
+    }
+
+    private void postpone(OutboxEvent event, long now) {
+        int attempts = event.getAttempts() + 1;
+        if (attempts >= settings.getMaxAttempts()) {
+            logger.error("Event {} {} of {} was not delivered after {} attempts, it is left in outbox.",
+                    event.getType(), event.getKey(), name, attempts);
+        }
+        long backoff = Math.min(settings.getMaxBackoffMillis(),
+                settings.getBackoffMillis() << Math.min(attempts - 1, 20));
+        outbox.postpone(event.getId(), attempts, now + backoff);
+    }
+}
@@ -0,0 +1,40 @@
+package com.qreal.wmp.db.support.outbox;
+
+import lombok.Data;
+import org.springframework.core.env.PropertyResolver;
+
+/** Settings of delivery of outbox events.*/
+@Data
+public class OutboxSettings {
+    /** Delay between checks of the outbox for due events.*/
+    private long pollMillis = 1000;
+
+    /** Maximum number of events taken from the outbox at once.*/
+    private int batchSize = 100;
+
+    /** Events failed so many times are not retried anymore and are left in the outbox.*/
+    private int maxAttempts = 10;
+
+    /** Delay before the first retry, doubled after each failed attempt.*/
+    private long backoffMillis = 1000;
+
+    /** Maximum delay between retries.*/
+    private long maxBackoffMillis = 60000;
+
+    /**
+     * Reads settings of one outbox, e.g. prefix "outbox" reads "outbox.batch.size".
+     * Missing properties keep default values.
+     */
+    public static OutboxSettings fromProperties(PropertyResolver properties, String prefix) {
+        OutboxSettings settings = new OutboxSettings();
+        settings.setPollMillis(properties.getProperty(prefix + ".poll.millis", Long.class, settings.getPollMillis()));
+        settings.setBatchSize(properties.getProperty(prefix + ".batch.size", Integer.class, settings.getBatchSize()));
+        settings.setMaxAttempts(properties.getProperty(prefix + ".max.attempts", Integer.class,
+                settings.getMaxAttempts()));
+        settings.setBackoffMillis(properties.getProperty(prefix + ".backoff.millis", Long.class,
+                settings.getBackoffMillis()));
+        settings.setMaxBackoffMillis(properties.getProperty(prefix + ".max.backoff.millis", Long.class,
+                settings.getMaxBackoffMillis()));
+        return settings;
+    }
+}
@@ -0,0 +1,67 @@
+package com.qreal.wmp.db.support;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.junit.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class DataSourcesTest {
+
+    private static final String URL = "jdbc:h2:mem:dataSourcesTest;DB_CLOSE_DELAY=-1";
+
+    /** Test reading of DataSource settings with defaults. */
+    @Test
+    public void fromProperties_someSettingsDefined_readsDefinedAndKeepsDefaults() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("datasource.max.total", "32");
+        properties.put("datasource.pooled", "false");
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", properties));
+
+        DataSourceSettings settings = DataSourceSettings.fromProperties(environment, "datasource");
+
+        assertThat(settings.getMaxTotal()).isEqualTo(32);
+        assertThat(settings.isPooled()).isFalse();
+        assertThat(settings.getMinIdle()).isEqualTo(new DataSourceSettings().getMinIdle());
+    }
+
+    /** Test creation of not pooled DataSource. */
+    @Test
+    public void create_notPooled_returnsDriverManagerDataSource() {
+        DataSourceSettings settings = new DataSourceSettings();
+        settings.setPooled(false);
+
+        DataSource dataSource = DataSources.create("test", org.h2.Driver.class.getName(), URL, "sa", "", settings);
+
+        assertThat(dataSource).isInstanceOf(DriverManagerDataSource.class);
+    }
+
+    /** Test that closed connections are returned to the pool. */
+    @Test
+    public void getConnection_pooled_connectionReturnedToPool() throws SQLException {
+        DataSourceSettings settings = new DataSourceSettings();
+        settings.setMinIdle(1);
+
+        BasicDataSource dataSource = (BasicDataSource) DataSources.create("test", org.h2.Driver.class.getName(),
+                URL, "sa", "", settings);
+        try {
+            try (Connection connection = dataSource.getConnection()) {
+                assertThat(connection.isValid(1)).isTrue();
+                assertThat(dataSource.getNumActive()).isEqualTo(1);
+            }
+            assertThat(dataSource.getNumActive()).isEqualTo(0);
+            assertThat(dataSource.getNumIdle()).isGreaterThanOrEqualTo(1);
+        } finally {
+            dataSource.close();
+        }
+    }
+}
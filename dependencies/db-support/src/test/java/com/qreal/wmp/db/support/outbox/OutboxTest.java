@@ -0,0 +1,112 @@
+package com.qreal.wmp.db.support.outbox;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class OutboxTest {
+
+    private static final String URL = "jdbc:h2:mem:outboxTest;DB_CLOSE_DELAY=-1";
+
+    private static final String TYPE = "test.event";
+
+    private static final int MAX_ATTEMPTS = 10;
+
+    private final DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, "sa", "");
+
+    private final Outbox outbox = new Outbox(dataSource, MAX_ATTEMPTS);
+
+    @Before
+    public void createTable() {
+        outbox.createTable();
+    }
+
+    @After
+    public void dropTable() {
+        new JdbcTemplate(dataSource).execute("drop table outbox");
+    }
+
+    /** Test event with a key already waiting for delivery is not added again. */
+    @Test
+    public void add_sameKeyTwice_addedOnce() {
+        assertThat(outbox.add(TYPE, "key", "payload")).isTrue();
+        assertThat(outbox.add(TYPE, "key", "payload")).isFalse();
+        assertThat(outbox.add("other.event", "key", null)).isTrue();
+
+        assertThat(outbox.size()).isEqualTo(2);
+    }
+
+    /** Test event with a key left in outbox after all attempts is added again. */
+    @Test
+    public void add_sameKeyAttemptsExhausted_addedAgain() {
+        outbox.add(TYPE, "key", null);
+        long id = outbox.fetchDue(System.currentTimeMillis(), MAX_ATTEMPTS, 1).get(0).getId();
+        outbox.postpone(id, MAX_ATTEMPTS, 0);
+
+        assertThat(outbox.add(TYPE, "key", null)).isTrue();
+        assertThat(outbox.fetchDue(System.currentTimeMillis(), MAX_ATTEMPTS, 10)).hasSize(1);
+        assertThat(outbox.size()).isEqualTo(2);
+    }
+
+    /** Test delivered events are removed in the order they were added. */
+    @Test
+    public void relay_eventsDelivered_removedInOrder() {
+        outbox.add(TYPE, "first", null);
+        outbox.add(TYPE, "second", "payload");
+        outbox.add(TYPE, "third", null);
+        List<String> delivered = new ArrayList<>();
+
+        int count = relay(event -> delivered.add(event.getKey()), 2).relay();
+
+        assertThat(count).isEqualTo(3);
+        assertThat(delivered).containsExactly("first", "second", "third");
+        assertThat(outbox.size()).isEqualTo(0);
+    }
+
+    /** Test failed event is postponed and other events are delivered. */
+    @Test
+    public void relay_deliveryFailed_eventPostponed() {
+        outbox.add(TYPE, "failing", null);
+        outbox.add(TYPE, "key", null);
+
+        int count = relay(event -> {
+            if (event.getKey().equals("failing")) {
+                throw new IllegalStateException("Service unavailable");
+            }
+        }, 10).relay();
+
+        assertThat(count).isEqualTo(1);
+        assertThat(outbox.size()).isEqualTo(1);
+        assertThat(outbox.fetchDue(System.currentTimeMillis(), 10, 10)).isEmpty();
+        List<OutboxEvent> postponed = outbox.fetchDue(Long.MAX_VALUE, 10, 10);
+        assertThat(postponed).hasSize(1);
+        assertThat(postponed.get(0).getKey()).isEqualTo("failing");
+        assertThat(postponed.get(0).getAttempts()).isEqualTo(1);
+    }
+
+    /** Test event failed maximum number of times is not fetched anymore. */
+    @Test
+    public void fetchDue_maxAttemptsReached_eventNotFetched() {
+        outbox.add(TYPE, "key", null);
+        long id = outbox.fetchDue(System.currentTimeMillis(), 1, 1).get(0).getId();
+
+        outbox.postpone(id, 1, 0);
+
+        assertThat(outbox.fetchDue(System.currentTimeMillis(), 1, 1)).isEmpty();
+        assertThat(outbox.size()).isEqualTo(1);
+    }
+
+    private OutboxRelay relay(OutboxRelay.Handler handler, int batchSize) {
+        OutboxSettings settings = new OutboxSettings();
+        settings.setBatchSize(batchSize);
+        return new OutboxRelay("test", outbox, Collections.singletonMap(TYPE, handler), settings);
+    }
+}
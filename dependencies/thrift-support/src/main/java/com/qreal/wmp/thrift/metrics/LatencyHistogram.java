@@ -0,0 +1,83 @@
+package com.qreal.wmp.thrift.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Histogram of latencies with fixed exponential buckets, recorded without locks.*/
+class LatencyHistogram {
+
+    /** Upper bounds of buckets in microseconds, 1-2-5 series from 100 us to 50 s. The last bucket is unbounded.*/
+    public static final long[] BOUNDS_MICROS = createBounds();
+
+    private final LongAdder[] counts = new LongAdder[BOUNDS_MICROS.length + 1];
+
+    private final LongAdder totalMicros = new LongAdder();
+
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    LatencyHistogram() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public void record(long micros) {
+        int bucket = Arrays.binarySearch(BOUNDS_MICROS, micros);
+        counts[bucket < 0 ? -bucket - 1 : bucket].increment();
+        totalMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    /** Returns counts of latencies in buckets, the last one counts latencies over all bounds.*/
+    public long[] getCounts() {
+        long[] snapshot = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            snapshot[i] = counts[i].sum();
+        }
+        return snapshot;
+    }
+
+    public double getMeanMillis() {
+        long count = Arrays.stream(getCounts()).sum();
+        return count == 0 ? 0 : totalMicros.sum() / 1000.0 / count;
+    }
+
+    public double getMaxMillis() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    /**
+     * Returns upper bound of the bucket containing the percentile, so the estimate is never lower than the real
+     * latency. Latencies over all bounds are estimated by the maximum.
+     * @param percentile percentile from 0 to 100
+     */
+    public double getPercentileMillis(double percentile) {
+        long[] snapshot = getCounts();
+        long count = Arrays.stream(snapshot).sum();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_MICROS.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(BOUNDS_MICROS[i], maxMicros.get()) / 1000.0;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    private static long[] createBounds() {
+        long[] bounds = new long[18];
+        long decade = 100;
+        for (int i = 0; i < bounds.length; i += 3) {
+            bounds[i] = decade;
+            bounds[i + 1] = decade * 2;
+            bounds[i + 2] = decade * 5;
+            decade *= 10;
+        }
+        return bounds;
+    }
+}
@@ -0,0 +1,128 @@
+package com.qreal.wmp.thrift.metrics;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TField;
+import org.apache.thrift.protocol.TList;
+import org.apache.thrift.protocol.TMap;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolDecorator;
+import org.apache.thrift.protocol.TSet;
+import org.apache.thrift.protocol.TType;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Input protocol of MeteredProcessor starting a call when its header is read.
+ * Sizes of values are counted as in TBinaryProtocol.
+ */
+final class MeteredInput extends TProtocolDecorator {
+
+    private final ServiceMetrics metrics;
+
+    private RpcMetrics call;
+
+    private long startNanos;
+
+    private long bytes;
+
+    MeteredInput(TProtocol protocol, ServiceMetrics metrics) {
+        super(protocol);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Records the call, should be called once after the message is processed. Nothing is recorded if no message was
+     * read, e.g. connection was closed.
+     */
+    public void finish(MeteredOutput out, String errorType) {
+        if (call != null) {
+            call.finished(System.nanoTime() - startNanos, bytes, out.getBytes(), errorType);
+        }
+    }
+
+    @Override
+    public TMessage readMessageBegin() throws TException {
+        TMessage message = super.readMessageBegin();
+        startNanos = System.nanoTime();
+        call = metrics.forMethod(message.name);
+        call.started();
+        bytes += 9 + message.name.length();
+        return message;
+    }
+
+    @Override
+    public TField readFieldBegin() throws TException {
+        TField field = super.readFieldBegin();
+        bytes += field.type == TType.STOP ? 1 : 3;
+        return field;
+    }
+
+    @Override
+    public TMap readMapBegin() throws TException {
+        bytes += 6;
+        return super.readMapBegin();
+    }
+
+    @Override
+    public TList readListBegin() throws TException {
+        bytes += 5;
+        return super.readListBegin();
+    }
+
+    @Override
+    public TSet readSetBegin() throws TException {
+        bytes += 5;
+        return super.readSetBegin();
+    }
+
+    @Override
+    public boolean readBool() throws TException {
+        bytes += 1;
+        return super.readBool();
+    }
+
+    @Override
+    public byte readByte() throws TException {
+        bytes += 1;
+        return super.readByte();
+    }
+
+    @Override
+    public short readI16() throws TException {
+        bytes += 2;
+        return super.readI16();
+    }
+
+    @Override
+    public int readI32() throws TException {
+        bytes += 4;
+        return super.readI32();
+    }
+
+    @Override
+    public long readI64() throws TException {
+        bytes += 8;
+        return super.readI64();
+    }
+
+    @Override
+    public double readDouble() throws TException {
+        bytes += 8;
+        return super.readDouble();
+    }
+
+    @Override
+    public String readString() throws TException {
+        String value = super.readString();
+        bytes += 4 + value.length();
+        return value;
+    }
+
+    @Override
+    public ByteBuffer readBinary() throws TException {
+        ByteBuffer value = super.readBinary();
+        bytes += 4 + value.remaining();
+        return value;
+    }
+}
@@ -0,0 +1,149 @@
+package com.qreal.wmp.thrift.metrics;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TField;
+import org.apache.thrift.protocol.TList;
+import org.apache.thrift.protocol.TMap;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolDecorator;
+import org.apache.thrift.protocol.TSet;
+import org.apache.thrift.protocol.TStruct;
+import org.apache.thrift.protocol.TType;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Output protocol of MeteredProcessor recognizing exceptions written into result.
+ * Sizes of values are counted as in TBinaryProtocol.
+ */
+final class MeteredOutput extends TProtocolDecorator {
+
+    private long bytes;
+
+    private String errorType;
+
+    private int depth;
+
+    private boolean exceptionField;
+
+    MeteredOutput(TProtocol protocol) {
+        super(protocol);
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    /** Returns simple name of exception written into result, null if the result is not an exception.*/
+    public String getErrorType() {
+        return errorType;
+    }
+
+    @Override
+    public void writeMessageBegin(TMessage message) throws TException {
+        if (message.type == TMessageType.EXCEPTION) {
+            errorType = "TApplicationException";
+        }
+        bytes += 9 + message.name.length();
+        super.writeMessageBegin(message);
+    }
+
+    @Override
+    public void writeStructBegin(TStruct struct) throws TException {
+        if (depth == 1 && exceptionField && errorType == null) {
+            errorType = struct.name;
+        }
+        depth++;
+        super.writeStructBegin(struct);
+    }
+
+    @Override
+    public void writeStructEnd() throws TException {
+        depth--;
+        super.writeStructEnd();
+    }
+
+    @Override
+    public void writeFieldBegin(TField field) throws TException {
+        //Field 0 of result is the returned value, other fields of result are declared exceptions.
+        if (depth == 1 && field.id != 0 && field.type == TType.STRUCT) {
+            exceptionField = true;
+        }
+        bytes += 3;
+        super.writeFieldBegin(field);
+    }
+
+    @Override
+    public void writeFieldStop() throws TException {
+        bytes += 1;
+        super.writeFieldStop();
+    }
+
+    @Override
+    public void writeMapBegin(TMap map) throws TException {
+        bytes += 6;
+        super.writeMapBegin(map);
+    }
+
+    @Override
+    public void writeListBegin(TList list) throws TException {
+        bytes += 5;
+        super.writeListBegin(list);
+    }
+
+    @Override
+    public void writeSetBegin(TSet set) throws TException {
+        bytes += 5;
+        super.writeSetBegin(set);
+    }
+
+    @Override
+    public void writeBool(boolean value) throws TException {
+        bytes += 1;
+        super.writeBool(value);
+    }
+
+    @Override
+    public void writeByte(byte value) throws TException {
+        bytes += 1;
+        super.writeByte(value);
+    }
+
+    @Override
+    public void writeI16(short value) throws TException {
+        bytes += 2;
+        super.writeI16(value);
+    }
+
+    @Override
+    public void writeI32(int value) throws TException {
+        bytes += 4;
+        super.writeI32(value);
+    }
+
+    @Override
+    public void writeI64(long value) throws TException {
+        bytes += 8;
+        super.writeI64(value);
+    }
+
+    @Override
+    public void writeDouble(double value) throws TException {
+        bytes += 8;
+        super.writeDouble(value);
+    }
+
+    @Override
+    public void writeString(String value) throws TException {
+        bytes += 4 + value.length();
+        super.writeString(value);
+    }
+
+    @Override
+    public void writeBinary(ByteBuffer value) throws TException {
+        bytes += 4 + value.remaining();
+        super.writeBinary(value);
+    }
+}
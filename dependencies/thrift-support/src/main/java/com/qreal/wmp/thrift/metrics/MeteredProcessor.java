@@ -0,0 +1,48 @@
+package com.qreal.wmp.thrift.metrics;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.TProcessor;
+import org.apache.thrift.protocol.TProtocol;
+
+/**
+ * Decorator of TProcessor recording metrics of every call into {@link ServiceMetrics}: latency, calls in flight,
+ * errors by type of exception and sizes of request and response.
+ * Latency is measured from reading of the message header, so waiting for the next request on a kept-alive
+ * connection is not counted. Sizes are counted on the protocol level as sizes of values in TBinaryProtocol
+ * (strings by characters), so they don't depend on protocol of the service.
+ * Declared exceptions are recognized by name of the struct written into result, e.g. TAborted.
+ */
+public class MeteredProcessor implements TProcessor {
+
+    private final TProcessor processor;
+
+    private final ServiceMetrics metrics;
+
+    /**
+     * Creates a decorator with metrics registered in JMX.
+     * @param service name of the service in names of MBeans
+     */
+    public MeteredProcessor(String service, TProcessor processor) {
+        this.processor = processor;
+        this.metrics = new ServiceMetrics(service);
+    }
+
+    public ServiceMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public boolean process(TProtocol in, TProtocol out) throws TException {
+        MeteredInput meteredIn = new MeteredInput(in, metrics);
+        MeteredOutput meteredOut = new MeteredOutput(out);
+        boolean result;
+        try {
+            result = processor.process(meteredIn, meteredOut);
+        } catch (TException | RuntimeException e) {
+            meteredIn.finish(meteredOut, e.getClass().getSimpleName());
+            throw e;
+        }
+        meteredIn.finish(meteredOut, meteredOut.getErrorType());
+        return result;
+    }
+}
@@ -0,0 +1,129 @@
+package com.qreal.wmp.thrift.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Metrics of calls of one RPC method. Calls are recorded from worker threads without locks.*/
+public class RpcMetrics implements RpcMetricsMXBean {
+
+    private final LongAdder calls = new LongAdder();
+
+    private final LongAdder inFlight = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final ConcurrentMap<String, LongAdder> errorsByType = new ConcurrentHashMap<>();
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private final LongAdder requestBytes = new LongAdder();
+
+    private final LongAccumulator maxRequestBytes = new LongAccumulator(Math::max, 0);
+
+    private final LongAdder responseBytes = new LongAdder();
+
+    private final LongAccumulator maxResponseBytes = new LongAccumulator(Math::max, 0);
+
+    public void started() {
+        inFlight.increment();
+    }
+
+    /**
+     * Records finished call.
+     * @param errorType simple name of exception the call failed with, null if the call succeeded
+     */
+    public void finished(long latencyNanos, long requestSize, long responseSize, String errorType) {
+        inFlight.decrement();
+        calls.increment();
+        latency.record(latencyNanos / 1000);
+        requestBytes.add(requestSize);
+        maxRequestBytes.accumulate(requestSize);
+        responseBytes.add(responseSize);
+        maxResponseBytes.accumulate(responseSize);
+        if (errorType != null) {
+            errors.increment();
+            errorsByType.computeIfAbsent(errorType, type -> new LongAdder()).increment();
+        }
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public Map<String, Long> getErrorsByType() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        errorsByType.forEach((type, count) -> snapshot.put(type, count.sum()));
+        return snapshot;
+    }
+
+    @Override
+    public double getMeanLatencyMillis() {
+        return latency.getMeanMillis();
+    }
+
+    @Override
+    public double getMaxLatencyMillis() {
+        return latency.getMaxMillis();
+    }
+
+    @Override
+    public double getLatency50thPercentileMillis() {
+        return latency.getPercentileMillis(50);
+    }
+
+    @Override
+    public double getLatency95thPercentileMillis() {
+        return latency.getPercentileMillis(95);
+    }
+
+    @Override
+    public double getLatency99thPercentileMillis() {
+        return latency.getPercentileMillis(99);
+    }
+
+    @Override
+    public long[] getLatencyBucketBoundsMicros() {
+        return LatencyHistogram.BOUNDS_MICROS.clone();
+    }
+
+    @Override
+    public long[] getLatencyBucketCounts() {
+        return latency.getCounts();
+    }
+
+    @Override
+    public long getRequestBytes() {
+        return requestBytes.sum();
+    }
+
+    @Override
+    public long getMaxRequestBytes() {
+        return maxRequestBytes.get();
+    }
+
+    @Override
+    public long getResponseBytes() {
+        return responseBytes.sum();
+    }
+
+    @Override
+    public long getMaxResponseBytes() {
+        return maxResponseBytes.get();
+    }
+}
@@ -0,0 +1,44 @@
+package com.qreal.wmp.thrift.metrics;
+
+import java.util.Map;
+
+/** Metrics of one RPC method exposed through JMX.*/
+public interface RpcMetricsMXBean {
+    /** Number of finished calls, including failed ones.*/
+    long getCalls();
+
+    /** Number of calls being processed now.*/
+    long getInFlight();
+
+    /** Number of failed calls.*/
+    long getErrors();
+
+    /** Numbers of failed calls by simple name of exception, e.g. TAborted or TApplicationException.*/
+    Map<String, Long> getErrorsByType();
+
+    double getMeanLatencyMillis();
+
+    double getMaxLatencyMillis();
+
+    double getLatency50thPercentileMillis();
+
+    double getLatency95thPercentileMillis();
+
+    double getLatency99thPercentileMillis();
+
+    /** Upper bounds of buckets of latency histogram.*/
+    long[] getLatencyBucketBoundsMicros();
+
+    /** Counts of latency histogram, the last one counts calls over all bounds.*/
+    long[] getLatencyBucketCounts();
+
+    /** Total size of requests, see {@link MeteredProcessor} for how size is counted.*/
+    long getRequestBytes();
+
+    long getMaxRequestBytes();
+
+    /** Total size of responses, see {@link MeteredProcessor} for how size is counted.*/
+    long getResponseBytes();
+
+    long getMaxResponseBytes();
+}
@@ -0,0 +1,75 @@
+package com.qreal.wmp.thrift.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Metrics of RPC methods of one Thrift service.
+ * Metrics of each method are registered in platform MBeanServer as com.qreal.wmp.thrift:type=Rpc,service=...,method=...
+ */
+public class ServiceMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServiceMetrics.class);
+
+    public static final String DOMAIN = "com.qreal.wmp.thrift";
+
+    /** Calls of methods over the limit are recorded as OTHER, so clients can't create MBeans with garbage names.*/
+    public static final int MAX_METHODS = 256;
+
+    public static final String OTHER = "other";
+
+    private final String service;
+
+    private final ConcurrentMap<String, RpcMetrics> methods = new ConcurrentHashMap<>();
+
+    public ServiceMetrics(String service) {
+        this.service = service;
+    }
+
+    public String getService() {
+        return service;
+    }
+
+    /** Returns metrics of a method, registering them on the first call.*/
+    public RpcMetrics forMethod(String method) {
+        RpcMetrics metrics = methods.get(method);
+        if (metrics != null) {
+            return metrics;
+        }
+        if (methods.size() >= MAX_METHODS) {
+            return methods.computeIfAbsent(OTHER, this::register);
+        }
+        return methods.computeIfAbsent(method, this::register);
+    }
+
+    /** Returns metrics of called methods by names.*/
+    public Map<String, RpcMetrics> getMethods() {
+        return Collections.unmodifiableMap(methods);
+    }
+
+    private RpcMetrics register(String method) {
+        RpcMetrics metrics = new RpcMetrics();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(DOMAIN + ":type=Rpc,service=" + ObjectName.quote(service) +
+                    ",method=" + ObjectName.quote(method));
+            if (server.isRegistered(name)) {
+                //Processor of the service was created again, e.g. servlet was reloaded.
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(metrics, name);
+        } catch (JMException e) {
+            logger.warn("Metrics of {}.{} were not registered in JMX.", service, method, e);
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,58 @@
+package com.qreal.wmp.thrift.pool;
+
+import lombok.Data;
+import org.springframework.core.env.PropertyResolver;
+
+/** Settings of a pool of Thrift clients connected to one TServer.*/
+@Data
+public class PoolSettings {
+    /** Maximum number of opened connections (borrowed and idle).*/
+    private int maxTotal = 16;
+
+    /** Maximum number of idle connections kept open.*/
+    private int maxIdle = 8;
+
+    /** Number of idle connections the pool tries to keep warm.*/
+    private int minIdle = 1;
+
+    /** Time to wait for a free connection when the pool is exhausted.*/
+    private long maxWaitMillis = 3000;
+
+    /** Socket timeout of a single RPC.*/
+    private int socketTimeoutMillis = 10000;
+
+    /** Period of the idle connections validation.*/
+    private long evictionRunMillis = 30000;
+
+    /** Idle connections older than this are closed (should be less than TServer idle timeout).*/
+    private long idleTimeoutMillis = 60000;
+
+    /** Whether connection is validated each time before it is borrowed.*/
+    private boolean testOnBorrow = false;
+
+    /** Whether TFramedTransport is used, it is required by non-blocking TServers.*/
+    private boolean framed = false;
+
+    /**
+     * Reads settings of one endpoint, e.g. prefix "pool.db.diagram" reads "pool.db.diagram.max.total".
+     * Missing properties keep default values.
+     */
+    public static PoolSettings fromProperties(PropertyResolver properties, String prefix) {
+        PoolSettings settings = new PoolSettings();
+        settings.setMaxTotal(properties.getProperty(prefix + ".max.total", Integer.class, settings.getMaxTotal()));
+        settings.setMaxIdle(properties.getProperty(prefix + ".max.idle", Integer.class, settings.getMaxIdle()));
+        settings.setMinIdle(properties.getProperty(prefix + ".min.idle", Integer.class, settings.getMinIdle()));
+        settings.setMaxWaitMillis(properties.getProperty(prefix + ".max.wait.millis", Long.class,
+                settings.getMaxWaitMillis()));
+        settings.setSocketTimeoutMillis(properties.getProperty(prefix + ".socket.timeout.millis", Integer.class,
+                settings.getSocketTimeoutMillis()));
+        settings.setEvictionRunMillis(properties.getProperty(prefix + ".eviction.run.millis", Long.class,
+                settings.getEvictionRunMillis()));
+        settings.setIdleTimeoutMillis(properties.getProperty(prefix + ".idle.timeout.millis", Long.class,
+                settings.getIdleTimeoutMillis()));
+        settings.setTestOnBorrow(properties.getProperty(prefix + ".test.on.borrow", Boolean.class,
+                settings.isTestOnBorrow()));
+        settings.setFramed(properties.getProperty(prefix + ".framed", Boolean.class, settings.isFramed()));
+        return settings;
+    }
+}
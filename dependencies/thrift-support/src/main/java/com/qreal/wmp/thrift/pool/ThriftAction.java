@@ -0,0 +1,9 @@
+package com.qreal.wmp.thrift.pool;
+
+import org.apache.thrift.TException;
+
+/** RPC without result performed with a client borrowed from ThriftClientPool.*/
+@FunctionalInterface
+public interface ThriftAction<T> {
+    void execute(T client) throws TException;
+}
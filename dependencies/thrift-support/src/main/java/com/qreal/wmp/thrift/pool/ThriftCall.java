@@ -0,0 +1,9 @@
+package com.qreal.wmp.thrift.pool;
+
+import org.apache.thrift.TException;
+
+/** RPC performed with a client borrowed from ThriftClientPool.*/
+@FunctionalInterface
+public interface ThriftCall<T, R> {
+    R call(T client) throws TException;
+}
@@ -0,0 +1,271 @@
+package com.qreal.wmp.thrift.pool;
+
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.apache.thrift.TApplicationException;
+import org.apache.thrift.TException;
+import org.apache.thrift.TServiceClient;
+import org.apache.thrift.TServiceClientFactory;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TProtocolException;
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded pool of Thrift clients connected to one TServer.
+ * Each borrowed client owns its socket, so concurrent callers never share a transport. Sockets stay open between
+ * calls, idle ones are validated in background and closed after idle timeout.
+ * Pool statistics are available through getters and JMX.
+ */
+public class ThriftClientPool<T extends TServiceClient> implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThriftClientPool.class);
+
+    private static final String JMX_NAME_BASE = "com.qreal.wmp:type=ThriftClientPool,name=";
+
+    private final String name;
+
+    private final GenericObjectPool<T> pool;
+
+    private final ClientFactory<T> factory;
+
+    /**
+     * Creates pool. Connections are opened lazily.
+     *
+     * @param name          name of the pool used in logs and JMX
+     * @param clientFactory factory of generated Thrift clients (e.g. DiagramDbService.Client.Factory)
+     */
+    public ThriftClientPool(String name, String host, int port, TServiceClientFactory<T> clientFactory,
+                            PoolSettings settings) {
+        this.name = name;
+
+        GenericObjectPoolConfig config = new GenericObjectPoolConfig();
+        config.setMaxTotal(settings.getMaxTotal());
+        config.setMaxIdle(settings.getMaxIdle());
+        config.setMinIdle(settings.getMinIdle());
+        config.setMaxWaitMillis(settings.getMaxWaitMillis());
+        config.setBlockWhenExhausted(true);
+        config.setTestWhileIdle(true);
+        config.setTestOnBorrow(settings.isTestOnBorrow());
+        config.setTimeBetweenEvictionRunsMillis(settings.getEvictionRunMillis());
+        config.setMinEvictableIdleTimeMillis(settings.getIdleTimeoutMillis());
+        config.setJmxNameBase(JMX_NAME_BASE);
+        config.setJmxNamePrefix(name);
+
+        factory = new ClientFactory<>(host, port, settings.getSocketTimeoutMillis(), settings.isFramed(),
+                clientFactory);
+        pool = new GenericObjectPool<>(factory, config);
+        logger.info("Thrift client pool {} was created for url = {}, port = {} with maxTotal = {}, framed = {}.", name,
+                host, port, settings.getMaxTotal(), settings.isFramed());
+    }
+
+    /**
+     * Performs RPC with a client of its own. Client is returned to the pool after the call, or closed if its
+     * connection is broken.
+     */
+    public <R> R call(ThriftCall<T, R> call) throws TException {
+        T client = borrow();
+        boolean broken = false;
+        try {
+            return call.call(client);
+        } catch (TTransportException | TProtocolException | TApplicationException | RuntimeException e) {
+            //Exceptions declared in IDL are ordinary replies and leave connection usable, these ones don't.
+            broken = true;
+            throw e;
+        } finally {
+            release(client, broken);
+        }
+    }
+
+    /** Performs RPC without result, see {@link #call(ThriftCall)}.*/
+    public void execute(ThriftAction<T> action) throws TException {
+        call(client -> {
+            action.execute(client);
+            return null;
+        });
+    }
+
+    private T borrow() throws TTransportException {
+        try {
+            return pool.borrowObject();
+        } catch (NoSuchElementException e) {
+            logger.error("Pool {} is exhausted: {} connections are in use.", name, pool.getNumActive());
+            throw new TTransportException(TTransportException.TIMED_OUT, "Timeout waiting for connection of pool " +
+                    name, e);
+        } catch (TTransportException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new TTransportException(TTransportException.NOT_OPEN, "Cannot open connection of pool " + name, e);
+        }
+    }
+
+    private void release(T client, boolean broken) {
+        if (!broken) {
+            pool.returnObject(client);
+            return;
+        }
+        try {
+            pool.invalidateObject(client);
+        } catch (Exception e) {
+            logger.error("Pool {} encountered a problem while closing broken connection.", name, e);
+        }
+    }
+
+    /**
+     * Checks that TServer accepts connections: borrows a connection, validates it and returns it back.
+     * Used by health checks, so it never throws.
+     */
+    public boolean isHealthy() {
+        T client;
+        try {
+            client = borrow();
+        } catch (TTransportException e) {
+            logger.warn("Health check of pool {} failed: {}", name, e.getMessage());
+            return false;
+        }
+        boolean healthy = factory.isAlive(client);
+        release(client, !healthy);
+        return healthy;
+    }
+
+    /** Number of connections borrowed right now.*/
+    public int getNumActive() {
+        return pool.getNumActive();
+    }
+
+    /** Number of opened connections waiting for callers.*/
+    public int getNumIdle() {
+        return pool.getNumIdle();
+    }
+
+    /** Number of callers waiting for a free connection.*/
+    public int getNumWaiters() {
+        return pool.getNumWaiters();
+    }
+
+    /** Mean time callers waited for a connection during last borrows.*/
+    public long getMeanBorrowWaitTimeMillis() {
+        return pool.getMeanBorrowWaitTimeMillis();
+    }
+
+    /** Maximum time a caller waited for a connection.*/
+    public long getMaxBorrowWaitTimeMillis() {
+        return pool.getMaxBorrowWaitTimeMillis();
+    }
+
+    /** Total number of connections opened by the pool.*/
+    public long getCreatedCount() {
+        return pool.getCreatedCount();
+    }
+
+    /** Total number of connections closed by the pool.*/
+    public long getDestroyedCount() {
+        return pool.getDestroyedCount();
+    }
+
+    /** Closes all idle connections. Borrowed ones are closed when returned.*/
+    @Override
+    public void close() {
+        logger.info("Thrift client pool {} is closing.", name);
+        pool.close();
+    }
+
+    /** Opens connections and creates clients on them.*/
+    private static class ClientFactory<T extends TServiceClient> extends BasePooledObjectFactory<T> {
+
+        private final String host;
+
+        private final int port;
+
+        private final int timeout;
+
+        private final boolean framed;
+
+        private final TServiceClientFactory<T> clientFactory;
+
+        /** Sockets under clients' transports, which may be wrapped in TFramedTransport.*/
+        private final Map<T, TSocket> sockets = new ConcurrentHashMap<>();
+
+        ClientFactory(String host, int port, int timeout, boolean framed, TServiceClientFactory<T> clientFactory) {
+            super();
+            this.host = host;
+            this.port = port;
+            this.timeout = timeout;
+            this.framed = framed;
+            this.clientFactory = clientFactory;
+        }
+
+        @Override
+        public T create() throws TTransportException, SocketException {
+            TSocket socket = new TSocket(host, port, timeout);
+            socket.getSocket().setKeepAlive(true);
+            TTransport transport = framed ? new TFramedTransport(socket) : socket;
+            transport.open();
+            T client = clientFactory.getClient(new TBinaryProtocol(transport));
+            sockets.put(client, socket);
+            return client;
+        }
+
+        @Override
+        public PooledObject<T> wrap(T client) {
+            return new DefaultPooledObject<>(client);
+        }
+
+        /** Checks that server did not close the idle connection.*/
+        @Override
+        public boolean validateObject(PooledObject<T> pooledObject) {
+            return isAlive(pooledObject.getObject());
+        }
+
+        private boolean isAlive(T client) {
+            TSocket transport = sockets.get(client);
+            if (transport == null || !transport.isOpen()) {
+                return false;
+            }
+            Socket socket = transport.getSocket();
+            try {
+                socket.setSoTimeout(1);
+                //Server never sends anything unrequested, so only a timeout means that connection is alive.
+                socket.getInputStream().read();
+                return false;
+            } catch (SocketTimeoutException e) {
+                return true;
+            } catch (IOException e) {
+                return false;
+            } finally {
+                restoreTimeout(socket);
+            }
+        }
+
+        private void restoreTimeout(Socket socket) {
+            try {
+                socket.setSoTimeout(timeout);
+            } catch (IOException e) {
+                logger.trace("Cannot restore socket timeout of validated connection.", e);
+            }
+        }
+
+        @Override
+        public void destroyObject(PooledObject<T> pooledObject) {
+            T client = pooledObject.getObject();
+            sockets.remove(client);
+            client.getInputProtocol().getTransport().close();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.qreal.wmp.thrift.server;
+
+/** Thrift TServer implementations which can be chosen in server.properties.*/
+public enum ServerEngine {
+    /** TThreadPoolServer: blocking sockets, one worker thread per connected client.*/
+    THREAD_POOL,
+
+    /** THsHaServer: one selector thread for all connections and a pool of worker threads.*/
+    HSHA,
+
+    /** TThreadedSelectorServer: accept thread, several selector threads and a pool of worker threads.*/
+    THREADED_SELECTOR;
+
+    /** Parses name used in properties, e.g. "threaded-selector".*/
+    public static ServerEngine fromName(String name) {
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+
+    /** Whether engine is based on non-blocking sockets and requires framed transport.*/
+    public boolean isNonblocking() {
+        return this != THREAD_POOL;
+    }
+}
@@ -0,0 +1,49 @@
+package com.qreal.wmp.thrift.server;
+
+import lombok.Data;
+import org.springframework.core.env.PropertyResolver;
+
+/** Settings of Thrift TServer of one service.*/
+@Data
+public class ServerSettings {
+    private ServerEngine engine = ServerEngine.THREADED_SELECTOR;
+
+    /** Number of threads serving socket IO (TThreadedSelectorServer only).*/
+    private int selectorThreads = 2;
+
+    /** Number of threads executing handler methods (maximum number of connections for TThreadPoolServer).*/
+    private int workerThreads = 16;
+
+    /** Maximum number of requests waiting for a worker; requests over it are rejected and connection is closed.*/
+    private int queueSize = 1000;
+
+    /** Whether TFramedTransport is used, non-blocking engines always use it.*/
+    private boolean framed = true;
+
+    /** Maximum size of a single frame.*/
+    private int maxFrameSizeBytes = 16384000;
+
+    /** Maximum memory for read buffers of all connections (non-blocking engines only).*/
+    private long maxReadBufferBytes = 256L * 1024 * 1024;
+
+    /**
+     * Reads settings with given prefix, e.g. prefix "server" reads "server.engine".
+     * Missing properties keep default values.
+     */
+    public static ServerSettings fromProperties(PropertyResolver properties, String prefix) {
+        ServerSettings settings = new ServerSettings();
+        settings.setEngine(ServerEngine.fromName(properties.getProperty(prefix + ".engine",
+                settings.getEngine().name())));
+        settings.setSelectorThreads(properties.getProperty(prefix + ".selector.threads", Integer.class,
+                settings.getSelectorThreads()));
+        settings.setWorkerThreads(properties.getProperty(prefix + ".worker.threads", Integer.class,
+                settings.getWorkerThreads()));
+        settings.setQueueSize(properties.getProperty(prefix + ".queue.size", Integer.class, settings.getQueueSize()));
+        settings.setFramed(properties.getProperty(prefix + ".framed", Boolean.class, settings.isFramed()));
+        settings.setMaxFrameSizeBytes(properties.getProperty(prefix + ".max.frame.size.bytes", Integer.class,
+                settings.getMaxFrameSizeBytes()));
+        settings.setMaxReadBufferBytes(properties.getProperty(prefix + ".max.read.buffer.bytes", Long.class,
+                settings.getMaxReadBufferBytes()));
+        return settings;
+    }
+}
@@ -0,0 +1,100 @@
+package com.qreal.wmp.thrift.server;
+
+import com.qreal.wmp.thrift.metrics.MeteredProcessor;
+import org.apache.thrift.TProcessor;
+import org.apache.thrift.server.THsHaServer;
+import org.apache.thrift.server.TServer;
+import org.apache.thrift.server.TThreadPoolServer;
+import org.apache.thrift.server.TThreadedSelectorServer;
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TNonblockingServerSocket;
+import org.apache.thrift.transport.TServerSocket;
+import org.apache.thrift.transport.TTransportException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Creates Thrift TServers with engine and transport chosen in ServerSettings.*/
+public final class ThriftServerFactory {
+    private static final Logger logger = LoggerFactory.getLogger(ThriftServerFactory.class);
+
+    private ThriftServerFactory() {
+    }
+
+    /**
+     * Creates TServer listening on given port. Server is not started.
+     * Calls are metered by {@link MeteredProcessor}, metrics are available through JMX.
+     *
+     * @param name name of the server used in logs, names of threads and names of MBeans
+     */
+    public static TServer createServer(String name, TProcessor processor, int port, ServerSettings settings)
+            throws TTransportException {
+        if (settings.getEngine().isNonblocking() && !settings.isFramed()) {
+            throw new IllegalArgumentException("Engine " + settings.getEngine() + " requires framed transport.");
+        }
+        logger.info("Creating {} TServer on port {} with engine {}, {} workers, queue of {} requests, framed = {}.",
+                name, port, settings.getEngine(), settings.getWorkerThreads(), settings.getQueueSize(),
+                settings.isFramed());
+        TProcessor metered = new MeteredProcessor(name, processor);
+        switch (settings.getEngine()) {
+            case HSHA:
+                return createHsHaServer(name, metered, port, settings);
+            case THREADED_SELECTOR:
+                return createThreadedSelectorServer(name, metered, port, settings);
+            default:
+                return createThreadPoolServer(metered, port, settings);
+        }
+    }
+
+    private static TServer createThreadPoolServer(TProcessor processor, int port, ServerSettings settings)
+            throws TTransportException {
+        TThreadPoolServer.Args args = new TThreadPoolServer.Args(new TServerSocket(port)).
+                processor(processor).maxWorkerThreads(settings.getWorkerThreads());
+        if (settings.isFramed()) {
+            args.transportFactory(new TFramedTransport.Factory(settings.getMaxFrameSizeBytes()));
+        }
+        return new TThreadPoolServer(args);
+    }
+
+    private static TServer createHsHaServer(String name, TProcessor processor, int port, ServerSettings settings)
+            throws TTransportException {
+        THsHaServer.Args args = new THsHaServer.Args(new TNonblockingServerSocket(port)).
+                executorService(createWorkers(name, settings));
+        args.processor(processor);
+        args.transportFactory(new TFramedTransport.Factory(settings.getMaxFrameSizeBytes()));
+        args.maxReadBufferBytes = settings.getMaxReadBufferBytes();
+        return new THsHaServer(args);
+    }
+
+    private static TServer createThreadedSelectorServer(String name, TProcessor processor, int port,
+                                                        ServerSettings settings) throws TTransportException {
+        TThreadedSelectorServer.Args args = new TThreadedSelectorServer.Args(new TNonblockingServerSocket(port)).
+                selectorThreads(settings.getSelectorThreads()).executorService(createWorkers(name, settings));
+        args.processor(processor);
+        args.transportFactory(new TFramedTransport.Factory(settings.getMaxFrameSizeBytes()));
+        args.maxReadBufferBytes = settings.getMaxReadBufferBytes();
+        return new TThreadedSelectorServer(args);
+    }
+
+    /**
+     * Fixed pool of workers with bounded queue. When queue is full non-blocking servers get
+     * RejectedExecutionException and close the connection instead of piling requests up.
+     */
+    private static ExecutorService createWorkers(String name, ServerSettings settings) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, name + "-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(settings.getWorkerThreads(), settings.getWorkerThreads(), 0L,
+                TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(settings.getQueueSize()), threadFactory,
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
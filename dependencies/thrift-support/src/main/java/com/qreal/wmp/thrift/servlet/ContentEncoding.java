@@ -0,0 +1,131 @@
+package com.qreal.wmp.thrift.servlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/** HTTP content codings supported by ThriftServlet. Deflate is the zlib format, as HTTP defines it.*/
+enum ContentEncoding {
+    IDENTITY("identity") {
+        @Override
+        InputStream decode(InputStream in) {
+            return in;
+        }
+
+        @Override
+        OutputStream encode(OutputStream out) {
+            return out;
+        }
+    },
+    GZIP("gzip") {
+        @Override
+        InputStream decode(InputStream in) throws IOException {
+            return new GZIPInputStream(in);
+        }
+
+        @Override
+        OutputStream encode(OutputStream out) throws IOException {
+            return new GZIPOutputStream(out);
+        }
+    },
+    DEFLATE("deflate") {
+        @Override
+        InputStream decode(InputStream in) {
+            return new InflaterInputStream(in);
+        }
+
+        @Override
+        OutputStream encode(OutputStream out) {
+            return new DeflaterOutputStream(out);
+        }
+    };
+
+    private final String token;
+
+    ContentEncoding(String token) {
+        this.token = token;
+    }
+
+    /** Name of the coding in Content-Encoding and Accept-Encoding headers.*/
+    String getToken() {
+        return token;
+    }
+
+    abstract InputStream decode(InputStream in) throws IOException;
+
+    /** Returns stream encoding data written into out, it must be closed to write the end of data.*/
+    abstract OutputStream encode(OutputStream out) throws IOException;
+
+    /**
+     * Returns coding of a request by its Content-Encoding header.
+     * @return null if the coding is not supported
+     */
+    static ContentEncoding of(String contentEncoding) {
+        if (contentEncoding == null || contentEncoding.trim().isEmpty()) {
+            return IDENTITY;
+        }
+        String token = contentEncoding.trim().toLowerCase(Locale.ROOT);
+        for (ContentEncoding encoding : values()) {
+            if (encoding.token.equals(token)) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Chooses coding of a response by Accept-Encoding header of a request: gzip if it is accepted, then deflate.
+     * Codings with zero quality are not accepted, "*" accepts any coding not listed.
+     */
+    static ContentEncoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return IDENTITY;
+        }
+        Double gzip = null;
+        Double deflate = null;
+        Double any = null;
+        for (String item : acceptEncoding.split(",")) {
+            String[] parts = item.split(";");
+            String token = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = quality(parts);
+            if (GZIP.token.equals(token) || "x-gzip".equals(token)) {
+                gzip = quality;
+            } else if (DEFLATE.token.equals(token)) {
+                deflate = quality;
+            } else if ("*".equals(token)) {
+                any = quality;
+            }
+        }
+        if (accepted(gzip, any)) {
+            return GZIP;
+        }
+        if (accepted(deflate, any)) {
+            return DEFLATE;
+        }
+        return IDENTITY;
+    }
+
+    private static boolean accepted(Double quality, Double any) {
+        Double actual = quality != null ? quality : any;
+        return actual != null && actual > 0;
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
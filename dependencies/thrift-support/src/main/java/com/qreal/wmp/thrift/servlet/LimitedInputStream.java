@@ -0,0 +1,63 @@
+package com.qreal.wmp.thrift.servlet;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/** Stream failing after more than limit bytes are read, so a small compressed request can't inflate unboundedly.*/
+final class LimitedInputStream extends FilterInputStream {
+
+    private final long limit;
+
+    private long count;
+
+    private boolean exceeded;
+
+    LimitedInputStream(InputStream in, long limit) {
+        super(in);
+        this.limit = limit;
+    }
+
+    /** Returns whether reading failed because the limit was exceeded.*/
+    public boolean isExceeded() {
+        return exceeded;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = super.read();
+        if (value != -1) {
+            count(1);
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read > 0) {
+            count(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long length) throws IOException {
+        long skipped = super.skip(length);
+        count(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void count(long read) throws IOException {
+        count += read;
+        if (count > limit) {
+            exceeded = true;
+            throw new IOException("Request body is larger than " + limit + " bytes.");
+        }
+    }
+}
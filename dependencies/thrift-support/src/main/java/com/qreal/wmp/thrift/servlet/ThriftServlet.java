@@ -0,0 +1,120 @@
+package com.qreal.wmp.thrift.servlet;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.TProcessor;
+import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.apache.thrift.transport.TTransport;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Servlet serving a Thrift processor over HTTP with negotiated compression, replacement of TServlet.
+ * Requests compressed with gzip or deflate are decoded by their Content-Encoding, decoded requests larger than
+ * maxRequestBytes are rejected with 413. Responses are compressed with gzip or deflate if the client accepts it by
+ * Accept-Encoding and the response is not smaller than minCompressBytes, browsers accept gzip by default.
+ * Uncompressed responses are sent with Content-Length, compressed ones are streamed to the client.
+ */
+public class ThriftServlet extends HttpServlet {
+
+    /** Path of the endpoint with TCompactProtocol relative to the path of the endpoint with TJSONProtocol.*/
+    public static final String COMPACT_PATH = "/compact";
+
+    /** Responses smaller than this are not compressed by default, it would save less than a network packet.*/
+    public static final int DEFAULT_MIN_COMPRESS_BYTES = 1024;
+
+    /** Decoded requests larger than this are rejected by default.*/
+    public static final int DEFAULT_MAX_REQUEST_BYTES = 64 * 1024 * 1024;
+
+    /**
+     * Maximum number of elements of a container in a request, for protocols allocating containers by their declared
+     * size, e.g. TCompactProtocol.
+     */
+    public static final int MAX_CONTAINER_LENGTH = 1000000;
+
+    private static final String CONTENT_TYPE = "application/x-thrift";
+
+    private final TProcessor processor;
+
+    private final TProtocolFactory protocolFactory;
+
+    private final int minCompressBytes;
+
+    private final long maxRequestBytes;
+
+    public ThriftServlet(TProcessor processor, TProtocolFactory protocolFactory) {
+        this(processor, protocolFactory, DEFAULT_MIN_COMPRESS_BYTES, DEFAULT_MAX_REQUEST_BYTES);
+    }
+
+    /**
+     * Creates a servlet with specified limits.
+     * @param minCompressBytes responses smaller than this are sent uncompressed
+     * @param maxRequestBytes  decoded requests larger than this are rejected
+     */
+    public ThriftServlet(TProcessor processor, TProtocolFactory protocolFactory, int minCompressBytes,
+                         long maxRequestBytes) {
+        super();
+        this.processor = processor;
+        this.protocolFactory = protocolFactory;
+        this.minCompressBytes = minCompressBytes;
+        this.maxRequestBytes = maxRequestBytes;
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        ContentEncoding requestEncoding = ContentEncoding.of(request.getHeader("Content-Encoding"));
+        if (requestEncoding == null) {
+            response.sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE,
+                    "Content-Encoding " + request.getHeader("Content-Encoding") + " is not supported");
+            return;
+        }
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        LimitedInputStream in = new LimitedInputStream(requestEncoding.decode(request.getInputStream()),
+                maxRequestBytes);
+        try {
+            TTransport transport = new TIOStreamTransport(in, result);
+            processor.process(protocolFactory.getProtocol(transport), protocolFactory.getProtocol(transport));
+        } catch (TException e) {
+            if (in.isExceeded()) {
+                response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                        "Request is larger than " + maxRequestBytes + " bytes");
+                return;
+            }
+            throw new ServletException(e);
+        } finally {
+            in.close();
+        }
+
+        ContentEncoding responseEncoding = ContentEncoding.IDENTITY;
+        if (result.size() >= minCompressBytes) {
+            responseEncoding = ContentEncoding.negotiate(request.getHeader("Accept-Encoding"));
+        }
+
+        response.setContentType(CONTENT_TYPE);
+        response.addHeader("Vary", "Accept-Encoding");
+        if (responseEncoding == ContentEncoding.IDENTITY) {
+            response.setContentLength(result.size());
+            result.writeTo(response.getOutputStream());
+            return;
+        }
+        response.setHeader("Content-Encoding", responseEncoding.getToken());
+        //Closing the encoding stream writes the end of compressed data and closes the response.
+        try (OutputStream out = responseEncoding.encode(response.getOutputStream())) {
+            result.writeTo(out);
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        doPost(request, response);
+    }
+}
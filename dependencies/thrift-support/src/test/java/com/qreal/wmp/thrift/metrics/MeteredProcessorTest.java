@@ -0,0 +1,143 @@
+package com.qreal.wmp.thrift.metrics;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.TProcessor;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TField;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolUtil;
+import org.apache.thrift.protocol.TStruct;
+import org.apache.thrift.protocol.TType;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.apache.thrift.transport.TTransportException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+
+public class MeteredProcessorTest {
+
+    /** Test successful call is recorded without errors. */
+    @Test
+    public void process_successfulCall_callRecorded() throws Exception {
+        MeteredProcessor processor = new MeteredProcessor("TestService", replying(0, TType.I64, null));
+
+        processor.process(request("getId", "argument"), response());
+
+        RpcMetrics metrics = processor.getMetrics().forMethod("getId");
+        assertThat(metrics.getCalls()).isEqualTo(1);
+        assertThat(metrics.getInFlight()).isEqualTo(0);
+        assertThat(metrics.getErrors()).isEqualTo(0);
+        assertThat(metrics.getRequestBytes()).isGreaterThan("argument".length());
+        assertThat(metrics.getResponseBytes()).isGreaterThan(8);
+        long[] counts = metrics.getLatencyBucketCounts();
+        assertThat(counts.length).isEqualTo(metrics.getLatencyBucketBoundsMicros().length + 1);
+        assertThat(Arrays.stream(counts).sum()).isEqualTo(1);
+    }
+
+    /** Test declared exception written into result is recorded by its type. */
+    @Test
+    public void process_declaredException_errorRecordedByType() throws Exception {
+        MeteredProcessor processor = new MeteredProcessor("TestService", replying(1, TType.STRUCT, "TNotFound"));
+
+        processor.process(request("getFolder", "argument"), response());
+
+        RpcMetrics metrics = processor.getMetrics().forMethod("getFolder");
+        assertThat(metrics.getErrors()).isEqualTo(1);
+        assertThat(metrics.getErrorsByType()).isEqualTo(Collections.singletonMap("TNotFound", 1L));
+    }
+
+    /** Test exception thrown by processor is recorded and rethrown. */
+    @Test
+    public void process_processorThrows_errorRecordedAndRethrown() throws Exception {
+        MeteredProcessor processor = new MeteredProcessor("TestService", (in, out) -> {
+            in.readMessageBegin();
+            throw new IllegalStateException("Handler failed");
+        });
+
+        try {
+            processor.process(request("save", "argument"), response());
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            RpcMetrics metrics = processor.getMetrics().forMethod("save");
+            assertThat(metrics.getInFlight()).isEqualTo(0);
+            assertThat(metrics.getErrorsByType()).isEqualTo(Collections.singletonMap("IllegalStateException", 1L));
+        }
+    }
+
+    /** Test nothing is recorded if no message was read, e.g. client closed connection. */
+    @Test
+    public void process_noMessage_nothingRecorded() throws Exception {
+        MeteredProcessor processor = new MeteredProcessor("TestService", replying(0, TType.I64, null));
+
+        try {
+            processor.process(new TBinaryProtocol(new TMemoryBuffer(0)), response());
+            fail("TTransportException expected");
+        } catch (TTransportException e) {
+            assertThat(processor.getMetrics().getMethods()).isEmpty();
+        }
+    }
+
+    /** Test percentiles are estimated by upper bounds of buckets. */
+    @Test
+    public void getPercentileMillis_recordedLatencies_upperBoundOfBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(150);
+        }
+        histogram.record(3000);
+
+        assertThat(histogram.getPercentileMillis(50)).isEqualTo(0.2);
+        assertThat(histogram.getPercentileMillis(100)).isEqualTo(3.0);
+        assertThat(histogram.getMaxMillis()).isEqualTo(3.0);
+    }
+
+    private static TProtocol request(String method, String argument) throws TException {
+        TProtocol protocol = new TBinaryProtocol(new TMemoryBuffer(64));
+        protocol.writeMessageBegin(new TMessage(method, TMessageType.CALL, 1));
+        protocol.writeStructBegin(new TStruct(method + "_args"));
+        protocol.writeFieldBegin(new TField("argument", TType.STRING, (short) 1));
+        protocol.writeString(argument);
+        protocol.writeFieldEnd();
+        protocol.writeFieldStop();
+        protocol.writeStructEnd();
+        protocol.writeMessageEnd();
+        return protocol;
+    }
+
+    private static TProtocol response() {
+        return new TBinaryProtocol(new TMemoryBuffer(64));
+    }
+
+    /**
+     * Processor reading a request and writing a result with one field set.
+     * @param exception name of exception struct written into the field, null to write i64 value
+     */
+    private static TProcessor replying(int fieldId, byte fieldType, String exception) {
+        return (in, out) -> {
+            TMessage message = in.readMessageBegin();
+            TProtocolUtil.skip(in, TType.STRUCT);
+            in.readMessageEnd();
+            out.writeMessageBegin(new TMessage(message.name, TMessageType.REPLY, message.seqid));
+            out.writeStructBegin(new TStruct(message.name + "_result"));
+            out.writeFieldBegin(new TField("field", fieldType, (short) fieldId));
+            if (exception == null) {
+                out.writeI64(1);
+            } else {
+                out.writeStructBegin(new TStruct(exception));
+                out.writeFieldStop();
+                out.writeStructEnd();
+            }
+            out.writeFieldEnd();
+            out.writeFieldStop();
+            out.writeStructEnd();
+            out.writeMessageEnd();
+            return true;
+        };
+    }
+}
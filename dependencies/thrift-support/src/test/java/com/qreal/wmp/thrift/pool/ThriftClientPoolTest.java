@@ -0,0 +1,91 @@
+package com.qreal.wmp.thrift.pool;
+
+import org.apache.thrift.TServiceClient;
+import org.apache.thrift.TServiceClientFactory;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TTransportException;
+import org.junit.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
+
+public class ThriftClientPoolTest {
+
+    /** Test reading of pool settings with defaults. */
+    @Test
+    public void fromProperties_someSettingsDefined_readsDefinedAndKeepsDefaults() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("pool.db.test.max.total", "32");
+        properties.put("pool.db.test.test.on.borrow", "true");
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", properties));
+
+        PoolSettings settings = PoolSettings.fromProperties(environment, "pool.db.test");
+
+        assertThat(settings.getMaxTotal()).isEqualTo(32);
+        assertThat(settings.isTestOnBorrow()).isTrue();
+        assertThat(settings.getMaxIdle()).isEqualTo(new PoolSettings().getMaxIdle());
+    }
+
+    /** Test health check of listening server. */
+    @Test
+    public void isHealthy_serverListens_returnsTrueAndKeepsConnection() throws IOException {
+        try (ServerSocket server = new ServerSocket(0);
+             ThriftClientPool<TestClient> pool = createPool(server.getLocalPort())) {
+            assertThat(pool.isHealthy()).isTrue();
+            assertThat(pool.getNumIdle()).isEqualTo(1);
+            assertThat(pool.getNumActive()).isEqualTo(0);
+        }
+    }
+
+    /** Test call to not running server. */
+    @Test
+    public void call_serverDown_throwsTransportException() throws Exception {
+        int port;
+        try (ServerSocket server = new ServerSocket(0)) {
+            port = server.getLocalPort();
+        }
+        try (ThriftClientPool<TestClient> pool = createPool(port)) {
+            assertThat(pool.isHealthy()).isFalse();
+            try {
+                pool.call(client -> client);
+                fail("TTransportException expected");
+            } catch (TTransportException e) {
+                assertThat(e.getType()).isEqualTo(TTransportException.NOT_OPEN);
+            }
+            assertThat(pool.getNumActive()).isEqualTo(0);
+        }
+    }
+
+    private ThriftClientPool<TestClient> createPool(int port) {
+        PoolSettings settings = new PoolSettings();
+        settings.setMinIdle(0);
+        settings.setSocketTimeoutMillis(1000);
+        return new ThriftClientPool<>("test", "localhost", port, new TestClientFactory(), settings);
+    }
+
+    private static class TestClient extends TServiceClient {
+        TestClient(TProtocol protocol) {
+            super(protocol);
+        }
+    }
+
+    private static class TestClientFactory implements TServiceClientFactory<TestClient> {
+        @Override
+        public TestClient getClient(TProtocol protocol) {
+            return new TestClient(protocol);
+        }
+
+        @Override
+        public TestClient getClient(TProtocol inputProtocol, TProtocol outputProtocol) {
+            return new TestClient(inputProtocol);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.qreal.wmp.thrift.servlet;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.TProcessor;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TField;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TStruct;
+import org.apache.thrift.protocol.TType;
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.junit.Test;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ThriftServletTest {
+
+    private final ThriftServlet servlet = new ThriftServlet(echo(), new TCompactProtocol.Factory(), 100, 100000);
+
+    /** Test gzip request is decoded and large response is compressed with gzip if it is accepted. */
+    @Test
+    public void doPost_gzipRequestAcceptsGzip_responseCompressed() throws Exception {
+        String value = text(10000);
+        HttpServletRequest request = request(encode(call(value), ContentEncoding.GZIP), "gzip", "deflate, gzip");
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        ByteArrayOutputStream body = responseBody(response);
+
+        servlet.doPost(request, response);
+
+        verify(response).setHeader("Content-Encoding", "gzip");
+        verify(response, never()).setContentLength(anyInt());
+        assertThat(body.size()).isLessThan(value.length() / 10);
+        assertThat(reply(ContentEncoding.GZIP.decode(new ByteArrayInputStream(body.toByteArray())))).isEqualTo(value);
+    }
+
+    /** Test response smaller than the limit is not compressed. */
+    @Test
+    public void doPost_smallResponse_notCompressed() throws Exception {
+        HttpServletRequest request = request(call("value"), null, "gzip");
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        ByteArrayOutputStream body = responseBody(response);
+
+        servlet.doPost(request, response);
+
+        verify(response, never()).setHeader("Content-Encoding", "gzip");
+        verify(response).setContentLength(body.size());
+        assertThat(reply(new ByteArrayInputStream(body.toByteArray()))).isEqualTo("value");
+    }
+
+    /** Test compressed request inflating over the limit is rejected. */
+    @Test
+    public void doPost_gzipRequestOverLimit_rejected() throws Exception {
+        HttpServletRequest request = request(encode(call(text(200000)), ContentEncoding.GZIP), "gzip", null);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        ByteArrayOutputStream body = responseBody(response);
+
+        servlet.doPost(request, response);
+
+        verify(response).sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                "Request is larger than 100000 bytes");
+        assertThat(body.size()).isEqualTo(0);
+    }
+
+    /** Test request with unknown Content-Encoding is rejected. */
+    @Test
+    public void doPost_unsupportedEncoding_rejected() throws Exception {
+        HttpServletRequest request = request(call("value"), "br", null);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+
+        servlet.doPost(request, response);
+
+        verify(response).sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE,
+                "Content-Encoding br is not supported");
+    }
+
+    /** Test gzip is preferred, codings with zero quality are not used. */
+    @Test
+    public void negotiate_acceptEncoding_preferredAcceptedCoding() {
+        assertThat(ContentEncoding.negotiate(null)).isEqualTo(ContentEncoding.IDENTITY);
+        assertThat(ContentEncoding.negotiate("identity")).isEqualTo(ContentEncoding.IDENTITY);
+        assertThat(ContentEncoding.negotiate("deflate, gzip;q=0.5")).isEqualTo(ContentEncoding.GZIP);
+        assertThat(ContentEncoding.negotiate("gzip;q=0, deflate")).isEqualTo(ContentEncoding.DEFLATE);
+        assertThat(ContentEncoding.negotiate("*")).isEqualTo(ContentEncoding.GZIP);
+        assertThat(ContentEncoding.negotiate("*;q=0")).isEqualTo(ContentEncoding.IDENTITY);
+    }
+
+    private static String text(int length) {
+        char[] chars = new char[length];
+        Arrays.fill(chars, 'a');
+        return new String(chars);
+    }
+
+    /** Processor replying with the string argument of a call. */
+    private static TProcessor echo() {
+        return (in, out) -> {
+            TMessage message = in.readMessageBegin();
+            in.readStructBegin();
+            in.readFieldBegin();
+            String value = in.readString();
+            in.readFieldEnd();
+            //Field stop
+            in.readFieldBegin();
+            in.readStructEnd();
+            in.readMessageEnd();
+            out.writeMessageBegin(new TMessage(message.name, TMessageType.REPLY, message.seqid));
+            writeStringStruct(out, message.name + "_result", (short) 0, value);
+            out.writeMessageEnd();
+            out.getTransport().flush();
+            return true;
+        };
+    }
+
+    private static byte[] call(String value) throws TException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TProtocol protocol = new TCompactProtocol(new TIOStreamTransport(out));
+        protocol.writeMessageBegin(new TMessage("echo", TMessageType.CALL, 1));
+        writeStringStruct(protocol, "echo_args", (short) 1, value);
+        protocol.writeMessageEnd();
+        return out.toByteArray();
+    }
+
+    private static String reply(InputStream in) throws TException {
+        TProtocol protocol = new TCompactProtocol(new TIOStreamTransport(in));
+        protocol.readMessageBegin();
+        protocol.readStructBegin();
+        protocol.readFieldBegin();
+        return protocol.readString();
+    }
+
+    private static void writeStringStruct(TProtocol protocol, String name, short id, String value) throws TException {
+        protocol.writeStructBegin(new TStruct(name));
+        protocol.writeFieldBegin(new TField("value", TType.STRING, id));
+        protocol.writeString(value);
+        protocol.writeFieldEnd();
+        protocol.writeFieldStop();
+        protocol.writeStructEnd();
+    }
+
+    private static byte[] encode(byte[] data, ContentEncoding encoding) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (OutputStream out = encoding.encode(encoded)) {
+            out.write(data);
+        }
+        return encoded.toByteArray();
+    }
+
+    private static HttpServletRequest request(byte[] body, String contentEncoding, String acceptEncoding)
+            throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader("Content-Encoding")).thenReturn(contentEncoding);
+        when(request.getHeader("Accept-Encoding")).thenReturn(acceptEncoding);
+        ByteArrayInputStream in = new ByteArrayInputStream(body);
+        when(request.getInputStream()).thenReturn(new ServletInputStream() {
+            @Override
+            public boolean isFinished() {
+                return in.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+            }
+
+            @Override
+            public int read() {
+                return in.read();
+            }
+        });
+        return request;
+    }
+
+    private static ByteArrayOutputStream responseBody(HttpServletResponse response) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+        });
+        return body;
+    }
+}
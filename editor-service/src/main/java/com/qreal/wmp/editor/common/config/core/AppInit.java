@@ -2,6 +2,8 @@ package com.qreal.wmp.editor.common.config.core;
 
 import com.qreal.wmp.editor.common.utils.PropertyLoader;
 import com.qreal.wmp.editor.controller.EditorServlet;
+import com.qreal.wmp.thrift.servlet.ThriftServlet;
+import org.apache.thrift.protocol.TCompactProtocol;
 import org.springframework.web.WebApplicationInitializer;
 import org.springframework.web.context.ContextLoaderListener;
 import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
@@ -35,10 +37,20 @@ public class AppInit implements WebApplicationInitializer {
         dispatcher.addMapping("/");
 
         // Registration RestService
+        String servicePath = PropertyLoader.load("service.properties", "path.editor.service");
         ServletRegistration.Dynamic diagramService = servletContext.addServlet("DiagramRestServlet",
                 new EditorServlet(dispatcherContext));
         diagramService.setLoadOnStartup(1);
-        diagramService.addMapping(PropertyLoader.load("service.properties", "path.editor.service"));
+        diagramService.addMapping(servicePath);
+
+        // The same service with TCompactProtocol for clients transferring large diagrams
+        // Limits of strings and containers are checked before they are allocated
+        TCompactProtocol.Factory compactFactory = new TCompactProtocol.Factory(ThriftServlet.DEFAULT_MAX_REQUEST_BYTES,
+                ThriftServlet.MAX_CONTAINER_LENGTH);
+        ServletRegistration.Dynamic diagramServiceCompact = servletContext.addServlet("DiagramRestCompactServlet",
+                new EditorServlet(dispatcherContext, "EditorServiceCompact", compactFactory));
+        diagramServiceCompact.setLoadOnStartup(1);
+        diagramServiceCompact.addMapping(servicePath + ThriftServlet.COMPACT_PATH);
 
         DelegatingFilterProxy filter = new DelegatingFilterProxy("springSecurityFilterChain");
         filter.setContextAttribute("org.springframework.web.servlet.FrameworkServlet.CONTEXT.dispatcher");
@@ -1,19 +1,29 @@
 package com.qreal.wmp.editor.controller;
 
 import com.qreal.wmp.thrift.gen.EditorServiceThrift;
+import com.qreal.wmp.thrift.metrics.MeteredProcessor;
+import com.qreal.wmp.thrift.servlet.ThriftServlet;
 import org.apache.thrift.protocol.TJSONProtocol;
-import org.apache.thrift.server.TServlet;
+import org.apache.thrift.protocol.TProtocolFactory;
 import org.springframework.context.ApplicationContext;
 
 /**
  * Thrift service class for EditorRest controller.
+ * Calls are metered by MeteredProcessor, metrics are available through JMX.
+ * Responses are compressed if client accepts gzip or deflate, see ThriftServlet.
  */
-public class EditorServlet extends TServlet {
+public class EditorServlet extends ThriftServlet {
 
+    /** Servlet with TJSONProtocol, used by the editor pages.*/
     public EditorServlet(ApplicationContext context) {
+        this(context, "EditorService", new TJSONProtocol.Factory());
+    }
+
+    /** @param service name of the service in metrics, different for each protocol*/
+    public EditorServlet(ApplicationContext context, String service, TProtocolFactory protocolFactory) {
         super(
-                new EditorServiceThrift.Processor(new EditorServletHandler(context)),
-                new TJSONProtocol.Factory()
+                new MeteredProcessor(service, new EditorServiceThrift.Processor(new EditorServletHandler(context))),
+                protocolFactory
         );
     }
 }
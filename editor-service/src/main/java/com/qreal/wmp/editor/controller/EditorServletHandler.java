@@ -2,23 +2,34 @@ package com.qreal.wmp.editor.controller;
 
 import com.qreal.wmp.editor.common.utils.AuthenticatedUser;
 import com.qreal.wmp.editor.database.diagrams.client.DiagramService;
-import com.qreal.wmp.editor.database.diagrams.model.Diagram;
 import com.qreal.wmp.editor.database.diagrams.model.Folder;
 import com.qreal.wmp.editor.database.exceptions.AbortedException;
+import com.qreal.wmp.editor.database.exceptions.ConflictException;
 import com.qreal.wmp.editor.database.exceptions.ErrorConnectionException;
 import com.qreal.wmp.editor.database.exceptions.NotFoundException;
 import com.qreal.wmp.thrift.gen.EditorServiceThrift;
+import com.qreal.wmp.thrift.gen.TConflict;
+import com.qreal.wmp.thrift.gen.TDefaultDiagramNode;
 import com.qreal.wmp.thrift.gen.TDiagram;
+import com.qreal.wmp.thrift.gen.TDiagramChunk;
+import com.qreal.wmp.thrift.gen.TDiagramPatch;
+import com.qreal.wmp.thrift.gen.TDiagramSummary;
 import com.qreal.wmp.thrift.gen.TFolder;
+import com.qreal.wmp.thrift.gen.TLink;
+import com.qreal.wmp.thrift.gen.TPatchResult;
 import org.apache.thrift.TException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Thrift EditorRest controller.
- * RPC functions for diagrams: saveDiagram, updateDiagram, deleteDiagram, getDiagram;
- * RPC functions for folders: saveFolder, updateFolder, getFolder, deleteFolder;
+ * RPC functions for diagrams: saveDiagram, updateDiagram, deleteDiagram, getDiagram, applyDiagramPatch;
+ * RPC functions for large diagrams: openDiagramChunk, appendToDiagram;
+ * RPC functions for folders: saveFolder, updateFolder, getFolder, deleteFolder, getDiagramSummaries;
  * Specific RPC functions : getFolderTree, addUserToOwnersOfFolder
  */
 public class EditorServletHandler implements EditorServiceThrift.Iface {
@@ -40,10 +51,9 @@ public class EditorServletHandler implements EditorServiceThrift.Iface {
     @Override
     public long saveDiagram(TDiagram tDiagram) {
         DiagramService diagramService = (DiagramService) context.getBean("diagramService");
-        Diagram diagram = new Diagram(tDiagram);
         long id = 0;
         try {
-            id = diagramService.saveDiagram(diagram, tDiagram.getFolderId());
+            id = diagramService.saveTDiagram(tDiagram, tDiagram.getFolderId());
         } catch (AbortedException e) {
             //TODO Here we should not return 0, but send exception to client side.
             logger.error("saveDiagram method encountered exception Aborted. Instead of diagramId will be returned 0.",
@@ -64,7 +74,7 @@ public class EditorServletHandler implements EditorServiceThrift.Iface {
         DiagramService diagramService = (DiagramService) context.getBean("diagramService");
         TDiagram result = null;
         try {
-            result = diagramService.getDiagram(diagramId).toTDiagram();
+            result = diagramService.getTDiagram(diagramId);
         } catch (NotFoundException e) {
             //TODO Here we should not return null, but send exception to client side.
             logger.error("getDiagram method encountered exception NotFound. Instead of diagram will be returned null" +
@@ -83,13 +93,15 @@ public class EditorServletHandler implements EditorServiceThrift.Iface {
      * Rewrites diagram with id equal to diagram.id.
      *
      * @param diagram diagram to rewrite (diagram.id must be set correctly).
+     * @throws TConflict if the diagram was changed after diagram.version
      */
     @Override
-    public void rewriteDiagram(TDiagram diagram) {
+    public void rewriteDiagram(TDiagram diagram) throws TConflict {
         DiagramService diagramService = (DiagramService) context.getBean("diagramService");
-        Diagram newDiagram = new Diagram(diagram);
         try {
-            diagramService.updateDiagram(newDiagram);
+            diagramService.updateTDiagram(diagram);
+        } catch (ConflictException e) {
+            throw new TConflict(e.getId(), e.getExpectedVersion(), e.getActualVersion(), e.getMessage());
         } catch (AbortedException e) {
             //TODO Here we should  send exception to client side.
             logger.error("updateDiagram method encountered exception Aborted. Diagram was not rewrote.", e);
@@ -118,6 +130,92 @@ public class EditorServletHandler implements EditorServiceThrift.Iface {
         }
     }
 
+    /**
+     * Applies changes to diagram of specified version.
+     *
+     * @return new version and ids of added nodes and links or null if patch was not applied
+     * @throws TConflict if the diagram was changed after baseVersion
+     */
+    @Override
+    public TPatchResult applyDiagramPatch(long diagramId, long baseVersion, TDiagramPatch patch) throws TConflict {
+        DiagramService diagramService = (DiagramService) context.getBean("diagramService");
+        TPatchResult result = null;
+        try {
+            result = diagramService.applyDiagramPatch(diagramId, baseVersion, patch);
+        } catch (ConflictException e) {
+            throw new TConflict(e.getId(), e.getExpectedVersion(), e.getActualVersion(), e.getMessage());
+        } catch (AbortedException e) {
+            //TODO Here we should not return null, but send exception to client side.
+            logger.error("applyDiagramPatch method encountered exception Aborted. Diagram was not patched.", e);
+        } catch (ErrorConnectionException e) {
+            //TODO Here we should not return null, but send exception to client side.
+            logger.error("applyDiagramPatch method encountered exception ErrorConnection. Diagram was not patched.",
+                    e);
+        } catch (TException e) {
+            logger.error("TException was not translated", e);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a chunk of nodes and links of diagram. Chunks are passed through without conversion, so memory used
+     * by a call is bounded by the limit whatever the size of diagram is.
+     *
+     * @param continuationToken token of the previous chunk, null for the first chunk
+     * @return chunk with token of the next one or null if chunk was not read
+     */
+    @Override
+    public TDiagramChunk openDiagramChunk(long diagramId, String continuationToken, int limit) {
+        DiagramService diagramService = (DiagramService) context.getBean("diagramService");
+        TDiagramChunk result = null;
+        try {
+            result = diagramService.getDiagramChunk(diagramId, continuationToken, limit);
+        } catch (NotFoundException e) {
+            //TODO Here we should not return null, but send exception to client side.
+            logger.error("getDiagramChunk method encountered exception NotFound. Instead of chunk will be returned " +
+                    "null.", e);
+        } catch (AbortedException e) {
+            //TODO Here we should not return null, but send exception to client side.
+            logger.error("getDiagramChunk method encountered exception Aborted. Instead of chunk will be returned " +
+                    "null.", e);
+        } catch (ErrorConnectionException e) {
+            //TODO Here we should not return null, but send exception to client side.
+            logger.error("getDiagramChunk method encountered exception ErrorConnection. Instead of chunk will be " +
+                    "returned null.", e);
+        } catch (TException e) {
+            logger.error("TException was not translated", e);
+        }
+        return result;
+    }
+
+    /**
+     * Adds nodes and links to diagram of specified version.
+     *
+     * @return new version and ids of added nodes and links or null if nothing was appended
+     * @throws TConflict if the diagram was changed after baseVersion
+     */
+    @Override
+    public TPatchResult appendToDiagram(long diagramId, long baseVersion, List<TDefaultDiagramNode> nodes,
+                                        List<TLink> links) throws TConflict {
+        DiagramService diagramService = (DiagramService) context.getBean("diagramService");
+        TPatchResult result = null;
+        try {
+            result = diagramService.appendToDiagram(diagramId, baseVersion, nodes == null ? new ArrayList<>() : nodes,
+                    links == null ? new ArrayList<>() : links);
+        } catch (ConflictException e) {
+            throw new TConflict(e.getId(), e.getExpectedVersion(), e.getActualVersion(), e.getMessage());
+        } catch (AbortedException e) {
+            //TODO Here we should not return null, but send exception to client side.
+            logger.error("appendToDiagram method encountered exception Aborted. Diagram was not changed.", e);
+        } catch (ErrorConnectionException e) {
+            //TODO Here we should not return null, but send exception to client side.
+            logger.error("appendToDiagram method encountered exception ErrorConnection. Diagram was not changed.", e);
+        } catch (TException e) {
+            logger.error("TException was not translated", e);
+        }
+        return result;
+    }
+
     /**
      * Creates folder and assign it id.
      *
@@ -172,6 +270,8 @@ public class EditorServletHandler implements EditorServiceThrift.Iface {
         DiagramService diagramService = (DiagramService) context.getBean("diagramService");
         try {
             diagramService.updateFolder(new Folder(tFolder));
+        } catch (ConflictException e) {
+            throw new TConflict(e.getId(), e.getExpectedVersion(), e.getActualVersion(), e.getMessage());
         } catch (ErrorConnectionException e) {
             //TODO Here we should send exception to client side.
             logger.error("updateFolder method encountered exception ErrorConnection. updateFolder() will be safely " +
@@ -200,6 +300,27 @@ public class EditorServletHandler implements EditorServiceThrift.Iface {
         }
     }
 
+    /** Returns summaries of diagrams of folder for list views, bodies of diagrams are not loaded.*/
+    @Override
+    public List<TDiagramSummary> getDiagramSummaries(long folderId) {
+        DiagramService diagramService = (DiagramService) context.getBean("diagramService");
+        List<TDiagramSummary> result = new ArrayList<>();
+        try {
+            result = diagramService.getDiagramSummaries(folderId);
+        } catch (NotFoundException e) {
+            //TODO Here we should not return empty list, but send exception to client side.
+            logger.error("getDiagramSummaries method encountered exception NotFound. Instead of summaries will be " +
+                    "returned empty list.", e);
+        } catch (ErrorConnectionException e) {
+            //TODO Here we should not return empty list, but send exception to client side.
+            logger.error("getDiagramSummaries method encountered exception ErrorConnection. Instead of summaries " +
+                    "will be returned empty list.", e);
+        } catch (TException e) {
+            logger.error("TException was not translated", e);
+        }
+        return result;
+    }
+
     /** Returns root folder of user.*/
     @Override
     public TFolder getFolderTree() {
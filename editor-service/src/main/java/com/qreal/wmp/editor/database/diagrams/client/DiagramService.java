@@ -5,9 +5,19 @@ import com.qreal.wmp.editor.database.diagrams.model.Folder;
 import com.qreal.wmp.editor.database.exceptions.AbortedException;
 import com.qreal.wmp.editor.database.exceptions.ErrorConnectionException;
 import com.qreal.wmp.editor.database.exceptions.NotFoundException;
+import com.qreal.wmp.thrift.gen.TBatchResult;
+import com.qreal.wmp.thrift.gen.TDefaultDiagramNode;
+import com.qreal.wmp.thrift.gen.TDiagram;
+import com.qreal.wmp.thrift.gen.TDiagramChunk;
+import com.qreal.wmp.thrift.gen.TDiagramPatch;
+import com.qreal.wmp.thrift.gen.TDiagramSummary;
+import com.qreal.wmp.thrift.gen.TLink;
+import com.qreal.wmp.thrift.gen.TPatchResult;
 import org.apache.thrift.TException;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.List;
+
 /** DiagramDBService interface.*/
 public interface DiagramService {
 
@@ -32,11 +42,89 @@ public interface DiagramService {
      */
     void updateDiagram(@NotNull Diagram diagram) throws AbortedException, ErrorConnectionException, TException;
 
+    /**
+     * Saves diagram received from editor client as is, without conversion to the model.
+     *
+     * @param diagram  diagram to save (Id must not be set), its folderId is set to the specified one
+     * @param folderId id of folder to save diagram in
+     * @return new id of diagram
+     */
+    Long saveTDiagram(@NotNull TDiagram diagram, Long folderId) throws AbortedException, ErrorConnectionException,
+            TException;
+
+    /** Returns diagram with specified id as received from DB service, without conversion to the model.*/
+    @NotNull
+    TDiagram getTDiagram(Long diagramId) throws NotFoundException, ErrorConnectionException, TException;
+
+    /**
+     * Rewrites diagram with id equal to diagram.id, the diagram is sent as is, without conversion to the model.
+     *
+     * @param diagram diagram to rewrite (diagram.id must be set correctly).
+     */
+    void updateTDiagram(@NotNull TDiagram diagram) throws AbortedException, ErrorConnectionException, TException;
+
     /**
      * Deletes diagram with specified id.
      */
     void deleteDiagram(Long diagramId) throws AbortedException, ErrorConnectionException, TException;
 
+    /**
+     * Applies changes to diagram of specified version, only changed rows are written by DB service.
+     *
+     * @return new version of diagram and ids of added nodes and links
+     */
+    @NotNull
+    TPatchResult applyDiagramPatch(Long diagramId, long baseVersion, @NotNull TDiagramPatch patch)
+            throws AbortedException, ErrorConnectionException, TException;
+
+    /**
+     * Returns a chunk of nodes and links of diagram as received from DB service, nodes go first.
+     *
+     * @param continuationToken token of the previous chunk, null for the first chunk
+     * @param limit             maximum number of nodes and links in the chunk
+     */
+    @NotNull
+    TDiagramChunk getDiagramChunk(Long diagramId, String continuationToken, int limit) throws NotFoundException,
+            AbortedException, ErrorConnectionException, TException;
+
+    /**
+     * Adds nodes and links to diagram of specified version, existing ones are not read by DB service.
+     *
+     * @return new version of diagram and ids of added nodes and links
+     */
+    @NotNull
+    TPatchResult appendToDiagram(Long diagramId, long baseVersion, @NotNull List<TDefaultDiagramNode> nodes,
+                                 @NotNull List<TLink> links) throws AbortedException, ErrorConnectionException,
+            TException;
+
+    /**
+     * Saves diagrams in specified folder with one call in a single transaction.
+     *
+     * @param diagrams diagrams to save (Ids must not be set)
+     * @param folderId id of folder to save diagrams in
+     * @return item per diagram in order of argument: id of the saved diagram or error of the skipped one
+     */
+    @NotNull
+    TBatchResult saveDiagrams(@NotNull List<Diagram> diagrams, Long folderId) throws AbortedException,
+            ErrorConnectionException, TException;
+
+    /** Returns diagrams with specified ids in order of argument, not existing ones are skipped.*/
+    @NotNull
+    List<Diagram> getDiagrams(@NotNull List<Long> diagramIds) throws ErrorConnectionException, TException;
+
+    /**
+     * Deletes diagrams with specified ids with one call in a single transaction.
+     *
+     * @return item per id in order of argument: the id if diagram was deleted or error if it doesn't exist
+     */
+    @NotNull
+    TBatchResult deleteDiagrams(@NotNull List<Long> diagramIds) throws AbortedException, ErrorConnectionException,
+            TException;
+
+    /** Returns summaries of diagrams of specified folder ordered by name. Bodies of diagrams are not loaded.*/
+    @NotNull
+    List<TDiagramSummary> getDiagramSummaries(Long folderId) throws NotFoundException, ErrorConnectionException,
+            TException;
 
     /**
      * Creates folder and assign it id.
@@ -60,13 +148,22 @@ public interface DiagramService {
     void deleteFolder(Long folderId) throws AbortedException, ErrorConnectionException, TException;
 
     /**
-     * Creates root folder for user with specified username.
+     * Creates root folder for user with specified username unless it exists.
      *
      * @param userName name of user root folder created for
      */
     void createRootFolder(String userName) throws AbortedException, ErrorConnectionException, TException;
 
+    /** Returns user's folder tree with diagrams' names only. Diagrams should be opened with getDiagram.*/
     @NotNull Folder getFolderTree(String username) throws NotFoundException, ErrorConnectionException, TException;
 
+    /**
+     * Returns a folder with a page of its children folders and a page of its diagrams (names only).
+     *
+     * @param limit maximum number of children folders and diagrams, negative for no limit
+     */
+    @NotNull Folder getFolderChildren(Long folderId, String username, int offset, int limit)
+            throws NotFoundException, ErrorConnectionException, TException;
+
     @NotNull void shareFolderTo(String username, Folder folder) throws TException;
 }
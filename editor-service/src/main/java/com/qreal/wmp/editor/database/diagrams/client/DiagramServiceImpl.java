@@ -7,33 +7,43 @@ import com.qreal.wmp.editor.database.exceptions.AbortedException;
 import com.qreal.wmp.editor.database.exceptions.ErrorConnectionException;
 import com.qreal.wmp.editor.database.exceptions.NotFoundException;
 import com.qreal.wmp.thrift.gen.DiagramDbService;
+import com.qreal.wmp.thrift.gen.TBatchItem;
+import com.qreal.wmp.thrift.gen.TBatchResult;
+import com.qreal.wmp.thrift.gen.TDefaultDiagramNode;
 import com.qreal.wmp.thrift.gen.TDiagram;
+import com.qreal.wmp.thrift.gen.TDiagramChunk;
+import com.qreal.wmp.thrift.gen.TDiagramPatch;
+import com.qreal.wmp.thrift.gen.TDiagramSummary;
+import com.qreal.wmp.thrift.gen.TDiagramsResult;
 import com.qreal.wmp.thrift.gen.TFolder;
+import com.qreal.wmp.thrift.gen.TLink;
+import com.qreal.wmp.thrift.gen.TPatchResult;
+import com.qreal.wmp.thrift.pool.PoolSettings;
+import com.qreal.wmp.thrift.pool.ThriftClientPool;
 import org.apache.thrift.TException;
-import org.apache.thrift.protocol.TBinaryProtocol;
-import org.apache.thrift.protocol.TProtocol;
-import org.apache.thrift.transport.TSocket;
-import org.apache.thrift.transport.TTransport;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
-/** Thrift client side of DiagramDbService.*/
+/** Thrift client side of DiagramDbService. Calls are served by a pool of connections, so the bean is thread-safe.*/
 @Service("diagramService")
 @PropertySource("classpath:client.properties")
 public class DiagramServiceImpl implements DiagramService {
     private static final Logger logger = LoggerFactory.getLogger(DiagramServiceImpl.class);
 
-    private TTransport transport;
-
-    private DiagramDbService.Client client;
+    private ThriftClientPool<DiagramDbService.Client> pool;
 
     @Value("${port.db.diagram}")
     private int port;
@@ -41,13 +51,21 @@ public class DiagramServiceImpl implements DiagramService {
     @Value("${path.db.diagram}")
     private String url;
 
-    /** Connects to a Thrift TServer.*/
+    @Autowired
+    private Environment environment;
+
+    /** Creates pool of connections to a Thrift TServer.*/
     @PostConstruct
     public void start() {
-        logger.info("Client DiagramService was created with Thrift socket on url = {}, port = {}", url, port);
-        transport = new TSocket(url, port);
-        TProtocol protocol = new TBinaryProtocol(transport);
-        client = new DiagramDbService.Client(protocol);
+        pool = new ThriftClientPool<>("DiagramDbService", url, port, new DiagramDbService.Client.Factory(),
+                PoolSettings.fromProperties(environment, "pool.db.diagram"));
+        logger.info("Client DiagramService was created with Thrift client pool on url = {}, port = {}", url, port);
+    }
+
+    /** Closes connections to a Thrift TServer.*/
+    @PreDestroy
+    public void stop() {
+        pool.close();
     }
 
     @Override
@@ -57,13 +75,7 @@ public class DiagramServiceImpl implements DiagramService {
                 folderId);
         TDiagram tDiagram = diagram.toTDiagram();
         tDiagram.setFolderId(folderId);
-        Long result = null;
-        transport.open();
-        try {
-            result = client.saveDiagram(tDiagram);
-        } finally {
-            transport.close();
-        }
+        Long result = pool.call(client -> client.saveDiagram(tDiagram));
         logger.trace("saveDiagram() successfully saved diagram with id {}.", diagram.getId());
         return result;
     }
@@ -71,13 +83,7 @@ public class DiagramServiceImpl implements DiagramService {
     @Override
     public @NotNull Diagram getDiagram(Long diagramId) throws NotFoundException, ErrorConnectionException, TException {
         logger.trace("getDiagram() was called with parameters: diagramId = {}.", diagramId);
-        TDiagram tDiagram = null;
-        transport.open();
-        try {
-            tDiagram = client.getDiagram(diagramId);
-        } finally {
-            transport.close();
-        }
+        TDiagram tDiagram = pool.call(client -> client.getDiagram(diagramId));
         logger.trace("getDiagram() successfully returned a diagram.");
         return new Diagram(tDiagram);
     }
@@ -85,43 +91,138 @@ public class DiagramServiceImpl implements DiagramService {
     @Override
     public void updateDiagram(@NotNull Diagram diagram) throws AbortedException, ErrorConnectionException, TException {
         logger.trace("updateDiagram() was called with parameters: diagram = {}", diagram.getName());
-        transport.open();
-        try {
-            client.updateDiagram(diagram.toTDiagram());
-        } finally {
-            transport.close();
-        }
+        TDiagram tDiagram = diagram.toTDiagram();
+        pool.execute(client -> client.updateDiagram(tDiagram));
         logger.trace("updateDiagram() successfully edited a diagram.");
     }
 
+    @Override
+    public Long saveTDiagram(@NotNull TDiagram diagram, Long folderId) throws AbortedException,
+            ErrorConnectionException, TException {
+        logger.trace("saveTDiagram() was called with parameters: diagram = {}, folderId = {}.", diagram.getName(),
+                folderId);
+        diagram.setFolderId(folderId);
+        Long result = pool.call(client -> client.saveDiagram(diagram));
+        logger.trace("saveTDiagram() successfully saved diagram with id {}.", result);
+        return result;
+    }
+
+    @Override
+    public @NotNull TDiagram getTDiagram(Long diagramId) throws NotFoundException, ErrorConnectionException,
+            TException {
+        logger.trace("getTDiagram() was called with parameters: diagramId = {}.", diagramId);
+        TDiagram tDiagram = pool.call(client -> client.getDiagram(diagramId));
+        logger.trace("getTDiagram() successfully returned a diagram.");
+        return tDiagram;
+    }
+
+    @Override
+    public void updateTDiagram(@NotNull TDiagram diagram) throws AbortedException, ErrorConnectionException,
+            TException {
+        logger.trace("updateTDiagram() was called with parameters: diagram = {}", diagram.getName());
+        pool.execute(client -> client.updateDiagram(diagram));
+        logger.trace("updateTDiagram() successfully edited a diagram.");
+    }
+
     @Override
     public void deleteDiagram(Long diagramId) throws AbortedException, ErrorConnectionException, TException {
         logger.trace("deleteDiagram() was called with parameters: diagramId = {}.", diagramId);
-        transport.open();
-        try {
-            client.deleteDiagram(diagramId);
-        } finally {
-            transport.close();
-        }
+        pool.execute(client -> client.deleteDiagram(diagramId));
         logger.trace("deleteDiagram() successfully deleted diagram with id {}", diagramId);
     }
 
+    @Override
+    @NotNull
+    public TPatchResult applyDiagramPatch(Long diagramId, long baseVersion, @NotNull TDiagramPatch patch)
+            throws AbortedException, ErrorConnectionException, TException {
+        logger.trace("applyDiagramPatch() was called with parameters: diagramId = {}, baseVersion = {}.", diagramId,
+                baseVersion);
+        TPatchResult result = pool.call(client -> client.applyDiagramPatch(diagramId, baseVersion, patch));
+        logger.trace("applyDiagramPatch() successfully patched diagram {} to version {}.", diagramId,
+                result.getVersion());
+        return result;
+    }
+
+    @Override
+    @NotNull
+    public TDiagramChunk getDiagramChunk(Long diagramId, String continuationToken, int limit)
+            throws NotFoundException, AbortedException, ErrorConnectionException, TException {
+        logger.trace("getDiagramChunk() was called with parameters: diagramId = {}, token = {}, limit = {}.",
+                diagramId, continuationToken, limit);
+        TDiagramChunk chunk = pool.call(client -> client.getDiagramChunk(diagramId, continuationToken, limit));
+        logger.trace("getDiagramChunk() returned {} nodes and {} links.", chunk.getNodesSize(), chunk.getLinksSize());
+        return chunk;
+    }
+
+    @Override
+    @NotNull
+    public TPatchResult appendToDiagram(Long diagramId, long baseVersion, @NotNull List<TDefaultDiagramNode> nodes,
+                                        @NotNull List<TLink> links) throws AbortedException,
+            ErrorConnectionException, TException {
+        logger.trace("appendToDiagram() was called with parameters: diagramId = {}, baseVersion = {}.", diagramId,
+                baseVersion);
+        TPatchResult result = pool.call(client -> client.appendToDiagram(diagramId, baseVersion, nodes, links));
+        logger.trace("appendToDiagram() successfully appended to diagram {}, new version {}.", diagramId,
+                result.getVersion());
+        return result;
+    }
+
+    @Override
+    @NotNull
+    public TBatchResult saveDiagrams(@NotNull List<Diagram> diagrams, Long folderId) throws AbortedException,
+            ErrorConnectionException, TException {
+        logger.trace("saveDiagrams() was called with parameters: {} diagrams, folderId = {}.", diagrams.size(),
+                folderId);
+        List<TDiagram> tDiagrams = diagrams.stream().map(diagram -> {
+            TDiagram tDiagram = diagram.toTDiagram();
+            tDiagram.setFolderId(folderId);
+            return tDiagram;
+        }).collect(Collectors.toList());
+        TBatchResult result = pool.call(client -> client.saveDiagrams(tDiagrams));
+        logger.trace("saveDiagrams() saved {} diagrams.",
+                result.getItems().stream().filter(TBatchItem::isSetId).count());
+        return result;
+    }
+
+    @Override
+    @NotNull
+    public List<Diagram> getDiagrams(@NotNull List<Long> diagramIds) throws ErrorConnectionException, TException {
+        logger.trace("getDiagrams() was called with parameters: {} diagramIds.", diagramIds.size());
+        TDiagramsResult result = pool.call(client -> client.getDiagrams(diagramIds));
+        logger.trace("getDiagrams() returned {} diagrams.", result.getDiagrams().size());
+        return result.getDiagrams().stream().map(Diagram::new).collect(Collectors.toList());
+    }
+
+    @Override
+    @NotNull
+    public TBatchResult deleteDiagrams(@NotNull List<Long> diagramIds) throws AbortedException,
+            ErrorConnectionException, TException {
+        logger.trace("deleteDiagrams() was called with parameters: {} diagramIds.", diagramIds.size());
+        TBatchResult result = pool.call(client -> client.deleteDiagrams(diagramIds));
+        logger.trace("deleteDiagrams() deleted {} diagrams.",
+                result.getItems().stream().filter(TBatchItem::isSetId).count());
+        return result;
+    }
+
+    @Override
+    @NotNull
+    public List<TDiagramSummary> getDiagramSummaries(Long folderId) throws NotFoundException,
+            ErrorConnectionException, TException {
+        logger.trace("getDiagramSummaries() was called with parameters: folderId = {}.", folderId);
+        List<TDiagramSummary> summaries = pool.call(client -> client.getDiagramSummaries(folderId));
+        logger.trace("getDiagramSummaries() returned {} summaries.", summaries.size());
+        return summaries;
+    }
+
     @Override
     public Long saveFolder(@NotNull Folder folder) throws AbortedException, ErrorConnectionException, TException {
         logger.trace("saveFolder() was called with parameters: folder = {}.", folder.getFolderName());
-        Long result = 0L;
-
         Set<String> owner = new HashSet<>();
         owner.add(AuthenticatedUser.getUserName());
         folder.setOwners(owner);
 
-        transport.open();
-        try {
-            TFolder newFolder = folder.toTFolder();
-            result = client.saveFolder(newFolder);
-        } finally {
-            transport.close();
-        }
+        TFolder newFolder = folder.toTFolder();
+        Long result = pool.call(client -> client.saveFolder(newFolder));
         logger.trace("saveFolder() successfully created folder {}", folder.getFolderName());
         return result;
     }
@@ -130,13 +231,7 @@ public class DiagramServiceImpl implements DiagramService {
     public Folder getFolder(Long folderId, String username) throws NotFoundException, ErrorConnectionException,
             TException {
         logger.trace("getFolder() was called with parameters: folderId = {}.", folderId);
-        transport.open();
-        TFolder tFolder;
-        try {
-            tFolder = client.getFolder(folderId, username);
-        } finally {
-            transport.close();
-        }
+        TFolder tFolder = pool.call(client -> client.getFolder(folderId, username));
         logger.trace("getFolder() successfully returned folder with id {}.", folderId);
         return new Folder(tFolder);
     }
@@ -144,68 +239,51 @@ public class DiagramServiceImpl implements DiagramService {
     @Override
     public void updateFolder(@NotNull Folder folder) throws AbortedException, ErrorConnectionException, TException {
         logger.trace("updateFolder() was called with parameters: folder = {}", folder.getFolderName());
-        transport.open();
-        try {
-            client.updateFolder(folder.toTFolder());
-        } finally {
-            transport.close();
-        }
+        TFolder tFolder = folder.toTFolder();
+        pool.execute(client -> client.updateFolder(tFolder));
         logger.trace("updateFolder() successfully updated a folder.");
     }
 
     @Override
     public void deleteFolder(Long folderId) throws AbortedException, ErrorConnectionException, TException {
         logger.trace("deleteFolder() was called with parameters: folderId = {}.", folderId);
-        transport.open();
-        try {
-            client.deleteFolder(folderId);
-        } finally {
-            transport.close();
-        }
+        pool.execute(client -> client.deleteFolder(folderId));
         logger.trace("deleteFolder() successfully deleted folder with id {}.", folderId);
     }
 
     @Override
     public void createRootFolder(String userName) throws AbortedException, ErrorConnectionException, TException {
         logger.trace("createRootFolder() was called with parameters: username = {}.", userName);
-        Folder rootFolder = new Folder("root", userName);
-        transport.open();
-        try {
-            TFolder newFolder = rootFolder.toTFolder();
-            client.saveFolder(newFolder);
-        } finally {
-            transport.close();
-        }
+        pool.execute(client -> client.createRootFolder(userName));
         logger.trace("createRootFolder() successfully created root folder for {}.", userName);
     }
 
     @Override
     @NotNull
     public Folder getFolderTree(String username) throws NotFoundException, ErrorConnectionException, TException {
-        logger.trace("getFolderTree() was called with parameters: owners = {}.",
-                AuthenticatedUser.getUserName());
-        TFolder folder = new TFolder();
-        transport.open();
-        try {
-            folder = client.getFolderTree(username);
-        } finally {
-            transport.close();
-        }
+        logger.trace("getFolderTree() was called with parameters: owners = {}.", username);
+        TFolder folder = pool.call(client -> client.getFolderTreeLazy(username, -1, false, -1));
         logger.trace("getFolderTree() successfully returned a folderTree.");
         return new Folder(folder);
     }
 
+    @Override
+    @NotNull
+    public Folder getFolderChildren(Long folderId, String username, int offset, int limit)
+            throws NotFoundException, ErrorConnectionException, TException {
+        logger.trace("getFolderChildren() was called with parameters: folderId = {}, offset = {}, limit = {}.",
+                folderId, offset, limit);
+        TFolder folder = pool.call(client -> client.getFolderChildren(folderId, username, offset, limit));
+        logger.trace("getFolderChildren() successfully returned a folder.");
+        return new Folder(folder);
+    }
+
     @Override
     @NotNull
     public void shareFolderTo(String username, Folder folder) throws TException {
         logger.trace("shareFolderTo() was called with parameters: username = {}.", username);
         TFolder tFolder = folder.toTFolder();
-        transport.open();
-        try {
-            client.shareFolderTo(username, tFolder);
-        } finally {
-            transport.close();
-        }
+        pool.execute(client -> client.shareFolderTo(username, tFolder));
         logger.trace("shareFolderTo() successfully shared folder.");
     }
 }
@@ -19,6 +19,8 @@ public class Diagram implements Serializable {
 
     private Set<Link> links = new HashSet<>();
 
+    private Long version;
+
     public Diagram() { }
 
     /** Constructor-converter from Thrift TDiagram to Diagram.*/
@@ -40,6 +42,9 @@ public class Diagram implements Serializable {
             links = tDiagram.getLinks().stream().map(Link::new).collect(Collectors.toSet());
         }
 
+        if (tDiagram.isSetVersion()) {
+            version = tDiagram.getVersion();
+        }
     }
 
     /** Converter from Diagram to Thrift TDiagram.*/
@@ -64,6 +69,10 @@ public class Diagram implements Serializable {
             tDiagram.setLinks(links.stream().map(Link::toTLink).collect(Collectors.toSet()));
         }
 
+        if (version != null) {
+            tDiagram.setVersion(version);
+        }
+
         return tDiagram;
     }
 }
@@ -31,6 +31,12 @@ public class Folder implements Serializable {
 
     private Set<Diagram> diagrams = new HashSet<>();
 
+    private Integer childrenCount;
+
+    private Integer diagramsCount;
+
+    private Long version;
+
     public Folder() { }
 
     public Folder(String folderName, String owner) {
@@ -65,6 +71,17 @@ public class Folder implements Serializable {
             diagrams = tFolder.getDiagrams().stream().map(Diagram::new).collect(Collectors.toSet());
         }
 
+        if (tFolder.isSetChildrenCount()) {
+            childrenCount = tFolder.getChildrenCount();
+        }
+
+        if (tFolder.isSetDiagramsCount()) {
+            diagramsCount = tFolder.getDiagramsCount();
+        }
+
+        if (tFolder.isSetVersion()) {
+            version = tFolder.getVersion();
+        }
     }
 
     /** Converter from Folder to Thrift TFolder.*/
@@ -95,6 +112,18 @@ public class Folder implements Serializable {
             tFolder.setDiagrams(diagrams.stream().map(Diagram::toTDiagram).collect(Collectors.toSet()));
         }
 
+        if (childrenCount != null) {
+            tFolder.setChildrenCount(childrenCount);
+        }
+
+        if (diagramsCount != null) {
+            tFolder.setDiagramsCount(diagramsCount);
+        }
+
+        if (version != null) {
+            tFolder.setVersion(version);
+        }
+
         return tFolder;
     }
 }
@@ -0,0 +1,37 @@
+package com.qreal.wmp.editor.database.exceptions;
+
+/** Conflict exception informs that an entity was changed after the version the operation was based on.*/
+public class ConflictException extends AbortedException {
+
+    /** Id of conflicting entity. */
+    private final String id;
+
+    /** Version the operation was based on. */
+    private final long expectedVersion;
+
+    /** Version of the entity in DB or -1 if unknown. */
+    private final long actualVersion;
+
+    /**
+     * Creates exception translated from TConflict of DB service.
+     * @param actualVersion version of the entity in DB or -1 if unknown
+     */
+    public ConflictException(String id, long expectedVersion, long actualVersion, String message) {
+        super("Entity was changed after version " + expectedVersion + ".", message, ConflictException.class.getName());
+        this.id = id;
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = actualVersion;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public long getActualVersion() {
+        return actualVersion;
+    }
+}
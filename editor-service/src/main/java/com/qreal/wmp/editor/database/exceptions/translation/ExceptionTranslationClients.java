@@ -2,6 +2,7 @@ package com.qreal.wmp.editor.database.exceptions.translation;
 
 import com.qreal.wmp.editor.database.diagrams.client.DiagramServiceImpl;
 import com.qreal.wmp.editor.database.exceptions.AbortedException;
+import com.qreal.wmp.editor.database.exceptions.ConflictException;
 import com.qreal.wmp.editor.database.exceptions.ErrorConnectionException;
 import com.qreal.wmp.editor.database.exceptions.NotFoundException;
 import com.qreal.wmp.editor.database.users.client.UserServiceImpl;
@@ -68,6 +69,8 @@ public class ExceptionTranslationClients {
             loggerDiagrams.error("Client DiagramService encountered an IdNotDefined exception.", e);
         } catch (TIdAlreadyDefined e) {
             loggerDiagrams.error("Client DiagramService encountered an IdAlreadyDefined exception.", e);
+        } catch (TConflict e) {
+            throw new ConflictException(e.getId(), e.getExpectedVersion(), e.getActualVersion(), e.getMessage());
         } catch (TAborted e) {
             throw new AbortedException(e.getTextCause(), e.getMessage(), e.getFullClassName());
         } catch (TErrorConnection e) {
@@ -30,12 +30,85 @@ service DiagramDbService {
 
     /**
     * In case of exception updateDiagram operation will be safely aborted.
+    * If version of the diagram is set, update is conditional: it succeeds only if the diagram has the same version.
     *
     * TAborted will be thrown in the following cases:
     * 1. The diagram to update doesn't exist
+    *
+    * TConflict will be thrown if the diagram was changed after specified version.
     **/
     void updateDiagram(1: Diagram.TDiagram diagram) throws (1: DbExceptions.TAborted aborted,
-                                                             2: DbExceptions.TIdNotDefined notDefined);
+                                                             2: DbExceptions.TIdNotDefined notDefined,
+                                                             3: DbExceptions.TConflict conflict);
+
+    /**
+    * Applies changes to a diagram of specified version. Only changed rows are written.
+    * In case of exception patch will be safely aborted.
+    *
+    * TAborted will be thrown in the following cases:
+    * 1. The diagram to patch doesn't exist
+    * 2. The patch refers to nodes, links or properties not belonging to the diagram
+    *
+    * TConflict will be thrown if the diagram was changed after baseVersion.
+    **/
+    Diagram.TPatchResult applyDiagramPatch(1: i64 diagramId, 2: i64 baseVersion, 3: Diagram.TDiagramPatch patch)
+            throws (1: DbExceptions.TAborted aborted, 2: DbExceptions.TConflict conflict);
+
+//CHUNKED DIAGRAMS
+
+    /**
+    * Returns a chunk of at most limit nodes and links of the diagram (limit is capped by the service), so a diagram
+    * of any size can be read with bounded memory. continuationToken is not set for the first chunk, for others it
+    * is the token of the previous chunk.
+    *
+    * TNotFound is thrown if the diagram with specified id is not found.
+    * TAborted is thrown if the continuation token is malformed.
+    * TConflict is thrown if the diagram was changed after the first chunk was read, reading starts over then.
+    **/
+    Diagram.TDiagramChunk getDiagramChunk(1: i64 diagramId, 2: string continuationToken, 3: i32 limit)
+            throws (1: DbExceptions.TNotFound notFound, 2: DbExceptions.TAborted aborted,
+                    3: DbExceptions.TConflict conflict);
+
+    /**
+    * Adds nodes and links to a diagram of specified version without reading the existing ones, so a large diagram
+    * can be written as an empty diagram followed by appends with returned versions.
+    * Appended nodes and links must not have ids, they are assigned by DB.
+    *
+    * TAborted will be thrown in the following cases:
+    * 1. The diagram to append to doesn't exist
+    * 2. An appended node or link has id
+    *
+    * TConflict will be thrown if the diagram was changed after baseVersion.
+    **/
+    Diagram.TPatchResult appendToDiagram(1: i64 diagramId, 2: i64 baseVersion,
+                                         3: list<Diagram.TDefaultDiagramNode> nodes, 4: list<Diagram.TLink> links)
+            throws (1: DbExceptions.TAborted aborted, 2: DbExceptions.TConflict conflict);
+
+//BATCH DIAGRAMS
+
+    /**
+    * Saves diagrams in a single transaction, each one into the folder specified by its folderId.
+    * Diagrams with id set or with not existing folder are skipped. Result has an item per diagram of the request
+    * in the same order: id of the saved diagram or error of the skipped one.
+    * TAborted is thrown if the transaction fails, nothing is saved in this case.
+    **/
+    Diagram.TBatchResult saveDiagrams(1: list<Diagram.TDiagram> diagrams) throws (1: DbExceptions.TAborted aborted);
+
+    /** Loads diagrams with one query. Not existing diagrams are reported in errors.*/
+    Diagram.TDiagramsResult getDiagrams(1: list<i64> diagramIds);
+
+    /**
+    * Deletes diagrams in a single transaction. Result has an item per id of the request in the same order:
+    * the id if the diagram was deleted or error if it doesn't exist.
+    * TAborted is thrown if the transaction fails, nothing is deleted in this case.
+    **/
+    Diagram.TBatchResult deleteDiagrams(1: list<i64> diagramIds) throws (1: DbExceptions.TAborted aborted);
+
+    /**
+    * Returns summaries of diagrams of the folder ordered by name using one query.
+    * TNotFound is thrown if the folder with specified id is not found.
+    **/
+    list<Diagram.TDiagramSummary> getDiagramSummaries(1: i64 folderId) throws (1: DbExceptions.TNotFound e);
 
 //CRUD FOLDERS
 
@@ -48,6 +121,12 @@ service DiagramDbService {
     i64 saveFolder(1: Diagram.TFolder folder) throws (1: DbExceptions.TIdAlreadyDefined alreadyDefined,
                                                         2: DbExceptions.TAborted aborted);
 
+    /**
+    * Creates root folder of the user if it doesn't exist, so repeated calls are safe.
+    * Returns id of the root folder.
+    **/
+    i64 createRootFolder(1: string username) throws (1: DbExceptions.TAborted aborted);
+
     /**
     * Username used to find right parent.
     * TNotFound is thrown if the folder with specified id is not found.
@@ -65,18 +144,43 @@ service DiagramDbService {
 
     /**
     * In case of exception updateFolder operation will be safely aborted.
+    * If version of the folder is set, update is conditional: it succeeds only if the folder has the same version.
+    * Versions of children folders are checked the same way. Only membership of saved diagrams is written,
+    * their nodes and links sent with the folder are ignored.
     *
     * TAborted will be thrown in the following cases:
     * 1. The folder to update doesn't exist
+    * 2. A saved diagram of the folder doesn't exist
+    *
+    * TConflict will be thrown if the folder or one of its children folders was changed after specified version.
     **/
     void updateFolder(1: Diagram.TFolder folder)  throws (1: DbExceptions.TAborted aborted,
-                                                         2: DbExceptions.TIdNotDefined notDefined)
+                                                         2: DbExceptions.TIdNotDefined notDefined,
+                                                         3: DbExceptions.TConflict conflict)
 
 //SPECIFIC
 
     /** TNotFound is thrown if the folder tree with specified owner is not found.*/
     Diagram.TFolder getFolderTree(1: string username) throws (1: DbExceptions.TNotFound e);
 
+    /**
+    * Returns headers of username's folder tree down to specified depth of children folders (negative for the whole
+    * tree, 0 for the root only). Every folder has childrenCount and diagramsCount set and at most childrenLimit
+    * children folders and diagrams (negative for no limit). Diagrams have only id and name unless
+    * includeDiagramBodies is set.
+    * TNotFound is thrown if the folder tree with specified owner is not found.
+    **/
+    Diagram.TFolder getFolderTreeLazy(1: string username, 2: i32 depth, 3: bool includeDiagramBodies,
+                                      4: i32 childrenLimit) throws (1: DbExceptions.TNotFound e);
+
+    /**
+    * Returns headers of the folder with a page of its children folders and a page of its diagrams.
+    * Offset and limit are applied to folders and diagrams independently, negative limit means no limit.
+    * TNotFound is thrown if the folder with specified id is not found.
+    **/
+    Diagram.TFolder getFolderChildren(1: i64 folderId, 2: string username, 3: i32 offset, 4: i32 limit)
+            throws (1: DbExceptions.TNotFound e);
+
     /** Create link to specified folder in Shared folder of username's root.*/
     void shareFolderTo(1: string username, 2: Diagram.TFolder folder);
 }
@@ -2,20 +2,32 @@ namespace java com.qreal.wmp.thrift.gen
 
 include "../struct/Diagram.thrift"
 
+include "../exception/DbExceptions.thrift"
+
 //This service works in environment of user session, so it have no
 //access to real DB structures. Only view of user.
 service EditorServiceThrift {
 //CRUD Diagrams
     i64 saveDiagram(1: Diagram.TDiagram diagram),
     Diagram.TDiagram openDiagram(1: i64 diagramID),
-    void rewriteDiagram(1: Diagram.TDiagram diagram),
+    //TConflict is thrown if the diagram was changed after the version the client is based on.
+    void rewriteDiagram(1: Diagram.TDiagram diagram) throws (1: DbExceptions.TConflict conflict),
     void deleteDiagram(1: i64 id),
+    Diagram.TPatchResult applyDiagramPatch(1: i64 diagramId, 2: i64 baseVersion, 3: Diagram.TDiagramPatch patch)
+            throws (1: DbExceptions.TConflict conflict),
+    //Large diagrams are read chunk by chunk and written as an empty diagram followed by appends.
+    Diagram.TDiagramChunk openDiagramChunk(1: i64 diagramId, 2: string continuationToken, 3: i32 limit),
+    Diagram.TPatchResult appendToDiagram(1: i64 diagramId, 2: i64 baseVersion,
+                                         3: list<Diagram.TDefaultDiagramNode> nodes, 4: list<Diagram.TLink> links)
+            throws (1: DbExceptions.TConflict conflict),
 
 //CRUD Folders
     i64 createFolder(1: Diagram.TFolder folder),
     Diagram.TFolder getFolder(1: i64 folderId, 2: string username),
-    void updateFolder(1: Diagram.TFolder folder),
+    //TConflict is thrown if the folder or one of its children was changed after the version the client is based on.
+    void updateFolder(1: Diagram.TFolder folder) throws (1: DbExceptions.TConflict conflict),
     void deleteFolder(1: i64 id),
+    list<Diagram.TDiagramSummary> getDiagramSummaries(1: i64 folderId),
 
 //Specific
     Diagram.TFolder getFolderTree(),
@@ -13,6 +13,17 @@ exception TAborted {
     3: string fullClassName
 }
 
+/**
+* Used in case of optimistic lock failure: the entity was changed after the version a client based its write on.
+* Client should reload the entity and retry.
+**/
+exception TConflict {
+    1: string id,
+    2: i64 expectedVersion,
+    3: i64 actualVersion,
+    4: string message
+}
+
 /** Used in case of connection errors.*/
 exception TErrorConnection {
     1: string clientName,
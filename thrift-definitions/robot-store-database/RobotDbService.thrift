@@ -29,16 +29,18 @@ service RobotDbService {
     /** TNotFound is thrown if the robot with specified id is not found.*/
     Robot.TRobot getRobot(1: i64 id) throws (1: DbExceptions.TNotFound e),
 
+    /** Loads robots with one query. Not existing robots are skipped, found robots keep the order of ids.*/
+    list<Robot.TRobot> getRobots(1: list<i64> ids),
+
 
     /**
     * In case of exception deleteRobot operation will be safely aborted.
+    * The robot is removed from owner's list of robots by UserDbService asynchronously, after deletion is committed.
     *
     * TAborted will be thrown in the following cases:
     * 1. The robot to delete doesn't exist
-    * 2. Inconsistency of db state - robot contains link to owner but this user doesn't exist
     *
-    * TErrorConnection will be thrown in the following cases:
-    * 1.The userService is unreachable
+    * TErrorConnection is kept for compatibility, it is not thrown anymore.
     **/
     void deleteRobot(1: i64 id) throws (1: DbExceptions.TAborted aborted,
                                         2: DbExceptions.TErrorConnection errorConnection),
@@ -52,6 +54,16 @@ service RobotDbService {
     void updateRobot(1: Robot.TRobot tRobot) throws (1: DbExceptions.TAborted aborted,
                                                      2: DbExceptions.TIdNotDefined notDefined)
 
+    /**
+    * Saves robots without id and updates robots with id in a single transaction.
+    * Returns ids of robots in the order of robots.
+    *
+    * TAborted will be thrown in the following cases:
+    * 1. One of robots to update doesn't exist, nothing is saved in this case
+    * 2. The transaction fails, nothing is saved in this case
+    **/
+    list<i64> saveOrUpdateRobots(1: list<Robot.TRobot> robots) throws (1: DbExceptions.TAborted aborted),
+
     /** No exceptions possible.*/
     bool isRobotExists(1: i64 id),
 }
@@ -35,7 +35,79 @@ struct TDiagram {
     3 : string user,
     4 : set<TDefaultDiagramNode> nodes,
     5 : set<TLink> links,
-    6 : optional i64 folderId
+    6 : optional i64 folderId,
+    7 : optional i64 version
+}
+
+/**
+* Changes of a diagram. Nodes, links and properties are identified by their ids.
+* Properties of modified nodes and links are matched by id or, if id is not set, by name; unmatched ones are added.
+* Added nodes and links must not have ids, they are assigned by DB.
+**/
+struct TDiagramPatch {
+    1 : optional string name,
+    2 : list<TDefaultDiagramNode> addedNodes,
+    3 : list<TDefaultDiagramNode> modifiedNodes,
+    4 : list<string> removedNodeIds,
+    5 : list<TLink> addedLinks,
+    6 : list<TLink> modifiedLinks,
+    7 : list<string> removedLinkIds,
+    8 : list<string> removedPropertyIds
+}
+
+/** Result of a patch: new version of a diagram and ids of added nodes and links in order of the patch.*/
+struct TPatchResult {
+    1 : i64 version,
+    2 : list<string> addedNodeIds,
+    3 : list<string> addedLinkIds
+}
+
+/**
+* Part of a diagram read by getDiagramChunk: a page of nodes and then a page of links, both ordered by id.
+* continuationToken is set if the diagram has more nodes or links, it is passed to get the next chunk.
+**/
+struct TDiagramChunk {
+    1 : i64 diagramId,
+    2 : string name,
+    3 : i64 version,
+    4 : list<TDefaultDiagramNode> nodes,
+    5 : list<TLink> links,
+    6 : optional string continuationToken
+}
+
+/** Header of a diagram for list views: no nodes, links or properties are transferred.*/
+struct TDiagramSummary {
+    1 : i64 id,
+    2 : string name,
+    3 : optional i64 folderId,
+    4 : i32 nodesCount,
+    5 : i32 linksCount,
+    6 : optional i64 lastModified
+}
+
+/** Error of one item of a batch operation.*/
+struct TBatchError {
+    1 : i32 index,
+    2 : optional i64 id,
+    3 : string textCause,
+    4 : string message
+}
+
+/** Result of one item of a batch operation: id of the processed item or error if it was skipped.*/
+struct TBatchItem {
+    1 : optional i64 id,
+    2 : optional TBatchError error
+}
+
+/** Result of a batch operation: one item per item of the request, in the same order.*/
+struct TBatchResult {
+    1 : list<TBatchItem> items
+}
+
+/** Result of a batch load: found diagrams in order of the request and errors of not found ones.*/
+struct TDiagramsResult {
+    1 : list<TDiagram> diagrams,
+    2 : list<TBatchError> errors
 }
 
 //parent folders should be set only for root
@@ -46,5 +118,8 @@ struct TFolder {
     3 : optional set<string> owners,
     4 : set<TFolder> childrenFolders,
     5 : set<TDiagram> diagrams,
-    6 : optional i64 folderParentId
+    6 : optional i64 folderParentId,
+    7 : optional i32 childrenCount,
+    8 : optional i32 diagramsCount,
+    9 : optional i64 version
 }
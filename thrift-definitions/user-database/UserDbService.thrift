@@ -18,14 +18,16 @@ service UserDbService {
 
     /**
     * In case of exception saveUser operation will be safely aborted
+    * Robots and root folder of the user are created concurrently before the user is saved.
+    * If the result of root folder creation is unknown, the user is saved and creation of
+    * the root folder is retried by DiagramDbService client after the user is committed.
     *
     * TAborted will be thrown in the following cases:
     * 1. Saving or updating of robots of user is aborted.
-    * 2. Creating of rootFolder is aborted.
+    * 2. Creation of root folder of user is aborted.
     *
     * TErrorConnection will be thrown in the following cases:
     * 1. The robotsService is unreachable
-    * 1. The diagramsService is unreachable
     **/
     void saveUser(1: User.TUser user) throws (1: DbExceptions.TIdNotDefined notDefined
                                           2: DbExceptions.TAborted aborted,
@@ -52,6 +54,12 @@ service UserDbService {
     User.TUser getUser(1: string username) throws (1: DbExceptions.TNotFound notFound,
                                                           2: DbExceptions.TErrorConnection errorConnection),
 
+    /**
+    * Removes a robot from user's list of robots without loading robots of the user.
+    * Returns false if the user doesn't exist or doesn't own the robot, nothing is changed in this case.
+    **/
+    bool removeRobotFromUser(1: string username, 2: i64 robotId),
+
     /** No exceptions possible.*/
     bool isUserExists(1: string username)
 }